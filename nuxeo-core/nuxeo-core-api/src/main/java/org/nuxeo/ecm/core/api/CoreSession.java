@@ -1065,6 +1065,29 @@ public interface CoreSession extends AutoCloseable {
      */
     IterableQueryResult queryAndFetch(String query, String queryType, boolean distinctDocuments, Object... params);
 
+    /**
+     * Executes the given query and streams the requested properties as rows of values indexed by column (which must be
+     * closed when done).
+     * <p>
+     * Unlike {@link #queryAndFetch}, no map is built per row, and the backend fetches rows from its cursor
+     * {@code fetchSize} at a time instead of materializing the whole result.
+     * <p>
+     * If {@code detached} is {@code true}, the backend may run the query outside of the current transaction, so that
+     * the result can still be iterated after the transaction commits, for instance by a long export committing its work
+     * regularly. A detached result is not closed automatically when the session is closed.
+     *
+     * @param query the query to execute
+     * @param queryType the query type, usually "NXQL"
+     * @param distinctDocuments if {@code true} then a maximum of one row per document will be returned
+     * @param fetchSize the number of rows to fetch at a time from the backend, or {@code 0} for the backend default
+     * @param detached if {@code true}, the result may be iterated independently of the current transaction
+     * @param params optional query-type-dependent parameters
+     * @return an {@link IterableRowQueryResult}, which <b>must</b> be closed after use
+     * @since 9.3
+     */
+    IterableRowQueryResult queryAndFetchRows(String query, String queryType, boolean distinctDocuments, int fetchSize,
+            boolean detached, Object... params);
+
     /**
      * Executes the given NXQL query and returns the result that matches the filter.
      *
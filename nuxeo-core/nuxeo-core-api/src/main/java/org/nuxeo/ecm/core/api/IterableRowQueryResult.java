@@ -0,0 +1,76 @@
+/*
+ * (C) Copyright 2017 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Florent Guillaume
+ */
+package org.nuxeo.ecm.core.api;
+
+import java.io.Closeable;
+import java.io.Serializable;
+
+/**
+ * An iterable query result based on a streaming cursor, where each row is an array of values indexed by column.
+ * <p>
+ * Compared to {@link IterableQueryResult}, no map is built for each row: the value of a column is found at the index
+ * of its name in {@link #getColumnNames}. Each row is a new array that the caller may keep.
+ * <p>
+ * The {@link #close()} method MUST be called when the query result is no more needed, otherwise underlying resources
+ * will be leaked. There is no auto-closing at the end of the iteration.
+ *
+ * @since 9.3
+ */
+public interface IterableRowQueryResult extends Iterable<Serializable[]>, Closeable {
+
+    /**
+     * Gets the names of the columns of each row, in order.
+     *
+     * @return the column names
+     */
+    String[] getColumnNames();
+
+    /**
+     * Gets the index of a column in each row.
+     *
+     * @param name the column name
+     * @return the column index, or {@code -1} if the column is not part of the result
+     */
+    default int getColumnIndex(String name) {
+        String[] names = getColumnNames();
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Closes the query result and releases the underlying resources held by the cursor.
+     * <p>
+     * This MUST be called when the query result is no more needed, otherwise underlying resources will be leaked. There
+     * is no auto-closing at the end of the iteration.
+     */
+    @Override
+    void close();
+
+    /**
+     * Indicates if the query result must be closed (because it holds resources).
+     *
+     * @return {@code true} if the query result must be closed, {@code false} otherwise
+     */
+    boolean mustBeClosed();
+
+}
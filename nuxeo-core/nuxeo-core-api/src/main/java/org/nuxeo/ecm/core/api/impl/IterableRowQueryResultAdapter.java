@@ -0,0 +1,87 @@
+/*
+ * (C) Copyright 2017 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Florent Guillaume
+ */
+package org.nuxeo.ecm.core.api.impl;
+
+import java.io.Serializable;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.nuxeo.ecm.core.api.IterableQueryResult;
+import org.nuxeo.ecm.core.api.IterableRowQueryResult;
+
+/**
+ * Exposes an {@link IterableQueryResult} as an {@link IterableRowQueryResult}, for backends that build maps natively.
+ *
+ * @since 9.3
+ */
+public class IterableRowQueryResultAdapter implements IterableRowQueryResult {
+
+    protected final IterableQueryResult result;
+
+    protected final String[] columnNames;
+
+    /**
+     * Constructs an adapter.
+     *
+     * @param result the query result to adapt, closed when this adapter is closed
+     * @param columnNames the map keys to use as columns, in order
+     */
+    public IterableRowQueryResultAdapter(IterableQueryResult result, String[] columnNames) {
+        this.result = result;
+        this.columnNames = columnNames;
+    }
+
+    @Override
+    public String[] getColumnNames() {
+        return columnNames;
+    }
+
+    @Override
+    public Iterator<Serializable[]> iterator() {
+        Iterator<Map<String, Serializable>> it = result.iterator();
+        return new Iterator<Serializable[]>() {
+
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public Serializable[] next() {
+                Map<String, Serializable> map = it.next();
+                Serializable[] row = new Serializable[columnNames.length];
+                for (int i = 0; i < columnNames.length; i++) {
+                    row[i] = map.get(columnNames[i]);
+                }
+                return row;
+            }
+        };
+    }
+
+    @Override
+    public void close() {
+        result.close();
+    }
+
+    @Override
+    public boolean mustBeClosed() {
+        return result.mustBeClosed();
+    }
+
+}
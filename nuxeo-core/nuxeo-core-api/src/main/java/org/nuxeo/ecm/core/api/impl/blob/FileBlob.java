@@ -75,6 +75,20 @@ public class FileBlob extends AbstractBlob implements Serializable {
         this.filename = filename != null ? filename : file.getName();
     }
 
+    /**
+     * Creates a {@link FileBlob} backed by the given file, which may be explicitly marked as temporary.
+     * <p>
+     * A temporary file belongs to the blob, and may be moved instead of copied by the consumers of the blob.
+     *
+     * @param file the file
+     * @param isTemporary whether the file is temporary
+     * @since 9.3
+     */
+    public FileBlob(File file, boolean isTemporary) {
+        this(file);
+        this.isTemporary = isTemporary;
+    }
+
     /**
      * Creates a {@link FileBlob} from an {@link InputStream}, by saving it to a temporary file.
      * <p>
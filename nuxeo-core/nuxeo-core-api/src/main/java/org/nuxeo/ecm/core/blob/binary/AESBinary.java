@@ -0,0 +1,92 @@
+/*
+ * (C) Copyright 2017 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Florent Guillaume
+ */
+package org.nuxeo.ecm.core.blob.binary;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.nuxeo.ecm.core.api.NuxeoException;
+import org.nuxeo.ecm.core.blob.BlobManager;
+import org.nuxeo.ecm.core.blob.BlobProvider;
+import org.nuxeo.runtime.api.Framework;
+
+/**
+ * Binary stored encrypted by an {@link AESBinaryManager}.
+ * <p>
+ * The stream decrypts the stored file on the fly. A decrypted temporary file is only created when the file is
+ * requested.
+ *
+ * @since 9.3
+ */
+public class AESBinary extends Binary {
+
+    private static final long serialVersionUID = 1L;
+
+    // transient to be Serializable
+    protected transient AESBinaryManager abm;
+
+    public AESBinary(String digest, String blobProviderId, AESBinaryManager abm) {
+        super(digest, blobProviderId);
+        this.abm = abm;
+    }
+
+    // because the class is Serializable, re-acquire the AESBinaryManager
+    protected AESBinaryManager getAESBinaryManager() {
+        if (abm == null) {
+            if (blobProviderId == null) {
+                throw new UnsupportedOperationException("Cannot find binary manager, no blob provider id");
+            }
+            BlobManager bm = Framework.getService(BlobManager.class);
+            BlobProvider bp = bm.getBlobProvider(blobProviderId);
+            abm = (AESBinaryManager) bp.getBinaryManager();
+        }
+        return abm;
+    }
+
+    @Override
+    public InputStream getStream() throws IOException {
+        File file = this.file;
+        if (file != null) {
+            // already decrypted
+            return new FileInputStream(file);
+        }
+        return getAESBinaryManager().getDecryptingStream(digest);
+    }
+
+    @Override
+    public synchronized File getFile() {
+        if (file == null) {
+            try {
+                file = getAESBinaryManager().decryptToTempFile(digest);
+            } catch (IOException e) {
+                throw new NuxeoException(e);
+            }
+        }
+        return file;
+    }
+
+    @Override
+    protected File recomputeFile() {
+        // decrypted lazily
+        return null;
+    }
+
+}
@@ -22,14 +22,17 @@ import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
-import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.security.GeneralSecurityException;
 import java.security.Key;
 import java.security.KeyStore;
@@ -39,10 +42,12 @@ import java.util.Arrays;
 import java.util.Map;
 import java.util.Random;
 
+import javax.crypto.AEADBadTagException;
 import javax.crypto.BadPaddingException;
 import javax.crypto.Cipher;
 import javax.crypto.CipherInputStream;
 import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.PBEKeySpec;
 import javax.crypto.spec.SecretKeySpec;
@@ -79,8 +84,12 @@ import org.nuxeo.runtime.api.Framework;
  * using PBKDF2 (in which case each stored file contains a different salt for security reasons). The file format is
  * described in {@link #storeAndDigest(InputStream, OutputStream)}.
  * <p>
- * While the binary is being used by the application, a temporarily-decrypted file is held in a temporary directory. It
- * is removed as soon as possible.
+ * Binaries are stored in chunks that are encrypted separately, so that their stream is decrypted on the fly and can
+ * skip to any position without decrypting what precedes it. A temporarily-decrypted file is only held in a temporary
+ * directory if the application asks for the file of the binary. It is removed as soon as possible.
+ * <p>
+ * Binaries stored using the previous file format are still readable. If the {@code migrate} property of the binary
+ * manager configuration is {@code true}, they are migrated to the current file format in the background.
  * <p>
  * Note: if the Java Cryptographic Extension (JCE) is not configured for 256-bit key length, you may get an exception
  * "java.security.InvalidKeyException: Illegal key size or default parameters". If this is the case, go to <a
@@ -97,6 +106,9 @@ public class AESBinaryManager extends LocalBinaryManager {
 
     protected static final int FILE_VERSION_1 = 1;
 
+    /** @since 9.3 */
+    protected static final int FILE_VERSION_2 = 2;
+
     protected static final int USE_KEYSTORE = 1;
 
     protected static final int USE_PBKDF2 = 2;
@@ -105,6 +117,21 @@ public class AESBinaryManager extends LocalBinaryManager {
 
     protected static final String AES_CBC_PKCS5_PADDING = "AES/CBC/PKCS5Padding";
 
+    /** @since 9.3 */
+    protected static final String AES_GCM_NO_PADDING = "AES/GCM/NoPadding";
+
+    /** @since 9.3 */
+    protected static final int GCM_IV_LENGTH = 12;
+
+    /** @since 9.3 */
+    protected static final int GCM_TAG_LENGTH = 16;
+
+    /** @since 9.3 */
+    protected static final int FILE_KEY_LENGTH = 32; // AES-256
+
+    /** @since 9.3 */
+    protected static final int CHUNK_SIZE = 64 * 1024; // 64 kB
+
     protected static final String PBKDF2_WITH_HMAC_SHA1 = "PBKDF2WithHmacSHA1";
 
     protected static final int PBKDF2_ITERATIONS = 10000;
@@ -112,6 +139,13 @@ public class AESBinaryManager extends LocalBinaryManager {
     // AES-256
     protected static final int PBKDF2_KEY_LENGTH = 256;
 
+    /**
+     * Binary manager property enabling the background migration of files using file format version 1.
+     *
+     * @since 9.3
+     */
+    public static final String PROP_MIGRATE = "migrate";
+
     protected static final String PARAM_PASSWORD = "password";
 
     protected static final String PARAM_KEY_STORE_TYPE = "keyStoreType";
@@ -130,6 +164,12 @@ public class AESBinaryManager extends LocalBinaryManager {
     // for sanity check during reads
     private static final int MAX_IV_LEN = 1024;
 
+    // for sanity check during reads
+    private static final int MAX_KEY_LEN = 1024;
+
+    // for sanity check during reads
+    private static final int MAX_CHUNK_SIZE = 16 * 1024 * 1024;
+
     // Random instances are thread-safe
     protected static final Random RANDOM = new SecureRandom();
 
@@ -150,6 +190,8 @@ public class AESBinaryManager extends LocalBinaryManager {
 
     protected String keyPassword;
 
+    protected volatile Thread migrationThread;
+
     public AESBinaryManager() {
         setUnlimitedJCEPolicy();
     }
@@ -187,6 +229,19 @@ public class AESBinaryManager extends LocalBinaryManager {
             throw new NuxeoException("Missing key for " + getClass().getSimpleName());
         }
         initializeOptions(options);
+        if (Boolean.parseBoolean(properties.get(PROP_MIGRATE))) {
+            startMigration();
+        }
+    }
+
+    @Override
+    public void close() {
+        Thread thread = migrationThread;
+        if (thread != null) {
+            thread.interrupt();
+            migrationThread = null;
+        }
+        super.close();
     }
 
     protected void initializeOptions(String options) {
@@ -334,23 +389,46 @@ public class AESBinaryManager extends LocalBinaryManager {
         if (!file.exists()) {
             return null;
         }
-        File tmp;
+        // decrypted on the fly when read
+        return new AESBinary(digest, blobProviderId, this);
+    }
+
+    /**
+     * Gets a stream decrypting the stored file for the given digest.
+     * <p>
+     * For the chunked file format, skipping in the returned stream seeks in the stored file without decrypting the
+     * skipped chunks.
+     *
+     * @param digest the digest
+     * @return the decrypting stream
+     * @since 9.3
+     */
+    protected InputStream getDecryptingStream(String digest) throws IOException {
+        File file = getFileForDigest(digest, false);
+        InputStream in = new FileInputStream(file);
         try {
-            tmp = File.createTempFile("bin_", ".tmp", tmpDir);
-            Framework.trackFile(tmp, tmp);
-            OutputStream out = new BufferedOutputStream(new FileOutputStream(tmp));
-            InputStream in = new BufferedInputStream(new FileInputStream(file));
-            try {
-                decrypt(in, out);
-            } finally {
-                in.close();
-                out.close();
-            }
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+            return getDecryptingStream(in, file.length());
+        } catch (IOException | RuntimeException e) {
+            in.close();
+            throw e;
         }
-        // return a binary on our tmp file
-        return new Binary(tmp, digest, blobProviderId);
+    }
+
+    /**
+     * Decrypts the stored file for the given digest into a temporary file.
+     *
+     * @param digest the digest
+     * @return the temporary file
+     * @since 9.3
+     */
+    protected File decryptToTempFile(String digest) throws IOException {
+        File tmp = File.createTempFile("bin_", ".tmp", tmpDir);
+        Framework.trackFile(tmp, tmp);
+        try (InputStream in = getDecryptingStream(digest);
+                OutputStream out = new BufferedOutputStream(new FileOutputStream(tmp))) {
+            IOUtils.copy(in, out);
+        }
+        return tmp;
     }
 
     @Override
@@ -383,7 +461,7 @@ public class AESBinaryManager extends LocalBinaryManager {
      * Encrypts the given input stream into the given output stream, while also computing the digest of the input
      * stream.
      * <p>
-     * File format version 1 (values are in network order):
+     * File format version 1 (values are in network order), only read for compatibility:
      * <ul>
      * <li>10 bytes: magic number "NUXEOCRYPT"
      * <li>1 byte: file format version = 1
@@ -395,8 +473,31 @@ public class AESBinaryManager extends LocalBinaryManager {
      * </ul>
      * <li>4 bytes: IV length = p
      * <li>p bytes: IV data
-     * <li>x bytes: encrypted stream
+     * <li>x bytes: encrypted stream (AES/CBC)
+     * </ul>
+     * <p>
+     * File format version 2 (values are in network order):
+     * <ul>
+     * <li>10 bytes: magic number "NUXEOCRYPT"
+     * <li>1 byte: file format version = 2
+     * <li>1 byte: use keystore = 1, use PBKDF2 = 2
+     * <li>if use PBKDF2:
+     * <ul>
+     * <li>4 bytes: salt length = n
+     * <li>n bytes: salt data
+     * </ul>
+     * <li>4 bytes: IV length = p
+     * <li>p bytes: IV data
+     * <li>4 bytes: encrypted file key length = k
+     * <li>k bytes: random file key, encrypted with AES/GCM using the above key and IV
+     * <li>4 bytes: chunk size = c
+     * <li>x bytes: sequence of chunks of c bytes of data, each one encrypted separately with AES/GCM using the file key
+     * (so taking c + 16 bytes). The last chunk has less than c bytes of data, and may be empty.
      * </ul>
+     * The IV of each chunk is its index, and its additional authenticated data is its index followed by a byte
+     * indicating if it's the last chunk, so that chunks cannot be reordered or the file truncated without detection.
+     * As the size of the encrypted chunks is fixed, a chunk can be located and decrypted without reading the previous
+     * ones.
      *
      * @param in the input stream containing the data
      * @param file the file containing the encrypted data
@@ -404,9 +505,13 @@ public class AESBinaryManager extends LocalBinaryManager {
      */
     @Override
     public String storeAndDigest(InputStream in, OutputStream out) throws IOException {
+        return storeAndDigest(in, out, digestAlgorithm);
+    }
+
+    protected String storeAndDigest(InputStream in, OutputStream out, String digestAlgorithm) throws IOException {
         out.write(FILE_MAGIC);
         DataOutputStream data = new DataOutputStream(out);
-        data.writeByte(FILE_VERSION_1);
+        data.writeByte(FILE_VERSION_2);
 
         try {
             // get digest to use
@@ -430,31 +535,82 @@ public class AESBinaryManager extends LocalBinaryManager {
                 secret = getSecretKey();
             }
 
-            // cipher
-            Cipher cipher = Cipher.getInstance(AES_CBC_PKCS5_PADDING);
-            cipher.init(Cipher.ENCRYPT_MODE, secret);
+            // generate a file key, so that the chunk IVs are never reused with the same key
+            byte[] fileKeyBytes = new byte[FILE_KEY_LENGTH];
+            RANDOM.nextBytes(fileKeyBytes);
+            Key fileKey = new SecretKeySpec(fileKeyBytes, AES);
+
+            // encrypt the file key
+            byte[] iv = new byte[GCM_IV_LENGTH];
+            RANDOM.nextBytes(iv);
+            Cipher cipher = Cipher.getInstance(AES_GCM_NO_PADDING);
+            cipher.init(Cipher.ENCRYPT_MODE, secret, new GCMParameterSpec(GCM_TAG_LENGTH * 8, iv));
+            byte[] encryptedFileKey = cipher.doFinal(fileKeyBytes);
+            Arrays.fill(fileKeyBytes, (byte) 0);
 
-            // write IV
-            byte[] iv = cipher.getIV();
+            // write IV, file key and chunk size
             data.writeInt(iv.length);
             data.write(iv);
-
-            // digest and write the encrypted data
-            CipherAndDigestOutputStream cipherOut = new CipherAndDigestOutputStream(out, cipher, messageDigest);
-            IOUtils.copy(in, cipherOut);
-            cipherOut.close();
-            byte[] digest = cipherOut.getDigest();
-            return toHexString(digest);
+            data.writeInt(encryptedFileKey.length);
+            data.write(encryptedFileKey);
+            data.writeInt(CHUNK_SIZE);
+
+            // digest and write the encrypted chunks
+            byte[] buf = new byte[CHUNK_SIZE];
+            byte[] encrypted = new byte[CHUNK_SIZE + GCM_TAG_LENGTH];
+            for (long index = 0;; index++) {
+                int n = IOUtils.read(in, buf);
+                messageDigest.update(buf, 0, n);
+                boolean last = n < CHUNK_SIZE;
+                initChunkCipher(cipher, Cipher.ENCRYPT_MODE, fileKey, index, last);
+                int len = cipher.doFinal(buf, 0, n, encrypted, 0);
+                out.write(encrypted, 0, len);
+                if (last) {
+                    break;
+                }
+            }
+            out.flush();
+            return toHexString(messageDigest.digest());
         } catch (GeneralSecurityException e) {
             throw new NuxeoException(e);
         }
+    }
 
+    /**
+     * Initializes the cipher for a chunk of the version 2 file format.
+     */
+    protected static void initChunkCipher(Cipher cipher, int mode, Key fileKey, long index, boolean last)
+            throws GeneralSecurityException {
+        byte[] iv = ByteBuffer.allocate(GCM_IV_LENGTH).putLong(GCM_IV_LENGTH - 8, index).array();
+        cipher.init(mode, fileKey, new GCMParameterSpec(GCM_TAG_LENGTH * 8, iv));
+        cipher.updateAAD(ByteBuffer.allocate(9).putLong(index).put((byte) (last ? 1 : 0)).array());
     }
 
     /**
      * Decrypts the given input stream into the given output stream.
      */
     protected void decrypt(InputStream in, OutputStream out) throws IOException {
+        try (InputStream cipherIn = getDecryptingStream(in, -1)) {
+            IOUtils.copy(cipherIn, out);
+        } catch (IOException e) {
+            Throwable cause = e.getCause();
+            if (cause != null && cause instanceof BadPaddingException) {
+                throw new NuxeoException(cause.getMessage(), e);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Gets a stream decrypting the given input stream, which is closed when the returned stream is closed.
+     *
+     * @param in the input stream containing the encrypted data
+     * @param length the length of the encrypted data, or {@code -1} if unknown, in which case skipping in the returned
+     *            stream has to decrypt the skipped data
+     * @return the decrypting stream
+     * @since 9.3
+     */
+    protected InputStream getDecryptingStream(InputStream in, long length) throws IOException {
         byte[] magic = new byte[FILE_MAGIC.length];
         IOUtils.read(in, magic);
         if (!Arrays.equals(magic, FILE_MAGIC)) {
@@ -462,7 +618,7 @@ public class AESBinaryManager extends LocalBinaryManager {
         }
         DataInputStream data = new DataInputStream(in);
         byte magicvers = data.readByte();
-        if (magicvers != FILE_VERSION_1) {
+        if (magicvers != FILE_VERSION_1 && magicvers != FILE_VERSION_2) {
             throw new IOException("Invalid file (bad version)");
         }
 
@@ -478,6 +634,7 @@ public class AESBinaryManager extends LocalBinaryManager {
         } else {
             throw new IOException("Invalid file (bad use)");
         }
+        long headerLength = FILE_MAGIC.length + 2;
 
         try {
             // secret key
@@ -489,8 +646,9 @@ public class AESBinaryManager extends LocalBinaryManager {
                     throw new NuxeoException("Invalid salt length: " + saltLen);
                 }
                 byte[] salt = new byte[saltLen];
-                data.read(salt, 0, saltLen);
+                data.readFully(salt);
                 secret = generateSecretKey(salt);
+                headerLength += 4 + saltLen;
             } else {
                 secret = getSecretKey();
             }
@@ -501,87 +659,292 @@ public class AESBinaryManager extends LocalBinaryManager {
                 throw new NuxeoException("Invalid IV length: " + ivLen);
             }
             byte[] iv = new byte[ivLen];
-            data.read(iv, 0, ivLen);
-
-            // cipher
-            Cipher cipher;
-            cipher = Cipher.getInstance(AES_CBC_PKCS5_PADDING);
-            cipher.init(Cipher.DECRYPT_MODE, secret, new IvParameterSpec(iv));
-
-            // read the encrypted data
-            try (InputStream cipherIn = new CipherInputStream(in, cipher)) {
-                IOUtils.copy(cipherIn, out);
-            } catch (IOException e) {
-                Throwable cause = e.getCause();
-                if (cause != null && cause instanceof BadPaddingException) {
-                    throw new NuxeoException(cause.getMessage(), e);
-                }
+            data.readFully(iv);
+            headerLength += 4 + ivLen;
+
+            if (magicvers == FILE_VERSION_1) {
+                // cipher
+                Cipher cipher = Cipher.getInstance(AES_CBC_PKCS5_PADDING);
+                cipher.init(Cipher.DECRYPT_MODE, secret, new IvParameterSpec(iv));
+                return new CipherInputStream(new BufferedInputStream(in), cipher);
+            }
+
+            // read and decrypt the file key
+            int keyLen = data.readInt();
+            if (keyLen <= 0 || keyLen > MAX_KEY_LEN) {
+                throw new NuxeoException("Invalid key length: " + keyLen);
+            }
+            byte[] encryptedFileKey = new byte[keyLen];
+            data.readFully(encryptedFileKey);
+            Cipher cipher = Cipher.getInstance(AES_GCM_NO_PADDING);
+            cipher.init(Cipher.DECRYPT_MODE, secret, new GCMParameterSpec(GCM_TAG_LENGTH * 8, iv));
+            byte[] fileKeyBytes;
+            try {
+                fileKeyBytes = cipher.doFinal(encryptedFileKey);
+            } catch (AEADBadTagException e) {
+                throw new NuxeoException("Cannot decrypt file: invalid key or password", e);
+            }
+            Key fileKey = new SecretKeySpec(fileKeyBytes, AES);
+            Arrays.fill(fileKeyBytes, (byte) 0);
+            headerLength += 4 + keyLen;
+
+            // read chunk size
+            int chunkSize = data.readInt();
+            if (chunkSize <= 0 || chunkSize > MAX_CHUNK_SIZE) {
+                throw new NuxeoException("Invalid chunk size: " + chunkSize);
             }
+            headerLength += 4;
+
+            return new ChunkedCipherInputStream(in, fileKey, chunkSize, length < 0 ? -1 : length - headerLength);
         } catch (GeneralSecurityException e) {
             throw new NuxeoException(e);
         }
     }
 
     /**
-     * A {@link javax.crypto.CipherOutputStream CipherOutputStream} that also does a digest of the original stream at
-     * the same time.
+     * Migrates all the stored files that use file format version 1 to the current file format.
+     * <p>
+     * Each file is decrypted and re-encrypted to a temporary file next to it, which then atomically replaces it, so
+     * concurrent readers see either the old or the new file. The migration stops early if the current thread is
+     * interrupted.
+     *
+     * @return the number of migrated files
+     * @since 9.3
+     */
+    public long migrate() {
+        return migrate(storageDir);
+    }
+
+    protected long migrate(File file) {
+        if (Thread.currentThread().isInterrupted()) {
+            return 0;
+        }
+        if (file.isDirectory()) {
+            long n = 0;
+            for (File f : file.listFiles()) {
+                n += migrate(f);
+            }
+            return n;
+        }
+        if (!file.isFile() || file.getName().endsWith(".tmp")) {
+            return 0;
+        }
+        try {
+            return migrateFile(file) ? 1 : 0;
+        } catch (IOException | NuxeoException e) {
+            log.error("Cannot migrate file: " + file, e);
+            return 0;
+        }
+    }
+
+    /**
+     * Migrates a stored file to the current file format if it uses file format version 1.
+     *
+     * @return {@code true} if the file was migrated
+     */
+    protected boolean migrateFile(File file) throws IOException {
+        byte[] header = new byte[FILE_MAGIC.length + 1];
+        try (InputStream in = new FileInputStream(file)) {
+            IOUtils.read(in, header);
+        }
+        if (!Arrays.equals(Arrays.copyOf(header, FILE_MAGIC.length), FILE_MAGIC)
+                || header[FILE_MAGIC.length] != FILE_VERSION_1) {
+            return false;
+        }
+        // the digest algorithm may have changed since the file was stored
+        String digest = file.getName();
+        String algorithm = DIGESTS_BY_LENGTH.get(digest.length());
+        if (algorithm == null) {
+            return false;
+        }
+        File tmp = File.createTempFile(digest, ".tmp", file.getParentFile());
+        try {
+            String newDigest;
+            try (InputStream fileIn = new FileInputStream(file);
+                    InputStream in = getDecryptingStream(fileIn, -1);
+                    OutputStream out = new BufferedOutputStream(new FileOutputStream(tmp))) {
+                newDigest = storeAndDigest(in, out, algorithm);
+            }
+            if (!digest.equals(newDigest)) {
+                throw new IOException("Digest mismatch, decrypted content has digest: " + newDigest);
+            }
+            // keep the new modification time, so that a concurrent GC cannot miss a mark
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } finally {
+            tmp.delete();
+        }
+    }
+
+    /**
+     * Starts the migration of files using file format version 1 in a background thread.
+     */
+    protected void startMigration() {
+        Thread thread = new Thread(() -> {
+            long n = migrate();
+            log.info("Migrated " + n + " encrypted files for binary manager: " + blobProviderId);
+        }, "Nuxeo-AESBinaryManager-Migration-" + blobProviderId);
+        thread.setDaemon(true);
+        migrationThread = thread;
+        thread.start();
+    }
+
+    /**
+     * A stream decrypting the chunks of the version 2 file format.
+     * <p>
+     * Whole chunks are skipped by skipping in the underlying stream, without decrypting them.
+     *
+     * @since 9.3
      */
-    public static class CipherAndDigestOutputStream extends FilterOutputStream {
+    public static class ChunkedCipherInputStream extends InputStream {
+
+        protected final InputStream in;
+
+        protected final Key fileKey;
+
+        protected final int chunkSize;
+
+        protected final Cipher cipher;
 
-        protected Cipher cipher;
+        protected final byte[] encrypted;
 
-        protected OutputStream out;
+        protected final byte[] buffer;
 
-        protected MessageDigest messageDigest;
+        // number of chunks before the last one, or -1 if unknown
+        protected final long fullChunks;
 
-        protected byte[] digest;
+        protected int pos;
 
-        public CipherAndDigestOutputStream(OutputStream out, Cipher cipher, MessageDigest messageDigest) {
-            super(out);
-            this.out = out;
-            this.cipher = cipher;
-            this.messageDigest = messageDigest;
+        protected int limit;
+
+        // index of the next chunk to read
+        protected long index;
+
+        protected boolean last;
+
+        /**
+         * Constructs a stream decrypting the chunks read from the given input stream.
+         *
+         * @param in the input stream, positioned at the first chunk
+         * @param fileKey the file key
+         * @param chunkSize the chunk size
+         * @param length the length of the encrypted chunks, or {@code -1} if unknown
+         */
+        public ChunkedCipherInputStream(InputStream in, Key fileKey, int chunkSize, long length)
+                throws IOException, GeneralSecurityException {
+            this.in = in;
+            this.fileKey = fileKey;
+            this.chunkSize = chunkSize;
+            cipher = Cipher.getInstance(AES_GCM_NO_PADDING);
+            encrypted = new byte[chunkSize + GCM_TAG_LENGTH];
+            buffer = new byte[chunkSize];
+            if (length < 0) {
+                fullChunks = -1;
+            } else {
+                // the last chunk is always shorter than a full one
+                if (length % encrypted.length < GCM_TAG_LENGTH) {
+                    throw new IOException("Invalid file (truncated)");
+                }
+                fullChunks = length / encrypted.length;
+            }
         }
 
-        public byte[] getDigest() {
-            return digest;
+        /**
+         * Reads and decrypts the next chunk.
+         *
+         * @return {@code false} if there is no next chunk
+         */
+        protected boolean readChunk() throws IOException {
+            if (last) {
+                return false;
+            }
+            int n = IOUtils.read(in, encrypted);
+            if (n < GCM_TAG_LENGTH) {
+                throw new IOException("Invalid file (truncated)");
+            }
+            last = n < encrypted.length;
+            try {
+                initChunkCipher(cipher, Cipher.DECRYPT_MODE, fileKey, index, last);
+                limit = cipher.doFinal(encrypted, 0, n, buffer, 0);
+            } catch (AEADBadTagException e) {
+                throw new IOException("Invalid file (bad chunk " + index + ")", e);
+            } catch (GeneralSecurityException e) {
+                throw new IOException(e);
+            }
+            pos = 0;
+            index++;
+            return true;
         }
 
         @Override
-        public void write(int b) throws IOException {
-            write(new byte[] { (byte) b }, 0, 1);
+        public int read() throws IOException {
+            while (pos >= limit) {
+                if (!readChunk()) {
+                    return -1;
+                }
+            }
+            return buffer[pos++] & 0xFF;
         }
 
         @Override
-        public void write(byte b[], int off, int len) throws IOException {
-            messageDigest.update(b, off, len);
-            byte[] bytes = cipher.update(b, off, len);
-            if (bytes != null) {
-                out.write(bytes);
-                bytes = null; // help GC
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
             }
+            while (pos >= limit) {
+                if (!readChunk()) {
+                    return -1;
+                }
+            }
+            int n = Math.min(len, limit - pos);
+            System.arraycopy(buffer, pos, b, off, n);
+            pos += n;
+            return n;
         }
 
         @Override
-        public void flush() throws IOException {
-            out.flush();
+        public long skip(long n) throws IOException {
+            if (n <= 0) {
+                return 0;
+            }
+            long skipped = Math.min(n, limit - pos);
+            pos += skipped;
+            long remaining = n - skipped;
+            if (fullChunks >= 0 && remaining >= chunkSize) {
+                // skip whole chunks without decrypting them, but never the last one
+                long chunks = Math.min(remaining / chunkSize, fullChunks - index);
+                if (chunks > 0) {
+                    long toSkip = chunks * encrypted.length;
+                    while (toSkip > 0) {
+                        long s = in.skip(toSkip);
+                        if (s <= 0) {
+                            throw new EOFException("Invalid file (truncated)");
+                        }
+                        toSkip -= s;
+                    }
+                    index += chunks;
+                    skipped += chunks * chunkSize;
+                    remaining -= chunks * chunkSize;
+                }
+            }
+            while (remaining > 0 && (pos < limit || readChunk())) {
+                int s = (int) Math.min(remaining, limit - pos);
+                pos += s;
+                skipped += s;
+                remaining -= s;
+            }
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return limit - pos;
         }
 
         @Override
         public void close() throws IOException {
-            digest = messageDigest.digest();
-            try {
-                byte[] bytes = cipher.doFinal();
-                out.write(bytes);
-                bytes = null; // help GC
-            } catch (GeneralSecurityException e) {
-                throw new NuxeoException(e);
-            }
-            try {
-                flush();
-            } finally {
-                out.close();
-            }
+            in.close();
         }
     }
 
@@ -0,0 +1,116 @@
+/*
+ * (C) Copyright 2017 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Florent Guillaume
+ */
+package org.nuxeo.ecm.core.blob.binary;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.UUID;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.nuxeo.ecm.core.blob.binary.ChunkedBinaryManager.Manifest;
+import org.nuxeo.runtime.api.Framework;
+
+import com.codahale.metrics.Timer;
+
+/**
+ * Garbage collector for a {@link ChunkedBinaryManager}.
+ * <p>
+ * After the manifests are swept, the chunks referenced by the kept manifests are marked in a second Bloom filter, and
+ * the chunks that are not marked and are older than the start of the GC are swept. The size of the chunks is counted
+ * in the size of the binaries of the status.
+ *
+ * @since 9.3
+ */
+public class ChunkedBinaryGarbageCollector extends LocalBinaryGarbageCollector {
+
+    private static final Log log = LogFactory.getLog(ChunkedBinaryGarbageCollector.class);
+
+    public ChunkedBinaryGarbageCollector(ChunkedBinaryManager binaryManager) {
+        super(binaryManager);
+    }
+
+    @Override
+    protected void sweep(Marks marks, String salt, long minTime, boolean delete, Set<String> done,
+            BinaryManagerStatus status) {
+        super.sweep(marks, salt, minTime, delete, done, status);
+        ChunkedBinaryManager chunkedBinaryManager = (ChunkedBinaryManager) binaryManager;
+        File chunksDir = chunkedBinaryManager.getChunksDir();
+
+        // mark the chunks of the kept manifests
+        Sweeper manifestSweeper = new Sweeper(marks, salt, minTime, delete);
+        long expected = Math.max(MIN_EXPECTED_DIGESTS, countFiles(chunksDir));
+        double fpp = Double.parseDouble(Framework.getProperty(FPP_PROP, String.valueOf(DEFAULT_FPP)));
+        Marks chunkMarks = new Marks(expected, fpp);
+        String chunkSalt = UUID.randomUUID().toString();
+        try {
+            markChunks(binaryManager.getStorageDir(), manifestSweeper, chunkMarks, chunkSalt);
+        } catch (IOException e) {
+            // without all the references, no chunk can be safely deleted
+            log.error("Cannot read manifests, skipping GC of chunks in: " + chunksDir, e);
+            return;
+        }
+
+        // sweep the chunks
+        Sweeper chunkSweeper = new Sweeper(chunkMarks, chunkSalt, minTime, delete);
+        try (Timer.Context context = sweepTimer.time()) {
+            sweep(chunksDir, chunkSweeper, Collections.emptySet(), null);
+        }
+        // chunks are not binaries, only count their size
+        status.sizeBinaries += chunkSweeper.sizeBinaries.sum();
+        status.sizeBinariesGC += chunkSweeper.sizeBinariesGC.sum();
+    }
+
+    protected void markChunks(File file, Sweeper manifestSweeper, Marks chunkMarks, String chunkSalt)
+            throws IOException {
+        if (file.isDirectory()) {
+            File[] files = file.listFiles();
+            if (files == null) {
+                return;
+            }
+            for (File f : files) {
+                markChunks(f, manifestSweeper, chunkMarks, chunkSalt);
+            }
+        } else if (file.isFile() && !file.getName().endsWith(".tmp")
+                && manifestSweeper.isKept(file.getName(), file.lastModified())) {
+            Manifest manifest = ((ChunkedBinaryManager) binaryManager).readManifest(file);
+            for (String hash : manifest.hashes) {
+                chunkMarks.put(chunkSalt + hash);
+            }
+        }
+    }
+
+    protected static long countFiles(File file) {
+        if (!file.isDirectory()) {
+            return 1;
+        }
+        File[] files = file.listFiles();
+        if (files == null) {
+            return 0;
+        }
+        long n = 0;
+        for (File f : files) {
+            n += countFiles(f);
+        }
+        return n;
+    }
+
+}
@@ -0,0 +1,489 @@
+/*
+ * (C) Copyright 2017 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Florent Guillaume
+ */
+package org.nuxeo.ecm.core.blob.binary;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.nuxeo.ecm.core.api.NuxeoException;
+import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.trackers.files.FileEventTracker;
+
+/**
+ * A filesystem-based binary manager that deduplicates content at the chunk level.
+ * <p>
+ * The content of a binary is split into content-defined chunks, whose boundaries are found using a rolling hash (Gear
+ * hash) of the content itself, so that an insertion or a modification in a file only changes the chunks around it.
+ * Each chunk is stored once, in a file named by its SHA-256 hash. A binary is stored as a manifest, in a file named by
+ * the binary digest, listing its chunks. Storing a file that shares most of its chunks with already-stored files only
+ * writes the new chunks and the manifest.
+ * <p>
+ * The format of the <em>binaries</em> directory is:
+ * <ul>
+ * <li><em>data/</em> hierarchy with the manifests in subdirectories,</li>
+ * <li><em>chunks/</em> hierarchy with the chunks in subdirectories,</li>
+ * <li><em>tmp/</em> temporary storage during creation,</li>
+ * <li><em>config.xml</em> a file containing the configuration used.</li>
+ * </ul>
+ * <p>
+ * The garbage collector deletes the manifests that are not marked, then the chunks that are not referenced by the
+ * remaining manifests.
+ *
+ * @since 9.3
+ */
+public class ChunkedBinaryManager extends LocalBinaryManager {
+
+    private static final Log log = LogFactory.getLog(ChunkedBinaryManager.class);
+
+    public static final String CHUNKS = "chunks";
+
+    protected static final byte[] MANIFEST_MAGIC = new byte[] { 'N', 'U', 'X', 'E', 'O', 'C', 'H', 'U', 'N', 'K' };
+
+    protected static final int MANIFEST_VERSION_1 = 1;
+
+    protected static final String CHUNK_DIGEST = SHA256_DIGEST;
+
+    protected static final int CHUNK_DIGEST_BYTES = 32;
+
+    protected static final int MIN_CHUNK_SIZE = 16 * 1024; // 16 kB
+
+    protected static final int MAX_CHUNK_SIZE = 256 * 1024; // 256 kB
+
+    /**
+     * A boundary is found when the 16 high bits of the Gear hash are 0, which happens every 64 kB on average after the
+     * minimum chunk size. The high bits depend on the last 64 bytes of content.
+     */
+    protected static final long BOUNDARY_MASK = 0xFFFF_0000_0000_0000L;
+
+    // for sanity check during reads
+    private static final int MAX_CHUNKS = Integer.MAX_VALUE / CHUNK_DIGEST_BYTES;
+
+    /**
+     * Random values for each byte of the Gear hash. They must never change, otherwise boundaries move and existing
+     * chunks cannot be reused anymore.
+     */
+    protected static final long[] GEAR = new long[256];
+
+    static {
+        Random random = new Random(0x4e5558454f4344L);
+        for (int i = 0; i < GEAR.length; i++) {
+            GEAR[i] = random.nextLong();
+        }
+    }
+
+    protected File chunksDir;
+
+    @Override
+    public void initialize(String blobProviderId, Map<String, String> properties) throws IOException {
+        super.initialize(blobProviderId, properties);
+        chunksDir = new File(storageDir.getParentFile(), CHUNKS);
+        chunksDir.mkdirs();
+        // be sure FileTracker won't steal our files !
+        FileEventTracker.registerProtectedPath(chunksDir.getAbsolutePath());
+    }
+
+    public File getChunksDir() {
+        return chunksDir;
+    }
+
+    @Override
+    protected void createGarbageCollector() {
+        garbageCollector = new ChunkedBinaryGarbageCollector(this);
+    }
+
+    @Override
+    protected Binary getBinary(InputStream in) throws IOException {
+        String digest = storeAndDigest(in);
+        return new ChunkedBinary(digest, blobProviderId, this);
+    }
+
+    @Override
+    public Binary getBinary(String digest) {
+        File file = getFileForDigest(digest, false);
+        if (file == null) {
+            // invalid digest
+            return null;
+        }
+        if (!file.exists()) {
+            log.warn("cannot fetch content at " + file.getPath() + " (file does not exist), check your configuration");
+            return null;
+        }
+        // reassembled on the fly when read
+        return new ChunkedBinary(digest, blobProviderId, this);
+    }
+
+    /**
+     * Gets a file representing the storage for a chunk.
+     *
+     * @param hash the chunk hash
+     * @param createDir {@code true} if the directory containing the file itself must be created
+     * @return the file for this chunk
+     */
+    public File getChunkFile(String hash, boolean createDir) {
+        File dir = new File(new File(chunksDir, hash.substring(0, 2)), hash.substring(2, 4));
+        if (createDir) {
+            dir.mkdirs();
+        }
+        return new File(dir, hash);
+    }
+
+    /**
+     * Splits the input stream into chunks stored if not already present, and stores its manifest.
+     * <p>
+     * Manifest format version 1 (values are in network order):
+     * <ul>
+     * <li>10 bytes: magic number "NUXEOCHUNK"
+     * <li>1 byte: manifest format version = 1
+     * <li>8 bytes: content length
+     * <li>4 bytes: number of chunks = n
+     * <li>n times:
+     * <ul>
+     * <li>32 bytes: chunk SHA-256 hash
+     * <li>4 bytes: chunk length
+     * </ul>
+     * </ul>
+     *
+     * @return the digest of the input stream
+     */
+    @Override
+    protected String storeAndDigest(InputStream in) throws IOException {
+        MessageDigest messageDigest;
+        MessageDigest chunkDigest;
+        try {
+            messageDigest = MessageDigest.getInstance(getDigestAlgorithm());
+            chunkDigest = MessageDigest.getInstance(CHUNK_DIGEST);
+        } catch (NoSuchAlgorithmException e) {
+            throw new NuxeoException(e);
+        }
+        ManifestBuilder manifest = new ManifestBuilder();
+        try {
+            byte[] buf = new byte[MAX_CHUNK_SIZE];
+            int len = 0; // bytes in buffer
+            int scanned = 0; // bytes of the buffer in the current chunk
+            long hash = 0;
+            for (;;) {
+                if (scanned == len) {
+                    int n = in.read(buf, len, buf.length - len);
+                    if (n == -1) {
+                        if (len > 0) {
+                            storeChunk(buf, len, messageDigest, chunkDigest, manifest);
+                        }
+                        break;
+                    }
+                    len += n;
+                }
+                while (scanned < len) {
+                    hash = (hash << 1) + GEAR[buf[scanned++] & 0xFF];
+                    if ((scanned >= MIN_CHUNK_SIZE && (hash & BOUNDARY_MASK) == 0) || scanned == MAX_CHUNK_SIZE) {
+                        storeChunk(buf, scanned, messageDigest, chunkDigest, manifest);
+                        // keep the rest of the buffer for the next chunk
+                        System.arraycopy(buf, scanned, buf, 0, len - scanned);
+                        len -= scanned;
+                        scanned = 0;
+                        hash = 0;
+                    }
+                }
+            }
+        } finally {
+            in.close();
+        }
+        String digest = toHexString(messageDigest.digest());
+
+        // write the manifest
+        File tmp = File.createTempFile("create_", ".tmp", tmpDir);
+        try {
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(tmp))) {
+                manifest.write(out);
+            }
+            File file = getFileForDigest(digest, true);
+            atomicMove(tmp, file);
+        } finally {
+            tmp.delete();
+        }
+        return digest;
+    }
+
+    protected void storeChunk(byte[] buf, int len, MessageDigest messageDigest, MessageDigest chunkDigest,
+            ManifestBuilder manifest) throws IOException {
+        messageDigest.update(buf, 0, len);
+        chunkDigest.update(buf, 0, len);
+        byte[] hash = chunkDigest.digest();
+        manifest.add(hash, len);
+        File file = getChunkFile(toHexString(hash), true);
+        if (file.exists()) {
+            // already stored, only update date for the GC
+            touch(file);
+            if (file.exists()) {
+                return;
+            }
+            // deleted by a concurrent GC sweep before being touched, write it again
+        }
+        File tmp = File.createTempFile("chunk_", ".tmp", tmpDir);
+        try {
+            try (OutputStream out = new FileOutputStream(tmp)) {
+                out.write(buf, 0, len);
+            }
+            atomicMove(tmp, file);
+        } finally {
+            tmp.delete();
+        }
+    }
+
+    /**
+     * Reads the manifest of a binary.
+     *
+     * @param file the manifest file
+     * @return the manifest
+     */
+    protected Manifest readManifest(File file) throws IOException {
+        try (DataInputStream data = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            byte[] magic = new byte[MANIFEST_MAGIC.length];
+            data.readFully(magic);
+            if (!Arrays.equals(magic, MANIFEST_MAGIC)) {
+                throw new IOException("Invalid manifest (bad magic): " + file);
+            }
+            if (data.readByte() != MANIFEST_VERSION_1) {
+                throw new IOException("Invalid manifest (bad version): " + file);
+            }
+            long length = data.readLong();
+            int n = data.readInt();
+            if (n < 0 || n > MAX_CHUNKS) {
+                throw new IOException("Invalid manifest (bad number of chunks): " + file);
+            }
+            Manifest manifest = new Manifest(length, n);
+            byte[] hash = new byte[CHUNK_DIGEST_BYTES];
+            for (int i = 0; i < n; i++) {
+                data.readFully(hash);
+                manifest.hashes[i] = toHexString(hash);
+                manifest.lengths[i] = data.readInt();
+            }
+            return manifest;
+        }
+    }
+
+    /**
+     * Gets a stream reassembling the chunks of the binary with the given digest.
+     *
+     * @param digest the digest
+     * @return the stream
+     */
+    protected InputStream getReassemblingStream(String digest) throws IOException {
+        return new ChunksInputStream(readManifest(getFileForDigest(digest, false)));
+    }
+
+    /**
+     * Reassembles the binary with the given digest into a temporary file.
+     *
+     * @param digest the digest
+     * @return the temporary file
+     */
+    protected File reassembleToTempFile(String digest) throws IOException {
+        File tmp = File.createTempFile("bin_", ".tmp", tmpDir);
+        Framework.trackFile(tmp, tmp);
+        try (InputStream in = getReassemblingStream(digest);
+                OutputStream out = new BufferedOutputStream(new FileOutputStream(tmp))) {
+            IOUtils.copy(in, out);
+        }
+        return tmp;
+    }
+
+    /**
+     * The list of chunks of a binary.
+     */
+    protected static class Manifest {
+
+        public final long length;
+
+        public final String[] hashes;
+
+        public final int[] lengths;
+
+        public Manifest(long length, int n) {
+            this.length = length;
+            hashes = new String[n];
+            lengths = new int[n];
+        }
+    }
+
+    /**
+     * A manifest being built.
+     */
+    protected static class ManifestBuilder {
+
+        protected final List<byte[]> hashes = new ArrayList<>();
+
+        protected final List<Integer> lengths = new ArrayList<>();
+
+        protected long length;
+
+        public void add(byte[] hash, int len) {
+            hashes.add(hash);
+            lengths.add(Integer.valueOf(len));
+            length += len;
+        }
+
+        public void write(OutputStream out) throws IOException {
+            DataOutputStream data = new DataOutputStream(out);
+            data.write(MANIFEST_MAGIC);
+            data.writeByte(MANIFEST_VERSION_1);
+            data.writeLong(length);
+            data.writeInt(hashes.size());
+            for (int i = 0; i < hashes.size(); i++) {
+                data.write(hashes.get(i));
+                data.writeInt(lengths.get(i).intValue());
+            }
+            data.flush();
+        }
+    }
+
+    /**
+     * A stream reading the chunks of a manifest in sequence.
+     * <p>
+     * Whole chunks are skipped without opening them.
+     */
+    protected class ChunksInputStream extends InputStream {
+
+        protected final Manifest manifest;
+
+        // index of the next chunk to open
+        protected int index;
+
+        protected InputStream current;
+
+        // bytes left in the current chunk
+        protected long remaining;
+
+        protected ChunksInputStream(Manifest manifest) {
+            this.manifest = manifest;
+        }
+
+        /**
+         * Opens the next chunk if the current one is exhausted.
+         *
+         * @return {@code false} if there is no more chunk
+         */
+        protected boolean nextChunk() throws IOException {
+            while (remaining == 0) {
+                closeCurrent();
+                if (index == manifest.hashes.length) {
+                    return false;
+                }
+                File file = getChunkFile(manifest.hashes[index], false);
+                remaining = manifest.lengths[index];
+                index++;
+                current = new FileInputStream(file);
+            }
+            return true;
+        }
+
+        protected void closeCurrent() throws IOException {
+            if (current != null) {
+                current.close();
+                current = null;
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!nextChunk()) {
+                return -1;
+            }
+            int b = current.read();
+            if (b == -1) {
+                throw new IOException("Truncated chunk: " + manifest.hashes[index - 1]);
+            }
+            remaining--;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!nextChunk()) {
+                return -1;
+            }
+            int n = current.read(b, off, (int) Math.min(len, remaining));
+            if (n == -1) {
+                throw new IOException("Truncated chunk: " + manifest.hashes[index - 1]);
+            }
+            remaining -= n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = 0;
+            while (n > 0) {
+                if (remaining == 0) {
+                    closeCurrent();
+                    // skip whole chunks without opening them
+                    while (index < manifest.lengths.length && manifest.lengths[index] <= n) {
+                        n -= manifest.lengths[index];
+                        skipped += manifest.lengths[index];
+                        index++;
+                    }
+                    if (n == 0 || !nextChunk()) {
+                        break;
+                    }
+                }
+                long s = current.skip(Math.min(n, remaining));
+                if (s <= 0) {
+                    throw new IOException("Truncated chunk: " + manifest.hashes[index - 1]);
+                }
+                remaining -= s;
+                skipped += s;
+                n -= s;
+            }
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return current == null ? 0 : (int) Math.min(current.available(), remaining);
+        }
+
+        @Override
+        public void close() throws IOException {
+            closeCurrent();
+            index = manifest.hashes.length;
+            remaining = 0;
+        }
+    }
+
+}
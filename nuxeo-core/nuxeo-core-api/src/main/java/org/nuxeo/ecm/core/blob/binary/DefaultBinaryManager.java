@@ -20,12 +20,18 @@
 package org.nuxeo.ecm.core.blob.binary;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.UUID;
 
 import org.apache.commons.io.output.NullOutputStream;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.nuxeo.ecm.core.api.Blob;
 import org.nuxeo.ecm.core.api.impl.blob.FileBlob;
+import org.nuxeo.runtime.api.Framework;
 
 /**
  * A simple filesystem-based binary manager. It stores the binaries according to their digest (hash), which means that
@@ -39,17 +45,43 @@ import org.nuxeo.ecm.core.api.impl.blob.FileBlob;
  * <li><em>tmp/</em> temporary storage during creation,</li>
  * <li><em>config.xml</em> a file containing the configuration used.</li>
  * </ul>
+ * <p>
+ * Blobs backed by a temporary file are never copied through the <em>tmp/</em> directory: their digest is computed by
+ * reading the file, then the file is moved into place. Non-temporary files are copied, unless hard-linking is enabled
+ * with {@link #HARD_LINK_PROP}.
  *
  * @author Florent Guillaume
  */
 public class DefaultBinaryManager extends LocalBinaryManager {
 
+    private static final Log log = LogFactory.getLog(DefaultBinaryManager.class);
+
+    /**
+     * Framework property to enable the hard-linking of non-temporary files into the store instead of copying them.
+     * <p>
+     * A linked file shares its content with the store: this must only be enabled when the files of non-temporary file
+     * blobs are never modified in place, otherwise the binaries of all the documents having the same digest would be
+     * corrupted.
+     *
+     * @since 9.3
+     */
+    public static final String HARD_LINK_PROP = "org.nuxeo.binarymanager.hardlink.enabled";
+
     @Override
     public Binary getBinary(Blob blob) throws IOException {
-        if (!(blob instanceof FileBlob) || !((FileBlob) blob).isTemporary()) {
+        if (!(blob instanceof FileBlob)) {
             return super.getBinary(blob); // just open the stream
         }
-        String digest = storeAndDigest((FileBlob) blob);
+        FileBlob fileBlob = (FileBlob) blob;
+        String digest;
+        if (fileBlob.isTemporary()) {
+            digest = storeAndDigest(fileBlob);
+        } else {
+            digest = linkAndDigest(fileBlob);
+            if (digest == null) {
+                return super.getBinary(blob); // just open the stream
+            }
+        }
         File file = getFileForDigest(digest, false);
         /*
          * Now we can build the Binary.
@@ -79,4 +111,45 @@ public class DefaultBinaryManager extends LocalBinaryManager {
         return digest;
     }
 
+    /**
+     * Digests a non-temporary FileBlob and stores it as a hard link to its file.
+     *
+     * @return the digest, or {@code null} if the file cannot be linked and must be copied
+     * @since 9.3
+     */
+    protected String linkAndDigest(FileBlob blob) throws IOException {
+        if (!Framework.isBooleanPropertyTrue(HARD_LINK_PROP)) {
+            return null;
+        }
+        File source = blob.getFile();
+        File tmp = new File(tmpDir, "link_" + UUID.randomUUID() + ".tmp");
+        try {
+            try {
+                Files.createLink(tmp.toPath(), source.toPath());
+            } catch (IOException | UnsupportedOperationException e) {
+                // different filesystem, or links not supported
+                log.debug("Cannot link " + source + ", copying it: " + e);
+                return null;
+            }
+            // digest what is actually linked, and check that it didn't change meanwhile
+            long length = tmp.length();
+            long lastModified = tmp.lastModified();
+            String digest;
+            try (InputStream in = new FileInputStream(tmp)) {
+                digest = storeAndDigest(in, NullOutputStream.NULL_OUTPUT_STREAM);
+            }
+            if (tmp.length() != length || tmp.lastModified() != lastModified) {
+                log.debug("File " + source + " modified while being stored, copying it");
+                return null;
+            }
+            // the link shares the source's date, make it recent for the GC
+            tmp.setLastModified(System.currentTimeMillis());
+            File file = getFileForDigest(digest, true);
+            atomicMove(tmp, file);
+            return digest;
+        } finally {
+            tmp.delete();
+        }
+    }
+
 }
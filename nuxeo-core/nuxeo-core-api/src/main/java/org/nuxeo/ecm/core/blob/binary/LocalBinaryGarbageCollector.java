@@ -0,0 +1,526 @@
+/*
+ * (C) Copyright 2017 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Florent Guillaume
+ */
+package org.nuxeo.ecm.core.blob.binary;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.nuxeo.ecm.core.api.NuxeoException;
+import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.metrics.MetricsService;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+import com.codahale.metrics.Timer;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+
+/**
+ * Garbage collector for a {@link LocalBinaryManager}.
+ * <p>
+ * The marked digests are collected in a Bloom filter instead of touching the marked files. The sweep then walks the
+ * top-level subdirectories of the storage in parallel, and deletes the files that are neither marked nor stored again
+ * since the start of the GC. A false positive of the Bloom filter only keeps an unused file, and as the filter is salted
+ * differently for each GC the file will be deleted by a later GC.
+ * <p>
+ * The Bloom filter is first sized from the number of binaries found by the previous GC. When more digests are marked,
+ * new filters of growing capacity and decreasing false positive probability are added, so that the overall false
+ * positive probability stays within about twice the configured one whatever the number of marks.
+ * <p>
+ * Before the sweep, the Bloom filter and the GC parameters are saved in a checkpoint, to which each subdirectory is
+ * added once swept. A sweep interrupted by a restart is finished when the next GC starts.
+ *
+ * @since 9.3
+ */
+public class LocalBinaryGarbageCollector implements BinaryGarbageCollector {
+
+    private static final Log log = LogFactory.getLog(LocalBinaryGarbageCollector.class);
+
+    /**
+     * Windows FAT filesystems have a time resolution of 2s. Other common filesystems have 1s.
+     */
+    public static int TIME_RESOLUTION = 2000;
+
+    /** Number of threads sweeping the storage, defaults to the number of processors. */
+    public static final String PARALLELISM_PROP = "org.nuxeo.binarymanager.gc.parallelism";
+
+    /** False positive probability of the Bloom filter of marked digests. */
+    public static final String FPP_PROP = "org.nuxeo.binarymanager.gc.fpp";
+
+    public static final double DEFAULT_FPP = 0.001;
+
+    /** Minimum number of digests for which the first Bloom filter is sized. */
+    public static final int MIN_EXPECTED_DIGESTS = 1_000_000;
+
+    /** The directory holding the checkpoint, next to the storage directory. */
+    public static final String GC_DIR = "gc";
+
+    protected static final String CHECKPOINT_FILE = "checkpoint.properties";
+
+    protected static final String MARKS_FILE = "marks.bloom";
+
+    protected static final String DONE_FILE = "done.txt";
+
+    protected static final String LAST_STATUS_FILE = "last.properties";
+
+    protected static final String PROP_MIN_TIME = "minTime";
+
+    protected static final String PROP_SALT = "salt";
+
+    protected static final String PROP_DELETE = "delete";
+
+    protected static final String PROP_NUM_BINARIES = "numBinaries";
+
+    protected static final String PROP_NUM_FILTERS = "numFilters";
+
+    protected final LocalBinaryManager binaryManager;
+
+    protected final File gcDir;
+
+    protected final Meter markedMeter;
+
+    protected final Meter sweptMeter;
+
+    protected final Meter deletedMeter;
+
+    protected final Timer sweepTimer;
+
+    protected volatile long startTime;
+
+    protected Marks marks;
+
+    protected String salt;
+
+    protected BinaryManagerStatus status;
+
+    public LocalBinaryGarbageCollector(LocalBinaryManager binaryManager) {
+        this.binaryManager = binaryManager;
+        gcDir = new File(binaryManager.getStorageDir().getParentFile(), GC_DIR);
+        MetricRegistry registry = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
+        String id = binaryManager.blobProviderId;
+        markedMeter = registry.meter(MetricRegistry.name("nuxeo", "binaries", id, "gc", "marked"));
+        sweptMeter = registry.meter(MetricRegistry.name("nuxeo", "binaries", id, "gc", "swept"));
+        deletedMeter = registry.meter(MetricRegistry.name("nuxeo", "binaries", id, "gc", "deleted"));
+        sweepTimer = registry.timer(MetricRegistry.name("nuxeo", "binaries", id, "gc", "sweep"));
+    }
+
+    @Override
+    public String getId() {
+        return binaryManager.getStorageDir().toURI().toString();
+    }
+
+    @Override
+    public BinaryManagerStatus getStatus() {
+        return status;
+    }
+
+    @Override
+    public boolean isInProgress() {
+        // volatile as this is designed to be called from another thread
+        return startTime != 0;
+    }
+
+    @Override
+    public void start() {
+        if (startTime != 0) {
+            throw new RuntimeException("Already started");
+        }
+        resumeSweep();
+        startTime = System.currentTimeMillis();
+        status = new BinaryManagerStatus();
+        long expected = Math.max(MIN_EXPECTED_DIGESTS, readLastNumBinaries() * 5 / 4);
+        double fpp = Double.parseDouble(Framework.getProperty(FPP_PROP, String.valueOf(DEFAULT_FPP)));
+        marks = new Marks(expected, fpp);
+        salt = UUID.randomUUID().toString();
+    }
+
+    @Override
+    public synchronized void mark(String digest) {
+        marks.put(salt + digest);
+        markedMeter.mark();
+    }
+
+    @Override
+    public void stop(boolean delete) {
+        if (startTime == 0) {
+            throw new RuntimeException("Not started");
+        }
+        long minTime = startTime - TIME_RESOLUTION;
+        try {
+            writeCheckpoint(minTime, delete);
+        } catch (IOException e) {
+            log.warn("Cannot write GC checkpoint in: " + gcDir, e);
+        }
+        sweep(marks, salt, minTime, delete, Collections.emptySet(), status);
+        clearCheckpoint();
+        writeLastNumBinaries(status.numBinaries + status.numBinariesGC);
+        status.gcDuration = System.currentTimeMillis() - startTime;
+        marks = null;
+        startTime = 0;
+    }
+
+    /**
+     * Finishes a sweep interrupted before its end, if any.
+     */
+    protected void resumeSweep() {
+        File checkpointFile = new File(gcDir, CHECKPOINT_FILE);
+        if (!checkpointFile.exists()) {
+            return;
+        }
+        try {
+            Properties props = readProperties(checkpointFile);
+            long minTime = Long.parseLong(props.getProperty(PROP_MIN_TIME));
+            String salt = props.getProperty(PROP_SALT);
+            boolean delete = Boolean.parseBoolean(props.getProperty(PROP_DELETE));
+            int numFilters = Integer.parseInt(props.getProperty(PROP_NUM_FILTERS, "1"));
+            Marks marks;
+            try (InputStream in = new BufferedInputStream(new FileInputStream(new File(gcDir, MARKS_FILE)))) {
+                marks = Marks.readFrom(in, numFilters);
+            }
+            Set<String> done = new HashSet<>();
+            File doneFile = new File(gcDir, DONE_FILE);
+            if (doneFile.exists()) {
+                done.addAll(Files.readAllLines(doneFile.toPath(), StandardCharsets.UTF_8));
+            }
+            log.info("Resuming interrupted GC sweep of: " + binaryManager.getStorageDir() + ", " + done.size()
+                    + " directories already done");
+            BinaryManagerStatus resumedStatus = new BinaryManagerStatus();
+            sweep(marks, salt, minTime, delete, done, resumedStatus);
+            log.info("Resumed GC sweep done: " + resumedStatus);
+        } catch (IOException | RuntimeException e) {
+            log.error("Cannot resume GC sweep from checkpoint in: " + gcDir, e);
+        }
+        clearCheckpoint();
+    }
+
+    /**
+     * Sweeps the storage, deleting or counting the files that are not marked and are older than the given time.
+     *
+     * @param done the top-level subdirectories to skip because they have already been swept
+     */
+    protected void sweep(Marks marks, String salt, long minTime, boolean delete, Set<String> done,
+            BinaryManagerStatus status) {
+        Sweeper sweeper = new Sweeper(marks, salt, minTime, delete);
+        try (Timer.Context context = sweepTimer.time()) {
+            sweep(binaryManager.getStorageDir(), sweeper, done, "");
+        }
+        sweeper.addTo(status);
+    }
+
+    /**
+     * Sweeps the top-level subdirectories of a directory in parallel.
+     *
+     * @param done the top-level subdirectories to skip because they have already been swept, with the prefix
+     * @param checkpointPrefix the prefix with which to record the swept subdirectories in the checkpoint, or
+     *            {@code null} for no checkpoint
+     */
+    protected void sweep(File root, Sweeper sweeper, Set<String> done, String checkpointPrefix) {
+        File[] files = root.listFiles();
+        if (files == null) {
+            return;
+        }
+        List<File> dirs = new ArrayList<>();
+        String prefix = checkpointPrefix == null ? "" : checkpointPrefix;
+        for (File file : files) {
+            if (file.isDirectory()) {
+                if (!done.contains(prefix + file.getName())) {
+                    dirs.add(file);
+                }
+            } else {
+                sweeper.sweep(file, 0);
+            }
+        }
+        int parallelism = Integer.parseInt(Framework.getProperty(PARALLELISM_PROP, "0"));
+        if (parallelism <= 0) {
+            parallelism = Runtime.getRuntime().availableProcessors();
+        }
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            List<ForkJoinTask<?>> tasks = new ArrayList<>(dirs.size());
+            for (File dir : dirs) {
+                tasks.add(pool.submit(() -> {
+                    sweeper.sweep(dir, 1);
+                    if (checkpointPrefix != null) {
+                        checkpointDone(prefix + dir.getName());
+                    }
+                }));
+            }
+            for (ForkJoinTask<?> task : tasks) {
+                task.join();
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Sweeps files, can be called concurrently.
+     */
+    protected class Sweeper {
+
+        protected final Marks marks;
+
+        protected final String salt;
+
+        protected final long minTime;
+
+        protected final boolean delete;
+
+        protected final LongAdder numBinaries = new LongAdder();
+
+        protected final LongAdder sizeBinaries = new LongAdder();
+
+        protected final LongAdder numBinariesGC = new LongAdder();
+
+        protected final LongAdder sizeBinariesGC = new LongAdder();
+
+        protected Sweeper(Marks marks, String salt, long minTime, boolean delete) {
+            this.marks = marks;
+            this.salt = salt;
+            this.minTime = minTime;
+            this.delete = delete;
+        }
+
+        protected void sweep(File file, int depth) {
+            if (file.isDirectory()) {
+                File[] files = file.listFiles();
+                if (files == null) {
+                    return;
+                }
+                for (File f : files) {
+                    sweep(f, depth + 1);
+                }
+                if (depth > 0 && file.list().length == 0) {
+                    // empty directory
+                    file.delete();
+                }
+            } else if (file.isFile() && file.canWrite()) {
+                long lastModified = file.lastModified();
+                long length = file.length();
+                if (lastModified == 0) {
+                    log.error("Cannot read last modified for file: " + file);
+                } else if (!isKept(file.getName(), lastModified)) {
+                    if (isCounted(file)) {
+                        sizeBinariesGC.add(length);
+                        numBinariesGC.increment();
+                    }
+                    if (delete) {
+                        if (file.delete()) {
+                            deletedMeter.mark();
+                        } else {
+                            log.warn("Cannot gc file: " + file);
+                        }
+                    }
+                } else if (isCounted(file)) {
+                    sizeBinaries.add(length);
+                    numBinaries.increment();
+                }
+                sweptMeter.mark();
+            }
+        }
+
+        /**
+         * Checks if a file is counted in the status, for binaries that may be swept several times.
+         */
+        protected boolean isCounted(File file) {
+            return true;
+        }
+
+        /**
+         * Checks if a file must be kept because it is marked or recent.
+         */
+        protected boolean isKept(String name, long lastModified) {
+            return lastModified >= minTime || marks.mightContain(salt + name);
+        }
+
+        protected void addTo(BinaryManagerStatus status) {
+            status.numBinaries += numBinaries.sum();
+            status.sizeBinaries += sizeBinaries.sum();
+            status.numBinariesGC += numBinariesGC.sum();
+            status.sizeBinariesGC += sizeBinariesGC.sum();
+        }
+    }
+
+    protected void writeCheckpoint(long minTime, boolean delete) throws IOException {
+        gcDir.mkdirs();
+        // the checkpoint file is written last, its presence means the checkpoint is complete
+        new File(gcDir, CHECKPOINT_FILE).delete();
+        new File(gcDir, DONE_FILE).delete();
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(new File(gcDir, MARKS_FILE)))) {
+            marks.writeTo(out);
+        }
+        Properties props = new Properties();
+        props.setProperty(PROP_MIN_TIME, String.valueOf(minTime));
+        props.setProperty(PROP_SALT, salt);
+        props.setProperty(PROP_DELETE, String.valueOf(delete));
+        props.setProperty(PROP_NUM_FILTERS, String.valueOf(marks.filters.size()));
+        writeProperties(props, new File(gcDir, CHECKPOINT_FILE));
+    }
+
+    /**
+     * The marked digests, in a list of Bloom filters that grows with the number of marks.
+     * <p>
+     * Each new filter has twice the capacity and half the false positive probability of the previous one. Marks are
+     * added by a single thread at a time, lookups can be done concurrently once marking is over.
+     */
+    protected static class Marks {
+
+        protected final List<BloomFilter<CharSequence>> filters = new ArrayList<>();
+
+        protected long capacity;
+
+        protected double fpp;
+
+        /** Number of marks in the last filter. */
+        protected long count;
+
+        protected Marks(long capacity, double fpp) {
+            this.capacity = capacity;
+            this.fpp = fpp;
+            filters.add(newFilter());
+        }
+
+        protected Marks() {
+        }
+
+        protected BloomFilter<CharSequence> newFilter() {
+            return BloomFilter.create(Funnels.unencodedCharsFunnel(), (int) Math.min(capacity, Integer.MAX_VALUE),
+                    fpp);
+        }
+
+        protected void put(String value) {
+            if (count >= capacity) {
+                // full, adding more would degrade the false positive probability
+                capacity *= 2;
+                fpp /= 2;
+                count = 0;
+                filters.add(newFilter());
+                log.debug("GC marks exceed the expected count, adding a Bloom filter for: " + capacity);
+            }
+            filters.get(filters.size() - 1).put(value);
+            count++;
+        }
+
+        protected boolean mightContain(String value) {
+            for (BloomFilter<CharSequence> filter : filters) {
+                if (filter.mightContain(value)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        protected void writeTo(OutputStream out) throws IOException {
+            for (BloomFilter<CharSequence> filter : filters) {
+                filter.writeTo(out);
+            }
+        }
+
+        protected static Marks readFrom(InputStream in, int numFilters) throws IOException {
+            Marks marks = new Marks();
+            for (int i = 0; i < numFilters; i++) {
+                marks.filters.add(BloomFilter.readFrom(in, Funnels.unencodedCharsFunnel()));
+            }
+            return marks;
+        }
+    }
+
+    /**
+     * Records in the checkpoint that a top-level subdirectory has been swept.
+     */
+    protected synchronized void checkpointDone(String name) {
+        if (!new File(gcDir, CHECKPOINT_FILE).exists()) {
+            return;
+        }
+        try (OutputStream out = new FileOutputStream(new File(gcDir, DONE_FILE), true)) {
+            out.write((name + "\n").getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new NuxeoException(e);
+        }
+    }
+
+    protected void clearCheckpoint() {
+        new File(gcDir, CHECKPOINT_FILE).delete();
+        new File(gcDir, DONE_FILE).delete();
+        new File(gcDir, MARKS_FILE).delete();
+    }
+
+    protected long readLastNumBinaries() {
+        File file = new File(gcDir, LAST_STATUS_FILE);
+        if (!file.exists()) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(readProperties(file).getProperty(PROP_NUM_BINARIES, "0"));
+        } catch (IOException | NumberFormatException e) {
+            log.warn("Cannot read: " + file, e);
+            return 0;
+        }
+    }
+
+    protected void writeLastNumBinaries(long numBinaries) {
+        Properties props = new Properties();
+        props.setProperty(PROP_NUM_BINARIES, String.valueOf(numBinaries));
+        try {
+            gcDir.mkdirs();
+            writeProperties(props, new File(gcDir, LAST_STATUS_FILE));
+        } catch (IOException e) {
+            log.warn("Cannot write GC status in: " + gcDir, e);
+        }
+    }
+
+    protected static Properties readProperties(File file) throws IOException {
+        Properties props = new Properties();
+        try (InputStream in = new FileInputStream(file)) {
+            props.load(in);
+        }
+        return props;
+    }
+
+    protected static void writeProperties(Properties props, File file) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (OutputStream out = new FileOutputStream(tmp)) {
+            props.store(out, null);
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+}
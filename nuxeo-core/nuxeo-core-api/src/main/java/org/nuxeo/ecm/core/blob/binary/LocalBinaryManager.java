@@ -247,9 +247,14 @@ public class LocalBinaryManager extends AbstractBinaryManager {
     }
 
     protected void createGarbageCollector() {
-        garbageCollector = new DefaultBinaryGarbageCollector(this);
+        garbageCollector = new LocalBinaryGarbageCollector(this);
     }
 
+    /**
+     * @deprecated since 9.3, use {@link LocalBinaryGarbageCollector} which doesn't touch marked files and sweeps in
+     *             parallel
+     */
+    @Deprecated
     public static class DefaultBinaryGarbageCollector implements BinaryGarbageCollector {
 
         /**
@@ -18,22 +18,32 @@
  */
 package org.nuxeo.ecm.core.blob.binary;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.junit.Assume.assumeTrue;
+import static org.nuxeo.ecm.core.blob.binary.AESBinaryManager.AES_CBC_PKCS5_PADDING;
+import static org.nuxeo.ecm.core.blob.binary.AESBinaryManager.CHUNK_SIZE;
+import static org.nuxeo.ecm.core.blob.binary.AESBinaryManager.FILE_MAGIC;
+import static org.nuxeo.ecm.core.blob.binary.AESBinaryManager.FILE_VERSION_1;
+import static org.nuxeo.ecm.core.blob.binary.AESBinaryManager.FILE_VERSION_2;
 import static org.nuxeo.ecm.core.blob.binary.AESBinaryManager.PARAM_KEY_ALIAS;
 import static org.nuxeo.ecm.core.blob.binary.AESBinaryManager.PARAM_KEY_PASSWORD;
 import static org.nuxeo.ecm.core.blob.binary.AESBinaryManager.PARAM_KEY_STORE_FILE;
 import static org.nuxeo.ecm.core.blob.binary.AESBinaryManager.PARAM_KEY_STORE_PASSWORD;
 import static org.nuxeo.ecm.core.blob.binary.AESBinaryManager.PARAM_KEY_STORE_TYPE;
 import static org.nuxeo.ecm.core.blob.binary.AESBinaryManager.PARAM_PASSWORD;
+import static org.nuxeo.ecm.core.blob.binary.AESBinaryManager.USE_PBKDF2;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -41,10 +51,16 @@ import java.io.OutputStream;
 import java.security.GeneralSecurityException;
 import java.security.Key;
 import java.security.KeyStore;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Random;
 
+import javax.crypto.Cipher;
+import javax.crypto.CipherOutputStream;
 import javax.crypto.KeyGenerator;
 
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.junit.Before;
 import org.junit.Test;
@@ -106,7 +122,7 @@ public class TestAESBinaryManager extends NXRuntimeTestCase {
             assertFalse(CONTENT.equals(new String(out.toByteArray(), UTF8)));
         } catch (NuxeoException e) {
             String message = e.getMessage();
-            assertTrue(message, message.contains("Given final block not properly padded"));
+            assertTrue(message, message.contains("invalid key or password"));
         }
 
         binaryManager.close();
@@ -183,4 +199,150 @@ public class TestAESBinaryManager extends NXRuntimeTestCase {
         binaryManager.close();
     }
 
+    @Test
+    public void testChunkedStreamSkip() throws Exception {
+        AESBinaryManager binaryManager = new AESBinaryManager();
+        String options = String.format("%s=%s", PARAM_PASSWORD, "mypassword");
+        binaryManager.initialize("repo", Collections.singletonMap(BinaryManager.PROP_KEY, options));
+
+        // several chunks, the last one partial
+        byte[] bytes = new byte[3 * CHUNK_SIZE + 123];
+        new Random(1234).nextBytes(bytes);
+        String digest = binaryManager.getBinary(new ByteArrayInputStream(bytes)).getDigest();
+        assertEquals(DigestUtils.md5Hex(bytes), digest);
+
+        Binary binary = binaryManager.getBinary(digest);
+        assertTrue(binary instanceof AESBinary);
+        try (InputStream stream = binary.getStream()) {
+            assertArrayEquals(bytes, IOUtils.toByteArray(stream));
+        }
+        // skip into the third chunk
+        int offset = 2 * CHUNK_SIZE + 17;
+        try (InputStream stream = binary.getStream()) {
+            assertEquals(offset, stream.skip(offset));
+            byte[] expected = Arrays.copyOfRange(bytes, offset, bytes.length);
+            assertArrayEquals(expected, IOUtils.toByteArray(stream));
+        }
+        // skip past the end
+        try (InputStream stream = binary.getStream()) {
+            assertEquals(bytes.length, stream.skip(bytes.length + 1000));
+            assertEquals(-1, stream.read());
+        }
+        // decrypted file on demand
+        assertArrayEquals(bytes, FileUtils.readFileToByteArray(binary.getFile()));
+
+        binaryManager.close();
+    }
+
+    @Test
+    public void testChunkedExactMultiple() throws Exception {
+        AESBinaryManager binaryManager = new AESBinaryManager();
+        binaryManager.digestAlgorithm = binaryManager.getDefaultDigestAlgorithm(); // MD5
+        String options = String.format("%s=%s", PARAM_PASSWORD, "mypassword");
+        binaryManager.initializeOptions(options);
+
+        for (byte[] bytes : new byte[][] { new byte[0], new byte[CHUNK_SIZE], new byte[2 * CHUNK_SIZE] }) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            binaryManager.storeAndDigest(new ByteArrayInputStream(bytes), out);
+            byte[] encrypted = out.toByteArray();
+            try (InputStream stream = binaryManager.getDecryptingStream(new ByteArrayInputStream(encrypted),
+                    encrypted.length)) {
+                assertArrayEquals(bytes, IOUtils.toByteArray(stream));
+            }
+            // truncating the empty last chunk is detected
+            try (InputStream stream = binaryManager.getDecryptingStream(
+                    new ByteArrayInputStream(Arrays.copyOf(encrypted, encrypted.length - 16)), -1)) {
+                IOUtils.toByteArray(stream);
+                fail("truncation should be detected");
+            } catch (IOException e) {
+                String message = e.getMessage();
+                assertTrue(message, message.contains("Invalid file"));
+            }
+        }
+    }
+
+    @Test
+    public void testChunkedTampered() throws Exception {
+        AESBinaryManager binaryManager = new AESBinaryManager();
+        binaryManager.digestAlgorithm = binaryManager.getDefaultDigestAlgorithm(); // MD5
+        String options = String.format("%s=%s", PARAM_PASSWORD, "mypassword");
+        binaryManager.initializeOptions(options);
+
+        byte[] bytes = new byte[CHUNK_SIZE + 10];
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        binaryManager.storeAndDigest(new ByteArrayInputStream(bytes), out);
+        byte[] encrypted = out.toByteArray();
+        // change a byte in the last chunk
+        encrypted[encrypted.length - 20] ^= 1;
+
+        try (InputStream stream = binaryManager.getDecryptingStream(new ByteArrayInputStream(encrypted), -1)) {
+            IOUtils.toByteArray(stream);
+            fail("tampering should be detected");
+        } catch (IOException e) {
+            String message = e.getMessage();
+            assertTrue(message, message.contains("Invalid file (bad chunk 1)"));
+        }
+    }
+
+    @Test
+    public void testMigrateVersion1() throws Exception {
+        AESBinaryManager binaryManager = new AESBinaryManager();
+        String options = String.format("%s=%s", PARAM_PASSWORD, "mypassword");
+        binaryManager.initialize("repo", Collections.singletonMap(BinaryManager.PROP_KEY, options));
+
+        // store a file using file format version 1
+        byte[] bytes = CONTENT.getBytes(UTF8);
+        File file = binaryManager.getFileForDigest(CONTENT_MD5, true);
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(encryptVersion1(binaryManager, bytes));
+        }
+        assertEquals(FILE_VERSION_1, readVersion(file));
+
+        // still readable
+        Binary binary = binaryManager.getBinary(CONTENT_MD5);
+        try (InputStream stream = binary.getStream()) {
+            assertEquals(CONTENT, IOUtils.toString(stream, UTF8));
+        }
+
+        // migrate
+        assertEquals(1, binaryManager.migrate());
+        assertEquals(FILE_VERSION_2, readVersion(file));
+        binary = binaryManager.getBinary(CONTENT_MD5);
+        try (InputStream stream = binary.getStream()) {
+            assertEquals(CONTENT, IOUtils.toString(stream, UTF8));
+        }
+
+        // nothing left to migrate
+        assertEquals(0, binaryManager.migrate());
+
+        binaryManager.close();
+    }
+
+    protected byte[] encryptVersion1(AESBinaryManager binaryManager, byte[] bytes) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(out);
+        data.write(FILE_MAGIC);
+        data.writeByte(FILE_VERSION_1);
+        data.writeByte(USE_PBKDF2);
+        byte[] salt = new byte[16];
+        data.writeInt(salt.length);
+        data.write(salt);
+        Cipher cipher = Cipher.getInstance(AES_CBC_PKCS5_PADDING);
+        cipher.init(Cipher.ENCRYPT_MODE, binaryManager.generateSecretKey(salt));
+        byte[] iv = cipher.getIV();
+        data.writeInt(iv.length);
+        data.write(iv);
+        try (OutputStream cipherOut = new CipherOutputStream(data, cipher)) {
+            cipherOut.write(bytes);
+        }
+        return out.toByteArray();
+    }
+
+    protected int readVersion(File file) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            in.skip(FILE_MAGIC.length);
+            return in.read();
+        }
+    }
+
 }
@@ -0,0 +1,147 @@
+/*
+ * (C) Copyright 2017 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Florent Guillaume
+ */
+package org.nuxeo.ecm.core.blob.binary;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+import org.nuxeo.runtime.test.NXRuntimeTestCase;
+
+public class TestChunkedBinaryManager extends NXRuntimeTestCase {
+
+    @Test
+    public void testStoreAndRead() throws Exception {
+        ChunkedBinaryManager binaryManager = new ChunkedBinaryManager();
+        binaryManager.initialize("repo", Collections.emptyMap());
+
+        byte[] bytes = randomBytes(1024 * 1024 + 100);
+        String digest = binaryManager.getBinary(new ByteArrayInputStream(bytes)).getDigest();
+        assertEquals(DigestUtils.md5Hex(bytes), digest);
+        assertTrue(countFiles(binaryManager.getChunksDir()) > 1);
+
+        Binary binary = binaryManager.getBinary(digest);
+        try (InputStream stream = binary.getStream()) {
+            assertArrayEquals(bytes, IOUtils.toByteArray(stream));
+        }
+        // skip
+        int offset = 500_003;
+        try (InputStream stream = binary.getStream()) {
+            assertEquals(offset, stream.skip(offset));
+            assertArrayEquals(Arrays.copyOfRange(bytes, offset, bytes.length), IOUtils.toByteArray(stream));
+        }
+        // reassembled file on demand
+        assertArrayEquals(bytes, FileUtils.readFileToByteArray(binary.getFile()));
+
+        // empty content
+        digest = binaryManager.getBinary(new ByteArrayInputStream(new byte[0])).getDigest();
+        try (InputStream stream = binaryManager.getBinary(digest).getStream()) {
+            assertEquals(-1, stream.read());
+        }
+
+        assertNull(binaryManager.getBinary(DigestUtils.md5Hex("nosuchcontent")));
+
+        binaryManager.close();
+    }
+
+    @Test
+    public void testDeduplicationAndGC() throws Exception {
+        ChunkedBinaryManager binaryManager = new ChunkedBinaryManager();
+        binaryManager.initialize("repo", Collections.emptyMap());
+
+        byte[] bytes = randomBytes(2 * 1024 * 1024);
+        String digest1 = binaryManager.getBinary(new ByteArrayInputStream(bytes)).getDigest();
+        int chunks1 = countFiles(binaryManager.getChunksDir());
+
+        // insert a few bytes near the beginning
+        byte[] modified = new byte[bytes.length + 10];
+        System.arraycopy(bytes, 0, modified, 0, 1000);
+        System.arraycopy(bytes, 1000, modified, 1010, bytes.length - 1000);
+        String digest2 = binaryManager.getBinary(new ByteArrayInputStream(modified)).getDigest();
+        int chunks2 = countFiles(binaryManager.getChunksDir());
+        // only the chunks around the change are new
+        assertTrue(chunks1 + " -> " + chunks2, chunks2 - chunks1 <= 2);
+        try (InputStream stream = binaryManager.getBinary(digest2).getStream()) {
+            assertArrayEquals(modified, IOUtils.toByteArray(stream));
+        }
+
+        // make all files older than the GC time threshold
+        long old = System.currentTimeMillis() - 60 * 1000;
+        setLastModified(binaryManager.getStorageDir(), old);
+        setLastModified(binaryManager.getChunksDir(), old);
+
+        // GC the first binary, keeping the chunks it shares with the second one
+        BinaryGarbageCollector gc = binaryManager.getGarbageCollector();
+        gc.start();
+        gc.mark(digest2);
+        gc.stop(true);
+        BinaryManagerStatus status = gc.getStatus();
+        assertEquals(1, status.numBinaries);
+        assertEquals(1, status.numBinariesGC);
+        assertFalse(binaryManager.getFileForDigest(digest1, false).exists());
+        assertEquals(chunks1, countFiles(binaryManager.getChunksDir()));
+        try (InputStream stream = binaryManager.getBinary(digest2).getStream()) {
+            assertArrayEquals(modified, IOUtils.toByteArray(stream));
+        }
+
+        binaryManager.close();
+    }
+
+    protected static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        new Random(1234).nextBytes(bytes);
+        return bytes;
+    }
+
+    protected static int countFiles(File dir) {
+        int n = 0;
+        for (File f : dir.listFiles()) {
+            if (f.isDirectory()) {
+                n += countFiles(f);
+            } else {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    protected static void setLastModified(File dir, long time) {
+        for (File f : dir.listFiles()) {
+            if (f.isDirectory()) {
+                setLastModified(f, time);
+            } else {
+                f.setLastModified(time);
+            }
+        }
+    }
+
+}
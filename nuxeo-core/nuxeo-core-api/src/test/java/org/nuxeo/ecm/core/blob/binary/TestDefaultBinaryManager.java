@@ -25,14 +25,17 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.util.Collections;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.junit.Test;
 import org.nuxeo.ecm.core.api.Blobs;
 import org.nuxeo.ecm.core.api.impl.blob.FileBlob;
+import org.nuxeo.runtime.api.Framework;
 import org.nuxeo.runtime.test.NXRuntimeTestCase;
 
 public class TestDefaultBinaryManager extends NXRuntimeTestCase {
@@ -41,6 +44,8 @@ public class TestDefaultBinaryManager extends NXRuntimeTestCase {
 
     private static final String CONTENT_MD5 = "d25ea4f4642073b7f218024d397dbaef";
 
+    private static final String ABC_MD5 = "900150983cd24fb0d6963f7d28e17f72";
+
     private static final String CONTENT_SHA1 = "3f3bdf817537faa28483eabc69a4bb3912cf0c6c";
 
     @Test
@@ -138,6 +143,123 @@ public class TestDefaultBinaryManager extends NXRuntimeTestCase {
         binaryManager.close();
     }
 
+    @Test
+    public void testNonTemporaryCopiedByDefault() throws IOException {
+        DefaultBinaryManager binaryManager = new DefaultBinaryManager();
+        binaryManager.initialize("repo", Collections.emptyMap());
+        File file = File.createTempFile("nxtest-", ".tmp", binaryManager.getStorageDir().getParentFile());
+        try {
+            FileUtils.writeStringToFile(file, CONTENT, "UTF-8");
+            Binary binary = binaryManager.getBinary(new FileBlob(file));
+            assertEquals(CONTENT_MD5, binary.getDigest());
+            // the caller still owns its file and may modify it in place
+            FileUtils.writeStringToFile(file, "abc", "UTF-8");
+            assertEquals(CONTENT, IOUtils.toString(binaryManager.getBinary(CONTENT_MD5).getStream(), "UTF-8"));
+        } finally {
+            file.delete();
+        }
+
+        binaryManager.close();
+    }
+
+    @Test
+    public void testNonTemporaryLinked() throws IOException {
+        Framework.getProperties().setProperty(DefaultBinaryManager.HARD_LINK_PROP, "true");
+        DefaultBinaryManager binaryManager = new DefaultBinaryManager();
+        binaryManager.initialize("repo", Collections.emptyMap());
+        File file = File.createTempFile("nxtest-", ".tmp", binaryManager.getStorageDir().getParentFile());
+        try {
+            FileUtils.writeStringToFile(file, CONTENT, "UTF-8");
+            FileBlob source = new FileBlob(file);
+            Binary binary = binaryManager.getBinary(source);
+            assertEquals(CONTENT_MD5, binary.getDigest());
+            // the original file is untouched
+            assertTrue(file.exists());
+            assertEquals(file, source.getFile());
+            // the stored file survives the deletion of the original
+            file.delete();
+            assertEquals(CONTENT, IOUtils.toString(binaryManager.getBinary(CONTENT_MD5).getStream(), "UTF-8"));
+            // nothing left in tmp
+            assertEquals(0, countFiles(new File(binaryManager.getStorageDir().getParentFile(), LocalBinaryManager.TMP)));
+        } finally {
+            file.delete();
+            Framework.getProperties().remove(DefaultBinaryManager.HARD_LINK_PROP);
+        }
+
+        binaryManager.close();
+    }
+
+    @Test
+    public void testGarbageCollectorResume() throws Exception {
+        DefaultBinaryManager binaryManager = new DefaultBinaryManager();
+        binaryManager.initialize("repo", Collections.emptyMap());
+        binaryManager.getBinary(new ByteArrayInputStream(CONTENT.getBytes("UTF-8")));
+        binaryManager.getBinary(new ByteArrayInputStream("abc".getBytes("UTF-8")));
+        assertEquals(2, countFiles(binaryManager.getStorageDir()));
+        // make the files older than the GC time threshold
+        long old = System.currentTimeMillis() - 60 * 1000;
+        binaryManager.getFileForDigest(CONTENT_MD5, false).setLastModified(old);
+        binaryManager.getFileForDigest(ABC_MD5, false).setLastModified(old);
+
+        // GC interrupted after its checkpoint, before the sweep
+        LocalBinaryGarbageCollector gc = (LocalBinaryGarbageCollector) binaryManager.getGarbageCollector();
+        gc.start();
+        gc.mark(CONTENT_MD5);
+        gc.writeCheckpoint(gc.startTime - LocalBinaryGarbageCollector.TIME_RESOLUTION, true);
+        File checkpointFile = new File(gc.gcDir, LocalBinaryGarbageCollector.CHECKPOINT_FILE);
+        assertTrue(checkpointFile.exists());
+        assertEquals(2, countFiles(binaryManager.getStorageDir()));
+
+        // after a restart, the next GC finishes the interrupted sweep
+        gc = new LocalBinaryGarbageCollector(binaryManager);
+        gc.start();
+        assertFalse(checkpointFile.exists());
+        assertEquals(1, countFiles(binaryManager.getStorageDir()));
+        assertTrue(binaryManager.getFileForDigest(CONTENT_MD5, false).exists());
+        gc.mark(CONTENT_MD5);
+        gc.stop(true);
+        BinaryManagerStatus status = gc.getStatus();
+        assertEquals(1, status.numBinaries);
+        assertEquals(0, status.numBinariesGC);
+
+        binaryManager.close();
+    }
+
+    @Test
+    public void testGarbageCollectorMarksBeyondExpectedCount() throws Exception {
+        LocalBinaryGarbageCollector.Marks marks = new LocalBinaryGarbageCollector.Marks(100, 0.01);
+        for (int i = 0; i < 10000; i++) {
+            marks.put("mark" + i);
+        }
+        // grown instead of being overfilled
+        assertTrue(marks.filters.size() > 1);
+        for (int i = 0; i < 10000; i++) {
+            assertTrue(marks.mightContain("mark" + i));
+        }
+        // a single overfilled filter would give false positives for most values
+        assertTrue(countFalsePositives(marks) < 400);
+
+        // checkpoint round trip
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        marks.writeTo(out);
+        LocalBinaryGarbageCollector.Marks read = LocalBinaryGarbageCollector.Marks.readFrom(
+                new ByteArrayInputStream(out.toByteArray()), marks.filters.size());
+        assertEquals(marks.filters.size(), read.filters.size());
+        assertTrue(read.mightContain("mark0"));
+        assertTrue(read.mightContain("mark9999"));
+        assertEquals(countFalsePositives(marks), countFalsePositives(read));
+    }
+
+    protected static int countFalsePositives(LocalBinaryGarbageCollector.Marks marks) {
+        int n = 0;
+        for (int i = 0; i < 10000; i++) {
+            if (marks.mightContain("other" + i)) {
+                n++;
+            }
+        }
+        return n;
+    }
+
     protected static int countFiles(File dir) {
         int n = 0;
         for (File f : dir.listFiles()) {
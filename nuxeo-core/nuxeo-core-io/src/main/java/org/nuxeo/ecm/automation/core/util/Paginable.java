@@ -87,6 +87,16 @@ public interface Paginable<T> extends List<T> {
      */
     long getCurrentPageIndex();
 
+    /**
+     * Returns an opaque cursor to the next page, or {@code null} if there is no next page or if the current page was
+     * not requested with a cursor.
+     *
+     * @since 9.3
+     */
+    default String getNextPageCursor() {
+        return null;
+    }
+
     /**
      * Returns if this provider is sortable.
      */
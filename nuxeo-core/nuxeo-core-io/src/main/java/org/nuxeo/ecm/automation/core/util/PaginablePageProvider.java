@@ -94,6 +94,11 @@ public class PaginablePageProvider<T> extends ArrayList<T> implements Paginable<
         return pageProvider.getCurrentPageOffset();
     }
 
+    @Override
+    public String getNextPageCursor() {
+        return pageProvider.getNextPageCursor();
+    }
+
     @Override
     public boolean isSortable() {
         return pageProvider.isSortable();
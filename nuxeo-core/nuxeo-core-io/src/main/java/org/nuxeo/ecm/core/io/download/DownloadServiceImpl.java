@@ -19,6 +19,7 @@
  */
 package org.nuxeo.ecm.core.io.download;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -560,7 +561,8 @@ public class DownloadServiceImpl extends DefaultComponent implements DownloadSer
             if (byteRange == null) {
                 IOUtils.copy(in, out);
             } else {
-                IOUtils.copyLarge(in, out, byteRange.getStart(), byteRange.getLength());
+                skipFully(in, byteRange.getStart());
+                IOUtils.copyLarge(in, out, 0, byteRange.getLength());
             }
             out.flush();
         } catch (IOException e) {
@@ -568,6 +570,26 @@ public class DownloadServiceImpl extends DefaultComponent implements DownloadSer
         }
     }
 
+    /**
+     * Skips bytes using the stream's own {@link InputStream#skip}, which may seek instead of reading the skipped bytes
+     * (unlike {@link IOUtils#skipFully}).
+     *
+     * @since 9.3
+     */
+    protected static void skipFully(InputStream in, long n) throws IOException {
+        while (n > 0) {
+            long skipped = in.skip(n);
+            if (skipped <= 0) {
+                // skip may return 0 before EOF, check by reading
+                if (in.read() == -1) {
+                    throw new EOFException("Bytes to skip: " + n);
+                }
+                skipped = 1;
+            }
+            n -= skipped;
+        }
+    }
+
     protected String fixXPath(String xpath) {
         // Hack for Flash Url wich doesn't support ':' char
         return xpath == null ? null : xpath.replace(';', ':');
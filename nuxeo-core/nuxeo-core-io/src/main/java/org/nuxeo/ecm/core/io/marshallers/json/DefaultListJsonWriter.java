@@ -142,6 +142,10 @@ public abstract class DefaultListJsonWriter<EntityType> extends AbstractJsonWrit
             jg.writeBooleanField("isPreviousPageAvailable", paginable.isPreviousPageAvailable());
             jg.writeBooleanField("isNextPageAvailable", paginable.isNextPageAvailable());
             jg.writeBooleanField("isLastPageAvailable", paginable.isLastPageAvailable());
+            String nextPageCursor = paginable.getNextPageCursor();
+            if (nextPageCursor != null) {
+                jg.writeStringField("nextPageCursor", nextPageCursor);
+            }
             jg.writeBooleanField("isSortable", paginable.isSortable());
             jg.writeBooleanField("hasError", paginable.hasError());
             jg.writeStringField("errorMessage", paginable.getErrorMessage());
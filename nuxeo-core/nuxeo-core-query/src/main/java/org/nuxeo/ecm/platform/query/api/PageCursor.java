@@ -0,0 +1,208 @@
+/*
+ * (C) Copyright 2017 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Florent Guillaume
+ */
+package org.nuxeo.ecm.platform.query.api;
+
+import java.io.Serializable;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Position of a page in the results of a page provider, exchanged with clients as an opaque string.
+ * <p>
+ * The position is the offset of the page and, for page providers supporting keyset pagination, the sort values of the
+ * last entry of the previous page. Sort values can be {@code null}, strings, longs, doubles or booleans.
+ *
+ * @see PageProvider#setCurrentPageCursor
+ * @see PageProvider#getNextPageCursor
+ * @since 9.3
+ */
+public class PageCursor implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    protected static final String VERSION = "1";
+
+    protected static final String SEP = ",";
+
+    protected static final String UTF_8 = StandardCharsets.UTF_8.name();
+
+    protected final long offset;
+
+    protected final List<Serializable> sortValues;
+
+    /**
+     * Creates a cursor holding only an offset.
+     */
+    public PageCursor(long offset) {
+        this(offset, null);
+    }
+
+    /**
+     * Creates a cursor holding an offset and the sort values of the entry preceding it.
+     *
+     * @param sortValues the sort values, or {@code null} for an offset-only cursor
+     */
+    public PageCursor(long offset, List<Serializable> sortValues) {
+        if (offset < 0) {
+            throw new IllegalArgumentException("Negative offset: " + offset);
+        }
+        this.offset = offset;
+        if (sortValues == null) {
+            this.sortValues = null;
+        } else {
+            List<Serializable> values = new ArrayList<>(sortValues.size());
+            for (Serializable value : sortValues) {
+                values.add(normalize(value));
+            }
+            this.sortValues = Collections.unmodifiableList(values);
+        }
+    }
+
+    protected static Serializable normalize(Serializable value) {
+        if (value == null || value instanceof String || value instanceof Long || value instanceof Double
+                || value instanceof Boolean) {
+            return value;
+        }
+        if (value instanceof Float) {
+            return Double.valueOf(((Float) value).doubleValue());
+        }
+        if (value instanceof Number) {
+            return Long.valueOf(((Number) value).longValue());
+        }
+        throw new IllegalArgumentException("Unsupported sort value: " + value.getClass().getName());
+    }
+
+    /**
+     * Gets the offset of the page.
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * Gets the sort values of the entry preceding the page, or {@code null} for an offset-only cursor.
+     */
+    public List<Serializable> getSortValues() {
+        return sortValues;
+    }
+
+    /**
+     * Encodes this cursor as an opaque URL-safe string.
+     */
+    public String encode() {
+        StringBuilder buf = new StringBuilder();
+        buf.append(VERSION).append(SEP).append(offset);
+        if (sortValues != null) {
+            for (Serializable value : sortValues) {
+                buf.append(SEP);
+                if (value == null) {
+                    buf.append('n');
+                } else if (value instanceof String) {
+                    buf.append('s').append(urlEncode((String) value));
+                } else if (value instanceof Long) {
+                    buf.append('l').append(value);
+                } else if (value instanceof Double) {
+                    buf.append('d').append(value);
+                } else {
+                    buf.append('b').append(value);
+                }
+            }
+        }
+        byte[] bytes = buf.toString().getBytes(StandardCharsets.UTF_8);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    /**
+     * Decodes a cursor returned by {@link #encode}.
+     *
+     * @throws IllegalArgumentException if the cursor is invalid
+     */
+    public static PageCursor decode(String cursor) {
+        if (cursor == null) {
+            throw new IllegalArgumentException("Missing page cursor");
+        }
+        try {
+            String string = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = string.split(SEP, -1);
+            if (parts.length < 2 || !VERSION.equals(parts[0])) {
+                throw new IllegalArgumentException("Invalid page cursor: " + cursor);
+            }
+            long offset = Long.parseLong(parts[1]);
+            if (parts.length == 2) {
+                return new PageCursor(offset);
+            }
+            List<Serializable> sortValues = new ArrayList<>(parts.length - 2);
+            for (int i = 2; i < parts.length; i++) {
+                sortValues.add(decodeValue(parts[i]));
+            }
+            return new PageCursor(offset, sortValues);
+        } catch (IllegalArgumentException e) { // includes NumberFormatException
+            throw new IllegalArgumentException("Invalid page cursor: " + cursor, e);
+        }
+    }
+
+    protected static Serializable decodeValue(String part) {
+        if (part.isEmpty()) {
+            throw new IllegalArgumentException("Empty sort value");
+        }
+        String value = part.substring(1);
+        switch (part.charAt(0)) {
+            case 'n':
+                return null;
+            case 's':
+                return urlDecode(value);
+            case 'l':
+                return Long.valueOf(value);
+            case 'd':
+                return Double.valueOf(value);
+            case 'b':
+                return Boolean.valueOf(value);
+            default:
+                throw new IllegalArgumentException("Invalid sort value: " + part);
+        }
+    }
+
+    protected static String urlEncode(String value) {
+        try {
+            return URLEncoder.encode(value, UTF_8);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e); // cannot happen
+        }
+    }
+
+    protected static String urlDecode(String value) {
+        try {
+            return URLDecoder.decode(value, UTF_8);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e); // cannot happen
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "(" + offset + (sortValues == null ? "" : ", " + sortValues) + ")";
+    }
+
+}
@@ -73,6 +73,13 @@ public interface PageProvider<T> extends Serializable {
      */
     public static final String HIGHLIGHT_CTX_DATA = "highlight";
 
+    /**
+     * Cursor to pass to {@link #setCurrentPageCursor} to get the first page of a cursor pagination.
+     *
+     * @since 9.3
+     */
+    public static final String FIRST_PAGE_CURSOR = "*";
+
     /**
      * Returns the provider identifier
      */
@@ -207,6 +214,30 @@ public interface PageProvider<T> extends Serializable {
      */
     public void setCurrentPageOffset(long offset);
 
+    /**
+     * Sets the current page from an opaque cursor returned by {@link #getNextPageCursor}, or from
+     * {@link #FIRST_PAGE_CURSOR}.
+     * <p>
+     * Page providers supporting keyset pagination position the page after the last entry of the previous page, which
+     * is not limited in depth. Other page providers use the offset held by the cursor.
+     *
+     * @throws IllegalArgumentException if the cursor is invalid
+     * @since 9.3
+     */
+    default void setCurrentPageCursor(String cursor) {
+        setCurrentPageOffset(FIRST_PAGE_CURSOR.equals(cursor) ? 0 : PageCursor.decode(cursor).getOffset());
+    }
+
+    /**
+     * Gets an opaque cursor to the page following the current page, to pass to {@link #setCurrentPageCursor}.
+     *
+     * @return the cursor, or {@code null} if there is no next page or if the current page was not set from a cursor
+     * @since 9.3
+     */
+    default String getNextPageCursor() {
+        return null;
+    }
+
     /**
      * Sets the current page of results to the required one.
      *
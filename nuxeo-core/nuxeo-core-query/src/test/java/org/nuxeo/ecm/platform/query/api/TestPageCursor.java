@@ -0,0 +1,65 @@
+/*
+ * (C) Copyright 2017 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Florent Guillaume
+ */
+package org.nuxeo.ecm.platform.query.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class TestPageCursor {
+
+    @Test
+    public void testOffsetCursor() {
+        String encoded = new PageCursor(1234).encode();
+        assertTrue(encoded, encoded.matches("[A-Za-z0-9_-]+"));
+        PageCursor cursor = PageCursor.decode(encoded);
+        assertEquals(1234, cursor.getOffset());
+        assertNull(cursor.getSortValues());
+    }
+
+    @Test
+    public void testKeysetCursor() {
+        List<Serializable> values = Arrays.asList("a,b c/é%", null, 12L, Integer.valueOf(3), 1.5, Boolean.TRUE, "");
+        String encoded = new PageCursor(20, values).encode();
+        assertTrue(encoded, encoded.matches("[A-Za-z0-9_-]+"));
+        PageCursor cursor = PageCursor.decode(encoded);
+        assertEquals(20, cursor.getOffset());
+        assertEquals(Arrays.asList("a,b c/é%", null, 12L, 3L, 1.5, Boolean.TRUE, ""), cursor.getSortValues());
+    }
+
+    @Test
+    public void testInvalidCursor() {
+        for (String encoded : Arrays.asList("", "!!", "foo", new PageCursor(1).encode() + "x")) {
+            try {
+                PageCursor.decode(encoded);
+                fail("Should fail for " + encoded);
+            } catch (IllegalArgumentException e) {
+                // ok
+            }
+        }
+    }
+
+}
@@ -93,11 +93,18 @@ public class RedisKeyValueStore implements KeyValueStoreProvider {
 
     @Override
     public void put(String key, byte[] value) {
+        put(key, value, 0);
+    }
+
+    @Override
+    public void put(String key, byte[] value, long ttl) {
         RedisExecutor redisExecutor = Framework.getService(RedisExecutor.class);
         redisExecutor.execute(jedis -> {
             byte[] keyb = getBytes(namespace + key);
             if (value == null) {
                 jedis.del(keyb);
+            } else if (ttl > 0) {
+                jedis.setex(keyb, (int) Math.min(ttl, Integer.MAX_VALUE), value);
             } else {
                 jedis.set(keyb, value);
             }
@@ -48,6 +48,7 @@ import org.nuxeo.ecm.core.storage.FulltextConfiguration;
 import org.nuxeo.ecm.core.storage.State;
 import org.nuxeo.ecm.core.storage.State.StateDiff;
 import org.nuxeo.ecm.core.storage.dbs.DBSTransactionState.ChangeTokenUpdater;
+import org.nuxeo.ecm.core.storage.dbs.DBSTransactionState.StateUpdate;
 import org.nuxeo.runtime.metrics.MetricsService;
 
 import com.codahale.metrics.MetricRegistry;
@@ -219,6 +220,16 @@ public class DBSCachingRepository implements DBSRepository {
         invalidate(id);
     }
 
+    @Override
+    public void updateStates(List<StateUpdate> updates) {
+        try {
+            repository.updateStates(updates);
+        } finally {
+            // on a conflict the other updates of the batch may have been written anyway
+            updates.forEach(update -> invalidate(update.id));
+        }
+    }
+
     @Override
     public void deleteStates(Set<String> ids) {
         repository.deleteStates(ids);
@@ -340,6 +351,11 @@ public class DBSCachingRepository implements DBSRepository {
         return repository.queryKeyValue(key, value, ignored);
     }
 
+    @Override
+    public List<State> queryKeyValue(String key, Object value, Set<String> ignored, Set<String> projection) {
+        return repository.queryKeyValue(key, value, ignored, projection);
+    }
+
     @Override
     public List<State> queryKeyValue(String key1, Object value1, String key2, Object value2, Set<String> ignored) {
         return repository.queryKeyValue(key1, value1, key2, value2, ignored);
@@ -0,0 +1,198 @@
+/*
+ * (C) Copyright 2017 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Florent Guillaume
+ */
+package org.nuxeo.ecm.core.storage.dbs;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.nuxeo.ecm.core.api.NuxeoException;
+
+/**
+ * Lock-free allocator of sequence ids, reserving blocks of ids from the database.
+ * <p>
+ * Ids are handed out from several independent stripes, each thread always using the same stripe, so that concurrent
+ * threads don't contend on the same counter. When a stripe has consumed half of its current block, the next block is
+ * reserved in the background so that threads rarely wait for the database.
+ * <p>
+ * When several stripes are used, ids are unique but not allocated in increasing order.
+ *
+ * @since 9.3
+ */
+public class DBSIdAllocator {
+
+    /**
+     * Reserves blocks of ids in the database.
+     */
+    @FunctionalInterface
+    public interface BlockReserver {
+
+        /**
+         * Reserves a block of ids.
+         *
+         * @param size the number of ids to reserve
+         * @return the first id of the block
+         */
+        long reserve(long size);
+    }
+
+    /**
+     * A block of ids, from {@code next} (included) to {@code end} (excluded).
+     */
+    protected class Block {
+
+        protected final AtomicLong next;
+
+        protected final long end;
+
+        /** The id whose allocation triggers the reservation of the next block. */
+        protected final long prefetchAt;
+
+        protected final AtomicReference<CompletableFuture<Block>> successor = new AtomicReference<>();
+
+        protected Block(long start, long size) {
+            next = new AtomicLong(start);
+            end = start + size;
+            prefetchAt = start + size / 2;
+        }
+
+        /**
+         * Gets the block following this one, starting its reservation if needed.
+         */
+        protected CompletableFuture<Block> successor(boolean async) {
+            CompletableFuture<Block> future = successor.get();
+            if (future != null) {
+                return future;
+            }
+            future = new CompletableFuture<>();
+            if (!successor.compareAndSet(null, future)) {
+                return successor.get();
+            }
+            CompletableFuture<Block> f = future;
+            if (async) {
+                executor.execute(() -> reserve(f));
+            } else {
+                reserve(f);
+            }
+            return future;
+        }
+
+        protected void reserve(CompletableFuture<Block> future) {
+            try {
+                future.complete(new Block(reserver.reserve(blockSize), blockSize));
+            } catch (RuntimeException e) {
+                // allow a later retry
+                successor.compareAndSet(future, null);
+                future.completeExceptionally(e);
+            }
+        }
+    }
+
+    protected final BlockReserver reserver;
+
+    protected final long blockSize;
+
+    protected final AtomicReference<Block>[] stripes;
+
+    protected final ExecutorService executor;
+
+    /**
+     * Constructs an allocator.
+     *
+     * @param name the name used for the background reservation thread
+     * @param reserver the block reserver
+     * @param blockSize the number of ids reserved at a time
+     * @param stripeCount the number of independent stripes
+     */
+    @SuppressWarnings("unchecked")
+    public DBSIdAllocator(String name, BlockReserver reserver, long blockSize, int stripeCount) {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("Invalid block size: " + blockSize);
+        }
+        this.reserver = reserver;
+        this.blockSize = blockSize;
+        stripes = new AtomicReference[Math.max(stripeCount, 1)];
+        for (int i = 0; i < stripes.length; i++) {
+            // an empty block, the first allocation will reserve a real one
+            stripes[i] = new AtomicReference<>(new Block(0, 0));
+        }
+        executor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "Nuxeo-DBSIdAllocator-" + name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Allocates a new id.
+     */
+    public long next() {
+        AtomicReference<Block> stripe = stripes[(int) (Thread.currentThread().getId() % stripes.length)];
+        for (;;) {
+            Block block = stripe.get();
+            long id = block.next.getAndIncrement();
+            if (id < block.end) {
+                if (id == block.prefetchAt && blockSize > 1) {
+                    block.successor(true);
+                }
+                return id;
+            }
+            // block exhausted, all the threads seeing this wait for the same successor
+            Block successor;
+            try {
+                successor = block.successor(false).join();
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof NuxeoException) {
+                    throw (NuxeoException) cause;
+                }
+                throw new NuxeoException(cause);
+            }
+            stripe.compareAndSet(block, successor);
+        }
+    }
+
+    /**
+     * Stops the background reservations.
+     */
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Generates a random UUID whose first 48 bits are the current time in milliseconds.
+     * <p>
+     * Such ids keep the usual UUID string representation but are roughly ordered by creation time, so that new
+     * documents are inserted at the end of the id indexes instead of at random places.
+     */
+    public static String timeOrderedUUID() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long time = System.currentTimeMillis();
+        // version 4 bits and variant 2 bits kept as for random UUIDs
+        long msb = (time << 16) | 0x4000L | (random.nextLong() & 0x0FFFL);
+        long lsb = (random.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+        return new UUID(msb, lsb).toString();
+    }
+
+}
@@ -19,6 +19,7 @@
 package org.nuxeo.ecm.core.storage.dbs;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -33,6 +34,7 @@ import org.nuxeo.ecm.core.storage.FulltextConfiguration;
 import org.nuxeo.ecm.core.storage.State;
 import org.nuxeo.ecm.core.storage.State.StateDiff;
 import org.nuxeo.ecm.core.storage.dbs.DBSTransactionState.ChangeTokenUpdater;
+import org.nuxeo.ecm.core.storage.dbs.DBSTransactionState.StateUpdate;
 
 /**
  * Interface for a {@link Repository} for Document-Based Storage.
@@ -129,6 +131,19 @@ public interface DBSRepository extends Repository, LockManager {
      */
     void updateState(String id, StateDiff diff, ChangeTokenUpdater changeTokenUpdater);
 
+    /**
+     * Updates documents.
+     * <p>
+     * The default implementation updates them one at a time, implementations should send them in bulk to the
+     * database.
+     *
+     * @param updates the updates
+     * @since 9.3
+     */
+    default void updateStates(List<StateUpdate> updates) {
+        updates.forEach(update -> updateState(update.id, update.diff, update.changeTokenUpdater));
+    }
+
     /**
      * Deletes a set of document.
      *
@@ -166,6 +181,31 @@ public interface DBSRepository extends Repository, LockManager {
      */
     List<State> queryKeyValue(String key, Object value, Set<String> ignored);
 
+    /**
+     * Queries the repository for documents having key = value, returning only some keys of the documents.
+     * <p>
+     * The default implementation fetches the full documents, implementations should only fetch the requested keys.
+     *
+     * @param key the key
+     * @param value the value
+     * @param ignored a set of document ids that should not be considered
+     * @param projection the keys to return
+     * @return the partial document states matching the query
+     * @since 9.3
+     */
+    default List<State> queryKeyValue(String key, Object value, Set<String> ignored, Set<String> projection) {
+        List<State> states = queryKeyValue(key, value, ignored);
+        List<State> projected = new ArrayList<>(states.size());
+        for (State state : states) {
+            State partial = new State(projection.size());
+            for (String k : projection) {
+                partial.put(k, state.get(k));
+            }
+            projected.add(partial);
+        }
+        return projected;
+    }
+
     /**
      * Queries the repository for documents having key1 = value1 and key2 = value2.
      *
@@ -102,6 +102,12 @@ public abstract class DBSRepositoryBase implements DBSRepository {
         uuid,
         /** Integer sequence maintained by the database. */
         sequence,
+        /**
+         * Time-ordered random UUID stored in a string.
+         *
+         * @since 9.3
+         */
+        timeuuid,
     }
 
     /** @since 8.3 */
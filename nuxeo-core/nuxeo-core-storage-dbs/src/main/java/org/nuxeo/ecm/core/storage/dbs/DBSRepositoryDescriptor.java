@@ -52,7 +52,7 @@ public class DBSRepositoryDescriptor implements Cloneable {
     }
 
     @XNode("idType")
-    public String idType; // "varchar", "uuid", "sequence"
+    public String idType; // "varchar", "uuid", "sequence", "timeuuid"
 
     protected FulltextDescriptor fulltextDescriptor = new FulltextDescriptor();
 
@@ -92,10 +92,12 @@ import org.nuxeo.ecm.core.api.CoreSession;
 import org.nuxeo.ecm.core.api.DocumentExistsException;
 import org.nuxeo.ecm.core.api.DocumentNotFoundException;
 import org.nuxeo.ecm.core.api.IterableQueryResult;
+import org.nuxeo.ecm.core.api.IterableRowQueryResult;
 import org.nuxeo.ecm.core.api.NuxeoException;
 import org.nuxeo.ecm.core.api.PartialList;
 import org.nuxeo.ecm.core.api.ScrollResult;
 import org.nuxeo.ecm.core.api.VersionModel;
+import org.nuxeo.ecm.core.api.impl.IterableRowQueryResultAdapter;
 import org.nuxeo.ecm.core.api.security.ACE;
 import org.nuxeo.ecm.core.api.security.ACL;
 import org.nuxeo.ecm.core.api.security.ACP;
@@ -1671,6 +1673,36 @@ public class DBSSession implements Session {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * DBS repositories materialize projections when querying, so the fetch size and detached mode don't apply and the
+     * result does not hold resources.
+     */
+    @Override
+    public IterableRowQueryResult queryAndFetchRows(String query, String queryType, QueryFilter queryFilter,
+            boolean distinctDocuments, int fetchSize, boolean detached, Object[] params) {
+        IterableQueryResult result = queryAndFetch(query, queryType, queryFilter, distinctDocuments, params);
+        return new IterableRowQueryResultAdapter(result, getColumnNames(query, queryType));
+    }
+
+    /** Gets the keys of the projection maps for a query, in select clause order. */
+    protected String[] getColumnNames(String query, String queryType) {
+        if (!NXQL.NXQL.equals(queryType)) {
+            return new String[0];
+        }
+        SelectClause selectClause = SQLQueryParser.parse(query).select;
+        if (selectClause.isEmpty()) {
+            return new String[] { NXQL.ECM_UUID };
+        }
+        List<String> names = new ArrayList<>(selectClause.count());
+        for (int i = 0; i < selectClause.count(); i++) {
+            Operand operand = selectClause.get(i);
+            names.add(operand instanceof Reference ? ((Reference) operand).name : selectClause.getAlias(i));
+        }
+        return names.toArray(new String[names.size()]);
+    }
+
     @Override
     public PartialList<Map<String, Serializable>> queryProjection(String query, String queryType,
             QueryFilter queryFilter, boolean distinctDocuments, long countUpTo, Object[] params) {
@@ -305,8 +305,8 @@ public class DBSTransactionState {
             seen.add(id);
             children.add(id);
         }
-        // fetch from repository
-        List<State> states = repository.queryKeyValue(KEY_PARENT_ID, parentId, seen);
+        // fetch from repository, only the ids are needed
+        List<State> states = repository.queryKeyValue(KEY_PARENT_ID, parentId, seen, Collections.singleton(KEY_ID));
         for (State state : states) {
             String id = (String) state.get(KEY_ID);
             if (transientStates.containsKey(id)) {
@@ -602,6 +602,7 @@ public class DBSTransactionState {
         if (!statesToCreate.isEmpty()) {
             repository.createStates(statesToCreate);
         }
+        List<StateUpdate> updates = new ArrayList<>();
         for (DBSDocumentState docState : transientStates.values()) {
             String id = docState.getId();
             if (transientCreated.contains(id)) {
@@ -630,15 +631,39 @@ public class DBSTransactionState {
                 } else {
                     changeTokenUpdater = null;
                 }
-                repository.updateState(id, diff, changeTokenUpdater);
+                updates.add(new StateUpdate(id, diff, changeTokenUpdater));
             }
             docState.setNotDirty();
         }
+        if (!updates.isEmpty()) {
+            repository.updateStates(updates);
+        }
         transientCreated.clear();
         userChangeIds.clear();
         scheduleWork(works);
     }
 
+    /**
+     * An update of a document, as passed to {@link DBSRepository#updateStates}.
+     *
+     * @since 9.3
+     */
+    public static class StateUpdate {
+
+        public final String id;
+
+        public final StateDiff diff;
+
+        /** How to get and update the change token (may be {@code null}). */
+        public final ChangeTokenUpdater changeTokenUpdater;
+
+        public StateUpdate(String id, StateDiff diff, ChangeTokenUpdater changeTokenUpdater) {
+            this.id = id;
+            this.diff = diff;
+            this.changeTokenUpdater = changeTokenUpdater;
+        }
+    }
+
     /**
      * Logic to get the conditions to use to match and update a change token.
      * <p>
@@ -19,9 +19,11 @@
 package org.nuxeo.ecm.core.storage.dbs;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyListOf;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
@@ -40,8 +42,10 @@ import java.util.stream.Collectors;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.nuxeo.ecm.core.api.ConcurrentUpdateException;
 import org.nuxeo.ecm.core.storage.State;
 import org.nuxeo.ecm.core.storage.State.StateDiff;
+import org.nuxeo.ecm.core.storage.dbs.DBSTransactionState.StateUpdate;
 
 public class TestDBSCachingRepository {
 
@@ -131,6 +135,32 @@ public class TestDBSCachingRepository {
         verify(subRepository, times(2)).readState(eq(id));
     }
 
+    @Test
+    public void testUpdateStatesWithConflict() {
+        String id1 = "ID1";
+        String id2 = "ID2";
+
+        // First add the states in cache
+        repository.readState(id1);
+        repository.readState(id2);
+
+        // Second update them, the update of id2 conflicts but the one of id1 is written
+        doThrow(new ConcurrentUpdateException(id2)).when(subRepository).updateStates(anyListOf(StateUpdate.class));
+        try {
+            repository.updateStates(Arrays.asList(new StateUpdate(id1, mock(StateDiff.class), null),
+                    new StateUpdate(id2, mock(StateDiff.class), null)));
+            fail("should throw");
+        } catch (ConcurrentUpdateException e) {
+            assertEquals(id2, e.getMessage());
+        }
+
+        // Check states are no longer in cache
+        repository.readState(id1);
+        repository.readState(id2);
+        verify(subRepository, times(2)).readState(eq(id1));
+        verify(subRepository, times(2)).readState(eq(id2));
+    }
+
     @Test
     public void testDeleteStates() {
         String id = "ID";
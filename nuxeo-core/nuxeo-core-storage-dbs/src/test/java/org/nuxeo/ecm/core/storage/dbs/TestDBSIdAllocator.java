@@ -0,0 +1,107 @@
+/*
+ * (C) Copyright 2017 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Florent Guillaume
+ */
+package org.nuxeo.ecm.core.storage.dbs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+public class TestDBSIdAllocator {
+
+    /** Simulates the database counter. */
+    protected static class Counter {
+
+        protected final AtomicLong value = new AtomicLong();
+
+        protected final AtomicLong reservations = new AtomicLong();
+
+        protected long reserve(long size) {
+            reservations.incrementAndGet();
+            return value.addAndGet(size) - size + 1;
+        }
+    }
+
+    @Test
+    public void testSequential() {
+        Counter counter = new Counter();
+        DBSIdAllocator allocator = new DBSIdAllocator("test", counter::reserve, 10, 1);
+        try {
+            for (long i = 1; i <= 25; i++) {
+                assertEquals(i, allocator.next());
+            }
+            // third block reserved, a fourth one maybe prefetched
+            assertTrue(counter.reservations.get() >= 3);
+        } finally {
+            allocator.close();
+        }
+    }
+
+    @Test
+    public void testConcurrentUnique() throws Exception {
+        Counter counter = new Counter();
+        DBSIdAllocator allocator = new DBSIdAllocator("test", counter::reserve, 100, 4);
+        int nThreads = 8;
+        int perThread = 10_000;
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(nThreads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < nThreads; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        ids.add(Long.valueOf(allocator.next()));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+            allocator.close();
+        }
+        assertEquals(nThreads * perThread, ids.size());
+        // no id outside of the reserved blocks
+        long max = counter.value.get();
+        assertTrue(ids.stream().allMatch(id -> id >= 1 && id <= max));
+    }
+
+    @Test
+    public void testTimeOrderedUUID() throws Exception {
+        String id1 = DBSIdAllocator.timeOrderedUUID();
+        Thread.sleep(2);
+        String id2 = DBSIdAllocator.timeOrderedUUID();
+        assertTrue(id1 + " / " + id2, id1.compareTo(id2) < 0);
+        UUID uuid = UUID.fromString(id1);
+        assertEquals(4, uuid.version());
+        assertEquals(2, uuid.variant());
+    }
+
+}
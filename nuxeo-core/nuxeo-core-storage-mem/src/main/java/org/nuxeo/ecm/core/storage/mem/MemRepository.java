@@ -69,6 +69,7 @@ import org.nuxeo.ecm.core.storage.State.StateDiff;
 import org.nuxeo.ecm.core.storage.StateHelper;
 import org.nuxeo.ecm.core.storage.dbs.DBSDocument;
 import org.nuxeo.ecm.core.storage.dbs.DBSExpressionEvaluator;
+import org.nuxeo.ecm.core.storage.dbs.DBSIdAllocator;
 import org.nuxeo.ecm.core.storage.dbs.DBSRepositoryBase;
 import org.nuxeo.ecm.core.storage.dbs.DBSSession.OrderByComparator;
 import org.nuxeo.ecm.core.storage.dbs.DBSTransactionState.ChangeTokenUpdater;
@@ -105,7 +106,7 @@ public class MemRepository extends DBSRepositoryBase {
 
     @Override
     public List<IdType> getAllowedIdTypes() {
-        return Collections.singletonList(IdType.varchar);
+        return Arrays.asList(IdType.varchar, IdType.timeuuid);
     }
 
     @Override
@@ -123,6 +124,8 @@ public class MemRepository extends DBSRepositoryBase {
     public String generateNewId() {
         if (DEBUG_UUIDS) {
             return "UUID_" + temporaryIdCounter.incrementAndGet();
+        } else if (idType == IdType.timeuuid) {
+            return DBSIdAllocator.timeOrderedUUID();
         } else {
             return UUID.randomUUID().toString();
         }
@@ -75,12 +75,16 @@ import org.nuxeo.ecm.core.storage.State;
 import org.nuxeo.ecm.core.storage.State.StateDiff;
 import org.nuxeo.ecm.core.storage.dbs.DBSDocument;
 import org.nuxeo.ecm.core.storage.dbs.DBSExpressionEvaluator;
+import org.nuxeo.ecm.core.storage.dbs.DBSIdAllocator;
 import org.nuxeo.ecm.core.storage.dbs.DBSRepositoryBase;
 import org.nuxeo.ecm.core.storage.dbs.DBSStateFlattener;
 import org.nuxeo.ecm.core.storage.dbs.DBSTransactionState.ChangeTokenUpdater;
+import org.nuxeo.ecm.core.storage.dbs.DBSTransactionState.StateUpdate;
 import org.nuxeo.runtime.api.Framework;
 
 import com.mongodb.BasicDBObject;
+import com.mongodb.BulkWriteOperation;
+import com.mongodb.BulkWriteResult;
 import com.mongodb.DB;
 import com.mongodb.DBCollection;
 import com.mongodb.DBCursor;
@@ -157,14 +161,11 @@ public class MongoDBRepository extends DBSRepositoryBase {
     /** True if we don't use MongoDB's native "_id" key to store the id. */
     protected boolean useCustomId;
 
-    /** Number of values still available in the in-memory sequence. */
-    protected long sequenceLeft;
+    /** Allocator of sequence ids, or {@code null} if ids are not sequences. */
+    protected DBSIdAllocator idAllocator;
 
-    /** Last value used from the in-memory sequence. */
-    protected long sequenceLastValue;
-
-    /** Sequence allocation block size. */
-    protected long sequenceBlockSize;
+    /** The cursor batch size, or 0 for the driver default. */
+    protected int cursorBatchSize;
 
     protected final MongoDBConverter converter;
 
@@ -187,21 +188,30 @@ public class MongoDBRepository extends DBSRepositoryBase {
         useCustomId = KEY_ID.equals(idKey);
         if (idType == IdType.sequence || DEBUG_UUIDS) {
             Integer sbs = descriptor.sequenceBlockSize;
-            sequenceBlockSize = sbs == null ? 1 : sbs.longValue();
-            sequenceLeft = 0;
-        }
+            long sequenceBlockSize = sbs == null ? 1 : sbs.longValue();
+            Integer ss = descriptor.sequenceStripes;
+            int sequenceStripes = ss != null ? ss.intValue()
+                    : sequenceBlockSize == 1 ? 1 : Runtime.getRuntime().availableProcessors();
+            idAllocator = new DBSIdAllocator(repositoryName, this::reserveSequenceBlock, sequenceBlockSize,
+                    sequenceStripes);
+        }
+        Integer cbs = descriptor.cursorBatchSize;
+        cursorBatchSize = cbs == null ? 0 : Math.max(cbs.intValue(), 0);
         converter = new MongoDBConverter(idKey);
         initRepository();
     }
 
     @Override
     public List<IdType> getAllowedIdTypes() {
-        return Arrays.asList(IdType.varchar, IdType.sequence);
+        return Arrays.asList(IdType.varchar, IdType.sequence, IdType.timeuuid);
     }
 
     @Override
     public void shutdown() {
         super.shutdown();
+        if (idAllocator != null) {
+            idAllocator.close();
+        }
         cursorService.clear();
         mongoClient.close();
     }
@@ -302,23 +312,25 @@ public class MongoDBRepository extends DBSRepositoryBase {
         initRoot();
     }
 
-    protected synchronized Long getNextSequenceId() {
-        if (sequenceLeft == 0) {
-            // allocate a new sequence block
-            // the database contains the last value from the last block
-            DBObject query = new BasicDBObject(MONGODB_ID, COUNTER_NAME_UUID);
-            DBObject update = new BasicDBObject(MONGODB_INC,
-                    new BasicDBObject(COUNTER_FIELD, Long.valueOf(sequenceBlockSize)));
-            DBObject idCounter = countersColl.findAndModify(query, null, null, false, update, true, false);
-            if (idCounter == null) {
-                throw new NuxeoException("Repository id counter not initialized");
-            }
-            sequenceLeft = sequenceBlockSize;
-            sequenceLastValue = ((Long) idCounter.get(COUNTER_FIELD)).longValue() - sequenceBlockSize;
+    /**
+     * Reserves a block of ids in the counters collection.
+     *
+     * @return the first id of the block
+     * @since 9.3
+     */
+    protected long reserveSequenceBlock(long size) {
+        // the database contains the last value from the last block
+        DBObject query = new BasicDBObject(MONGODB_ID, COUNTER_NAME_UUID);
+        DBObject update = new BasicDBObject(MONGODB_INC, new BasicDBObject(COUNTER_FIELD, Long.valueOf(size)));
+        DBObject idCounter = countersColl.findAndModify(query, null, null, false, update, true, false);
+        if (idCounter == null) {
+            throw new NuxeoException("Repository id counter not initialized");
         }
-        sequenceLeft--;
-        sequenceLastValue++;
-        return Long.valueOf(sequenceLastValue);
+        return ((Long) idCounter.get(COUNTER_FIELD)).longValue() - size + 1;
+    }
+
+    protected Long getNextSequenceId() {
+        return Long.valueOf(idAllocator.next());
     }
 
     @Override
@@ -329,6 +341,8 @@ public class MongoDBRepository extends DBSRepositoryBase {
                 return "UUID_" + id;
             }
             return id.toString();
+        } else if (idType == IdType.timeuuid) {
+            return DBSIdAllocator.timeOrderedUUID();
         } else {
             return UUID.randomUUID().toString();
         }
@@ -372,28 +386,7 @@ public class MongoDBRepository extends DBSRepositoryBase {
     public void updateState(String id, StateDiff diff, ChangeTokenUpdater changeTokenUpdater) {
         List<DBObject> updates = converter.diffToBson(diff);
         for (DBObject update : updates) {
-            DBObject query = new BasicDBObject(idKey, id);
-            if (changeTokenUpdater == null) {
-                if (log.isTraceEnabled()) {
-                    log.trace("MongoDB: UPDATE " + id + ": " + update);
-                }
-            } else {
-                // assume bson is identical to dbs internals
-                // condition works even if value is null
-                Map<String, Serializable> conditions = changeTokenUpdater.getConditions();
-                Map<String, Serializable> tokenUpdates = changeTokenUpdater.getUpdates();
-                if (update.containsField(MONGODB_SET)) {
-                    ((DBObject) update.get(MONGODB_SET)).putAll(tokenUpdates);
-                } else {
-                    DBObject set = new BasicDBObject();
-                    set.putAll(tokenUpdates);
-                    update.put(MONGODB_SET, set);
-                }
-                if (log.isTraceEnabled()) {
-                    log.trace("MongoDB: UPDATE " + id + ": IF " + conditions + " THEN " + update);
-                }
-                query.putAll(conditions);
-            }
+            DBObject query = getUpdateQuery(id, update, changeTokenUpdater);
             WriteResult w = coll.update(query, update);
             if (w.getN() != 1) {
                 log.trace("MongoDB:    -> CONCURRENT UPDATE: " + id);
@@ -404,6 +397,94 @@ public class MongoDBRepository extends DBSRepositoryBase {
         }
     }
 
+    /**
+     * Sends all the updates to the database in a single bulk operation.
+     * <p>
+     * The bulk is unordered unless a document needs several updates, which must then be applied in order.
+     */
+    @Override
+    public void updateStates(List<StateUpdate> stateUpdates) {
+        if (stateUpdates.isEmpty()) {
+            return;
+        }
+        if (stateUpdates.size() == 1) {
+            StateUpdate stateUpdate = stateUpdates.get(0);
+            updateState(stateUpdate.id, stateUpdate.diff, stateUpdate.changeTokenUpdater);
+            return;
+        }
+        List<List<DBObject>> updatesList = new ArrayList<>(stateUpdates.size());
+        boolean ordered = false;
+        for (StateUpdate stateUpdate : stateUpdates) {
+            List<DBObject> updates = converter.diffToBson(stateUpdate.diff);
+            updatesList.add(updates);
+            ordered = ordered || updates.size() > 1;
+        }
+        BulkWriteOperation bulk = ordered ? coll.initializeOrderedBulkOperation()
+                : coll.initializeUnorderedBulkOperation();
+        int expected = 0;
+        for (int i = 0; i < stateUpdates.size(); i++) {
+            StateUpdate stateUpdate = stateUpdates.get(i);
+            for (DBObject update : updatesList.get(i)) {
+                DBObject query = getUpdateQuery(stateUpdate.id, update, stateUpdate.changeTokenUpdater);
+                bulk.find(query).updateOne(update);
+                expected++;
+            }
+        }
+        BulkWriteResult result = bulk.execute();
+        if (result.getMatchedCount() != expected) {
+            String ids = String.join(", ", getUnmatchedIds(stateUpdates));
+            log.trace("MongoDB:    -> CONCURRENT UPDATE: " + ids);
+            throw new ConcurrentUpdateException(ids);
+        }
+    }
+
+    /**
+     * Finds the documents whose update did not match, after a bulk update. The other updates have been written.
+     */
+    protected List<String> getUnmatchedIds(List<StateUpdate> stateUpdates) {
+        List<String> ids = new ArrayList<>();
+        for (StateUpdate stateUpdate : stateUpdates) {
+            DBObject query = new BasicDBObject(idKey, stateUpdate.id);
+            if (stateUpdate.changeTokenUpdater != null) {
+                // after its updates, the conditions match the change token written by the last one
+                query.putAll(stateUpdate.changeTokenUpdater.getConditions());
+            }
+            if (coll.count(query) == 0) {
+                ids.add(stateUpdate.id);
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Gets the query matching the document to update, adding the change token conditions and updates if needed.
+     */
+    protected DBObject getUpdateQuery(String id, DBObject update, ChangeTokenUpdater changeTokenUpdater) {
+        DBObject query = new BasicDBObject(idKey, id);
+        if (changeTokenUpdater == null) {
+            if (log.isTraceEnabled()) {
+                log.trace("MongoDB: UPDATE " + id + ": " + update);
+            }
+        } else {
+            // assume bson is identical to dbs internals
+            // condition works even if value is null
+            Map<String, Serializable> conditions = changeTokenUpdater.getConditions();
+            Map<String, Serializable> tokenUpdates = changeTokenUpdater.getUpdates();
+            if (update.containsField(MONGODB_SET)) {
+                ((DBObject) update.get(MONGODB_SET)).putAll(tokenUpdates);
+            } else {
+                DBObject set = new BasicDBObject();
+                set.putAll(tokenUpdates);
+                update.put(MONGODB_SET, set);
+            }
+            if (log.isTraceEnabled()) {
+                log.trace("MongoDB: UPDATE " + id + ": IF " + conditions + " THEN " + update);
+            }
+            query.putAll(conditions);
+        }
+        return query;
+    }
+
     @Override
     public void deleteStates(Set<String> ids) {
         DBObject query = new BasicDBObject(idKey, new BasicDBObject(QueryOperators.IN, ids));
@@ -470,6 +551,21 @@ public class MongoDBRepository extends DBSRepositoryBase {
         return findAll(query, 0);
     }
 
+    @Override
+    public List<State> queryKeyValue(String key, Object value, Set<String> ignored, Set<String> projection) {
+        DBObject query = new BasicDBObject(converter.keyToBson(key), value);
+        addIgnoredIds(query, ignored);
+        DBObject fields = new BasicDBObject();
+        if (useCustomId) {
+            fields.put(MONGODB_ID, ZERO);
+        }
+        fields.put(idKey, ONE);
+        for (String k : projection) {
+            fields.put(converter.keyToBson(k), ONE);
+        }
+        return findAll(query, fields, 0);
+    }
+
     @Override
     public List<State> queryKeyValue(String key1, Object value1, String key2, Object value2, Set<String> ignored) {
         DBObject query = new BasicDBObject(converter.keyToBson(key1), value1);
@@ -494,6 +590,7 @@ public class MongoDBRepository extends DBSRepositoryBase {
             logQuery(query, fields);
         }
         try (DBCursor cursor = coll.find(query, fields)) {
+            setBatchSize(cursor, 0);
             for (DBObject ob : cursor) {
                 String id = (String) ob.get(idKey);
                 ids.add(id);
@@ -529,11 +626,24 @@ public class MongoDBRepository extends DBSRepositoryBase {
     }
 
     protected List<State> findAll(DBObject query, int sizeHint) {
+        return findAll(query, null, sizeHint);
+    }
+
+    /**
+     * Finds all the documents matching a query.
+     *
+     * @param query the query
+     * @param fields the fields to return, or {@code null} for all
+     * @param sizeHint the expected number of documents, or 0 if unknown
+     * @since 9.3
+     */
+    protected List<State> findAll(DBObject query, DBObject fields, int sizeHint) {
         if (log.isTraceEnabled()) {
-            logQuery(query, null);
+            logQuery(query, fields);
         }
         Set<String> seen = new HashSet<>();
-        try (DBCursor cursor = coll.find(query)) {
+        try (DBCursor cursor = coll.find(query, fields)) {
+            setBatchSize(cursor, sizeHint);
             List<State> list = new ArrayList<>(sizeHint);
             for (DBObject ob : cursor) {
                 if (!seen.add((String) ob.get(idKey))) {
@@ -547,6 +657,17 @@ public class MongoDBRepository extends DBSRepositoryBase {
         }
     }
 
+    /**
+     * Sets the batch size of a cursor. When the number of documents is known, they're fetched in one round-trip.
+     */
+    protected void setBatchSize(DBCursor cursor, int sizeHint) {
+        if (sizeHint > 0) {
+            cursor.batchSize(sizeHint);
+        } else if (cursorBatchSize > 0) {
+            cursor.batchSize(cursorBatchSize);
+        }
+    }
+
     protected DBObject justPresenceField() {
         return new BasicDBObject(MONGODB_ID, ONE);
     }
@@ -585,6 +706,7 @@ public class MongoDBRepository extends DBSRepositoryBase {
             if (orderBy != null) {
                 cursor.sort(orderBy);
             }
+            setBatchSize(cursor, limit);
             projections = new ArrayList<>();
             for (DBObject ob : cursor) {
                 State state = converter.bsonToState(ob);
@@ -43,6 +43,23 @@ public class MongoDBRepositoryDescriptor extends DBSRepositoryDescriptor {
     @XNode("sequenceBlockSize")
     public Integer sequenceBlockSize;
 
+    /**
+     * The number of independent sequence blocks used by concurrent threads. Defaults to 1 when the block size is 1,
+     * otherwise to the number of processors.
+     *
+     * @since 9.3
+     */
+    @XNode("sequenceStripes")
+    public Integer sequenceStripes;
+
+    /**
+     * The number of documents fetched in each round-trip by the cursors of queries, or 0 for the driver default.
+     *
+     * @since 9.3
+     */
+    @XNode("cursorBatchSize")
+    public Integer cursorBatchSize;
+
     @Override
     public MongoDBRepositoryDescriptor clone() {
         return (MongoDBRepositoryDescriptor) super.clone();
@@ -62,6 +79,12 @@ public class MongoDBRepositoryDescriptor extends DBSRepositoryDescriptor {
         if (other.sequenceBlockSize != null) {
             sequenceBlockSize = other.sequenceBlockSize;
         }
+        if (other.sequenceStripes != null) {
+            sequenceStripes = other.sequenceStripes;
+        }
+        if (other.cursorBatchSize != null) {
+            cursorBatchSize = other.cursorBatchSize;
+        }
     }
 
 }
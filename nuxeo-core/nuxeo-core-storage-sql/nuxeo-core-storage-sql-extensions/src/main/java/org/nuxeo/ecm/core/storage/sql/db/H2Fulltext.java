@@ -38,7 +38,11 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -47,7 +51,6 @@ import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.document.TextField;
-import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
@@ -61,7 +64,9 @@ import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.Collector;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.LeafCollector;
+import org.apache.lucene.search.ReferenceManager;
 import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.SearcherManager;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
 import org.apache.lucene.store.LockObtainFailedException;
@@ -74,12 +79,33 @@ import org.h2.util.StringUtils;
 
 /**
  * An optimized Lucene-based fulltext indexing trigger and search.
+ * <p>
+ * Searches use a shared searcher, refreshed from the index writer when needed, and the index is committed periodically
+ * in the background.
+ * <p>
+ * In near-real-time mode (system property {@value #NRT_PROP}), the changes from the triggers are queued and applied
+ * by a background indexer, and the shared searcher is only refreshed periodically (system property
+ * {@value #REFRESH_INTERVAL_PROP}, in milliseconds), so searches may not immediately see the latest changes.
  */
 public class H2Fulltext {
 
+    private static final Log log = LogFactory.getLog(H2Fulltext.class);
+
+    /** @since 9.3 */
+    public static final String NRT_PROP = "org.nuxeo.h2.fulltext.nrt";
+
+    /** @since 9.3 */
+    public static final String REFRESH_INTERVAL_PROP = "org.nuxeo.h2.fulltext.refreshInterval";
+
+    /** @since 9.3 */
+    public static final String COMMIT_INTERVAL_PROP = "org.nuxeo.h2.fulltext.commitInterval";
+
+    /** @since 9.3 */
+    public static final String QUEUE_SIZE_PROP = "org.nuxeo.h2.fulltext.queueSize";
+
     private static final Map<String, Analyzer> analyzers = new ConcurrentHashMap<>();
 
-    private static final Map<String, IndexWriter> indexWriters = new ConcurrentHashMap<>();
+    private static final Map<String, FulltextIndex> indexes = new ConcurrentHashMap<>();
 
     private static final String FT_SCHEMA = "NXFT";
 
@@ -107,6 +133,8 @@ public class H2Fulltext {
      * <li>NXFT_REINDEX()</li>
      * <li>NXFT_DROP_ALL()</li>
      * <li>NXFT_SEARCH(queryString, limitInt, offsetInt): result set</li>
+     * <li>NXFT_REBUILD()</li>
+     * <li>NXFT_STATS(): result set</li>
      * </ul>
      * It also adds a schema NXFT to the database where bookkeeping information is stored. This function may be called
      * from a Java application, or by using the SQL statements:
@@ -138,6 +166,8 @@ public class H2Fulltext {
             st.execute("CREATE ALIAS IF NOT EXISTS " + PREFIX + "REINDEX FOR \"" + className + ".reindex\"");
             st.execute("CREATE ALIAS IF NOT EXISTS " + PREFIX + "DROP_ALL FOR \"" + className + ".dropAll\"");
             st.execute("CREATE ALIAS IF NOT EXISTS " + PREFIX + "SEARCH FOR \"" + className + ".search\"");
+            st.execute("CREATE ALIAS IF NOT EXISTS " + PREFIX + "REBUILD FOR \"" + className + ".rebuild\"");
+            st.execute("CREATE ALIAS IF NOT EXISTS " + PREFIX + "STATS FOR \"" + className + ".stats\"");
         }
     }
 
@@ -225,6 +255,102 @@ public class H2Fulltext {
         }
     }
 
+    /**
+     * Rebuilds the fulltext index for this database from the existing rows, in bulk.
+     * <p>
+     * Unlike {@link #reindex}, triggers are kept and the documents are written directly, with a single commit at the
+     * end.
+     * <p>
+     * Usually called through:
+     *
+     * <pre>
+     *   CALL NXFT_REBUILD();
+     * </pre>
+     *
+     * @since 9.3
+     */
+    public static void rebuild(Connection conn) throws SQLException {
+        Map<String, String[]> tables = new HashMap<>();
+        String analyzerName = null;
+        try (Statement st = conn.createStatement()) {
+            try (ResultSet rs = st.executeQuery("SELECT SCHEMA, TABLE, ANALYZER FROM " + FT_TABLE)) {
+                while (rs.next()) {
+                    String schema = rs.getString(1);
+                    String table = rs.getString(2);
+                    tables.put(schema + '.' + table, new String[] { schema, table });
+                    analyzerName = rs.getString(3);
+                }
+            }
+        }
+        if (tables.isEmpty()) {
+            return;
+        }
+        FulltextIndex index = getIndex(getIndexName(conn), getIndexPath(conn), analyzerName);
+        try {
+            index.writer.deleteAll();
+            for (String[] schemaTable : tables.values()) {
+                String schema = schemaTable[0];
+                String table = schemaTable[1];
+                Trigger trigger = new Trigger();
+                trigger.init(conn, schema, null, table, false, org.h2.api.Trigger.INSERT);
+                try (Statement st = conn.createStatement()) {
+                    try (ResultSet rs = st.executeQuery("SELECT * FROM " + StringUtils.quoteIdentifier(schema) + '.'
+                            + StringUtils.quoteIdentifier(table))) {
+                        int n = rs.getMetaData().getColumnCount();
+                        Object[] row = new Object[n];
+                        while (rs.next()) {
+                            for (int i = 0; i < n; i++) {
+                                row[i] = rs.getObject(i + 1);
+                            }
+                            index.writer.addDocument(trigger.toDocument(row));
+                            index.indexedCount.incrementAndGet();
+                        }
+                    }
+                }
+            }
+            index.commit();
+            index.refresh(true);
+        } catch (IOException e) {
+            throw convertException(e);
+        }
+    }
+
+    /**
+     * Gets statistics about the fulltext indexes: number of pending changes (in near-real-time mode), number of
+     * indexed changes, number and cumulated time of commits and searcher refreshes.
+     * <p>
+     * Usually called through:
+     *
+     * <pre>
+     *   SELECT * FROM NXFT_STATS();
+     * </pre>
+     *
+     * @since 9.3
+     */
+    public static ResultSet stats(Connection conn) throws SQLException {
+        SimpleResultSet rs = new SimpleResultSet();
+        rs.addColumn("NAME", Types.VARCHAR, 0, 0);
+        rs.addColumn("NRT", Types.BOOLEAN, 0, 0);
+        rs.addColumn("PENDING", Types.BIGINT, 0, 0);
+        rs.addColumn("INDEXED", Types.BIGINT, 0, 0);
+        rs.addColumn("COMMITS", Types.BIGINT, 0, 0);
+        rs.addColumn("COMMIT_MILLIS", Types.BIGINT, 0, 0);
+        rs.addColumn("REFRESHES", Types.BIGINT, 0, 0);
+        rs.addColumn("REFRESH_MILLIS", Types.BIGINT, 0, 0);
+        if (conn.getMetaData().getURL().startsWith("jdbc:columnlist:")) {
+            // this is just to query the result set columns
+            return rs;
+        }
+        for (FulltextIndex index : indexes.values()) {
+            rs.addRow(index.name, Boolean.valueOf(index.nrt), Long.valueOf(index.queue.size()),
+                    Long.valueOf(index.indexedCount.get()), Long.valueOf(index.commitCount.get()),
+                    Long.valueOf(TimeUnit.NANOSECONDS.toMillis(index.commitTime.get())),
+                    Long.valueOf(index.refreshCount.get()),
+                    Long.valueOf(TimeUnit.NANOSECONDS.toMillis(index.refreshTime.get())));
+        }
+        return rs;
+    }
+
     /**
      * Creates a trigger for the indexes on a table.
      * <p>
@@ -332,15 +458,7 @@ public class H2Fulltext {
             return rs;
         }
 
-        // flush changes
-        final IndexWriter writer = getIndexWriter(getIndexName(conn), getIndexPath(conn), analyzerName);
-        if (writer.hasUncommittedChanges()) {
-            try {
-                writer.commit();
-            } catch (IOException cause) {
-                throw convertException(cause);
-            }
-        }
+        FulltextIndex index = getIndex(getIndexName(conn), getIndexPath(conn), analyzerName);
 
         // search index
         try {
@@ -350,10 +468,12 @@ public class H2Fulltext {
             QueryParser parser = new QueryParser(defaultField, analyzer);
             queryBuilder.add(parser.parse(text), BooleanClause.Occur.MUST);
 
-            try (IndexReader reader = DirectoryReader.open(writer.getDirectory())) {
-                IndexSearcher searcher = new IndexSearcher(reader);
-                Collector collector = new ResultSetCollector(rs, reader, type);
+            IndexSearcher searcher = index.acquire();
+            try {
+                Collector collector = new ResultSetCollector(rs, searcher.getIndexReader(), type);
                 searcher.search(queryBuilder.build(), collector);
+            } finally {
+                index.searcherManager.release(searcher);
             }
         } catch (SQLException | ParseException | IOException e) {
             throw convertException(e);
@@ -465,36 +585,36 @@ public class H2Fulltext {
 
     }
 
-    private static IndexWriter getIndexWriter(String name, String path, String analyzer) throws SQLException {
-        IndexWriter indexWriter = indexWriters.get(name);
-        if (indexWriter != null) {
-            return indexWriter;
+    private static FulltextIndex getIndex(String name, String path, String analyzer) throws SQLException {
+        FulltextIndex index = indexes.get(name);
+        if (index != null) {
+            return index;
         }
-        synchronized (indexWriters) {
-            indexWriter = indexWriters.get(name);
-            if (indexWriter != null) {
-                return indexWriter;
+        synchronized (indexes) {
+            index = indexes.get(name);
+            if (index != null) {
+                return index;
             }
             try {
                 Directory dir = path == null ? new RAMDirectory() : FSDirectory.open(Paths.get(path));
                 Analyzer an = getAnalyzer(analyzer);
                 IndexWriterConfig iwc = new IndexWriterConfig(an);
                 iwc.setOpenMode(OpenMode.CREATE_OR_APPEND);
-                indexWriter = new IndexWriter(dir, iwc);
+                index = new FulltextIndex(name, new IndexWriter(dir, iwc));
             } catch (LockObtainFailedException e) {
                 throw convertException("Cannot open fulltext index " + path, e);
             } catch (IOException e) {
                 throw convertException(e);
             }
-            indexWriters.put(name, indexWriter);
-            return indexWriter;
+            indexes.put(name, index);
+            return index;
         }
     }
 
     private static void removeIndexFiles(Connection conn) throws SQLException {
         String path = getIndexPath(conn);
         try {
-            IndexWriter index = indexWriters.remove(path);
+            FulltextIndex index = indexes.remove(getIndexName(conn));
             if (index != null) {
                 try {
                     index.close();
@@ -596,7 +716,7 @@ public class H2Fulltext {
 
         private String indexPath;
 
-        private IndexWriter indexWriter;
+        private FulltextIndex index;
 
         // DEBUG
         private Exception lastIndexWriterClose;
@@ -686,7 +806,7 @@ public class H2Fulltext {
                         // only one call actually needed for this:
                         indexName = getIndexName(conn);
                         indexPath = getIndexPath(conn);
-                        indexWriter = getIndexWriter(indexName, indexPath, analyzerName);
+                        this.index = getIndex(indexName, indexPath, analyzerName);
                     }
 
                 }
@@ -698,18 +818,26 @@ public class H2Fulltext {
          */
         @Override
         public void fire(Connection conn, Object[] oldRow, Object[] newRow) throws SQLException {
-            if (indexWriter == null) {
+            if (index == null) {
                 throw new SQLException("Fulltext index was not initialized");
             }
+            String newKey = newRow == null ? null : asString(newRow[primaryKeyIndex], primaryKeyType);
             if (oldRow != null) {
-                delete(oldRow);
+                String oldKey = asString(oldRow[primaryKeyIndex], primaryKeyType);
+                if (!oldKey.equals(newKey)) {
+                    update(oldKey, null);
+                }
             }
             if (newRow != null) {
-                insert(newRow);
+                // replaces any previous document with the same key
+                update(newKey, toDocument(newRow));
             }
         }
 
-        private void insert(Object[] row) throws SQLException {
+        /**
+         * Creates the Lucene document for a row.
+         */
+        protected Document toDocument(Object[] row) throws SQLException {
             Document doc = new Document();
             String key = asString(row[primaryKeyIndex], primaryKeyType);
             // StringField is not tokenized
@@ -732,9 +860,12 @@ public class H2Fulltext {
                 TextField textField = new TextField(fieldForIndex(indexName), buf.toString(), Field.Store.NO);
                 doc.add(textField);
             }
+            return doc;
+        }
 
+        private void update(String key, Document doc) throws SQLException {
             try {
-                indexWriter.addDocument(doc);
+                index.update(key, doc);
             } catch (IOException e) {
                 throw convertException(e);
             } catch (org.apache.lucene.store.AlreadyClosedException e) {
@@ -745,28 +876,19 @@ public class H2Fulltext {
             }
         }
 
-        private void delete(Object[] row) throws SQLException {
-            String primaryKey = asString(row[primaryKeyIndex], primaryKeyType);
-            try {
-                indexWriter.deleteDocuments(new Term(FIELD_KEY, primaryKey));
-            } catch (IOException e) {
-                throw convertException(e);
-            }
-        }
-
         @Override
         public void close() throws SQLException {
-            if (indexWriter != null) {
+            if (index != null) {
                 try {
                     // DEBUG
                     lastIndexWriterClose = new RuntimeException("debug stack trace");
                     lastIndexWriterCloseThread = Thread.currentThread().getName();
-                    indexWriter.close();
-                    indexWriter = null;
+                    index.close();
+                    index = null;
                 } catch (IOException e) {
                     throw convertException(e);
                 } finally {
-                    indexWriters.remove(indexName);
+                    indexes.remove(indexName);
                 }
             }
         }
@@ -777,4 +899,203 @@ public class H2Fulltext {
         }
     }
 
+    /**
+     * A Lucene index with its writer, its shared searcher, and its background indexing thread.
+     *
+     * @since 9.3
+     */
+    protected static class FulltextIndex implements Runnable {
+
+        /** A queued change: a document to index, or a deletion if the document is {@code null}. */
+        protected static class Change {
+
+            protected final String key;
+
+            protected final Document doc;
+
+            protected Change(String key, Document doc) {
+                this.key = key;
+                this.doc = doc;
+            }
+        }
+
+        protected static final Change CLOSE = new Change(null, null);
+
+        protected final String name;
+
+        protected final IndexWriter writer;
+
+        protected final SearcherManager searcherManager;
+
+        protected final boolean nrt;
+
+        protected final long refreshInterval;
+
+        protected final long commitInterval;
+
+        protected final BlockingQueue<Change> queue;
+
+        protected final Thread thread;
+
+        protected volatile boolean closed;
+
+        protected final AtomicLong indexedCount = new AtomicLong();
+
+        protected final AtomicLong commitCount = new AtomicLong();
+
+        protected final AtomicLong commitTime = new AtomicLong();
+
+        protected final AtomicLong refreshCount = new AtomicLong();
+
+        protected final AtomicLong refreshTime = new AtomicLong();
+
+        protected FulltextIndex(String name, IndexWriter writer) throws IOException {
+            this.name = name;
+            this.writer = writer;
+            searcherManager = new SearcherManager(writer, true, null);
+            searcherManager.addListener(new ReferenceManager.RefreshListener() {
+                @Override
+                public void beforeRefresh() {
+                }
+
+                @Override
+                public void afterRefresh(boolean didRefresh) {
+                    if (didRefresh) {
+                        refreshCount.incrementAndGet();
+                    }
+                }
+            });
+            nrt = Boolean.getBoolean(NRT_PROP);
+            refreshInterval = Long.getLong(REFRESH_INTERVAL_PROP, 1000).longValue();
+            commitInterval = Long.getLong(COMMIT_INTERVAL_PROP, 5000).longValue();
+            queue = new LinkedBlockingQueue<>(Integer.getInteger(QUEUE_SIZE_PROP, 10000).intValue());
+            thread = new Thread(this, "Nuxeo-H2Fulltext-" + name);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        /**
+         * Indexes or deletes the document with the given key, directly or through the queue in near-real-time mode.
+         */
+        protected void update(String key, Document doc) throws IOException {
+            if (!nrt) {
+                apply(new Change(key, doc));
+                return;
+            }
+            try {
+                // blocks if the indexer is late
+                queue.put(new Change(key, doc));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            }
+        }
+
+        protected void apply(Change change) throws IOException {
+            Term term = new Term(FIELD_KEY, change.key);
+            if (change.doc == null) {
+                writer.deleteDocuments(term);
+            } else {
+                writer.updateDocument(term, change.doc);
+            }
+            indexedCount.incrementAndGet();
+        }
+
+        /**
+         * Acquires the shared searcher, to be released through the searcher manager. Outside of near-real-time mode,
+         * the searcher is first refreshed to see all the changes.
+         */
+        protected IndexSearcher acquire() throws IOException {
+            if (!nrt) {
+                refresh(true);
+            }
+            return searcherManager.acquire();
+        }
+
+        protected void refresh(boolean blocking) throws IOException {
+            long t0 = System.nanoTime();
+            if (blocking) {
+                searcherManager.maybeRefreshBlocking();
+            } else {
+                searcherManager.maybeRefresh();
+            }
+            refreshTime.addAndGet(System.nanoTime() - t0);
+        }
+
+        protected void commit() throws IOException {
+            if (!writer.hasUncommittedChanges()) {
+                return;
+            }
+            long t0 = System.nanoTime();
+            writer.commit();
+            commitTime.addAndGet(System.nanoTime() - t0);
+            commitCount.incrementAndGet();
+        }
+
+        /**
+         * Background indexing: applies the queued changes, and periodically refreshes the searcher and commits.
+         */
+        @Override
+        public void run() {
+            long now = System.currentTimeMillis();
+            long nextRefresh = now + refreshInterval;
+            long nextCommit = now + commitInterval;
+            while (!closed) {
+                try {
+                    long wait = Math.max(1, Math.min(nrt ? nextRefresh : nextCommit, nextCommit) - now);
+                    Change change = queue.poll(wait, TimeUnit.MILLISECONDS);
+                    while (change != null && change != CLOSE) {
+                        apply(change);
+                        change = queue.poll();
+                    }
+                    now = System.currentTimeMillis();
+                    if (nrt && now >= nextRefresh) {
+                        refresh(false);
+                        nextRefresh = now + refreshInterval;
+                    }
+                    if (now >= nextCommit) {
+                        commit();
+                        nextCommit = now + commitInterval;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                } catch (IOException | RuntimeException e) {
+                    log.error("Error in background fulltext indexing of: " + name, e);
+                }
+            }
+        }
+
+        /**
+         * Stops the indexer, then applies the remaining queued changes and closes the index.
+         */
+        protected void close() throws IOException {
+            closed = true;
+            // wakes up the indexer if it's waiting for changes; if the queue is full the indexer isn't waiting, and it
+            // sees the flag once it has applied them
+            queue.offer(CLOSE);
+            // the changes left must be applied after those of the indexer, so wait for it to stop
+            boolean interrupted = false;
+            for (;;) {
+                try {
+                    thread.join();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            // apply what's left, in order
+            for (Change change; (change = queue.poll()) != null;) {
+                if (change != CLOSE) {
+                    apply(change);
+                }
+            }
+            searcherManager.close();
+            writer.close();
+        }
+    }
+
 }
@@ -22,11 +22,32 @@ package org.nuxeo.ecm.core.storage.sql.db;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.Set;
 
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.RAMDirectory;
 import org.junit.Test;
+import org.nuxeo.ecm.core.storage.sql.db.H2Fulltext.FulltextIndex;
 
 /**
  * @author Florent Guillaume
@@ -91,4 +112,156 @@ public class TestEmbeddedFunctions {
         checkMatchesFullText(true, "abcdef", "abc%");
     }
 
+    protected static Connection openFulltextDatabase(String name) throws SQLException {
+        Connection conn = DriverManager.getConnection("jdbc:h2:mem:" + name);
+        H2Fulltext.init(conn);
+        try (Statement st = conn.createStatement()) {
+            st.execute("CREATE TABLE T(ID VARCHAR PRIMARY KEY, TXT VARCHAR)");
+        }
+        return conn;
+    }
+
+    protected static void createFulltextIndex(Connection conn) throws SQLException {
+        H2Fulltext.createIndex(conn, null, "PUBLIC", "T", "(TXT)", StandardAnalyzer.class.getName());
+    }
+
+    protected static void execute(Connection conn, String sql, String... params) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            for (int i = 0; i < params.length; i++) {
+                ps.setString(i + 1, params[i]);
+            }
+            ps.execute();
+        }
+    }
+
+    protected static Set<String> search(Connection conn, String text) throws SQLException {
+        Set<String> ids = new HashSet<>();
+        try (ResultSet rs = H2Fulltext.search(conn, null, text)) {
+            while (rs.next()) {
+                ids.add(rs.getString(1));
+            }
+        }
+        return ids;
+    }
+
+    protected static Set<String> waitForSearch(Connection conn, String text, Set<String> expected)
+            throws Exception {
+        Set<String> ids = search(conn, text);
+        for (int i = 0; i < 100 && !ids.equals(expected); i++) {
+            Thread.sleep(100);
+            ids = search(conn, text);
+        }
+        return ids;
+    }
+
+    /** Gets the NXFT_STATS() columns of the database's index: NRT, PENDING, INDEXED. */
+    protected static Object[] getStats(Connection conn) throws SQLException {
+        String name = H2Fulltext.getIndexName(conn);
+        try (ResultSet rs = H2Fulltext.stats(conn)) {
+            while (rs.next()) {
+                if (name.equals(rs.getString("NAME"))) {
+                    return new Object[] { Boolean.valueOf(rs.getBoolean("NRT")), Long.valueOf(rs.getLong("PENDING")),
+                            Long.valueOf(rs.getLong("INDEXED")) };
+                }
+            }
+        }
+        return null;
+    }
+
+    @Test
+    public void testFulltextRebuildAndStats() throws Exception {
+        try (Connection conn = openFulltextDatabase("testFulltextRebuild")) {
+            // rows existing before the index
+            execute(conn, "INSERT INTO T VALUES(?, ?)", "1", "hello world");
+            execute(conn, "INSERT INTO T VALUES(?, ?)", "2", "goodbye world");
+            createFulltextIndex(conn);
+            assertEquals(Collections.emptySet(), search(conn, "world"));
+
+            H2Fulltext.rebuild(conn);
+            assertEquals(new HashSet<>(Arrays.asList("1", "2")), search(conn, "world"));
+
+            // changes after the rebuild are indexed by the trigger
+            execute(conn, "INSERT INTO T VALUES(?, ?)", "3", "hello again");
+            execute(conn, "DELETE FROM T WHERE ID = ?", "1");
+            assertEquals(Collections.singleton("3"), search(conn, "hello"));
+
+            Object[] stats = getStats(conn);
+            assertEquals(Boolean.FALSE, stats[0]);
+            assertEquals(Long.valueOf(0), stats[1]);
+            assertEquals(Long.valueOf(4), stats[2]); // 2 rebuilt, 1 insert, 1 delete
+        }
+    }
+
+    @Test
+    public void testFulltextNearRealTime() throws Exception {
+        System.setProperty(H2Fulltext.NRT_PROP, "true");
+        System.setProperty(H2Fulltext.REFRESH_INTERVAL_PROP, "50");
+        System.setProperty(H2Fulltext.QUEUE_SIZE_PROP, "2");
+        try (Connection conn = openFulltextDatabase("testFulltextNearRealTime")) {
+            createFulltextIndex(conn);
+            Set<String> expected = new HashSet<>();
+            // more changes than the queue holds, the triggers wait for the indexer
+            for (int i = 0; i < 20; i++) {
+                execute(conn, "INSERT INTO T VALUES(?, ?)", String.valueOf(i), "common text " + i);
+                expected.add(String.valueOf(i));
+            }
+            assertEquals(expected, waitForSearch(conn, "common", expected));
+
+            execute(conn, "UPDATE T SET TXT = ? WHERE ID = ?", "changed", "1");
+            execute(conn, "DELETE FROM T WHERE ID = ?", "2");
+            expected.remove("1");
+            expected.remove("2");
+            assertEquals(expected, waitForSearch(conn, "common", expected));
+            assertEquals(Collections.singleton("1"), search(conn, "changed"));
+
+            Object[] stats = getStats(conn);
+            assertEquals(Boolean.TRUE, stats[0]);
+            assertEquals(Long.valueOf(0), stats[1]);
+            assertEquals(Long.valueOf(22), stats[2]);
+        } finally {
+            System.clearProperty(H2Fulltext.NRT_PROP);
+            System.clearProperty(H2Fulltext.REFRESH_INTERVAL_PROP);
+            System.clearProperty(H2Fulltext.QUEUE_SIZE_PROP);
+        }
+    }
+
+    @Test
+    public void testFulltextCloseAppliesQueuedChangesInOrder() throws Exception {
+        System.setProperty(H2Fulltext.NRT_PROP, "true");
+        System.setProperty(H2Fulltext.QUEUE_SIZE_PROP, "2");
+        RAMDirectory dir = new RAMDirectory();
+        try {
+            FulltextIndex index = new FulltextIndex("testClose",
+                    new IndexWriter(dir, new IndexWriterConfig(new StandardAnalyzer())));
+            // successive versions of the same keys, ending with a deletion for odd keys
+            for (int v = 0; v < 10; v++) {
+                for (int k = 0; k < 10; k++) {
+                    Document doc = new Document();
+                    doc.add(new StringField("KEY", "k" + k, Field.Store.YES));
+                    doc.add(new StringField("VERSION", "v" + v, Field.Store.YES));
+                    index.update("k" + k, doc);
+                }
+            }
+            for (int k = 1; k < 10; k += 2) {
+                index.update("k" + k, null);
+            }
+            // the queue is likely full
+            index.close();
+            assertFalse(index.thread.isAlive());
+            assertTrue(index.queue.isEmpty());
+        } finally {
+            System.clearProperty(H2Fulltext.NRT_PROP);
+            System.clearProperty(H2Fulltext.QUEUE_SIZE_PROP);
+        }
+        try (DirectoryReader reader = DirectoryReader.open(dir)) {
+            IndexSearcher searcher = new IndexSearcher(reader);
+            assertEquals(5, reader.numDocs());
+            for (int k = 0; k < 10; k++) {
+                int expected = k % 2 == 0 ? 1 : 0;
+                assertEquals(expected, searcher.count(new TermQuery(new Term("KEY", "k" + k))));
+            }
+            assertEquals(5, searcher.count(new TermQuery(new Term("VERSION", "v9"))));
+        }
+    }
+
 }
@@ -4229,6 +4229,72 @@ public class TestSQLBackend extends SQLBackendTestCase {
         assertEquals(0, jdbc.executeCount);
     }
 
+    @Test
+    public void testSelectionTooBig() throws Exception {
+        Session session = repository.getConnection();
+        Node root = session.getRootNode();
+        Node folder = session.addChildNode(root, "folder", null, "TestDoc", false);
+        for (int i = 0; i < 5; i++) {
+            session.addChildNode(folder, "doc" + i, null, "TestDoc", false);
+        }
+        session.save();
+        session.close();
+
+        session = repository.getConnection();
+        PersistenceContext context = ((SessionImpl) session).context;
+        context.maxSelectionSize = 2;
+        folder = session.getNodeByPath("/folder", null);
+        assertEquals(5, session.getChildren(folder, null, false).size());
+        // not kept as complete
+        assertNull(context.hierNonComplex.getSelectionOrNull(folder.getId()).getIds());
+
+        // lookups by name use the database but see unsaved changes
+        assertNotNull(session.getChildNode(folder, "doc0", false));
+        Node doc1 = session.getChildNode(folder, "doc1", false);
+        session.removeNode(doc1);
+        assertNull(session.getChildNode(folder, "doc1", false));
+        Node doc2 = session.getChildNode(folder, "doc2", false);
+        session.move(doc2, folder, "renamed");
+        assertNull(session.getChildNode(folder, "doc2", false));
+        assertNotNull(session.getChildNode(folder, "renamed", false));
+        session.addChildNode(folder, "doc5", null, "TestDoc", false);
+        assertNotNull(session.getChildNode(folder, "doc5", false));
+        assertEquals(5, session.getChildren(folder, null, false).size());
+    }
+
+    @Test
+    public void testSelectionsEvictedByCount() throws Exception {
+        Session session = repository.getConnection();
+        Node root = session.getRootNode();
+        for (int i = 0; i < 5; i++) {
+            Node folder = session.addChildNode(root, "folder" + i, null, "TestDoc", false);
+            session.addChildNode(folder, "doc", null, "TestDoc", false);
+        }
+        session.addChildNode(root, "empty", null, "TestDoc", false);
+        session.save();
+        session.close();
+
+        session = repository.getConnection();
+        PersistenceContext context = ((SessionImpl) session).context;
+        context.maxSelectionCount = 2;
+        // empty selections are not tracked
+        Node empty = session.getNodeByPath("/empty", null);
+        assertEquals(0, session.getChildren(empty, null, false).size());
+        Selection emptySelection = context.hierNonComplex.getSelectionOrNull(empty.getId());
+        assertNotNull(emptySelection);
+        assertFalse(context.selectionsLRU.containsKey(emptySelection));
+        // least recently used selections are evicted beyond the maximum count
+        List<Serializable> folderIds = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Node folder = session.getNodeByPath("/folder" + i, null);
+            folderIds.add(folder.getId());
+            assertEquals(1, session.getChildren(folder, null, false).size());
+            assertTrue(context.selectionsLRU.size() <= 2);
+        }
+        assertNull(context.hierNonComplex.getSelectionOrNull(folderIds.get(0)));
+        assertNotNull(context.hierNonComplex.getSelectionOrNull(folderIds.get(4)));
+    }
+
     @Test
     public void testPathDeep() throws Exception {
         Session session = repository.getConnection();
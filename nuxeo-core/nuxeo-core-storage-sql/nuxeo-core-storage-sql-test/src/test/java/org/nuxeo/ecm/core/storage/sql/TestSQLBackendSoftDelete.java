@@ -115,4 +115,27 @@ public class TestSQLBackendSoftDelete extends TestSQLBackend {
         assertEquals(7, repoMgmt.cleanupDeletedDocuments(0, null));
     }
 
+    @Test
+    public void testSoftDeleteMaxIsBatchBound() throws Exception {
+        SQLRepositoryService sqlRepositoryService = Framework.getService(SQLRepositoryService.class);
+        Session session = repository.getConnection();
+        Node root = session.getRootNode();
+        Node folder = session.addChildNode(root, "folder", null, "TestDoc", false);
+        for (int i = 0; i < 3; i++) {
+            session.addChildNode(folder, "doc" + i, null, "TestDoc", false);
+            Node sub = session.addChildNode(folder, "sub" + i, null, "TestDoc", false);
+            session.addChildNode(sub, "doc", null, "TestDoc", false);
+        }
+        session.save();
+        session.removeNode(folder);
+        session.save();
+        RepositoryManagement repoMgmt = sqlRepositoryService.getRepository(repository.getName());
+        assertEquals(10, repoMgmt.countDeletedDocuments(null));
+        // 6 leaves then only 1 of the 3 subfolders, never more than the max
+        assertEquals(7, repoMgmt.cleanupDeletedDocuments(7, null));
+        assertEquals(3, repoMgmt.countDeletedDocuments(null));
+        assertEquals(3, repoMgmt.cleanupDeletedDocuments(0, null));
+        assertEquals(0, repoMgmt.countDeletedDocuments(null));
+    }
+
 }
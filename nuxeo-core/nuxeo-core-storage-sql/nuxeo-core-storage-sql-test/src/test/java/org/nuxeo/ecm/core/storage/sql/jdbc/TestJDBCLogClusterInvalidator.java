@@ -0,0 +1,261 @@
+/*
+ * (C) Copyright 2017 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Florent Guillaume
+ */
+package org.nuxeo.ecm.core.storage.sql.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.nuxeo.ecm.core.api.ConcurrentUpdateException;
+import org.nuxeo.ecm.core.api.NuxeoException;
+import org.nuxeo.ecm.core.storage.sql.DatabaseHelper;
+import org.nuxeo.ecm.core.storage.sql.Invalidations;
+import org.nuxeo.ecm.core.storage.sql.Mapper;
+import org.nuxeo.ecm.core.storage.sql.RepositoryDescriptor;
+import org.nuxeo.ecm.core.storage.sql.RepositoryImpl;
+import org.nuxeo.ecm.core.storage.sql.RowId;
+import org.nuxeo.ecm.core.storage.sql.SQLBackendTestCase;
+
+import com.codahale.metrics.Counter;
+
+public class TestJDBCLogClusterInvalidator extends SQLBackendTestCase {
+
+    protected List<JDBCLogClusterInvalidator> invalidators = new ArrayList<>();
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        deployContrib("org.nuxeo.ecm.core.storage.sql.test.tests", "OSGI-INF/test-backend-core-types-contrib.xml");
+    }
+
+    @Override
+    protected void postSetUp() throws Exception {
+        assumeTrue("Database does not support clustering", DatabaseHelper.DATABASE.supportsClustering());
+        repository = newRepository(500);
+        // initialize the repository and create the log table
+        repository.getConnection().close();
+    }
+
+    @Override
+    protected RepositoryDescriptor newDescriptor(String name, long clusteringDelay) {
+        RepositoryDescriptor descriptor = super.newDescriptor(name, clusteringDelay);
+        descriptor.clusterInvalidatorClass = JDBCLogClusterInvalidator.class;
+        return descriptor;
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        for (JDBCLogClusterInvalidator invalidator : invalidators) {
+            invalidator.close();
+        }
+        super.tearDown();
+    }
+
+    /**
+     * Creates an invalidator whose log is only read when the test calls {@link JDBCLogClusterInvalidator#poll}.
+     */
+    protected JDBCLogClusterInvalidator newInvalidator(String nodeId) {
+        JDBCLogClusterInvalidator invalidator = new JDBCLogClusterInvalidator() {
+            @Override
+            protected void startPoller() {
+                // polled by the test
+            }
+        };
+        invalidator.initialize(nodeId, (RepositoryImpl) repository);
+        invalidators.add(invalidator);
+        return invalidator;
+    }
+
+    protected static Invalidations newInvalidations(String... ids) {
+        Invalidations invalidations = new Invalidations();
+        for (String id : ids) {
+            invalidations.addModified(new RowId("hierarchy", id));
+        }
+        return invalidations;
+    }
+
+    protected static long[] getBounds(JDBCLogClusterInvalidator invalidator) {
+        synchronized (invalidator.mapper) {
+            return invalidator.mapper.getClusterInvalidationsLogBounds();
+        }
+    }
+
+    @Test
+    public void testPoll() {
+        JDBCLogClusterInvalidator inv1 = newInvalidator("1");
+        JDBCLogClusterInvalidator inv2 = newInvalidator("2");
+
+        inv1.sendInvalidations(newInvalidations("id1"));
+        inv1.sendInvalidations(newInvalidations("id2"));
+
+        assertFalse(inv2.poll());
+        Invalidations received = inv2.receiveInvalidations();
+        assertNotNull(received);
+        assertFalse(received.all);
+        assertEquals(new HashSet<>(Arrays.asList(new RowId("hierarchy", "id1"), new RowId("hierarchy", "id2"))),
+                received.modified);
+        assertEquals(getBounds(inv2)[1], inv2.lastSeq);
+        assertEquals(0, inv2.backlog);
+        // already returned
+        assertNull(inv2.receiveInvalidations());
+
+        // a node doesn't receive its own records but still moves past them
+        inv1.poll();
+        assertNull(inv1.receiveInvalidations());
+        assertEquals(inv2.lastSeq, inv1.lastSeq);
+    }
+
+    @Test
+    public void testPollPages() {
+        JDBCLogClusterInvalidator inv1 = newInvalidator("1");
+        JDBCLogClusterInvalidator inv2 = newInvalidator("2");
+        inv2.pageSize = 2;
+
+        inv1.sendInvalidations(newInvalidations("id1"));
+        inv1.sendInvalidations(newInvalidations("id2"));
+        inv1.sendInvalidations(newInvalidations("id3"));
+
+        // a full page means there may be more to read
+        assertTrue(inv2.poll());
+        assertEquals(1, inv2.backlog);
+        assertFalse(inv2.poll());
+        assertEquals(0, inv2.backlog);
+        assertEquals(3, inv2.receiveInvalidations().modified.size());
+    }
+
+    @Test
+    public void testPollBacklogInvalidatesAll() {
+        JDBCLogClusterInvalidator inv1 = newInvalidator("1");
+        JDBCLogClusterInvalidator inv2 = newInvalidator("2");
+        inv2.maxBacklog = 2;
+        long flushes = inv2.flushCount.getCount();
+
+        inv1.sendInvalidations(newInvalidations("id1"));
+        inv1.sendInvalidations(newInvalidations("id2"));
+        inv1.sendInvalidations(newInvalidations("id3"));
+
+        assertFalse(inv2.poll());
+        assertTrue(inv2.receiveInvalidations().all);
+        assertEquals(flushes + 1, inv2.flushCount.getCount());
+        assertEquals(getBounds(inv2)[1], inv2.lastSeq);
+    }
+
+    @Test
+    public void testPurge() throws Exception {
+        JDBCLogClusterInvalidator inv1 = newInvalidator("1");
+        JDBCLogClusterInvalidator inv2 = newInvalidator("2");
+        // never polled, will miss the purged records
+        JDBCLogClusterInvalidator inv3 = newInvalidator("3");
+
+        inv1.sendInvalidations(newInvalidations("id1"));
+        inv1.sendInvalidations(newInvalidations("id2"));
+        inv1.sendInvalidations(newInvalidations("id3"));
+        long maxSeq = getBounds(inv1)[1];
+        Thread.sleep(10); // records strictly older than the purge time
+
+        // not purged before the purge interval
+        inv2.retentionMillis = 0;
+        inv2.lastPurgeTimeMillis = Long.MAX_VALUE;
+        assertFalse(inv2.poll()); // reads the records
+        assertFalse(inv2.poll()); // nothing more, checks for purge
+        assertTrue(getBounds(inv2)[0] <= maxSeq - 2);
+
+        // purged, the most recent record is kept
+        inv2.lastPurgeTimeMillis = 0;
+        assertFalse(inv2.poll());
+        assertEquals(maxSeq, getBounds(inv2)[0]);
+        assertEquals(maxSeq, getBounds(inv2)[1]);
+
+        // a node that missed purged records invalidates all
+        assertFalse(inv3.poll());
+        assertTrue(inv3.receiveInvalidations().all);
+        assertEquals(maxSeq, inv3.lastSeq);
+
+        // sequence numbers keep increasing after a purge
+        inv1.sendInvalidations(newInvalidations("id4"));
+        assertEquals(maxSeq + 1, getBounds(inv1)[1]);
+        assertFalse(inv2.poll());
+        assertEquals(Arrays.asList(new RowId("hierarchy", "id4")),
+                new ArrayList<>(inv2.receiveInvalidations().modified));
+    }
+
+    @Test
+    public void testSendRetriesOnlyConcurrentUpdates() {
+        AtomicInteger calls = new AtomicInteger();
+        JDBCLogClusterInvalidator inv = new JDBCLogClusterInvalidator();
+        inv.sentCount = new Counter();
+
+        // conflicts on the sequence number are retried
+        inv.mapper = newMapper(calls, new ConcurrentUpdateException("conflict"), 2);
+        inv.sendInvalidations(newInvalidations("id1"));
+        assertEquals(3, calls.get());
+        assertEquals(1, inv.sentCount.getCount());
+
+        // too many conflicts
+        calls.set(0);
+        inv.mapper = newMapper(calls, new ConcurrentUpdateException("conflict"), Integer.MAX_VALUE);
+        try {
+            inv.sendInvalidations(newInvalidations("id1"));
+            fail("should throw");
+        } catch (ConcurrentUpdateException e) {
+            assertEquals(JDBCLogClusterInvalidator.SEND_ATTEMPTS, calls.get());
+        }
+
+        // other errors are not retried
+        calls.set(0);
+        inv.mapper = newMapper(calls, new NuxeoException("connection lost"), Integer.MAX_VALUE);
+        try {
+            inv.sendInvalidations(newInvalidations("id1"));
+            fail("should throw");
+        } catch (NuxeoException e) {
+            assertFalse(e instanceof ConcurrentUpdateException);
+            assertEquals(1, calls.get());
+        }
+        assertEquals(1, inv.sentCount.getCount());
+    }
+
+    /**
+     * Mapper whose first {@code failures} appends to the log fail with the given exception.
+     */
+    protected static Mapper newMapper(AtomicInteger calls, RuntimeException exception, int failures) {
+        return (Mapper) Proxy.newProxyInstance(Mapper.class.getClassLoader(), new Class<?>[] { Mapper.class },
+                (proxy, method, args) -> {
+                    if (!method.getName().equals("insertClusterInvalidationsLog")) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    if (calls.incrementAndGet() <= failures) {
+                        throw exception;
+                    }
+                    return null;
+                });
+    }
+
+}
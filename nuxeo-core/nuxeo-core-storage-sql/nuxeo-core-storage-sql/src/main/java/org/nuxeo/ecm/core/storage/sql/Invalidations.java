@@ -25,7 +25,11 @@ import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 import java.io.Serializable;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
+import java.util.function.Function;
 
 import org.nuxeo.ecm.core.pubsub.SerializableInvalidations;
 
@@ -51,6 +55,12 @@ public class Invalidations implements SerializableInvalidations {
 
     public static final int DELETED = 2;
 
+    private static final String COMPACT_ALL = "*";
+
+    private static final char COMPACT_MODIFIED = 'M';
+
+    private static final char COMPACT_DELETED = 'D';
+
     /**
      * Maximum number of invalidations kept, after which only {@link #all} is set. This avoids accumulating too many
      * invalidations in memory, at the expense of more coarse-grained invalidations.
@@ -194,6 +204,91 @@ public class Invalidations implements SerializableInvalidations {
         }
     }
 
+    /**
+     * Serializes these invalidations to a compact text form: one line per kind and id, holding the invalidated table
+     * names separated by spaces. Invalidation of everything is serialized as {@code *}.
+     *
+     * @param idToString the function converting ids to strings
+     * @since 9.3
+     */
+    public String toCompactString(Function<Serializable, String> idToString) {
+        if (all) {
+            return COMPACT_ALL;
+        }
+        StringBuilder sb = new StringBuilder();
+        appendCompact(sb, COMPACT_MODIFIED, modified, idToString);
+        appendCompact(sb, COMPACT_DELETED, deleted, idToString);
+        return sb.toString();
+    }
+
+    protected static void appendCompact(StringBuilder sb, char kind, Set<RowId> rowIds,
+            Function<Serializable, String> idToString) {
+        if (rowIds == null) {
+            return;
+        }
+        // reorganize by id
+        Map<Serializable, StringBuilder> byId = new LinkedHashMap<>();
+        for (RowId rowId : rowIds) {
+            StringBuilder tables = byId.get(rowId.id);
+            if (tables == null) {
+                byId.put(rowId.id, tables = new StringBuilder());
+            } else {
+                tables.append(' ');
+            }
+            tables.append(rowId.tableName);
+        }
+        for (Entry<Serializable, StringBuilder> en : byId.entrySet()) {
+            sb.append(kind);
+            sb.append('\t');
+            sb.append(idToString.apply(en.getKey()));
+            sb.append('\t');
+            sb.append(en.getValue());
+            sb.append('\n');
+        }
+    }
+
+    /**
+     * Parses invalidations serialized by {@link #toCompactString}.
+     *
+     * @param string the compact form
+     * @param idFromString the function converting strings to ids
+     * @since 9.3
+     */
+    public static Invalidations fromCompactString(String string, Function<String, Serializable> idFromString) {
+        if (COMPACT_ALL.equals(string)) {
+            return new Invalidations(true);
+        }
+        Invalidations invalidations = new Invalidations();
+        if (string == null) {
+            return invalidations;
+        }
+        for (String line : string.split("\n")) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            String[] parts = line.split("\t", 3);
+            if (parts.length != 3 || parts[0].length() != 1) {
+                throw new IllegalArgumentException("Invalid compact invalidations: " + line);
+            }
+            int kind;
+            switch (parts[0].charAt(0)) {
+            case COMPACT_MODIFIED:
+                kind = MODIFIED;
+                break;
+            case COMPACT_DELETED:
+                kind = DELETED;
+                break;
+            default:
+                throw new IllegalArgumentException("Invalid compact invalidations: " + line);
+            }
+            invalidations.add(idFromString.apply(parts[1]), parts[2].split(" "), kind);
+            if (invalidations.all) {
+                break;
+            }
+        }
+        return invalidations;
+    }
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder(this.getClass().getSimpleName() + '(');
@@ -26,7 +26,9 @@ import java.util.Set;
 
 import javax.transaction.xa.XAResource;
 
+import org.nuxeo.ecm.core.api.ConcurrentUpdateException;
 import org.nuxeo.ecm.core.api.IterableQueryResult;
+import org.nuxeo.ecm.core.api.IterableRowQueryResult;
 import org.nuxeo.ecm.core.api.Lock;
 import org.nuxeo.ecm.core.api.PartialList;
 import org.nuxeo.ecm.core.api.ScrollResult;
@@ -171,6 +173,23 @@ public interface Mapper extends RowMapper, XAResource {
     IterableQueryResult queryAndFetch(String query, String queryType, QueryFilter queryFilter,
             boolean distinctDocuments, Object... params);
 
+    /**
+     * Makes a query to the database and returns a streaming iterable of rows (which must be closed when done).
+     *
+     * @param query the query
+     * @param queryType the query type
+     * @param queryFilter the query filter
+     * @param distinctDocuments if {@code true} then a maximum of one row per document will be returned
+     * @param fetchSize the number of rows fetched at a time from the database, or {@code 0} for the driver default
+     * @param detached if {@code true}, the query is executed on a dedicated connection outside of the current
+     *            transaction
+     * @param params optional query-type-dependent parameters
+     * @return an iterable, which <b>must</b> be closed when done
+     * @since 9.3
+     */
+    IterableRowQueryResult queryAndFetchRows(String query, String queryType, QueryFilter queryFilter,
+            boolean distinctDocuments, int fetchSize, boolean detached, Object... params);
+
     /**
      * Makes a query to the database.
      *
@@ -231,6 +250,67 @@ public interface Mapper extends RowMapper, XAResource {
      */
     Invalidations getClusterInvalidations(Serializable nodeId);
 
+    /**
+     * Records read from the cluster invalidations log.
+     *
+     * @since 9.3
+     */
+    final class ClusterInvalidationsLogBatch implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        /** The invalidations sent by other cluster nodes, merged. */
+        public final Invalidations invalidations;
+
+        /** The sequence number of the last record read, including records sent by this node. */
+        public final long lastSeq;
+
+        /** The number of records read. */
+        public final int count;
+
+        public ClusterInvalidationsLogBatch(Invalidations invalidations, long lastSeq, int count) {
+            this.invalidations = invalidations;
+            this.lastSeq = lastSeq;
+            this.count = count;
+        }
+    }
+
+    /**
+     * Appends one record holding all the given invalidations to the cluster invalidations log.
+     *
+     * @throws ConcurrentUpdateException if another node appended a record with the same sequence number concurrently
+     * @since 9.3
+     */
+    void insertClusterInvalidationsLog(Serializable nodeId, Invalidations invalidations);
+
+    /**
+     * Reads the cluster invalidations log after the given sequence number.
+     *
+     * @param nodeId the cluster node id, whose own records are skipped
+     * @param afterSeq the sequence number after which to read
+     * @param max the maximum number of records to read
+     * @since 9.3
+     */
+    ClusterInvalidationsLogBatch getClusterInvalidationsLog(Serializable nodeId, long afterSeq, int max);
+
+    /**
+     * Gets the minimum and maximum sequence numbers present in the cluster invalidations log.
+     *
+     * @return an array of two sequence numbers, both {@code 0} if the log is empty
+     * @since 9.3
+     */
+    long[] getClusterInvalidationsLogBounds();
+
+    /**
+     * Deletes the cluster invalidations log records created before the given time and with a sequence number lower
+     * than the given one.
+     * <p>
+     * The most recent record must be kept so that sequence numbers keep increasing.
+     *
+     * @return the number of records deleted
+     * @since 9.3
+     */
+    int deleteClusterInvalidationsLog(Calendar beforeTime, long beforeSeq);
+
     /*
      * ----- Locking -----
      */
@@ -288,6 +368,15 @@ public interface Mapper extends RowMapper, XAResource {
      */
     int cleanupDeletedRows(int max, Calendar beforeTime);
 
+    /**
+     * Counts the rows that have been soft-deleted in the database and are waiting for cleanup.
+     *
+     * @param beforeTime the maximum deletion time of the rows to count, or {@code null} for all
+     * @return the number of rows
+     * @since 9.3
+     */
+    long countDeletedRows(Calendar beforeTime);
+
     /**
      * @since 5.9.3
      */
@@ -93,6 +93,21 @@ public class Model {
 
     public static final String CLUSTER_INVALS_KIND_KEY = "kind";
 
+    /** @since 9.3 */
+    public static final String CLUSTER_INVALS_LOG_TABLE_NAME = "cluster_invals_log";
+
+    /** @since 9.3 */
+    public static final String CLUSTER_INVALS_LOG_SEQ_KEY = "seq";
+
+    /** @since 9.3 */
+    public static final String CLUSTER_INVALS_LOG_NODEID_KEY = "nodeid";
+
+    /** @since 9.3 */
+    public static final String CLUSTER_INVALS_LOG_CREATED_KEY = "created";
+
+    /** @since 9.3 */
+    public static final String CLUSTER_INVALS_LOG_INVALS_KEY = "invals";
+
     public static final String MAIN_PRIMARY_TYPE_PROP = "ecm:primaryType";
 
     public static final String MAIN_PRIMARY_TYPE_KEY = "primarytype";
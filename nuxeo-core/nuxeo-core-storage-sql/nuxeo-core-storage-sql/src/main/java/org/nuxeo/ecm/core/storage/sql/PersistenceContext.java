@@ -27,6 +27,8 @@ import java.util.Deque;
 import java.util.GregorianCalendar;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
@@ -87,6 +89,36 @@ public class PersistenceContext {
 
     public static final String SEL_WARN_THRESHOLD_DEFAULT = "15000";
 
+    /**
+     * Property for the maximum size of a selection kept complete in memory. Bigger ones are read from the database
+     * each time they are needed. Zero means no limit.
+     *
+     * @since 9.3
+     */
+    public static final String SEL_MAX_SIZE_PROP = "org.nuxeo.vcs.selection.max-size";
+
+    public static final String SEL_MAX_SIZE_DEFAULT = "100000";
+
+    /**
+     * Property for the maximum number of ids held by all the pristine selections of a session, beyond which the least
+     * recently used ones are evicted. Zero means no limit.
+     *
+     * @since 9.3
+     */
+    public static final String SEL_MAX_IDS_PROP = "org.nuxeo.vcs.selection.max-ids";
+
+    public static final String SEL_MAX_IDS_DEFAULT = "500000";
+
+    /**
+     * Property for the maximum number of pristine selections holding ids tracked by a session, beyond which the least
+     * recently used ones are evicted. Zero means no limit.
+     *
+     * @since 9.3
+     */
+    public static final String SEL_MAX_COUNT_PROP = "org.nuxeo.vcs.selection.max-count";
+
+    public static final String SEL_MAX_COUNT_DEFAULT = "10000";
+
     protected static final FieldComparator POS_COMPARATOR = new FieldComparator(Model.HIER_CHILD_POS_KEY);
 
     protected static final FieldComparator VER_CREATED_COMPARATOR = new FieldComparator(Model.VERSION_CREATED_KEY);
@@ -168,6 +200,45 @@ public class PersistenceContext {
      */
     protected long bigSelWarnThreshold;
 
+    /**
+     * Maximum size of a selection kept complete in memory, or zero.
+     *
+     * @since 9.3
+     */
+    protected long maxSelectionSize;
+
+    /**
+     * Maximum number of ids held by all the selections, or zero.
+     *
+     * @since 9.3
+     */
+    protected long maxSelectionIds;
+
+    /**
+     * Maximum number of selections in {@link #selectionsLRU}, or zero.
+     *
+     * @since 9.3
+     */
+    protected long maxSelectionCount;
+
+    /**
+     * The selections in use holding ids, least recently used first, with the number of ids accounted for each.
+     * <p>
+     * Selections without ids are not tracked, so that nothing prevents the GC from reclaiming them from the soft maps.
+     *
+     * @since 9.3
+     */
+    protected final LinkedHashMap<Selection, Integer> selectionsLRU = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * The total number of ids in {@link #selectionsLRU}.
+     *
+     * @since 9.3
+     */
+    protected long selectionIds;
+
+    protected final Counter selectionEvictedCount;
+
     @SuppressWarnings("unchecked")
     public PersistenceContext(Model model, RowMapper mapper, SessionImpl session) {
         this.model = model;
@@ -206,6 +277,73 @@ public class PersistenceContext {
             log.error("Invalid value for " + SEL_WARN_THRESHOLD_PROP + ": "
                     + Framework.getProperty(SEL_WARN_THRESHOLD_PROP));
         }
+        maxSelectionSize = getLongProperty(SEL_MAX_SIZE_PROP, SEL_MAX_SIZE_DEFAULT);
+        maxSelectionIds = getLongProperty(SEL_MAX_IDS_PROP, SEL_MAX_IDS_DEFAULT);
+        maxSelectionCount = getLongProperty(SEL_MAX_COUNT_PROP, SEL_MAX_COUNT_DEFAULT);
+        selectionEvictedCount = registry.counter(MetricRegistry.name("nuxeo", "repositories",
+                session.getRepositoryName(), "caches", "selections", "evicted"));
+    }
+
+    protected static long getLongProperty(String key, String def) {
+        String value = Framework.getProperty(key, def);
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            log.error("Invalid value for " + key + ": " + value);
+            return Long.parseLong(def);
+        }
+    }
+
+    /**
+     * Records that a selection is in use with its current size, and evicts the least recently used pristine selections
+     * if too many ids or too many selections are held by the session.
+     *
+     * @since 9.3
+     */
+    protected void accountSelection(Selection selection) {
+        if (maxSelectionIds <= 0 && maxSelectionCount <= 0) {
+            return;
+        }
+        int size = selection.getExistingSize();
+        if (size == 0) {
+            forgetSelection(selection);
+            return;
+        }
+        Integer previous = selectionsLRU.put(selection, Integer.valueOf(size));
+        selectionIds += size - (previous == null ? 0 : previous.intValue());
+        if (!isOverSelectionLimits()) {
+            return;
+        }
+        for (Iterator<Entry<Selection, Integer>> it = selectionsLRU.entrySet().iterator(); it.hasNext()
+                && isOverSelectionLimits();) {
+            Entry<Selection, Integer> en = it.next();
+            Selection sel = en.getKey();
+            if (sel == selection || !sel.isFlushed()) {
+                // in use, or holds unsaved information
+                continue;
+            }
+            it.remove();
+            selectionIds -= en.getValue().intValue();
+            sel.evict();
+            selectionEvictedCount.inc();
+        }
+    }
+
+    protected boolean isOverSelectionLimits() {
+        return (maxSelectionIds > 0 && selectionIds > maxSelectionIds)
+                || (maxSelectionCount > 0 && selectionsLRU.size() > maxSelectionCount);
+    }
+
+    /**
+     * Stops accounting for a selection that was removed.
+     *
+     * @since 9.3
+     */
+    protected void forgetSelection(Selection selection) {
+        Integer previous = selectionsLRU.remove(selection);
+        if (previous != null) {
+            selectionIds -= previous.intValue();
+        }
     }
 
     protected int clearCaches() {
@@ -224,6 +362,8 @@ public class PersistenceContext {
         for (SelectionContext sel : selections) {
             sel.clearCaches();
         }
+        selectionsLRU.clear();
+        selectionIds = 0;
         int n = pristine.size();
         pristine.clear();
         return n;
@@ -527,6 +527,23 @@ public class RepositoryImpl implements Repository {
         }
     }
 
+    @Override
+    public long countDeletedDocuments(Calendar beforeTime) {
+        if (!repositoryDescriptor.getSoftDeleteEnabled()) {
+            return 0;
+        }
+        try {
+            SessionImpl conn = getConnection();
+            try {
+                return conn.countDeletedDocuments(beforeTime);
+            } finally {
+                conn.close();
+            }
+        } catch (ResourceException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     /*
      * ----- -----
      */
@@ -83,4 +83,13 @@ public interface RepositoryManagement {
      */
     int cleanupDeletedDocuments(int max, Calendar beforeTime);
 
+    /**
+     * Counts the documents that have been soft-deleted in the database and are waiting for cleanup.
+     *
+     * @param beforeTime the maximum deletion time of the documents to count, or {@code null} for all
+     * @return the number of documents
+     * @since 9.3
+     */
+    long countDeletedDocuments(Calendar beforeTime);
+
 }
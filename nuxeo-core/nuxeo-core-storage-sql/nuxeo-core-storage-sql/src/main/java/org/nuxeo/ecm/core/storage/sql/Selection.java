@@ -46,7 +46,11 @@ import org.apache.commons.logging.LogFactory;
  * Row ids are stored in no particular order.
  * <p>
  * When this structure holds information all flushed to the database, then it can safely be GC'ed, so it lives in a
- * memory-sensitive map (softMap), otherwise it's moved to a normal map (hardMap).
+ * memory-sensitive map (softMap), otherwise it's moved to a normal map (hardMap). The selections in the soft map are
+ * also evicted by the {@link PersistenceContext} when the session holds too many ids or selections overall.
+ * <p>
+ * Partial information about rows in the database is bounded in size, beyond which new existing ids are not recorded
+ * and lookups go to the database.
  * <p>
  * This class is not thread-safe and should be used only from a single-threaded session.
  */
@@ -169,8 +173,13 @@ public class Selection {
             // GCed from pristine and we had to refetched it from the mapper
             return;
         }
+        if (!complete && context.maxSelectionSize > 0 && existing.size() >= context.maxSelectionSize) {
+            // partial information, no need to keep more of it
+            return;
+        }
         existing.add(id);
         warnIfBig(1);
+        context.accountSelection(this);
     }
 
     /**
@@ -205,6 +214,40 @@ public class Selection {
         assert !complete;
         complete = true;
         existing = new HashSet<Serializable>(actualExisting);
+        context.accountSelection(this);
+    }
+
+    /**
+     * Forgets the existing ids and marks as incomplete.
+     * <p>
+     * Called when a complete selection is too big to be kept in memory.
+     *
+     * @since 9.3
+     */
+    public void dropExisting() {
+        complete = false;
+        existing = null;
+        context.accountSelection(this);
+    }
+
+    /**
+     * Gets the number of existing ids known.
+     *
+     * @since 9.3
+     */
+    public int getExistingSize() {
+        return existing == null ? 0 : existing.size();
+    }
+
+    /**
+     * Removes this selection from the soft map, to free memory.
+     *
+     * @since 9.3
+     */
+    protected void evict() {
+        if (softMap.get(selId) == this) {
+            softMap.remove(selId);
+        }
     }
 
     /**
@@ -227,8 +270,8 @@ public class Selection {
             // don't add to deleted
             return;
         }
-        if (existing != null) {
-            existing.remove(id);
+        if (existing != null && existing.remove(id)) {
+            context.accountSelection(this);
         }
         if (deleted == null) {
             deleted = new HashSet<Serializable>();
@@ -252,6 +295,7 @@ public class Selection {
             existing.addAll(created);
             warnIfBig(created.size());
             created = null;
+            context.accountSelection(this);
         }
         deleted = null;
         // move to soft map
@@ -288,17 +332,19 @@ public class Selection {
      * <p>
      * Returns {@code null} if there is no such fragment.
      * <p>
-     * Returns {@link SimpleFragment#UNKNOWN} if there's no info about it.
+     * Returns {@link SimpleFragment#UNKNOWN} if there's no info about it, or if some existing fragments are not in
+     * memory anymore: a targeted query is then cheaper than fetching all of them.
      *
      * @param filter the value to filter on (cannot be {@code null})
      * @return the fragment, or {@code null}, or {@link SimpleFragment#UNKNOWN}
      */
     public SimpleFragment getFragmentByValue(Serializable filter) {
+        boolean missing = false;
         if (existing != null) {
             for (Serializable id : existing) {
-                SimpleFragment fragment = getFragment(id);
+                SimpleFragment fragment = getFragmentIfPresent(id);
                 if (fragment == null) {
-                    log.warn("Existing fragment missing: " + id);
+                    missing = true;
                     continue;
                 }
                 if (filter.equals(fragmentValue(fragment))) {
@@ -330,7 +376,7 @@ public class Selection {
                 }
             }
         }
-        return complete ? null : SimpleFragment.UNKNOWN;
+        return complete && !missing ? null : SimpleFragment.UNKNOWN;
     }
 
     /**
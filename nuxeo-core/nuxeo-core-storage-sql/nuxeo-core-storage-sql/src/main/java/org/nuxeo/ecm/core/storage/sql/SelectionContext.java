@@ -31,6 +31,7 @@ import org.apache.commons.collections.map.ReferenceMap;
 import org.nuxeo.runtime.metrics.MetricsService;
 
 import com.codahale.metrics.Counter;
+import com.codahale.metrics.Histogram;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.SharedMetricRegistries;
 import com.codahale.metrics.Timer;
@@ -40,6 +41,9 @@ import com.codahale.metrics.Timer;
  * <p>
  * Some of the information is identical to what's in the database and can be safely be GC'ed, so it lives in a
  * memory-sensitive map (softMap), otherwise it's moved to a normal map (hardMap) (creation or deletion).
+ * <p>
+ * Selections too big to be kept complete in memory are re-read from the database when all their fragments are
+ * needed, and lookups by value in them use targeted queries.
  */
 public class SelectionContext {
 
@@ -71,6 +75,9 @@ public class SelectionContext {
 
     protected final Timer cacheGetTimer;
 
+    // @since 9.3
+    protected final Histogram sizeHistogram;
+
     @SuppressWarnings("unchecked")
     public SelectionContext(SelectionType selType, Serializable criterion, RowMapper mapper, PersistenceContext context) {
         this.selType = selType;
@@ -86,6 +93,8 @@ public class SelectionContext {
                 context.session.repository.getName(), "caches", "selections", "hit"));
         cacheGetTimer = registry.timer(MetricRegistry.name("nuxeo", "repositories",
                 context.session.repository.getName(), "caches", "selections", "get"));
+        sizeHistogram = registry.histogram(MetricRegistry.name("nuxeo", "repositories",
+                context.session.repository.getName(), "caches", "selections", "size"));
     }
 
     public int clearCaches() {
@@ -121,6 +130,7 @@ public class SelectionContext {
             Selection selection = softMap.get(selId);
             if (selection != null) {
                 cacheHitCount.inc();
+                context.accountSelection(selection);
                 return selection;
             }
             selection = hardMap.get(selId);
@@ -201,8 +211,7 @@ public class SelectionContext {
 
     /** Records a selection as removed. */
     public void recordRemovedSelection(Serializable selId) {
-        softMap.remove(selId);
-        hardMap.remove(selId);
+        removeSelection(selId);
         modifiedInTransaction.add(selId);
         modifiedInTransactionCount.inc();
     }
@@ -223,6 +232,11 @@ public class SelectionContext {
             List<Row> rows = mapper.readSelectionRows(selType, selId, filter, criterion, true);
             Row row = rows.isEmpty() ? null : rows.get(0);
             fragment = (SimpleFragment) context.getFragmentFromFetchedRow(row, false);
+            if (fragment != null && !(selId.equals(fragment.get(selType.selKey))
+                    && filter.equals(fragment.get(selType.filterKey)))) {
+                // moved or renamed in the session and not yet saved
+                fragment = null;
+            }
         }
         return fragment;
     }
@@ -251,10 +265,15 @@ public class SelectionContext {
                 ids.add(fragment.getId());
             }
             selection.addExistingComplete(ids);
+            sizeHistogram.update(ids.size());
 
             // redo the query, as the selection may include newly-created ones,
             // and we also filter by name
             fragments = selection.getFragmentsByValue(filter);
+            if (context.maxSelectionSize > 0 && ids.size() > context.maxSelectionSize) {
+                // too big to be kept, will be read again if needed
+                selection.dropExisting();
+            }
         }
         return fragments;
     }
@@ -268,6 +287,17 @@ public class SelectionContext {
         return mapper.readSelectionsIds(selType, values);
     }
 
+    protected void removeSelection(Serializable selId) {
+        Selection selection = softMap.remove(selId);
+        if (selection != null) {
+            context.forgetSelection(selection);
+        }
+        selection = hardMap.remove(selId);
+        if (selection != null) {
+            context.forgetSelection(selection);
+        }
+    }
+
     public void postSave() {
         // flush selection caches (moves from hard to soft)
         for (Selection selection : hardMap.values()) {
@@ -318,9 +348,7 @@ public class SelectionContext {
     public void processReceivedInvalidations(Set<RowId> modified) {
         for (RowId rowId : modified) {
             if (selType.invalidationTableName.equals(rowId.tableName)) {
-                Serializable id = rowId.id;
-                softMap.remove(id);
-                hardMap.remove(id);
+                removeSelection(rowId.id);
             }
         }
     }
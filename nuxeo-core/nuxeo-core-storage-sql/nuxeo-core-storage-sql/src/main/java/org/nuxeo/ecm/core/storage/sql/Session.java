@@ -25,6 +25,7 @@ import java.util.Map;
 import javax.resource.cci.Connection;
 
 import org.nuxeo.ecm.core.api.IterableQueryResult;
+import org.nuxeo.ecm.core.api.IterableRowQueryResult;
 import org.nuxeo.ecm.core.api.PartialList;
 import org.nuxeo.ecm.core.api.ScrollResult;
 import org.nuxeo.ecm.core.model.LockManager;
@@ -441,6 +442,23 @@ public interface Session extends Connection {
     IterableQueryResult queryAndFetch(String query, String queryType, QueryFilter queryFilter,
             boolean distinctDocuments, Object... params);
 
+    /**
+     * Makes a query to the database and returns a streaming iterable of rows (which must be closed when done).
+     *
+     * @param query the query
+     * @param queryType the query type
+     * @param queryFilter the query filter
+     * @param distinctDocuments if {@code true} then a maximum of one row per document will be returned
+     * @param fetchSize the number of rows fetched at a time from the database, or {@code 0} for the driver default
+     * @param detached if {@code true}, the query is executed on a dedicated connection outside of the current
+     *            transaction
+     * @param params optional query-type-dependent parameters
+     * @return an iterable, which <b>must</b> be closed when done
+     * @since 9.3
+     */
+    IterableRowQueryResult queryAndFetchRows(String query, String queryType, QueryFilter queryFilter,
+            boolean distinctDocuments, int fetchSize, boolean detached, Object... params);
+
     /**
      * Makes a query to the database.
      *
@@ -50,6 +50,7 @@ import org.apache.commons.logging.LogFactory;
 import org.nuxeo.ecm.core.api.ConcurrentUpdateException;
 import org.nuxeo.ecm.core.api.DocumentExistsException;
 import org.nuxeo.ecm.core.api.IterableQueryResult;
+import org.nuxeo.ecm.core.api.IterableRowQueryResult;
 import org.nuxeo.ecm.core.api.NuxeoException;
 import org.nuxeo.ecm.core.api.PartialList;
 import org.nuxeo.ecm.core.api.ScrollResult;
@@ -1320,6 +1321,27 @@ public class SessionImpl implements Session, XAResource {
         }
     }
 
+    @Override
+    public IterableRowQueryResult queryAndFetchRows(String query, String queryType, QueryFilter queryFilter,
+            boolean distinctDocuments, int fetchSize, boolean detached, Object... params) {
+        final Timer.Context timerContext = queryTimer.time();
+        try {
+            return mapper.queryAndFetchRows(query, queryType, queryFilter, distinctDocuments, fetchSize, detached,
+                    params);
+        } finally {
+            long duration = timerContext.stop();
+            if ((LOG_MIN_DURATION_NS >= 0) && (duration > LOG_MIN_DURATION_NS)) {
+                String msg = String.format("duration_ms:\t%.2f\t%s\tqueryAndFetchRows\t%s", duration / 1000000.0,
+                        queryFilter, query);
+                if (log.isTraceEnabled()) {
+                    log.info(msg, new Throwable("Slow query stack trace"));
+                } else {
+                    log.info(msg);
+                }
+            }
+        }
+    }
+
     @Override
     public PartialList<Map<String, Serializable>> queryProjection(String query, String queryType,
             QueryFilter queryFilter, boolean distinctDocuments, long countUpTo, Object... params) {
@@ -1431,6 +1453,14 @@ public class SessionImpl implements Session, XAResource {
         return mapper.cleanupDeletedRows(max, beforeTime);
     }
 
+    public long countDeletedDocuments(Calendar beforeTime) {
+        checkLive();
+        if (!repository.getRepositoryDescriptor().getSoftDeleteEnabled()) {
+            return 0;
+        }
+        return mapper.countDeletedRows(beforeTime);
+    }
+
     /*
      * ----- XAResource -----
      */
@@ -26,10 +26,16 @@ import org.nuxeo.ecm.core.event.Event;
 import org.nuxeo.ecm.core.event.EventListener;
 import org.nuxeo.ecm.core.repository.RepositoryService;
 import org.nuxeo.ecm.core.storage.sql.coremodel.SQLRepositoryService;
+import org.nuxeo.ecm.core.work.api.Work;
+import org.nuxeo.ecm.core.work.api.WorkManager;
+import org.nuxeo.ecm.core.work.api.WorkManager.Scheduling;
 import org.nuxeo.runtime.api.Framework;
 
 /**
- * Sync listener that calls the soft delete cleanup method of the repositories. Designed to be called periodically.
+ * Sync listener that schedules the soft delete cleanup of the repositories. Designed to be called periodically.
+ * <p>
+ * Since 9.3 the cleanup itself is done asynchronously by a {@link SoftDeleteCleanupWork} per repository, in batches of
+ * at most {@link #DEFAULT_MAX_PROP} documents throttled to {@link #DEFAULT_RATE_PROP} deletes per second.
  *
  * @since 5.7
  */
@@ -40,8 +46,8 @@ public class SoftDeleteCleanupListener implements EventListener {
     public static final int DEFAULT_MAX = 1000;
 
     /**
-     * Property for the maximum number of documents to delete in one call. Zero means all the documents. Default is
-     * {@value #DEFAULT_MAX}.
+     * Property for the maximum number of documents to delete in one call (one batch). Zero means all the documents.
+     * Default is {@value #DEFAULT_MAX}.
      */
     public static final String DEFAULT_MAX_PROP = "org.nuxeo.vcs.softdelete.cleanup.max";
 
@@ -53,6 +59,16 @@ public class SoftDeleteCleanupListener implements EventListener {
      */
     public static final String DEFAULT_DELAY_PROP = "org.nuxeo.vcs.softdelete.cleanup.age";
 
+    public static final int DEFAULT_RATE = 1000;
+
+    /**
+     * Property for the target number of documents deleted per second. Zero means no throttling. Default is
+     * {@value #DEFAULT_RATE}.
+     *
+     * @since 9.3
+     */
+    public static final String DEFAULT_RATE_PROP = "org.nuxeo.vcs.softdelete.cleanup.rate";
+
     /**
      * Gets the maximum number of documents to delete in one call. Zero means all the documents.
      */
@@ -86,6 +102,24 @@ public class SoftDeleteCleanupListener implements EventListener {
         }
     }
 
+    /**
+     * Gets the target number of documents deleted per second. Zero means no throttling.
+     *
+     * @since 9.3
+     */
+    protected int getRate() {
+        String rate = Framework.getProperty(DEFAULT_RATE_PROP);
+        if (rate == null) {
+            return DEFAULT_RATE;
+        }
+        try {
+            return Integer.parseInt(rate);
+        } catch (NumberFormatException e) {
+            log.error("Invalid property " + DEFAULT_RATE_PROP, e);
+            return DEFAULT_RATE;
+        }
+    }
+
     @Override
     public void handleEvent(Event event) {
         RepositoryService repositoryService = Framework.getService(RepositoryService.class);
@@ -95,6 +129,7 @@ public class SoftDeleteCleanupListener implements EventListener {
         }
         int max = getMax();
         int delay = getDelaySeconds();
+        int rate = getRate();
         Calendar beforeTime;
         if (delay <= 0) {
             beforeTime = null;
@@ -103,11 +138,13 @@ public class SoftDeleteCleanupListener implements EventListener {
             beforeTime.add(Calendar.SECOND, -delay);
         }
         SQLRepositoryService sqlRepositoryService = Framework.getService(SQLRepositoryService.class);
+        WorkManager workManager = Framework.getService(WorkManager.class);
         for (RepositoryManagement repoMgmt : sqlRepositoryService.getRepositories()) {
-            log.debug("Calling repository soft-delete cleanup for repository: " + repoMgmt.getName() + ", max=" + max
-                    + ", beforeTimeDelay=" + delay);
-            int n = repoMgmt.cleanupDeletedDocuments(max, beforeTime);
-            log.debug("Number of documents deleted: " + n);
+            log.debug("Scheduling repository soft-delete cleanup for repository: " + repoMgmt.getName() + ", max="
+                    + max + ", beforeTimeDelay=" + delay + ", rate=" + rate);
+            Work work = new SoftDeleteCleanupWork(repoMgmt.getName(), max, beforeTime, rate);
+            // a cleanup still running from a previous event will handle the backlog
+            workManager.schedule(work, Scheduling.IF_NOT_RUNNING_OR_SCHEDULED);
         }
     }
 
@@ -0,0 +1,157 @@
+/*
+ * (C) Copyright 2017 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Florent Guillaume
+ */
+package org.nuxeo.ecm.core.storage.sql;
+
+import java.util.Calendar;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.nuxeo.ecm.core.api.NuxeoException;
+import org.nuxeo.ecm.core.storage.sql.coremodel.SQLRepositoryService;
+import org.nuxeo.ecm.core.work.AbstractWork;
+import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.metrics.MetricsService;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+import com.codahale.metrics.Timer;
+
+/**
+ * Work hard-deleting the soft-deleted documents of a repository.
+ * <p>
+ * The backlog of documents soft-deleted before a given time is deleted in bounded batches, each one in its own
+ * transaction, so that no single statement or transaction grows with the size of the backlog. The fragments of the
+ * deleted documents (including fulltext) and their ancestors rows are removed by the database foreign key cascades in
+ * the same batch.
+ * <p>
+ * Batches are throttled to a target number of deletes per second to limit the load on the database and its replicas.
+ *
+ * @since 9.3
+ */
+public class SoftDeleteCleanupWork extends AbstractWork {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Log log = LogFactory.getLog(SoftDeleteCleanupWork.class);
+
+    public static final String CATEGORY = "softDeleteCleanup";
+
+    protected static final String TITLE = "Soft-Delete Cleanup";
+
+    protected final int batchSize;
+
+    protected final Calendar beforeTime;
+
+    protected final int rate;
+
+    /**
+     * Constructs the work. Only one work is scheduled at a time for a given repository.
+     *
+     * @param repositoryName the repository
+     * @param batchSize the maximum number of documents to delete in one transaction, or {@code 0} for all of them
+     * @param beforeTime the maximum deletion time of the documents to delete, or {@code null} for all
+     * @param rate the target number of deletes per second, or {@code 0} for no throttling
+     */
+    public SoftDeleteCleanupWork(String repositoryName, int batchSize, Calendar beforeTime, int rate) {
+        super(CATEGORY + ":" + repositoryName);
+        this.repositoryName = repositoryName;
+        this.batchSize = Math.max(batchSize, 0);
+        this.beforeTime = beforeTime;
+        this.rate = Math.max(rate, 0);
+    }
+
+    @Override
+    public String getCategory() {
+        return CATEGORY;
+    }
+
+    @Override
+    public String getTitle() {
+        return TITLE + " " + repositoryName;
+    }
+
+    @Override
+    public void work() {
+        RepositoryManagement repoMgmt = Framework.getService(SQLRepositoryService.class).getRepository(repositoryName);
+        if (repoMgmt == null) {
+            return;
+        }
+        MetricRegistry registry = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
+        Counter deletedCount = registry.counter(
+                MetricRegistry.name("nuxeo", "repositories", repositoryName, "softdelete", "deleted"));
+        Timer batchTimer = registry.timer(
+                MetricRegistry.name("nuxeo", "repositories", repositoryName, "softdelete", "batches"));
+
+        setStatus("Counting");
+        long total = repoMgmt.countDeletedDocuments(beforeTime);
+        if (log.isDebugEnabled()) {
+            log.debug("Soft-delete cleanup for repository: " + repositoryName + ", backlog=" + total + ", batchSize="
+                    + batchSize + ", rate=" + rate);
+        }
+        long done = 0;
+        setProgress(new Progress(done, total));
+        setStatus("Deleting");
+        while (true) {
+            if (isSuspending()) {
+                // the backlog is in the database, a new run will pick up from there
+                suspended();
+                return;
+            }
+            long start = System.currentTimeMillis();
+            int n;
+            try (Timer.Context context = batchTimer.time()) {
+                n = repoMgmt.cleanupDeletedDocuments(batchSize, beforeTime);
+            }
+            // commit each batch separately
+            commitOrRollbackTransaction();
+            startTransaction();
+            done += n;
+            deletedCount.inc(n);
+            setProgress(new Progress(done, Math.max(done, total)));
+            if (n == 0 || batchSize == 0 || n < batchSize) {
+                break;
+            }
+            throttle(n, System.currentTimeMillis() - start);
+        }
+        log.debug("Number of documents deleted: " + done);
+        setStatus(null);
+    }
+
+    /**
+     * Waits so that the deletion of {@code n} documents in {@code elapsed} milliseconds keeps to the target rate.
+     */
+    protected void throttle(int n, long elapsed) {
+        if (rate == 0) {
+            return;
+        }
+        long delay = n * 1000L / rate - elapsed;
+        if (delay <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            // restore interrupted status
+            Thread.currentThread().interrupt();
+            throw new NuxeoException(e);
+        }
+    }
+
+}
@@ -30,6 +30,7 @@ import javax.transaction.xa.XAResource;
 import javax.transaction.xa.Xid;
 
 import org.nuxeo.ecm.core.api.IterableQueryResult;
+import org.nuxeo.ecm.core.api.IterableRowQueryResult;
 import org.nuxeo.ecm.core.api.Lock;
 import org.nuxeo.ecm.core.api.PartialList;
 import org.nuxeo.ecm.core.api.ScrollResult;
@@ -111,6 +112,13 @@ public class UnifiedCachingMapper extends UnifiedCachingRowMapper implements Cac
         return mapper.queryAndFetch(query, queryType, queryFilter, distinctDocuments, params);
     }
 
+    @Override
+    public IterableRowQueryResult queryAndFetchRows(String query, String queryType, QueryFilter queryFilter,
+            boolean distinctDocuments, int fetchSize, boolean detached, Object... params) {
+        return mapper.queryAndFetchRows(query, queryType, queryFilter, distinctDocuments, fetchSize, detached,
+                params);
+    }
+
     @Override
     public PartialList<Map<String, Serializable>> queryProjection(String query, String queryType,
             QueryFilter queryFilter, boolean distinctDocuments, long countUpTo, Object... params) {
@@ -157,6 +165,26 @@ public class UnifiedCachingMapper extends UnifiedCachingRowMapper implements Cac
         return mapper.getClusterInvalidations(nodeId);
     }
 
+    @Override
+    public void insertClusterInvalidationsLog(Serializable nodeId, Invalidations invalidations) {
+        mapper.insertClusterInvalidationsLog(nodeId, invalidations);
+    }
+
+    @Override
+    public ClusterInvalidationsLogBatch getClusterInvalidationsLog(Serializable nodeId, long afterSeq, int max) {
+        return mapper.getClusterInvalidationsLog(nodeId, afterSeq, max);
+    }
+
+    @Override
+    public long[] getClusterInvalidationsLogBounds() {
+        return mapper.getClusterInvalidationsLogBounds();
+    }
+
+    @Override
+    public int deleteClusterInvalidationsLog(Calendar beforeTime, long beforeSeq) {
+        return mapper.deleteClusterInvalidationsLog(beforeTime, beforeSeq);
+    }
+
     @Override
     public Lock getLock(Serializable id) {
         return mapper.getLock(id);
@@ -182,6 +210,11 @@ public class UnifiedCachingMapper extends UnifiedCachingRowMapper implements Cac
         return mapper.cleanupDeletedRows(max, beforeTime);
     }
 
+    @Override
+    public long countDeletedRows(Calendar beforeTime) {
+        return mapper.countDeletedRows(beforeTime);
+    }
+
     @Override
     public void start(Xid xid, int flags) throws XAException {
         mapper.start(xid, flags);
@@ -72,6 +72,13 @@ public class JDBCConnection {
     // for tests
     public int executeCount;
 
+    /**
+     * Number of statements executed by this connection, for metrics.
+     *
+     * @since 9.3
+     */
+    protected long statementCount;
+
     // for debug
     private static final AtomicLong instanceCounter = new AtomicLong(0);
 
@@ -117,6 +124,7 @@ public class JDBCConnection {
     }
 
     protected void countExecute() {
+        statementCount++;
         if (countExecutes) {
             executeCount++;
         }
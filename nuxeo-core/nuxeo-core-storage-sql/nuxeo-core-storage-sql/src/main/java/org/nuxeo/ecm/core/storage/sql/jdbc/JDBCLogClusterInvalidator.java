@@ -0,0 +1,337 @@
+/*
+ * (C) Copyright 2017 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Florent Guillaume
+ */
+package org.nuxeo.ecm.core.storage.sql.jdbc;
+
+import java.io.Serializable;
+import java.sql.Types;
+import java.util.Calendar;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.nuxeo.ecm.core.api.ConcurrentUpdateException;
+import org.nuxeo.ecm.core.api.NuxeoException;
+import org.nuxeo.ecm.core.storage.sql.ClusterInvalidator;
+import org.nuxeo.ecm.core.storage.sql.Invalidations;
+import org.nuxeo.ecm.core.storage.sql.Mapper;
+import org.nuxeo.ecm.core.storage.sql.Mapper.ClusterInvalidationsLogBatch;
+import org.nuxeo.ecm.core.storage.sql.RepositoryDescriptor;
+import org.nuxeo.ecm.core.storage.sql.RepositoryImpl;
+import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.metrics.MetricsService;
+import org.nuxeo.runtime.services.config.ConfigurationService;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+import com.codahale.metrics.Timer;
+
+/**
+ * Implementation of {@link ClusterInvalidator} that uses an append-only log table to exchange invalidations.
+ * <p>
+ * Each transaction writes a single compact record into the {@code cluster_invals_log} table, instead of one row per
+ * invalidated document and per other cluster node. Each node reads the records written since the last sequence number
+ * it has seen, from a background thread, so that sessions never wait on the database to receive invalidations.
+ * <p>
+ * When a node falls too far behind (too many unread records, or records purged before it could read them), it
+ * invalidates its whole cache instead of reading the backlog.
+ * <p>
+ * Enabled by configuring {@code <clusterInvalidatorClass>} in the repository descriptor.
+ *
+ * @since 9.3
+ */
+public class JDBCLogClusterInvalidator implements ClusterInvalidator {
+
+    private static final Log log = LogFactory.getLog(JDBCLogClusterInvalidator.class);
+
+    /** Maximum number of records read by one query. */
+    public static final String PAGE_SIZE_PROP = "nuxeo.vcs.cluster.log.pageSize";
+
+    public static final int DEFAULT_PAGE_SIZE = 1000;
+
+    /** Number of unread records after which the whole cache is invalidated instead of reading them. */
+    public static final String MAX_BACKLOG_PROP = "nuxeo.vcs.cluster.log.maxBacklog";
+
+    public static final long DEFAULT_MAX_BACKLOG = 10000;
+
+    /** Age in seconds after which records are purged from the log. */
+    public static final String RETENTION_PROP = "nuxeo.vcs.cluster.log.retention";
+
+    public static final long DEFAULT_RETENTION = 3600; // 1h
+
+    /** Minimum delay between two polls of the log when it has nothing new. */
+    protected static final long MIN_POLL_DELAY = 50; // ms
+
+    /** Number of attempts to append a record when racing with another node for the same sequence number. */
+    protected static final int SEND_ATTEMPTS = 5;
+
+    /** Maximum random delay before retrying an append, multiplied by the attempt number. */
+    protected static final long SEND_RETRY_DELAY = 20; // ms
+
+    protected final MetricRegistry registry = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
+
+    protected String repositoryName;
+
+    /** Cluster node id. */
+    protected Serializable nodeId;
+
+    /** Cluster node mapper. Used synchronized. */
+    protected Mapper mapper;
+
+    protected long pollDelay;
+
+    protected int pageSize;
+
+    protected long maxBacklog;
+
+    protected long retentionMillis;
+
+    protected Thread poller;
+
+    protected volatile boolean closed;
+
+    /** Invalidations received by the poller and not yet returned to sessions. Guarded by {@code this}. */
+    protected Invalidations pending = new Invalidations();
+
+    // modified only by the poller thread
+    protected long lastSeq;
+
+    protected volatile long backlog;
+
+    protected long lastPurgeTimeMillis;
+
+    protected Counter sentCount;
+
+    protected Counter receivedCount;
+
+    protected Counter flushCount;
+
+    protected Timer pollTimer;
+
+    @Override
+    public void initialize(String nodeId, RepositoryImpl repository) {
+        RepositoryDescriptor repositoryDescriptor = repository.getRepositoryDescriptor();
+        repositoryName = repository.getName();
+        pollDelay = Math.max(repositoryDescriptor.getClusteringDelay(), MIN_POLL_DELAY);
+        ConfigurationService configurationService = Framework.getService(ConfigurationService.class);
+        pageSize = Integer.parseInt(getProperty(configurationService, PAGE_SIZE_PROP, DEFAULT_PAGE_SIZE));
+        maxBacklog = Long.parseLong(getProperty(configurationService, MAX_BACKLOG_PROP, DEFAULT_MAX_BACKLOG));
+        retentionMillis = Long.parseLong(getProperty(configurationService, RETENTION_PROP, DEFAULT_RETENTION))
+                * 1000;
+        // create mapper
+        mapper = repository.newMapper(null, false);
+        Serializable nodeIdSer;
+        if (mapper.getClusterNodeIdType() == Types.VARCHAR) { // sql type
+            nodeIdSer = nodeId;
+        } else {
+            try {
+                nodeIdSer = Long.valueOf(nodeId);
+            } catch (NumberFormatException e) {
+                throw new NuxeoException("Cluster node id must be an integer", e);
+            }
+        }
+        this.nodeId = nodeIdSer;
+        // a starting node has an empty cache, it only needs what's written from now on
+        lastSeq = mapper.getClusterInvalidationsLogBounds()[1];
+        lastPurgeTimeMillis = System.currentTimeMillis();
+        createMetrics();
+        startPoller();
+        log.info("Clustering enabled for repository: " + repositoryName + " using invalidations log with "
+                + pollDelay + " ms delay " + " and cluster node id: " + nodeId);
+    }
+
+    protected void startPoller() {
+        poller = new Thread(this::pollLoop, "Nuxeo-VCS-Cluster-Invalidations-" + repositoryName);
+        poller.setDaemon(true);
+        poller.start();
+    }
+
+    protected static String getProperty(ConfigurationService configurationService, String key, Object def) {
+        String value = configurationService.getProperty(key);
+        return StringUtils.isBlank(value) ? String.valueOf(def) : value.trim();
+    }
+
+    protected String metricName(String name) {
+        return MetricRegistry.name("nuxeo", "repositories", repositoryName, "cluster", "invalidations", name);
+    }
+
+    protected void createMetrics() {
+        sentCount = registry.counter(metricName("sent"));
+        receivedCount = registry.counter(metricName("received"));
+        flushCount = registry.counter(metricName("flushes"));
+        pollTimer = registry.timer(metricName("poll"));
+        String gaugeName = metricName("backlog");
+        registry.remove(gaugeName);
+        registry.register(gaugeName, new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return Long.valueOf(backlog);
+            }
+        });
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        if (poller != null) {
+            poller.interrupt();
+            try {
+                poller.join(pollDelay * 10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        registry.remove(metricName("backlog"));
+        synchronized (mapper) {
+            mapper.close();
+        }
+    }
+
+    @Override
+    public Invalidations receiveInvalidations() {
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                return null;
+            }
+            Invalidations invalidations = pending;
+            pending = new Invalidations();
+            return invalidations;
+        }
+    }
+
+    @Override
+    public void sendInvalidations(Invalidations invalidations) {
+        if (invalidations == null || invalidations.isEmpty()) {
+            return;
+        }
+        for (int attempt = 1;; attempt++) {
+            try {
+                synchronized (mapper) {
+                    mapper.insertClusterInvalidationsLog(nodeId, invalidations);
+                }
+                break;
+            } catch (ConcurrentUpdateException e) {
+                // another node took the same sequence number concurrently, other errors are not retried
+                if (attempt == SEND_ATTEMPTS) {
+                    throw e;
+                }
+                log.debug("Retrying invalidations log insert after: " + e);
+                backOff(attempt);
+            }
+        }
+        sentCount.inc();
+    }
+
+    /**
+     * Waits a random delay before retrying an append, so that nodes that conflicted don't conflict again.
+     */
+    protected void backOff(int attempt) {
+        long delay = ThreadLocalRandom.current().nextLong(1, SEND_RETRY_DELAY * attempt + 1);
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new NuxeoException(e);
+        }
+    }
+
+    protected void pollLoop() {
+        while (!closed) {
+            boolean more;
+            try (Timer.Context context = pollTimer.time()) {
+                more = poll();
+            } catch (NuxeoException e) {
+                if (closed) {
+                    break;
+                }
+                log.error("Cannot read cluster invalidations log for repository: " + repositoryName, e);
+                more = false;
+            }
+            if (!more) {
+                try {
+                    Thread.sleep(pollDelay);
+                } catch (InterruptedException e) {
+                    // closing
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads one page of the log.
+     *
+     * @return {@code true} if there may be more records to read immediately
+     */
+    protected boolean poll() {
+        long[] bounds;
+        ClusterInvalidationsLogBatch batch = null;
+        synchronized (mapper) {
+            bounds = mapper.getClusterInvalidationsLogBounds();
+            backlog = Math.max(bounds[1] - lastSeq, 0);
+            if (backlog == 0) {
+                purgeIfNeeded(bounds[1]);
+                return false;
+            }
+            // records after our position were purged, or too many to read: cheaper to flush everything
+            boolean missed = bounds[0] > lastSeq + 1;
+            if (!missed && backlog <= maxBacklog) {
+                batch = mapper.getClusterInvalidationsLog(nodeId, lastSeq, pageSize);
+            }
+        }
+        Invalidations invalidations;
+        if (batch == null) {
+            log.warn("Cluster node: " + nodeId + " is " + backlog + " invalidations behind for repository: "
+                    + repositoryName + ", invalidating all caches");
+            invalidations = new Invalidations(true);
+            lastSeq = bounds[1];
+            flushCount.inc();
+        } else {
+            invalidations = batch.invalidations;
+            lastSeq = batch.lastSeq;
+            receivedCount.inc(batch.count);
+        }
+        backlog = Math.max(bounds[1] - lastSeq, 0);
+        if (!invalidations.isEmpty()) {
+            synchronized (this) {
+                pending.add(invalidations);
+            }
+        }
+        return batch != null && batch.count == pageSize;
+    }
+
+    // called under mapper synchronization
+    protected void purgeIfNeeded(long maxSeq) {
+        long now = System.currentTimeMillis();
+        // any node may purge, spread the purges over the retention period
+        if (now - lastPurgeTimeMillis < retentionMillis / 10) {
+            return;
+        }
+        lastPurgeTimeMillis = now;
+        Calendar beforeTime = Calendar.getInstance();
+        beforeTime.setTimeInMillis(now - retentionMillis);
+        int n = mapper.deleteClusterInvalidationsLog(beforeTime, maxSeq);
+        if (log.isDebugEnabled()) {
+            log.debug("Purged " + n + " records from cluster invalidations log for repository: " + repositoryName);
+        }
+    }
+
+}
@@ -30,6 +30,7 @@ import java.io.Serializable;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.sql.Array;
+import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -60,6 +61,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.nuxeo.common.Environment;
 import org.nuxeo.ecm.core.api.IterableQueryResult;
+import org.nuxeo.ecm.core.api.IterableRowQueryResult;
 import org.nuxeo.ecm.core.api.Lock;
 import org.nuxeo.ecm.core.api.NuxeoException;
 import org.nuxeo.ecm.core.api.PartialList;
@@ -87,6 +89,8 @@ import org.nuxeo.ecm.core.storage.sql.jdbc.dialect.Dialect;
 import org.nuxeo.ecm.core.storage.sql.jdbc.dialect.DialectOracle;
 import org.nuxeo.ecm.core.storage.sql.jdbc.dialect.SQLStatement.ListCollector;
 import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.datasource.ConnectionHelper;
+import org.nuxeo.runtime.transaction.TransactionHelper;
 
 /**
  * A {@link JDBCMapper} maps objects to and from a JDBC database. It is specific to a given database connection, as it
@@ -590,6 +594,107 @@ public class JDBCMapper extends JDBCRowMapper implements Mapper {
         }
     }
 
+    @Override
+    public void insertClusterInvalidationsLog(Serializable nodeId, Invalidations invalidations) {
+        String sql = sqlInfo.getInsertClusterInvalsLogSql();
+        List<Column> columns = sqlInfo.getInsertClusterInvalsLogColumns();
+        Calendar now = Calendar.getInstance();
+        String invals = invalidations.toCompactString(model::idToString);
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            if (logger.isLogEnabled()) {
+                logger.logSQL(sql, Arrays.asList(nodeId, now, invals));
+            }
+            columns.get(0).setToPreparedStatement(ps, 1, nodeId);
+            columns.get(1).setToPreparedStatement(ps, 2, now);
+            columns.get(2).setToPreparedStatement(ps, 3, invals);
+            ps.execute();
+            countExecute();
+        } catch (SQLException e) {
+            // another node took the same sequence number
+            checkConcurrentUpdate(e);
+            throw new NuxeoException("Could not invalidate", e);
+        }
+    }
+
+    @Override
+    public ClusterInvalidationsLogBatch getClusterInvalidationsLog(Serializable nodeId, long afterSeq, int max) {
+        String sql = sqlInfo.getSelectClusterInvalsLogSql();
+        List<Column> columns = sqlInfo.getSelectClusterInvalsLogColumns();
+        if (logger.isLogEnabled()) {
+            logger.logSQL(sql, Collections.singletonList(Long.valueOf(afterSeq)));
+        }
+        Invalidations invalidations = new Invalidations();
+        long lastSeq = afterSeq;
+        int count = 0;
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            ps.setMaxRows(max);
+            columns.get(0).setToPreparedStatement(ps, 1, Long.valueOf(afterSeq));
+            try (ResultSet rs = ps.executeQuery()) {
+                countExecute();
+                while (rs.next()) {
+                    lastSeq = ((Number) columns.get(0).getFromResultSet(rs, 1)).longValue();
+                    Serializable recordNodeId = columns.get(1).getFromResultSet(rs, 2);
+                    String invals = (String) columns.get(2).getFromResultSet(rs, 3);
+                    count++;
+                    if (nodeId.equals(recordNodeId) || invalidations.all) {
+                        continue;
+                    }
+                    invalidations.add(Invalidations.fromCompactString(invals, model::idFromString));
+                }
+            }
+            if (logger.isLogEnabled()) {
+                logger.log("  -> " + count + " records, lastSeq=" + lastSeq + " " + invalidations);
+            }
+            return new ClusterInvalidationsLogBatch(invalidations, lastSeq, count);
+        } catch (SQLException e) {
+            throw new NuxeoException("Could not invalidate", e);
+        }
+    }
+
+    @Override
+    public long[] getClusterInvalidationsLogBounds() {
+        String sql = sqlInfo.getSelectClusterInvalsLogBoundsSql();
+        if (logger.isLogEnabled()) {
+            logger.logSQL(sql, Collections.emptyList());
+        }
+        try (Statement st = connection.createStatement(); ResultSet rs = st.executeQuery(sql)) {
+            countExecute();
+            long[] bounds = new long[2];
+            if (rs.next()) {
+                // MIN and MAX are NULL on an empty log, which getLong returns as 0
+                bounds[0] = rs.getLong(1);
+                bounds[1] = rs.getLong(2);
+            }
+            if (logger.isLogEnabled()) {
+                logger.log("  -> " + bounds[0] + ".." + bounds[1]);
+            }
+            return bounds;
+        } catch (SQLException e) {
+            throw new NuxeoException("Could not read cluster invalidations log", e);
+        }
+    }
+
+    @Override
+    public int deleteClusterInvalidationsLog(Calendar beforeTime, long beforeSeq) {
+        String sql = sqlInfo.getDeleteClusterInvalsLogSql();
+        List<Column> columns = sqlInfo.getDeleteClusterInvalsLogColumns();
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            if (logger.isLogEnabled()) {
+                logger.logSQL(sql, Arrays.asList(beforeTime, Long.valueOf(beforeSeq)));
+            }
+            columns.get(0).setToPreparedStatement(ps, 1, beforeTime);
+            columns.get(1).setToPreparedStatement(ps, 2, Long.valueOf(beforeSeq));
+            int n = ps.executeUpdate();
+            countExecute();
+            if (logger.isLogEnabled()) {
+                logger.logCount(n);
+            }
+            return n;
+        } catch (SQLException e) {
+            throw new NuxeoException("Could not purge cluster invalidations log", e);
+        }
+    }
+
     @Override
     public Serializable getRootId(String repositoryId) {
         String sql = sqlInfo.getSelectRootIdSql();
@@ -675,6 +780,10 @@ public class JDBCMapper extends JDBCRowMapper implements Mapper {
     }
 
     protected void prepareUserReadAcls(QueryFilter queryFilter) {
+        prepareUserReadAcls(connection, queryFilter);
+    }
+
+    protected void prepareUserReadAcls(Connection conn, QueryFilter queryFilter) {
         String sql = dialect.getPrepareUserReadAclsSql();
         Serializable principals = queryFilter.getPrincipals();
         if (sql == null || principals == null) {
@@ -683,7 +792,7 @@ public class JDBCMapper extends JDBCRowMapper implements Mapper {
         if (!dialect.supportsArrays()) {
             principals = String.join(Dialect.ARRAY_SEP, (String[]) principals);
         }
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
             if (logger.isLogEnabled()) {
                 logger.logSQL(sql, Collections.singleton(principals));
             }
@@ -732,6 +841,63 @@ public class JDBCMapper extends JDBCRowMapper implements Mapper {
         }
     }
 
+    @Override
+    public IterableRowQueryResult queryAndFetchRows(String query, String queryType, QueryFilter queryFilter,
+            boolean distinctDocuments, int fetchSize, boolean detached, Object... params) {
+        QueryMaker queryMaker = findQueryMaker(queryType);
+        if (queryMaker == null) {
+            throw new NuxeoException("No QueryMaker accepts query: " + queryType + ": " + query);
+        }
+        query = computeDistinctDocuments(query, distinctDocuments);
+        Connection conn = detached ? openDetachedConnection() : connection;
+        try {
+            if (dialect.needsPrepareUserReadAcls()) {
+                prepareUserReadAcls(conn, queryFilter);
+            }
+            QueryMaker.Query q = queryMaker.buildQuery(sqlInfo, model, pathResolver, query, queryFilter, params);
+            return new ResultSetRowQueryResult(q, fetchSize, conn, detached, this);
+        } catch (SQLException | RuntimeException e) {
+            if (detached) {
+                closeDetachedConnection(conn);
+            }
+            if (e instanceof RuntimeException) {
+                throw (RuntimeException) e;
+            }
+            throw new NuxeoException("Invalid query: " + queryType + ": " + query, e);
+        }
+    }
+
+    /**
+     * Opens a connection outside of the current transaction, so that a cursor on it can stay open across commits of
+     * the session's own connection.
+     */
+    protected Connection openDetachedConnection() {
+        String dataSourceName = getDataSourceName(getRepositoryName());
+        return TransactionHelper.runWithoutTransaction(() -> {
+            Connection conn = null;
+            try {
+                conn = ConnectionHelper.getConnection(dataSourceName, true);
+                conn.setAutoCommit(false);
+                dialect.performPostOpenStatements(conn);
+                return conn;
+            } catch (SQLException e) {
+                closeDetachedConnection(conn);
+                throw new NuxeoException("Cannot connect to database: " + getRepositoryName(), e);
+            }
+        });
+    }
+
+    protected void closeDetachedConnection(Connection conn) {
+        if (conn == null) {
+            return;
+        }
+        try {
+            conn.close();
+        } catch (SQLException e) {
+            log.error("Cannot close detached connection", e);
+        }
+    }
+
     @Override
     public PartialList<Map<String, Serializable>> queryProjection(String query, String queryType,
             QueryFilter queryFilter, boolean distinctDocuments, long countUpTo, Object... params) {
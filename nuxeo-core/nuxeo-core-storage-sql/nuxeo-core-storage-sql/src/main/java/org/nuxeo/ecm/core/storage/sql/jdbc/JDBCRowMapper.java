@@ -67,8 +67,13 @@ import org.nuxeo.ecm.core.storage.sql.jdbc.db.Column;
 import org.nuxeo.ecm.core.storage.sql.jdbc.db.Table;
 import org.nuxeo.ecm.core.storage.sql.jdbc.db.Update;
 import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.metrics.MetricsService;
 import org.nuxeo.runtime.services.config.ConfigurationService;
 
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+
 /**
  * A {@link JDBCRowMapper} maps {@link Row}s to and from a JDBC database.
  */
@@ -95,6 +100,10 @@ public class JDBCRowMapper extends JDBCConnection implements RowMapper {
 
     private final CollectionIO scalarCollectionIO;
 
+    private final Histogram flushStatements;
+
+    private final Histogram flushRows;
+
     public JDBCRowMapper(Model model, SQLInfo sqlInfo, ClusterInvalidator clusterInvalidator,
             InvalidationsPropagator invalidationsPropagator) {
         super(model, sqlInfo);
@@ -104,6 +113,11 @@ public class JDBCRowMapper extends JDBCConnection implements RowMapper {
         collectionDeleteBeforeAppend = configurationService.isBooleanPropertyTrue(COLLECTION_DELETE_BEFORE_APPEND_PROP);
         aclCollectionIO = new ACLCollectionIO(collectionDeleteBeforeAppend);
         scalarCollectionIO = new ScalarCollectionIO(collectionDeleteBeforeAppend);
+        MetricRegistry registry = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
+        String repositoryName = getRepositoryName();
+        flushStatements = registry.histogram(
+                MetricRegistry.name("nuxeo", "repositories", repositoryName, "flush", "statements"));
+        flushRows = registry.histogram(MetricRegistry.name("nuxeo", "repositories", repositoryName, "flush", "rows"));
     }
 
     @Override
@@ -434,6 +448,7 @@ public class JDBCRowMapper extends JDBCConnection implements RowMapper {
 
     @Override
     public void write(RowBatch batch) {
+        long statementsBefore = statementCount;
         // do deletes first to avoid violating constraint of unique child name in parent
         // when replacing a complex list element
         if (!batch.deletes.isEmpty()) {
@@ -446,6 +461,8 @@ public class JDBCRowMapper extends JDBCConnection implements RowMapper {
         if (!batch.updates.isEmpty()) {
             writeUpdates(batch.updates);
         }
+        flushStatements.update(statementCount - statementsBefore);
+        flushRows.update(batch.deletes.size() + batch.creates.size() + batch.updates.size());
     }
 
     protected void writeCreates(List<Row> creates) {
@@ -589,19 +606,14 @@ public class JDBCRowMapper extends JDBCConnection implements RowMapper {
         }
 
         // reorganize by identical queries to allow batching
-        Map<String, SQLInfoSelect> sqlToInfo = new HashMap<>();
-        Map<String, List<RowUpdate>> sqlRowUpdates = new HashMap<>();
+        Map<String, List<RowUpdate>> signatureRowUpdates = new LinkedHashMap<>();
         for (RowUpdate rowu : rows) {
-            SQLInfoSelect update = sqlInfo.getUpdateById(tableName, rowu);
-            String sql = update.sql;
-            sqlToInfo.put(sql, update);
-            sqlRowUpdates.computeIfAbsent(sql, k -> new ArrayList<RowUpdate>()).add(rowu);
+            signatureRowUpdates.computeIfAbsent(getUpdateSignature(rowu), k -> new ArrayList<>()).add(rowu);
         }
 
-        for (Entry<String, List<RowUpdate>> en : sqlRowUpdates.entrySet()) {
-            String sql = en.getKey();
-            List<RowUpdate> rowUpdates = en.getValue();
-            SQLInfoSelect update = sqlToInfo.get(sql);
+        for (List<RowUpdate> rowUpdates : signatureRowUpdates.values()) {
+            // values are bound by column key, so the statement of the first row fits all the rows
+            SQLInfoSelect update = sqlInfo.getUpdateById(tableName, rowUpdates.get(0));
             boolean changeTokenEnabled = model.getRepositoryDescriptor().isChangeTokenEnabled();
             boolean batched = supportsBatchUpdates && rowUpdates.size() > 1
                     && (dialect.supportsBatchUpdateCount() || !changeTokenEnabled);
@@ -670,6 +682,35 @@ public class JDBCRowMapper extends JDBCConnection implements RowMapper {
         }
     }
 
+    /**
+     * Gets the signature of the statement updating a row: its dirty columns, the ones updated with a delta, and its
+     * conditions. Rows with the same signature are updated by the same statement, whatever the order of their keys.
+     *
+     * @since 9.3
+     */
+    protected static String getUpdateSignature(RowUpdate rowu) {
+        List<String> keys = new ArrayList<>(rowu.keys);
+        Collections.sort(keys);
+        StringBuilder buf = new StringBuilder();
+        for (String key : keys) {
+            buf.append(key);
+            Serializable value = rowu.row.get(key);
+            if (value instanceof Delta && ((Delta) value).getBase() != null) {
+                buf.append('+');
+            }
+            buf.append(',');
+        }
+        if (rowu.conditions != null) {
+            buf.append('|');
+            List<String> conditionKeys = new ArrayList<>(rowu.conditions.keySet());
+            Collections.sort(conditionKeys);
+            for (String key : conditionKeys) {
+                buf.append(key).append(rowu.conditions.get(key) == null ? " IS NULL" : "=?").append(',');
+            }
+        }
+        return buf.toString();
+    }
+
     protected void updateCollectionRows(String tableName, List<RowUpdate> rowus) {
         Set<Serializable> deleteIds = new HashSet<>();
         for (RowUpdate rowu : rowus) {
@@ -827,6 +868,39 @@ public class JDBCRowMapper extends JDBCConnection implements RowMapper {
         }
     }
 
+    /**
+     * Counts soft-deleted rows waiting for cleanup.
+     *
+     * @param beforeTime the maximum deletion time of the rows to count, or {@code null} for all
+     * @return the number of rows
+     * @since 9.3
+     */
+    public long countDeletedRows(Calendar beforeTime) {
+        String sql = sqlInfo.getSoftDeleteCountSql(beforeTime != null);
+        if (logger.isLogEnabled()) {
+            logger.logSQL(sql, beforeTime == null ? Collections.<Serializable> emptyList()
+                    : Collections.<Serializable> singletonList(beforeTime));
+        }
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            if (beforeTime != null) {
+                dialect.setToPreparedStatementTimestamp(ps, 1, beforeTime, null);
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                countExecute();
+                if (!rs.next()) {
+                    throw new NuxeoException("Cannot get result");
+                }
+                long count = rs.getLong(1);
+                if (logger.isLogEnabled()) {
+                    logger.log("  -> " + count);
+                }
+                return count;
+            }
+        } catch (SQLException e) {
+            throw new NuxeoException("Could not count soft-deleted rows", e);
+        }
+    }
+
     protected void deleteRowsDirect(String tableName, Collection<Serializable> ids) {
         String sql = sqlInfo.getDeleteSql(tableName, ids.size());
         if (logger.isLogEnabled()) {
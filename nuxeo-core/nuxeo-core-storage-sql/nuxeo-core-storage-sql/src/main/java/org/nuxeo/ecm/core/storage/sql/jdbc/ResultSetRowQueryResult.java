@@ -0,0 +1,225 @@
+/*
+ * (C) Copyright 2017 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Florent Guillaume
+ */
+package org.nuxeo.ecm.core.storage.sql.jdbc;
+
+import java.io.Serializable;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.nuxeo.ecm.core.api.IterableRowQueryResult;
+import org.nuxeo.ecm.core.storage.sql.jdbc.SQLInfo.ColumnMapMaker;
+import org.nuxeo.ecm.core.storage.sql.jdbc.db.Column;
+
+/**
+ * Iterable row query result implemented as a forward-only cursor on a SQL {@link ResultSet}.
+ * <p>
+ * Unlike {@link ResultSetQueryResult}, the result set is not scrollable, which lets the driver stream rows from a
+ * server-side cursor {@code fetchSize} rows at a time instead of loading the whole result in memory.
+ * <p>
+ * When constructed with a detached connection, the cursor lives in its own transaction on that connection, which is
+ * closed with the result.
+ *
+ * @since 9.3
+ */
+public class ResultSetRowQueryResult implements IterableRowQueryResult, Iterator<Serializable[]> {
+
+    private final JDBCLogger logger;
+
+    private final QueryMaker.Query q;
+
+    private final String[] columnNames;
+
+    private Connection detachedConnection;
+
+    private PreparedStatement ps;
+
+    private ResultSet rs;
+
+    private Serializable[] next;
+
+    private boolean eof;
+
+    /**
+     * Executes the query.
+     *
+     * @param q the query, or {@code null} if the query cannot match anything
+     * @param fetchSize the fetch size, or {@code 0} for the driver default
+     * @param connection the connection to use
+     * @param detached whether the connection is dedicated to this result and must be closed with it
+     */
+    public ResultSetRowQueryResult(QueryMaker.Query q, int fetchSize, Connection connection, boolean detached,
+            JDBCMapper mapper) throws SQLException {
+        logger = mapper.logger;
+        this.q = q;
+        if (detached) {
+            detachedConnection = connection;
+        }
+        if (q == null) {
+            // no result
+            columnNames = new String[0];
+            eof = true;
+            closeDetachedConnection();
+            return;
+        }
+        if (q.selectInfo.mapMaker instanceof ColumnMapMaker) {
+            columnNames = ((ColumnMapMaker) q.selectInfo.mapMaker).keys.toArray(new String[0]);
+        } else {
+            columnNames = q.selectInfo.whatColumns.stream().map(Column::getKey).toArray(String[]::new);
+        }
+        if (logger.isLogEnabled()) {
+            logger.logSQL(q.selectInfo.sql, q.selectParams);
+        }
+        try {
+            ps = connection.prepareStatement(q.selectInfo.sql, ResultSet.TYPE_FORWARD_ONLY,
+                    ResultSet.CONCUR_READ_ONLY);
+            if (fetchSize > 0) {
+                ps.setFetchSize(fetchSize);
+            }
+            int i = 1;
+            for (Serializable object : q.selectParams) {
+                mapper.setToPreparedStatement(ps, i++, object);
+            }
+            rs = ps.executeQuery();
+            mapper.countExecute();
+        } catch (SQLException e) {
+            close();
+            throw e;
+        }
+    }
+
+    @Override
+    public String[] getColumnNames() {
+        return columnNames;
+    }
+
+    @Override
+    public void close() {
+        try {
+            if (rs != null) {
+                rs.close();
+            }
+            if (ps != null) {
+                ResultSetQueryResult.closePreparedStatement(ps);
+            }
+        } catch (SQLException e) {
+            logger.error("Error closing statement: " + e.getMessage(), e);
+        } finally {
+            rs = null;
+            ps = null;
+            eof = true;
+            closeDetachedConnection();
+        }
+    }
+
+    protected void closeDetachedConnection() {
+        if (detachedConnection == null) {
+            return;
+        }
+        try {
+            // read-only, nothing to commit
+            detachedConnection.rollback();
+        } catch (SQLException e) {
+            logger.error("Error rolling back detached connection: " + e.getMessage(), e);
+        } finally {
+            try {
+                detachedConnection.close();
+            } catch (SQLException e) {
+                logger.error("Error closing detached connection: " + e.getMessage(), e);
+            }
+            detachedConnection = null;
+        }
+    }
+
+    @Override
+    public boolean mustBeClosed() {
+        return rs != null || detachedConnection != null;
+    }
+
+    protected void checkNotClosed() {
+        if (rs == null) {
+            throw new IllegalStateException("Query results iterator closed (" + q.selectInfo.sql + ")");
+        }
+    }
+
+    @Override
+    public Iterator<Serializable[]> iterator() {
+        if (q != null) {
+            checkNotClosed();
+        }
+        return this;
+    }
+
+    protected Serializable[] fetchNext() throws SQLException {
+        checkNotClosed();
+        if (!rs.next()) {
+            if (logger.isLogEnabled()) {
+                logger.log("  -> END");
+            }
+            return null;
+        }
+        Serializable[] row;
+        if (q.selectInfo.mapMaker instanceof ColumnMapMaker) {
+            row = ((ColumnMapMaker) q.selectInfo.mapMaker).makeRow(rs);
+        } else {
+            Map<String, Serializable> map = q.selectInfo.mapMaker.makeMap(rs);
+            row = new Serializable[columnNames.length];
+            for (int i = 0; i < columnNames.length; i++) {
+                row[i] = map.get(columnNames[i]);
+            }
+        }
+        if (logger.isLogEnabled()) {
+            logger.log("  -> " + Arrays.toString(row));
+        }
+        return row;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (eof) {
+            return false;
+        }
+        if (next != null) {
+            return true;
+        }
+        try {
+            next = fetchNext();
+        } catch (SQLException e) {
+            logger.error("Error fetching next: " + e.getMessage(), e);
+        }
+        eof = next == null;
+        return !eof;
+    }
+
+    @Override
+    public Serializable[] next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Serializable[] n = next;
+        next = null;
+        return n;
+    }
+
+}
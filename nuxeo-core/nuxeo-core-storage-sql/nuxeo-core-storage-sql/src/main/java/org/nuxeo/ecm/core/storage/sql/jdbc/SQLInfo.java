@@ -29,6 +29,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -125,6 +126,20 @@ public class SQLInfo {
 
     protected List<Column> clusterInvalidationsColumns;
 
+    protected String insertClusterInvalsLogSql;
+
+    protected List<Column> insertClusterInvalsLogColumns;
+
+    protected String selectClusterInvalsLogSql;
+
+    protected List<Column> selectClusterInvalsLogColumns;
+
+    protected String selectClusterInvalsLogBoundsSql;
+
+    protected String deleteClusterInvalsLogSql;
+
+    protected List<Column> deleteClusterInvalsLogColumns;
+
     protected Map<String, List<SQLStatement>> sqlStatements;
 
     protected Map<String, Serializable> sqlStatementsProperties;
@@ -257,6 +272,46 @@ public class SQLInfo {
         return clusterInvalidationsColumns;
     }
 
+    /** @since 9.3 */
+    public boolean hasClusterInvalidationsLog() {
+        return insertClusterInvalsLogSql != null;
+    }
+
+    /** @since 9.3 */
+    public String getInsertClusterInvalsLogSql() {
+        return insertClusterInvalsLogSql;
+    }
+
+    /** @since 9.3 */
+    public List<Column> getInsertClusterInvalsLogColumns() {
+        return insertClusterInvalsLogColumns;
+    }
+
+    /** @since 9.3 */
+    public String getSelectClusterInvalsLogSql() {
+        return selectClusterInvalsLogSql;
+    }
+
+    /** @since 9.3 */
+    public List<Column> getSelectClusterInvalsLogColumns() {
+        return selectClusterInvalsLogColumns;
+    }
+
+    /** @since 9.3 */
+    public String getSelectClusterInvalsLogBoundsSql() {
+        return selectClusterInvalsLogBoundsSql;
+    }
+
+    /** @since 9.3 */
+    public String getDeleteClusterInvalsLogSql() {
+        return deleteClusterInvalsLogSql;
+    }
+
+    /** @since 9.3 */
+    public List<Column> getDeleteClusterInvalsLogColumns() {
+        return deleteClusterInvalsLogColumns;
+    }
+
     // ----- insert -----
 
     /**
@@ -586,6 +641,23 @@ public class SQLInfo {
         return dialect.getSoftDeleteCleanupSql();
     }
 
+    /**
+     * Returns the SQL to count soft-deleted rows. If {@code withTime} is {@code true}, the beforeTime is a free
+     * parameter.
+     *
+     * @return the SQL statement
+     * @since 9.3
+     */
+    public String getSoftDeleteCountSql(boolean withTime) {
+        Table table = database.getTable(Model.HIER_TABLE_NAME);
+        String sql = String.format("SELECT COUNT(*) FROM %s WHERE %s IS NOT NULL", table.getQuotedName(),
+                table.getColumn(Model.MAIN_IS_DELETED_KEY).getQuotedName());
+        if (withTime) {
+            sql += String.format(" AND %s < ?", table.getColumn(Model.MAIN_DELETED_TIME_KEY).getQuotedName());
+        }
+        return sql;
+    }
+
     // ----- copy -----
 
     public SQLInfoSelect getCopyHier(boolean explicitName, boolean resetVersion) {
@@ -739,6 +811,28 @@ public class SQLInfo {
         maker.newColumn(Model.CLUSTER_INVALS_KIND_KEY, ColumnType.TINYINT);
         maker.table.addIndex(Model.CLUSTER_INVALS_NODEID_KEY);
         maker.postProcessClusterInvalidations();
+
+        Class<?> klass = model.getRepositoryDescriptor().clusterInvalidatorClass;
+        if (klass != null && JDBCLogClusterInvalidator.class.isAssignableFrom(klass)) {
+            initClusterInvalidationsLogSQL();
+        }
+    }
+
+    /**
+     * Creates the SQL for the append-only cluster invalidations log used by {@link JDBCLogClusterInvalidator}.
+     *
+     * @since 9.3
+     */
+    protected void initClusterInvalidationsLogSQL() {
+        TableMaker maker = new TableMaker(Model.CLUSTER_INVALS_LOG_TABLE_NAME);
+        Column seq = maker.newColumn(Model.CLUSTER_INVALS_LOG_SEQ_KEY, ColumnType.LONG);
+        seq.setNullable(false);
+        seq.setPrimary(true);
+        maker.newColumn(Model.CLUSTER_INVALS_LOG_NODEID_KEY, ColumnType.CLUSTERNODE);
+        maker.newColumn(Model.CLUSTER_INVALS_LOG_CREATED_KEY, ColumnType.TIMESTAMP);
+        maker.newColumn(Model.CLUSTER_INVALS_LOG_INVALS_KEY, ColumnType.CLOB);
+        maker.table.addIndex(Model.CLUSTER_INVALS_LOG_CREATED_KEY);
+        maker.postProcessClusterInvalidationsLog();
     }
 
     /**
@@ -930,6 +1024,40 @@ public class SQLInfo {
             deleteClusterInvalsColumn = column;
         }
 
+        protected void postProcessClusterInvalidationsLog() {
+            Column seq = table.getColumn(Model.CLUSTER_INVALS_LOG_SEQ_KEY);
+            Column nodeId = table.getColumn(Model.CLUSTER_INVALS_LOG_NODEID_KEY);
+            Column created = table.getColumn(Model.CLUSTER_INVALS_LOG_CREATED_KEY);
+            Column invals = table.getColumn(Model.CLUSTER_INVALS_LOG_INVALS_KEY);
+            String qseq = seq.getQuotedName();
+            String qtable = table.getQuotedName();
+
+            // the sequence number is allocated as MAX + 1 under the primary key constraint, so that concurrent
+            // writers conflict instead of committing out of order, and readers never skip a record
+            insertClusterInvalsLogSql = String.format(
+                    "INSERT INTO %s (%s, %s, %s, %s) SELECT COALESCE(MAX(%s), 0) + 1, ?, ?, ? FROM %s", qtable, qseq,
+                    nodeId.getQuotedName(), created.getQuotedName(), invals.getQuotedName(), qseq, qtable);
+            insertClusterInvalsLogColumns = Arrays.asList(nodeId, created, invals);
+
+            Select select = new Select(table);
+            select.setWhat(String.join(", ", qseq, nodeId.getQuotedName(), invals.getQuotedName()));
+            select.setFrom(qtable);
+            select.setWhere(qseq + " > ?");
+            select.setOrderBy(qseq);
+            selectClusterInvalsLogSql = select.getStatement();
+            selectClusterInvalsLogColumns = Arrays.asList(seq, nodeId, invals);
+
+            select = new Select(table);
+            select.setWhat(String.format("MIN(%s), MAX(%s)", qseq, qseq));
+            select.setFrom(qtable);
+            selectClusterInvalsLogBoundsSql = select.getStatement();
+
+            Delete delete = new Delete(table);
+            delete.setWhere(created.getQuotedName() + " < ? AND " + qseq + " < ?");
+            deleteClusterInvalsLogSql = delete.getStatement();
+            deleteClusterInvalsLogColumns = Arrays.asList(created, seq);
+        }
+
         protected void postProcessRepository() {
             postProcessRootIdSelect();
             postProcessInsert();
@@ -1219,6 +1347,26 @@ public class SQLInfo {
             }
             return map;
         }
+
+        /**
+         * Builds a row of values, in column order, without the cost of a map.
+         *
+         * @since 9.3
+         */
+        public Serializable[] makeRow(ResultSet rs) throws SQLException {
+            Serializable[] row = new Serializable[columns.size()];
+            Iterator<String> keysIt = keys.iterator();
+            int i = 0;
+            for (Column column : columns) {
+                String key = keysIt.next();
+                Serializable value = column.getFromResultSet(rs, i + 1);
+                if (NXQL.ECM_UUID.equals(key) || NXQL.ECM_PARENTID.equals(key)) {
+                    value = String.valueOf(value); // idToString
+                }
+                row[i++] = value;
+            }
+            return row;
+        }
     }
 
     private static String[] NO_ORDER_BY = new String[0];
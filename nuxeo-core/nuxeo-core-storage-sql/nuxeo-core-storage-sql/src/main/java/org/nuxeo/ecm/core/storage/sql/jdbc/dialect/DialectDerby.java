@@ -301,6 +301,11 @@ public class DialectDerby extends Dialect {
                     // constraint ... for key ...
                     return true;
                 }
+                if ("23505".equals(sqlState)) {
+                    // The statement was aborted because it would have caused a
+                    // duplicate key value in a unique or primary key constraint
+                    return true;
+                }
                 if ("40001".equals(sqlState)) {
                     // A lock could not be obtained due to a deadlock
                     return true;
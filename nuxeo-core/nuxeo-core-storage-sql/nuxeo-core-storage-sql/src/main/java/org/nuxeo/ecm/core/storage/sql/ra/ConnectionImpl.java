@@ -33,6 +33,7 @@ import javax.resource.cci.ResultSetInfo;
 
 import org.apache.commons.logging.LogFactory;
 import org.nuxeo.ecm.core.api.IterableQueryResult;
+import org.nuxeo.ecm.core.api.IterableRowQueryResult;
 import org.nuxeo.ecm.core.api.NuxeoException;
 import org.nuxeo.ecm.core.api.PartialList;
 import org.nuxeo.ecm.core.api.ScrollResult;
@@ -351,6 +352,17 @@ public class ConnectionImpl implements Session {
         return result;
     }
 
+    @Override
+    public IterableRowQueryResult queryAndFetchRows(String query, String queryType, QueryFilter queryFilter,
+            boolean distinctDocuments, int fetchSize, boolean detached, Object... params) {
+        IterableRowQueryResult result = getSession().queryAndFetchRows(query, queryType, queryFilter,
+                distinctDocuments, fetchSize, detached, params);
+        if (!detached) {
+            noteQueryResult(result);
+        }
+        return result;
+    }
+
     @Override
     public PartialList<Map<String,Serializable>> queryProjection(String query, String queryType, QueryFilter queryFilter,
             boolean distinctDocuments, long countUpTo, Object... params) {
@@ -362,9 +374,32 @@ public class ConnectionImpl implements Session {
 
         public final IterableQueryResult queryResult;
 
+        /** @since 9.3 */
+        public final IterableRowQueryResult rowQueryResult;
+
         public QueryResultContextException(IterableQueryResult queryResult) {
             super("queryAndFetch call context");
             this.queryResult = queryResult;
+            rowQueryResult = null;
+        }
+
+        /** @since 9.3 */
+        public QueryResultContextException(IterableRowQueryResult rowQueryResult) {
+            super("queryAndFetchRows call context");
+            queryResult = null;
+            this.rowQueryResult = rowQueryResult;
+        }
+
+        protected boolean mustBeClosed() {
+            return queryResult != null ? queryResult.mustBeClosed() : rowQueryResult.mustBeClosed();
+        }
+
+        protected void close() {
+            if (queryResult != null) {
+                queryResult.close();
+            } else {
+                rowQueryResult.close();
+            }
         }
     }
 
@@ -374,13 +409,17 @@ public class ConnectionImpl implements Session {
         queryResults.add(new QueryResultContextException(result));
     }
 
+    protected void noteQueryResult(IterableRowQueryResult result) {
+        queryResults.add(new QueryResultContextException(result));
+    }
+
     protected void closeStillOpenQueryResults() {
         for (QueryResultContextException context : queryResults) {
-            if (!context.queryResult.mustBeClosed()) {
+            if (!context.mustBeClosed()) {
                 continue;
             }
             try {
-                context.queryResult.close();
+                context.close();
             } catch (RuntimeException e) {
                 LogFactory.getLog(ConnectionImpl.class).error("Cannot close query result", e);
             } finally {
@@ -0,0 +1,81 @@
+/*
+ * (C) Copyright 2017 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Florent Guillaume
+ */
+package org.nuxeo.ecm.core.storage.sql;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.junit.Test;
+
+public class TestInvalidations {
+
+    @Test
+    public void testCompactStringRoundTrip() {
+        Invalidations invalidations = new Invalidations();
+        invalidations.addModified(new RowId("hierarchy", "id1"));
+        invalidations.addModified(new RowId("dublincore", "id1"));
+        invalidations.addModified(new RowId(Invalidations.PARENT, "id2"));
+        invalidations.addDeleted(new RowId("hierarchy", "id3"));
+
+        String compact = invalidations.toCompactString(String::valueOf);
+        Invalidations read = Invalidations.fromCompactString(compact, id -> id);
+
+        assertFalse(read.all);
+        assertEquals(invalidations.modified, read.modified);
+        assertEquals(invalidations.deleted, read.deleted);
+        // one line per id and kind
+        assertEquals(3, compact.split("\n").length);
+    }
+
+    @Test
+    public void testCompactStringLongIds() {
+        Invalidations invalidations = new Invalidations();
+        invalidations.addDeleted(new RowId("hierarchy", Long.valueOf(123)));
+
+        String compact = invalidations.toCompactString(String::valueOf);
+        Invalidations read = Invalidations.fromCompactString(compact, Long::valueOf);
+
+        assertNull(read.modified);
+        assertEquals(new HashSet<>(Arrays.asList(new RowId("hierarchy", (Serializable) Long.valueOf(123)))),
+                read.deleted);
+    }
+
+    @Test
+    public void testCompactStringAll() {
+        Invalidations invalidations = new Invalidations(true);
+        String compact = invalidations.toCompactString(String::valueOf);
+        Invalidations read = Invalidations.fromCompactString(compact, id -> id);
+        assertTrue(read.all);
+    }
+
+    @Test
+    public void testCompactStringEmpty() {
+        Invalidations invalidations = new Invalidations();
+        String compact = invalidations.toCompactString(String::valueOf);
+        assertEquals("", compact);
+        assertTrue(Invalidations.fromCompactString(compact, id -> id).isEmpty());
+    }
+
+}
@@ -0,0 +1,79 @@
+/*
+ * (C) Copyright 2017 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Florent Guillaume
+ */
+package org.nuxeo.ecm.core.storage.sql.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+import org.nuxeo.ecm.core.api.model.DeltaLong;
+import org.nuxeo.ecm.core.storage.sql.Row;
+import org.nuxeo.ecm.core.storage.sql.RowMapper.RowUpdate;
+
+public class TestJDBCRowMapperUpdateSignature {
+
+    protected static RowUpdate update(String id, String... keys) {
+        Row row = new Row("dublincore", id);
+        for (String key : keys) {
+            row.put(key, "v");
+        }
+        return new RowUpdate(row, Arrays.asList(keys));
+    }
+
+    protected static String signature(RowUpdate rowu) {
+        return JDBCRowMapper.getUpdateSignature(rowu);
+    }
+
+    @Test
+    public void testSameColumns() {
+        // same statement whatever the order of the dirty columns
+        assertEquals(signature(update("id1", "title", "description")),
+                signature(update("id2", "description", "title")));
+    }
+
+    @Test
+    public void testDifferentColumns() {
+        // never widened to columns that were not modified
+        assertNotEquals(signature(update("id1", "title")), signature(update("id2", "title", "description")));
+        assertNotEquals(signature(update("id1", "title")), signature(update("id2", "description")));
+    }
+
+    @Test
+    public void testConditionsAndDeltas() {
+        RowUpdate conditional = update("id1", "title");
+        conditional.setConditions(Collections.singletonMap("changetoken", (Serializable) Long.valueOf(1)));
+        RowUpdate otherConditional = update("id2", "title");
+        otherConditional.setConditions(Collections.singletonMap("changetoken", (Serializable) Long.valueOf(2)));
+        RowUpdate nullConditional = update("id3", "title");
+        nullConditional.setConditions(Collections.singletonMap("changetoken", (Serializable) null));
+        assertEquals(signature(conditional), signature(otherConditional));
+        assertNotEquals(signature(conditional), signature(update("id4", "title")));
+        assertNotEquals(signature(conditional), signature(nullConditional));
+
+        Row row = new Row("dublincore", "id5");
+        row.put("counter", DeltaLong.valueOf(Long.valueOf(1), 1));
+        RowUpdate delta = new RowUpdate(row, Arrays.asList("counter"));
+        assertNotEquals(signature(delta), signature(update("id6", "counter")));
+    }
+
+}
@@ -18,8 +18,14 @@
  */
 package org.nuxeo.ecm.core.storage;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.reflect.Method;
+import java.nio.CharBuffer;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 
 import net.htmlparser.jericho.Renderer;
@@ -35,6 +41,11 @@ import org.nuxeo.runtime.api.Framework;
  * <p>
  * The regexp used can be configured using the system property {@value #WORD_SPLIT_PROP}. The default is
  * {@value #WORD_SPLIT_DEF}.
+ * <p>
+ * With the default regexp, and unless a subclass customizes the parsing, words are split by a
+ * {@link FulltextTokenizer} instead of the regexp, which gives the same result with much less allocation. This also
+ * allows {@link #parse(Reader, String, String, DocumentLocation, StringBuilder)} to parse text incrementally, including
+ * HTML.
  *
  * @since 5.9.5
  */
@@ -51,6 +62,12 @@ public class DefaultFulltextParser implements FulltextParser {
 
     protected static final String TEXT_HTML = "text/html";
 
+    /** @since 9.3 */
+    protected static final boolean DEFAULT_WORD_SPLIT = WORD_SPLIT_DEF.equals(WORD_SPLIT_PATTERN.pattern());
+
+    /** Whether each parser class can use the tokenizer. */
+    protected static final Map<Class<?>, Boolean> TOKENIZER_CLASSES = new ConcurrentHashMap<>();
+
     @Override
     public String parse(String s, String path) {
         return parse(s, path, null, null);
@@ -63,6 +80,11 @@ public class DefaultFulltextParser implements FulltextParser {
 
     @Override
     public String parse(String s, String path, String mimeType, DocumentLocation documentLocation) {
+        if (useTokenizer()) {
+            StringBuilder sb = new StringBuilder(s == null ? 0 : s.length());
+            tokenize(s, path, mimeType, new FulltextTokenizer(sb, false));
+            return sb.toString();
+        }
         List<String> strings = new ArrayList<>();
         parse(s, path, mimeType, documentLocation, strings);
         return StringUtils.join(strings, ' ');
@@ -78,6 +100,10 @@ public class DefaultFulltextParser implements FulltextParser {
      */
     @Override
     public void parse(String s, String path, String mimeType, DocumentLocation documentLocation, List<String> strings) {
+        if (useTokenizer()) {
+            tokenize(s, path, mimeType, new FulltextTokenizer(strings, false));
+            return;
+        }
         s = preprocessField(s, path, mimeType);
         for (String word : WORD_SPLIT_PATTERN.split(s)) {
             if (!word.isEmpty()) {
@@ -86,6 +112,77 @@ public class DefaultFulltextParser implements FulltextParser {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The text is read and tokenized by chunks, HTML being stripped on the fly. The result may differ slightly from the
+     * one of {@link #parse(String, String, String, DocumentLocation)} for HTML, which uses a full HTML renderer.
+     *
+     * @since 9.3
+     */
+    @Override
+    public void parse(Reader reader, String path, String mimeType, DocumentLocation documentLocation,
+            StringBuilder sb) throws IOException {
+        if (!useTokenizer()) {
+            FulltextParser.super.parse(reader, path, mimeType, documentLocation, sb);
+            return;
+        }
+        char[] buf = new char[HTML_MAGIC_OFFSET];
+        // read the beginning to detect HTML
+        int n = 0;
+        for (int r; n < buf.length && (r = reader.read(buf, n, buf.length - n)) != -1;) {
+            n += r;
+        }
+        boolean html = TEXT_HTML.equals(mimeType)
+                || (StringUtils.isEmpty(mimeType) && looksLikeHtml(CharBuffer.wrap(buf, 0, n)));
+        FulltextTokenizer tokenizer = new FulltextTokenizer(sb, html);
+        tokenizer.accept(buf, 0, n);
+        while ((n = reader.read(buf)) != -1) {
+            tokenizer.accept(buf, 0, n);
+        }
+        tokenizer.finish();
+    }
+
+    /**
+     * Checks if the tokenizer can be used instead of the regexp, which is the case if the default regexp is used and
+     * the parsing methods are not overridden.
+     *
+     * @since 9.3
+     */
+    protected boolean useTokenizer() {
+        return DEFAULT_WORD_SPLIT
+                && TOKENIZER_CLASSES.computeIfAbsent(getClass(), DefaultFulltextParser::isParsingInherited);
+    }
+
+    protected static boolean isParsingInherited(Class<?> klass) {
+        for (Class<?> k = klass; k != DefaultFulltextParser.class; k = k.getSuperclass()) {
+            for (Method method : k.getDeclaredMethods()) {
+                String name = method.getName();
+                if (name.equals("parse") || name.equals("preprocessField")) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Tokenizes one field at the given path, doing the same preprocessing as {@link #preprocessField}.
+     *
+     * @since 9.3
+     */
+    protected void tokenize(String s, String path, String mimeType, FulltextTokenizer tokenizer) {
+        if (s == null) {
+            return;
+        }
+        if (TEXT_HTML.equals(mimeType) || (StringUtils.isEmpty(mimeType) && looksLikeHtml(s))) {
+            s = removeHtml(s);
+        }
+        // the tokenizer unescapes HTML entities
+        tokenizer.accept(s);
+        tokenizer.finish();
+    }
+
     /**
      * Preprocesses one field at the given path.
      * <p>
@@ -95,13 +192,8 @@ public class DefaultFulltextParser implements FulltextParser {
         if (s == null) {
             return null;
         }
-        if (StringUtils.isEmpty(mimeType)) {
-            // Use weak HTML detection here since nuxeo-core-mimetype 'magic.xml' has text/html detection commented
-            String htmlMagicExtraction = s.substring(0, Math.min(s.length(), HTML_MAGIC_OFFSET));
-            String htmlMagicExtractionLC = htmlMagicExtraction.toLowerCase();
-            if (htmlMagicExtractionLC.startsWith("<!doctype html") || htmlMagicExtractionLC.contains("<html")) {
-                mimeType = TEXT_HTML;
-            }
+        if (StringUtils.isEmpty(mimeType) && looksLikeHtml(s)) {
+            mimeType = TEXT_HTML;
         }
         if (TEXT_HTML.equals(mimeType)) {
             s = removeHtml(s);
@@ -109,6 +201,36 @@ public class DefaultFulltextParser implements FulltextParser {
         return StringEscapeUtils.unescapeHtml(s);
     }
 
+    /**
+     * Weak HTML detection, since nuxeo-core-mimetype 'magic.xml' has text/html detection commented.
+     *
+     * @since 9.3
+     */
+    protected static boolean looksLikeHtml(CharSequence s) {
+        int len = Math.min(s.length(), HTML_MAGIC_OFFSET);
+        if (regionMatchesLowerCase(s, 0, len, "<!doctype html")) {
+            return true;
+        }
+        for (int i = 0; i < len; i++) {
+            if (s.charAt(i) == '<' && regionMatchesLowerCase(s, i, len, "<html")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    protected static boolean regionMatchesLowerCase(CharSequence s, int offset, int len, String lower) {
+        if (offset + lower.length() > len) {
+            return false;
+        }
+        for (int i = 0; i < lower.length(); i++) {
+            if (Character.toLowerCase(s.charAt(offset + i)) != lower.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     protected String removeHtml(String s) {
         Source source = new Source(s);
         Renderer renderer = source.getRenderer();
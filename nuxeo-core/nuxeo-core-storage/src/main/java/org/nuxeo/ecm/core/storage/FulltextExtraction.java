@@ -0,0 +1,331 @@
+/*
+ * (C) Copyright 2017 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Florent Guillaume
+ */
+package org.nuxeo.ecm.core.storage;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.nuxeo.ecm.core.api.Blob;
+import org.nuxeo.ecm.core.api.NuxeoException;
+import org.nuxeo.ecm.core.storage.kv.KeyValueService;
+import org.nuxeo.ecm.core.storage.kv.KeyValueStore;
+import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.metrics.MetricsService;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+import com.codahale.metrics.Timer;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+
+/**
+ * Shared state of the fulltext extraction done by {@link FulltextExtractorWork}.
+ * <p>
+ * The text extracted from a blob is cached by digest and MIME type, so that blobs shared by many documents or
+ * versions are converted only once. The cache is bounded by the total number of characters it holds.
+ * <p>
+ * The blobs of one document are converted in parallel by a shared pool of threads. The shared state is held by the
+ * {@link FulltextExtractionComponent}, which reads the configuration when it starts and stops the threads when it
+ * stops.
+ * <p>
+ * Optionally, the digests of the blobs last extracted for each document are remembered for a limited time in a
+ * {@link KeyValueStore}, so that the extraction can be skipped when no blob actually changed. They are remembered by
+ * the {@link FulltextUpdaterWork} once the extracted text is committed. The store should be shared by the cluster
+ * nodes, otherwise a node could skip an extraction whose text was replaced by another node.
+ *
+ * @since 9.3
+ */
+public class FulltextExtraction {
+
+    /** Maximum number of characters held by the extracted text cache, 0 to disable it. */
+    public static final String CACHE_SIZE_PROP = "org.nuxeo.fulltext.extraction.cache.size";
+
+    public static final long DEFAULT_CACHE_SIZE = 20_000_000;
+
+    /** Number of threads used to convert blobs in parallel. */
+    public static final String THREADS_PROP = "org.nuxeo.fulltext.extraction.threads";
+
+    /** Whether extraction is skipped for documents whose blob digests didn't change, {@code false} by default. */
+    public static final String SKIP_UNCHANGED_PROP = "org.nuxeo.fulltext.extraction.skipUnchanged";
+
+    /** Time-to-live in seconds of the signatures of the last extracted blobs of each document. */
+    public static final String SIGNATURE_TTL_PROP = "org.nuxeo.fulltext.extraction.signature.ttl";
+
+    public static final long DEFAULT_SIGNATURE_TTL = 86_400; // 1 day
+
+    /** The key/value store holding the signatures of the last extracted blobs of each document. */
+    public static final String SIGNATURES_STORE_NAME = "fulltextExtraction";
+
+    /**
+     * The text extracted from a blob, and its MIME type.
+     */
+    public static class Text {
+
+        public final String text;
+
+        public final String mimeType;
+
+        public Text(String text, String mimeType) {
+            this.text = text;
+            this.mimeType = mimeType;
+        }
+    }
+
+    protected final Cache<String, Text> cache;
+
+    protected final ExecutorService executor;
+
+    protected final int threads;
+
+    protected final long signatureTTL;
+
+    protected final MetricRegistry registry = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
+
+    protected final Timer extractionTimer;
+
+    protected final Counter cacheHitCount;
+
+    protected final Counter cacheMissCount;
+
+    protected final Counter skipCount;
+
+    public static FulltextExtraction getInstance() {
+        FulltextExtractionComponent component = (FulltextExtractionComponent) Framework.getRuntime().getComponent(
+                FulltextExtractionComponent.NAME);
+        FulltextExtraction extraction = component == null ? null : component.getFulltextExtraction();
+        if (extraction == null) {
+            throw new NuxeoException("Fulltext extraction component is not started");
+        }
+        return extraction;
+    }
+
+    protected FulltextExtraction() {
+        long cacheSize = Long.parseLong(Framework.getProperty(CACHE_SIZE_PROP, String.valueOf(DEFAULT_CACHE_SIZE)));
+        if (cacheSize > 0) {
+            cache = CacheBuilder.newBuilder()
+                                .maximumWeight(cacheSize)
+                                .weigher((String key, Text value) -> value.text.length())
+                                .build();
+        } else {
+            cache = null;
+        }
+        threads = Integer.parseInt(Framework.getProperty(THREADS_PROP,
+                String.valueOf(Runtime.getRuntime().availableProcessors())));
+        if (threads > 1) {
+            AtomicInteger threadNumber = new AtomicInteger();
+            ThreadFactory threadFactory = r -> {
+                Thread thread = new Thread(r, "Nuxeo-FulltextExtraction-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            };
+            executor = Executors.newFixedThreadPool(threads, threadFactory);
+        } else {
+            executor = null;
+        }
+        signatureTTL = Long.parseLong(
+                Framework.getProperty(SIGNATURE_TTL_PROP, String.valueOf(DEFAULT_SIGNATURE_TTL)));
+        extractionTimer = registry.timer(MetricRegistry.name("nuxeo", "fulltext", "extraction"));
+        cacheHitCount = registry.counter(MetricRegistry.name("nuxeo", "fulltext", "extraction", "cache", "hit"));
+        cacheMissCount = registry.counter(MetricRegistry.name("nuxeo", "fulltext", "extraction", "cache", "miss"));
+        skipCount = registry.counter(MetricRegistry.name("nuxeo", "fulltext", "extraction", "skipped"));
+    }
+
+    /**
+     * Gets the cache key of a blob, or {@code null} if it has no digest.
+     */
+    protected static String getKey(Blob blob) {
+        String digest = blob.getDigest();
+        if (digest == null) {
+            return null;
+        }
+        return digest + '/' + blob.getMimeType();
+    }
+
+    /**
+     * Extracts the text of several blobs, in parallel if possible.
+     * <p>
+     * Blobs having the same digest and MIME type are only converted once.
+     *
+     * @param blobs the blobs
+     * @param converter the function converting a blob to text, returning {@code null} if there is no text
+     * @return the texts, in the same order as the blobs, {@code null} for a blob without text
+     */
+    public List<Text> extract(List<Blob> blobs, Function<Blob, Text> converter) {
+        // group identical blobs, blobs without digest are kept separate
+        List<Object> keys = new ArrayList<>(blobs.size());
+        Map<Object, Blob> distinct = new LinkedHashMap<>();
+        for (Blob blob : blobs) {
+            String key = getKey(blob);
+            Object k = key == null ? new Object() : key;
+            keys.add(k);
+            distinct.putIfAbsent(k, blob);
+        }
+        Map<Object, Text> texts = new LinkedHashMap<>();
+        if (executor == null || distinct.size() == 1) {
+            for (Entry<Object, Blob> es : distinct.entrySet()) {
+                texts.put(es.getKey(), extract(es.getValue(), converter));
+            }
+        } else {
+            Map<Object, CompletableFuture<Text>> futures = new LinkedHashMap<>();
+            for (Entry<Object, Blob> es : distinct.entrySet()) {
+                Blob blob = es.getValue();
+                futures.put(es.getKey(), CompletableFuture.supplyAsync(() -> extract(blob, converter), executor));
+            }
+            for (Entry<Object, CompletableFuture<Text>> es : futures.entrySet()) {
+                try {
+                    texts.put(es.getKey(), es.getValue().join());
+                } catch (CompletionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    }
+                    throw e;
+                }
+            }
+        }
+        List<Text> result = new ArrayList<>(blobs.size());
+        for (Object k : keys) {
+            result.add(texts.get(k));
+        }
+        return result;
+    }
+
+    protected Text extract(Blob blob, Function<Blob, Text> converter) {
+        String key = cache == null ? null : getKey(blob);
+        if (key != null) {
+            Text text = cache.getIfPresent(key);
+            if (text != null) {
+                cacheHitCount.inc();
+                return text;
+            }
+            cacheMissCount.inc();
+        }
+        Text text;
+        try (Timer.Context context = extractionTimer.time()) {
+            text = converter.apply(blob);
+        }
+        if (key != null && text != null) {
+            cache.put(key, text);
+        }
+        return text;
+    }
+
+    /**
+     * Computes the signature of the blobs of a document, or {@code null} if some blob has no digest.
+     *
+     * @param blobsByIndex the blobs of the document for each fulltext index
+     */
+    public static String getSignature(Map<String, List<Blob>> blobsByIndex) {
+        StringBuilder sb = new StringBuilder();
+        for (Entry<String, List<Blob>> es : blobsByIndex.entrySet()) {
+            sb.append(es.getKey()).append(':');
+            for (Blob blob : es.getValue()) {
+                String key = getKey(blob);
+                if (key == null) {
+                    return null;
+                }
+                sb.append(key).append(',');
+            }
+            sb.append(';');
+        }
+        return Hashing.md5().hashString(sb, UTF_8).toString();
+    }
+
+    protected KeyValueStore getSignaturesStore() {
+        if (!Framework.isBooleanPropertyTrue(SKIP_UNCHANGED_PROP)) {
+            return null;
+        }
+        KeyValueService keyValueService = Framework.getService(KeyValueService.class);
+        if (keyValueService == null) {
+            return null;
+        }
+        return keyValueService.getKeyValueStore(SIGNATURES_STORE_NAME);
+    }
+
+    protected static String getSignatureKey(String repositoryName, String docId) {
+        return "fulltext:" + repositoryName + ':' + docId;
+    }
+
+    /**
+     * Checks if the blobs of a document are the same as those of its last extraction.
+     */
+    public boolean isUnchanged(String repositoryName, String docId, String signature) {
+        KeyValueStore store = signature == null ? null : getSignaturesStore();
+        if (store == null) {
+            return false;
+        }
+        byte[] previous = store.get(getSignatureKey(repositoryName, docId));
+        boolean unchanged = previous != null && Arrays.equals(previous, signature.getBytes(UTF_8));
+        if (unchanged) {
+            skipCount.inc();
+        }
+        return unchanged;
+    }
+
+    /**
+     * Remembers the signature of the blobs of a document once its extracted text is committed, or forgets it if
+     * {@code null}.
+     */
+    public void setSignature(String repositoryName, String docId, String signature) {
+        KeyValueStore store = getSignaturesStore();
+        if (store == null) {
+            return;
+        }
+        String key = getSignatureKey(repositoryName, docId);
+        if (signature == null) {
+            store.put(key, null);
+        } else {
+            store.put(key, signature.getBytes(UTF_8), signatureTTL);
+        }
+    }
+
+    /**
+     * Stops the threads converting blobs in parallel. Conversions already submitted are completed.
+     */
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Clears the extracted text cache.
+     */
+    public void clear() {
+        if (cache != null) {
+            cache.invalidateAll();
+        }
+    }
+
+}
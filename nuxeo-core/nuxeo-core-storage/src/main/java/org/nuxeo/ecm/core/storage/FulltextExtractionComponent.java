@@ -0,0 +1,53 @@
+/*
+ * (C) Copyright 2017 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Florent Guillaume
+ */
+package org.nuxeo.ecm.core.storage;
+
+import org.nuxeo.runtime.model.ComponentContext;
+import org.nuxeo.runtime.model.DefaultComponent;
+
+/**
+ * Component holding the {@link FulltextExtraction} state, so that its configuration is read when the component starts
+ * and its threads are stopped with the component.
+ *
+ * @since 9.3
+ */
+public class FulltextExtractionComponent extends DefaultComponent {
+
+    public static final String NAME = "org.nuxeo.ecm.core.storage.FulltextExtraction";
+
+    protected volatile FulltextExtraction extraction;
+
+    public FulltextExtraction getFulltextExtraction() {
+        return extraction;
+    }
+
+    @Override
+    public void start(ComponentContext context) {
+        extraction = new FulltextExtraction();
+    }
+
+    @Override
+    public void stop(ComponentContext context) {
+        if (extraction != null) {
+            extraction.shutdown();
+            extraction = null;
+        }
+    }
+
+}
@@ -20,8 +20,13 @@
 package org.nuxeo.ecm.core.storage;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
@@ -36,6 +41,7 @@ import org.nuxeo.ecm.core.api.impl.DocumentLocationImpl;
 import org.nuxeo.ecm.core.api.impl.blob.StringBlob;
 import org.nuxeo.ecm.core.convert.api.ConversionException;
 import org.nuxeo.ecm.core.convert.api.ConversionService;
+import org.nuxeo.ecm.core.storage.FulltextExtraction.Text;
 import org.nuxeo.ecm.core.storage.FulltextUpdaterWork.IndexAndText;
 import org.nuxeo.ecm.core.utils.BlobsExtractor;
 import org.nuxeo.ecm.core.work.AbstractWork;
@@ -48,6 +54,9 @@ import org.nuxeo.runtime.api.Framework;
  * <p>
  * The extracted fulltext is then passed to the single-threaded {@link FulltextUpdaterWork}.
  * <p>
+ * Blobs are converted in parallel and their text is cached by digest, and optionally nothing is extracted if the blobs
+ * are the same as for the previous extraction, see {@link FulltextExtraction}.
+ * <p>
  * This base abstract class must be subclassed in order to implement the proper
  * {@link #initFulltextConfigurationAndParser} depending on the storage.
  *
@@ -137,10 +146,9 @@ public abstract class FulltextExtractorWork extends AbstractWork {
             return;
         }
 
-        // Iterate on each index to set the binaryText column
+        // find the blobs for each index
         BlobsExtractor extractor = new BlobsExtractor();
-        DocumentLocation docLocation = new DocumentLocationImpl(doc);
-        List<IndexAndText> indexesAndText = new LinkedList<IndexAndText>();
+        Map<String, List<Blob>> blobsByIndex = new LinkedHashMap<>();
         for (String indexName : fulltextConfiguration.indexNames) {
             if (!fulltextConfiguration.indexesAllBinary.contains(indexName)
                     && fulltextConfiguration.propPathsByIndexBinary.get(indexName) == null) {
@@ -150,8 +158,35 @@ public abstract class FulltextExtractorWork extends AbstractWork {
             extractor.setExtractorProperties(fulltextConfiguration.propPathsByIndexBinary.get(indexName),
                     fulltextConfiguration.propPathsExcludedByIndexBinary.get(indexName),
                     fulltextConfiguration.indexesAllBinary.contains(indexName));
-            List<Blob> blobs = extractor.getBlobs(doc);
-            StringBlob stringBlob = blobsToStringBlob(blobs, docId);
+            blobsByIndex.put(indexName, extractor.getBlobs(doc));
+        }
+        if (blobsByIndex.isEmpty()) {
+            return;
+        }
+
+        FulltextExtraction extraction = FulltextExtraction.getInstance();
+        String signature = FulltextExtraction.getSignature(blobsByIndex);
+        if (extraction.isUnchanged(repositoryName, docId, signature)) {
+            // same blobs as last time, the binary text is already correct, just reset the job id
+            log.debug("Skipping fulltext extraction of unchanged blobs for document: " + docId);
+            updateFulltext(Collections.emptyList(), null);
+            return;
+        }
+
+        // extract all the blobs at once, in parallel
+        List<Blob> allBlobs = new ArrayList<>();
+        blobsByIndex.values().forEach(allBlobs::addAll);
+        List<Text> allTexts = extraction.extract(allBlobs, this::blobToText);
+
+        // Iterate on each index to set the binaryText column
+        DocumentLocation docLocation = new DocumentLocationImpl(doc);
+        List<IndexAndText> indexesAndText = new LinkedList<IndexAndText>();
+        int i = 0;
+        for (Entry<String, List<Blob>> es : blobsByIndex.entrySet()) {
+            String indexName = es.getKey();
+            int n = es.getValue().size();
+            StringBlob stringBlob = textsToStringBlob(allTexts.subList(i, i + n));
+            i += n;
             String text = fulltextParser.parse(stringBlob.getString(), null, stringBlob.getMimeType(), docLocation);
             int fullTextFieldSizeLimit = fulltextConfiguration.fulltextFieldSizeLimit;
             if (fullTextFieldSizeLimit != 0 && text.length() > fullTextFieldSizeLimit) {
@@ -164,16 +199,28 @@ public abstract class FulltextExtractorWork extends AbstractWork {
             }
             indexesAndText.add(new IndexAndText(indexName, text));
         }
-        if (!indexesAndText.isEmpty()) {
-            Work work = new FulltextUpdaterWork(repositoryName, docId, false, true, indexesAndText);
-            if (!fulltextConfiguration.fulltextSearchDisabled) {
-                WorkManager workManager = Framework.getLocalService(WorkManager.class);
-                workManager.schedule(work, true);
-            } else {
-                ((FulltextUpdaterWork)work).updateWithSession(session);
-            }
+        if (allTexts.contains(null)) {
+            // don't remember failed extractions, so that they can be retried
+            extraction.setSignature(repositoryName, docId, null);
+            signature = null;
         }
+        updateFulltext(indexesAndText, signature);
+    }
 
+    /**
+     * Writes the extracted text, or just resets the job id if there is no text.
+     *
+     * @param signature the signature of the extracted blobs, remembered once the text is committed, or {@code null}
+     * @since 9.3
+     */
+    protected void updateFulltext(List<IndexAndText> indexesAndText, String signature) {
+        Work work = new FulltextUpdaterWork(repositoryName, docId, false, true, indexesAndText, signature);
+        if (!fulltextConfiguration.fulltextSearchDisabled) {
+            WorkManager workManager = Framework.getLocalService(WorkManager.class);
+            workManager.schedule(work, true);
+        } else {
+            ((FulltextUpdaterWork)work).updateWithSession(session);
+        }
     }
 
     @Override
@@ -184,39 +231,61 @@ public abstract class FulltextExtractorWork extends AbstractWork {
     }
 
     protected StringBlob blobsToStringBlob(List<Blob> blobs, String docId) {
+        return textsToStringBlob(FulltextExtraction.getInstance().extract(blobs, this::blobToText));
+    }
+
+    /**
+     * Joins the texts extracted from several blobs.
+     *
+     * @since 9.3
+     */
+    protected StringBlob textsToStringBlob(List<Text> texts) {
         String mimeType = null;
         List<String> strings = new LinkedList<String>();
-        for (Blob blob : blobs) {
-            try {
-                SimpleBlobHolder bh = new SimpleBlobHolder(blob);
-                BlobHolder result = convert(bh);
-                if (result == null) {
-                    continue;
-                }
-                blob = result.getBlob();
-                if (blob == null) {
-                    continue;
-                }
-                if (StringUtils.isEmpty(mimeType) && StringUtils.isNotEmpty(blob.getMimeType())) {
-                    mimeType = blob.getMimeType();
-                }
-                String string = new String(blob.getByteArray(), "UTF-8");
-                // strip '\0 chars from text
-                if (string.indexOf('\0') >= 0) {
-                    string = string.replace("\0", " ");
-                }
-                strings.add(string);
-            } catch (ConversionException | IOException e) {
-                String msg = "Could not extract fulltext of file '" + blob.getFilename() + "' for document: " + docId
-                        + ": " + e;
-                log.warn(msg);
-                log.debug(msg, e);
+        for (Text text : texts) {
+            if (text == null) {
                 continue;
             }
+            if (StringUtils.isEmpty(mimeType) && StringUtils.isNotEmpty(text.mimeType)) {
+                mimeType = text.mimeType;
+            }
+            strings.add(text.text);
         }
         return new StringBlob(StringUtils.join(strings, " "), mimeType);
     }
 
+    /**
+     * Converts a blob to text.
+     *
+     * @return the text, or {@code null} if it could not be extracted
+     * @since 9.3
+     */
+    protected Text blobToText(Blob blob) {
+        try {
+            SimpleBlobHolder bh = new SimpleBlobHolder(blob);
+            BlobHolder result = convert(bh);
+            if (result == null) {
+                return null;
+            }
+            Blob textBlob = result.getBlob();
+            if (textBlob == null) {
+                return null;
+            }
+            String string = new String(textBlob.getByteArray(), "UTF-8");
+            // strip '\0 chars from text
+            if (string.indexOf('\0') >= 0) {
+                string = string.replace("\0", " ");
+            }
+            return new Text(string, textBlob.getMimeType());
+        } catch (ConversionException | IOException e) {
+            String msg = "Could not extract fulltext of file '" + blob.getFilename() + "' for document: " + docId
+                    + ": " + e;
+            log.warn(msg);
+            log.debug(msg, e);
+            return null;
+        }
+    }
+
     protected BlobHolder convert(BlobHolder blobHolder) throws ConversionException {
         ConversionService conversionService = Framework.getLocalService(ConversionService.class);
         if (conversionService == null) {
@@ -18,10 +18,13 @@
  */
 package org.nuxeo.ecm.core.storage;
 
-import org.nuxeo.ecm.core.api.DocumentLocation;
-
+import java.io.IOException;
+import java.io.Reader;
 import java.util.List;
 
+import org.apache.commons.io.IOUtils;
+import org.nuxeo.ecm.core.api.DocumentLocation;
+
 /**
  * Parser of strings for fulltext indexing.
  * <p>
@@ -90,4 +93,30 @@ public interface FulltextParser {
      */
     void parse(String s, String path, String mimeType, DocumentLocation documentLocation, List<String> strings);
 
+    /**
+     * Parses text read from a reader to normalize the fulltext for the database.
+     * <p>
+     * The normalized words are appended to the passed builder, separated by spaces, with a leading space if the builder
+     * is not empty. Implementations may tokenize incrementally without reading the whole text in memory.
+     *
+     * @param reader the reader of the text to be parsed and normalized
+     * @param path the abstracted path for the property (where all complex indexes have been replaced by {@code *}), or
+     *            {@code null}
+     * @param mimeType the {@code mimeType} of the text to be parsed and normalized. This may be {@code null}
+     * @param documentLocation the {@code documentLocation} of the Document from which the text was extracted. This may
+     *            be {@code null}
+     * @param sb the builder to which normalized words are appended
+     * @since 9.3
+     */
+    default void parse(Reader reader, String path, String mimeType, DocumentLocation documentLocation,
+            StringBuilder sb) throws IOException {
+        String text = parse(IOUtils.toString(reader), path, mimeType, documentLocation);
+        if (!text.isEmpty()) {
+            if (sb.length() > 0) {
+                sb.append(' ');
+            }
+            sb.append(text);
+        }
+    }
+
 }
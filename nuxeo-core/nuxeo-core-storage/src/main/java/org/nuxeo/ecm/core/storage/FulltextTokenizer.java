@@ -0,0 +1,422 @@
+/*
+ * (C) Copyright 2017 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Florent Guillaume
+ */
+package org.nuxeo.ecm.core.storage;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import org.apache.commons.lang.StringEscapeUtils;
+
+/**
+ * Incremental tokenizer used by {@link DefaultFulltextParser}.
+ * <p>
+ * Characters are fed one at a time. Words are split on ASCII whitespace and punctuation (like the regexp
+ * {@value DefaultFulltextParser#WORD_SPLIT_DEF}), HTML entities are decoded (like
+ * {@link StringEscapeUtils#unescapeHtml}), and words are lowercased. The current word is kept in a reusable buffer,
+ * and words are either appended to a {@link StringBuilder} separated by spaces, without allocation, or added to a
+ * list.
+ * <p>
+ * Optionally, HTML markup is stripped incrementally: tags, comments and the content of {@code script} and
+ * {@code style} elements are skipped, and tags that are not inline elements separate words.
+ * <p>
+ * This class is not thread-safe.
+ *
+ * @since 9.3
+ */
+public class FulltextTokenizer {
+
+    /** Entities longer than this cannot be known entities. */
+    protected static final int MAX_ENTITY = 32;
+
+    protected static final int MAX_TAG_NAME = 16;
+
+    protected static final boolean[] SEPARATORS = new boolean[128];
+
+    static {
+        for (char c : " \t\n\u000B\f\r!\"#$%&'()*+,-./:;<=>?@[\\]^_`{|}~".toCharArray()) {
+            SEPARATORS[c] = true;
+        }
+    }
+
+    /** Locales where lowercasing is not a simple per-character operation. */
+    protected static final Set<String> SPECIAL_CASING_LANGUAGES = new HashSet<>(Arrays.asList("tr", "az", "lt"));
+
+    protected static final Set<String> INLINE_TAGS = new HashSet<>(Arrays.asList("a", "abbr", "acronym", "b", "bdi",
+            "bdo", "big", "cite", "code", "dfn", "em", "font", "i", "kbd", "label", "mark", "q", "s", "samp", "small",
+            "span", "strike", "strong", "sub", "sup", "tt", "u", "var"));
+
+    protected enum HtmlState {
+        /** Text content. */
+        TEXT,
+        /** After a {@code <}. */
+        TAG_OPEN,
+        /** In a tag name. */
+        TAG_NAME,
+        /** In a tag, after its name. */
+        TAG,
+        /** In a declaration or processing instruction. */
+        DECLARATION,
+        /** In a comment. */
+        COMMENT,
+        /** In the content of a script or style element. */
+        RAW_TEXT,
+    }
+
+    protected final StringBuilder sb;
+
+    protected final List<String> strings;
+
+    protected final boolean html;
+
+    protected final boolean simpleCasing;
+
+    protected char[] word = new char[64];
+
+    protected int wordLength;
+
+    /** Whether the current word can be lowercased one character at a time. */
+    protected boolean wordSimple = true;
+
+    protected final char[] entity = new char[MAX_ENTITY];
+
+    /** The length of the entity being parsed, or -1 if not in an entity. */
+    protected int entityLength = -1;
+
+    protected HtmlState htmlState = HtmlState.TEXT;
+
+    protected final char[] tagName = new char[MAX_TAG_NAME];
+
+    protected int tagNameLength;
+
+    protected boolean closingTag;
+
+    /** The quote in an attribute value, or 0. */
+    protected char quote;
+
+    /** Whether the last significant character in a tag is an {@code =}, starting an attribute value. */
+    protected boolean afterEquals;
+
+    /** The number of consecutive dashes seen, for comments. */
+    protected int dashes;
+
+    /** The end tag ending the current raw text element, and how much of it was matched. */
+    protected String rawTextEnd;
+
+    protected int rawTextMatched;
+
+    /**
+     * Creates a tokenizer appending words to a {@link StringBuilder}, separated by spaces.
+     */
+    public FulltextTokenizer(StringBuilder sb, boolean html) {
+        this(sb, null, html);
+    }
+
+    /**
+     * Creates a tokenizer adding words to a list.
+     */
+    public FulltextTokenizer(List<String> strings, boolean html) {
+        this(null, strings, html);
+    }
+
+    protected FulltextTokenizer(StringBuilder sb, List<String> strings, boolean html) {
+        this.sb = sb;
+        this.strings = strings;
+        this.html = html;
+        simpleCasing = !SPECIAL_CASING_LANGUAGES.contains(Locale.getDefault().getLanguage());
+    }
+
+    /**
+     * Tokenizes a sequence of characters.
+     */
+    public void accept(CharSequence s) {
+        for (int i = 0, len = s.length(); i < len; i++) {
+            accept(s.charAt(i));
+        }
+    }
+
+    /**
+     * Tokenizes an array of characters.
+     */
+    public void accept(char[] buf, int off, int len) {
+        for (int i = off, end = off + len; i < end; i++) {
+            accept(buf[i]);
+        }
+    }
+
+    /**
+     * Tokenizes a character.
+     */
+    public void accept(char c) {
+        if (html) {
+            html(c);
+        } else {
+            text(c);
+        }
+    }
+
+    /**
+     * Ends the tokenization, flushing the last word.
+     */
+    public void finish() {
+        flushEntity();
+        endWord();
+    }
+
+    protected void html(char c) {
+        switch (htmlState) {
+        case TEXT:
+            if (c == '<') {
+                flushEntity();
+                htmlState = HtmlState.TAG_OPEN;
+            } else {
+                text(c);
+            }
+            break;
+        case TAG_OPEN:
+            if (c == '!' || c == '?') {
+                htmlState = HtmlState.DECLARATION;
+                dashes = c == '!' ? 0 : -1;
+            } else if (c == '/' || Character.isLetter(c)) {
+                closingTag = c == '/';
+                tagNameLength = 0;
+                if (!closingTag) {
+                    tagName[tagNameLength++] = Character.toLowerCase(c);
+                }
+                quote = 0;
+                afterEquals = false;
+                htmlState = HtmlState.TAG_NAME;
+            } else {
+                // not a tag
+                htmlState = HtmlState.TEXT;
+                text('<');
+                html(c);
+            }
+            break;
+        case TAG_NAME:
+            if (Character.isLetterOrDigit(c)) {
+                if (tagNameLength < MAX_TAG_NAME) {
+                    tagName[tagNameLength++] = Character.toLowerCase(c);
+                }
+            } else {
+                htmlState = HtmlState.TAG;
+                html(c);
+            }
+            break;
+        case TAG:
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if ((c == '"' || c == '\'') && afterEquals) {
+                quote = c;
+            } else if (c == '>') {
+                endTag();
+            } else if (!Character.isWhitespace(c)) {
+                afterEquals = c == '=';
+            }
+            break;
+        case DECLARATION:
+            if (dashes >= 0 && dashes < 2) {
+                // detect a comment start <!--
+                if (c == '-') {
+                    if (++dashes == 2) {
+                        htmlState = HtmlState.COMMENT;
+                        dashes = 0;
+                    }
+                    break;
+                }
+                dashes = -1;
+            }
+            if (c == '>') {
+                htmlState = HtmlState.TEXT;
+            }
+            break;
+        case COMMENT:
+            if (c == '-') {
+                dashes++;
+            } else {
+                if (c == '>' && dashes >= 2) {
+                    htmlState = HtmlState.TEXT;
+                }
+                dashes = 0;
+            }
+            break;
+        case RAW_TEXT:
+            char expected = rawTextEnd.charAt(rawTextMatched);
+            if (Character.toLowerCase(c) == expected) {
+                if (++rawTextMatched == rawTextEnd.length()) {
+                    // end tag found, skip until its end
+                    closingTag = true;
+                    tagNameLength = 0;
+                    quote = 0;
+                    afterEquals = false;
+                    htmlState = HtmlState.TAG;
+                }
+            } else {
+                rawTextMatched = c == '<' ? 1 : 0;
+            }
+            break;
+        }
+    }
+
+    protected void endTag() {
+        htmlState = HtmlState.TEXT;
+        if (tagNameLength == 0) {
+            endWord();
+            return;
+        }
+        String name = new String(tagName, 0, tagNameLength);
+        if (!closingTag && ("script".equals(name) || "style".equals(name))) {
+            rawTextEnd = "</" + name;
+            rawTextMatched = 0;
+            htmlState = HtmlState.RAW_TEXT;
+            endWord();
+        } else if (!INLINE_TAGS.contains(name)) {
+            endWord();
+        }
+    }
+
+    /**
+     * Processes a text character, decoding entities.
+     */
+    protected void text(char c) {
+        if (entityLength >= 0) {
+            if (c == ';') {
+                decodeEntity();
+                return;
+            }
+            if (c == '&') {
+                flushEntity();
+                entityLength = 0;
+                return;
+            }
+            if (entityLength < MAX_ENTITY) {
+                entity[entityLength++] = c;
+                return;
+            }
+            // too long to be an entity
+            flushEntity();
+        }
+        if (c == '&') {
+            entityLength = 0;
+        } else {
+            character(c);
+        }
+    }
+
+    protected void decodeEntity() {
+        int value = -1;
+        int len = entityLength;
+        if (len > 0) {
+            if (entity[0] == '#') {
+                if (len > 1) {
+                    try {
+                        if (entity[1] == 'x' || entity[1] == 'X') {
+                            value = Integer.parseInt(new String(entity, 2, len - 2), 16);
+                        } else {
+                            value = Integer.parseInt(new String(entity, 1, len - 1), 10);
+                        }
+                        if (value > 0xFFFF) {
+                            value = -1;
+                        }
+                    } catch (NumberFormatException e) {
+                        value = -1;
+                    }
+                }
+            } else {
+                String name = '&' + new String(entity, 0, len) + ';';
+                String decoded = StringEscapeUtils.unescapeHtml(name);
+                if (decoded.length() == 1) {
+                    value = decoded.charAt(0);
+                }
+            }
+        }
+        if (value == -1) {
+            flushEntity();
+            character(';');
+        } else {
+            entityLength = -1;
+            character((char) value);
+        }
+    }
+
+    /**
+     * Outputs the entity being parsed as regular characters.
+     */
+    protected void flushEntity() {
+        if (entityLength < 0) {
+            return;
+        }
+        int len = entityLength;
+        entityLength = -1;
+        character('&');
+        for (int i = 0; i < len; i++) {
+            character(entity[i]);
+        }
+    }
+
+    /**
+     * Processes a decoded character.
+     */
+    protected void character(char c) {
+        if (c < 128 && SEPARATORS[c]) {
+            endWord();
+            return;
+        }
+        if (wordLength == word.length) {
+            word = Arrays.copyOf(word, wordLength * 2);
+        }
+        if (c < 128) {
+            if (c >= 'A' && c <= 'Z' && simpleCasing) {
+                c += 'a' - 'A';
+            }
+        } else if (c == '\u0130' || c == '\u03A3' || Character.isSurrogate(c)) {
+            // casing depends on context
+            wordSimple = false;
+        } else if (simpleCasing) {
+            c = Character.toLowerCase(c);
+        }
+        word[wordLength++] = c;
+    }
+
+    protected void endWord() {
+        if (wordLength == 0) {
+            return;
+        }
+        if (strings != null) {
+            String w = new String(word, 0, wordLength);
+            strings.add(simpleCasing && wordSimple ? w : w.toLowerCase());
+        } else {
+            if (sb.length() > 0) {
+                sb.append(' ');
+            }
+            if (simpleCasing && wordSimple) {
+                sb.append(word, 0, wordLength);
+            } else {
+                sb.append(new String(word, 0, wordLength).toLowerCase());
+            }
+        }
+        wordLength = 0;
+        wordSimple = true;
+    }
+
+}
@@ -24,6 +24,9 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.nuxeo.ecm.core.api.CoreSession;
@@ -32,6 +35,7 @@ import org.nuxeo.ecm.core.api.DocumentRef;
 import org.nuxeo.ecm.core.api.IdRef;
 import org.nuxeo.ecm.core.work.AbstractWork;
 import org.nuxeo.ecm.core.work.api.WorkManager;
+import org.nuxeo.runtime.transaction.TransactionHelper;
 
 /**
  * Work task that inserts the fulltext (extracted manually by the session at save time, or through
@@ -66,6 +70,13 @@ public class FulltextUpdaterWork extends AbstractWork {
     /** The indexes and text to be updated. */
     protected final List<IndexAndText> indexesAndText;
 
+    /**
+     * The signature of the blobs the text was extracted from, remembered once the text is committed.
+     *
+     * @since 9.3
+     */
+    protected final String signature;
+
     public static class IndexAndText implements Serializable {
         private static final long serialVersionUID = 1L;
 
@@ -81,11 +92,21 @@ public class FulltextUpdaterWork extends AbstractWork {
 
     public FulltextUpdaterWork(String repositoryName, String docId, boolean isSimpleText, boolean isJob,
             List<IndexAndText> indexesAndText) {
+        this(repositoryName, docId, isSimpleText, isJob, indexesAndText, null);
+    }
+
+    /**
+     * @param signature the signature of the blobs the text was extracted from, see {@link FulltextExtraction}
+     * @since 9.3
+     */
+    public FulltextUpdaterWork(String repositoryName, String docId, boolean isSimpleText, boolean isJob,
+            List<IndexAndText> indexesAndText, String signature) {
         super(); // random id, for unique job
         setDocument(repositoryName, docId);
         this.isSimpleText = isSimpleText;
         this.isJob = isJob;
         this.indexesAndText = indexesAndText;
+        this.signature = signature;
     }
 
     @Override
@@ -117,6 +138,7 @@ public class FulltextUpdaterWork extends AbstractWork {
         update();
         setStatus("Saving");
         session.save();
+        rememberSignature();
         setStatus("Done");
     }
 
@@ -124,9 +146,38 @@ public class FulltextUpdaterWork extends AbstractWork {
         CoreSession tmp = this.session;
         this.session = session;
         update();
+        rememberSignature();
         this.session = tmp;
     }
 
+    /**
+     * Remembers the signature of the extracted blobs after the transaction commits, so that a failed update doesn't
+     * prevent the next extraction.
+     *
+     * @since 9.3
+     */
+    protected void rememberSignature() {
+        if (signature == null) {
+            return;
+        }
+        if (!TransactionHelper.isTransactionActive()) {
+            FulltextExtraction.getInstance().setSignature(repositoryName, docId, signature);
+            return;
+        }
+        TransactionHelper.registerSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status == Status.STATUS_COMMITTED) {
+                    FulltextExtraction.getInstance().setSignature(repositoryName, docId, signature);
+                }
+            }
+        });
+    }
+
     protected void update() {
         Collection<DocumentModel> docs;
         if (isJob) {
@@ -37,6 +37,16 @@ public interface KeyValueStore {
      */
     void put(String key, byte[] value);
 
+    /**
+     * Sets the value associated to the key, with a time-to-live after which the key is removed.
+     *
+     * @param key the key
+     * @param value the value, which may be {@code null}
+     * @param ttl the time-to-live in seconds, or {@code 0} for no expiration
+     * @since 9.3
+     */
+    void put(String key, byte[] value, long ttl);
+
     /**
      * Retrieves the value associated to the key.
      *
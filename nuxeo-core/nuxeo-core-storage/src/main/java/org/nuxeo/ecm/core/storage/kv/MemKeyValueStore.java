@@ -20,7 +20,9 @@ package org.nuxeo.ecm.core.storage.kv;
 
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
@@ -33,8 +35,16 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
  */
 public class MemKeyValueStore implements KeyValueStoreProvider {
 
+    /** Minimum interval between two removals of all the expired keys. */
+    protected static final long PURGE_INTERVAL = 60_000; // 1 min
+
     protected final Map<String, byte[]> map;
 
+    /** Expiration time of the keys having a time-to-live. */
+    protected final Map<String, Long> expirations;
+
+    protected long nextPurge;
+
     protected final Lock readLock;
 
     protected final Lock writeLock;
@@ -47,6 +57,7 @@ public class MemKeyValueStore implements KeyValueStoreProvider {
         // and ConcurrentHashMap doesn't know how to do that. Instead we use full locking;
         // this is ok as this class isn't expected to be used in a high write rate scenario.
         map = new HashMap<>();
+        expirations = new HashMap<>();
     }
 
     @Override
@@ -62,6 +73,7 @@ public class MemKeyValueStore implements KeyValueStoreProvider {
         writeLock.lock();
         try {
             map.clear();
+            expirations.clear();
         } finally {
             writeLock.unlock();
         }
@@ -73,23 +85,68 @@ public class MemKeyValueStore implements KeyValueStoreProvider {
 
     @Override
     public void put(String key, byte[] value) {
+        put(key, value, 0);
+    }
+
+    @Override
+    public void put(String key, byte[] value, long ttl) {
         Objects.requireNonNull(key);
         value = clone(value);
         writeLock.lock();
         try {
-            map.put(key, value);
+            long now = System.currentTimeMillis();
+            purgeExpired(now);
+            doPut(key, value);
+            if (value != null && ttl > 0) {
+                expirations.put(key, Long.valueOf(now + ttl * 1000));
+            }
         } finally {
             writeLock.unlock();
         }
     }
 
+    /** Called under the write lock. The key loses any time-to-live. */
+    protected void doPut(String key, byte[] value) {
+        if (value == null) {
+            map.remove(key);
+        } else {
+            map.put(key, value);
+        }
+        expirations.remove(key);
+    }
+
+    /** Called under the write lock. Removes all the expired keys, at most once per purge interval. */
+    protected void purgeExpired(long now) {
+        if (now < nextPurge) {
+            return;
+        }
+        nextPurge = now + PURGE_INTERVAL;
+        for (Iterator<Entry<String, Long>> it = expirations.entrySet().iterator(); it.hasNext();) {
+            Entry<String, Long> es = it.next();
+            if (es.getValue().longValue() <= now) {
+                map.remove(es.getKey());
+                it.remove();
+            }
+        }
+    }
+
+    /** Called under the read or write lock. */
+    protected byte[] doGet(String key) {
+        Long expiration = expirations.get(key);
+        if (expiration != null && expiration.longValue() <= System.currentTimeMillis()) {
+            // removed by the next purge
+            return null;
+        }
+        return map.get(key);
+    }
+
     @Override
     public byte[] get(String key) {
         Objects.requireNonNull(key);
         byte[] value;
         readLock.lock();
         try {
-            value = map.get(key);
+            value = doGet(key);
         } finally {
             readLock.unlock();
         }
@@ -104,10 +161,10 @@ public class MemKeyValueStore implements KeyValueStoreProvider {
         value = clone(value);
         writeLock.lock();
         try {
-            byte[] current = map.get(key);
+            byte[] current = doGet(key);
             boolean equal = Arrays.equals(expected, current);
             if (equal) {
-                map.put(key, value);
+                doPut(key, value);
             }
             return equal;
         } finally {
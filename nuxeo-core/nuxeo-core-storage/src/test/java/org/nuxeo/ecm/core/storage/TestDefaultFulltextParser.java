@@ -20,8 +20,10 @@ package org.nuxeo.ecm.core.storage;
 
 import static org.junit.Assert.assertEquals;
 
+import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 
 import org.apache.commons.lang.StringUtils;
 import org.junit.Test;
@@ -54,4 +56,58 @@ public class TestDefaultFulltextParser extends NXRuntimeTestCase {
         check("test|é|test", "<html>test <p style=\"something\">&eacute;</p> test</html>", null);
     }
 
+    /** Parser using the regexp instead of the tokenizer. */
+    protected static class RegexpFulltextParser extends DefaultFulltextParser {
+        @Override
+        protected String preprocessField(String s, String path, String mimeType) {
+            return super.preprocessField(s, path, mimeType);
+        }
+    }
+
+    @Test
+    public void testTokenizerSameAsRegexp() throws Exception {
+        FulltextParser parser = new DefaultFulltextParser();
+        FulltextParser regexpParser = new RegexpFulltextParser();
+        String chars = "aZ\u00e9\u00c9 \t&;#<>-.,\u00a0\u03a3\u0130x09";
+        String[] entities = { "&amp;", "&lt;", "&eacute;", "&#65;", "&#x41;", "&foo;", "&;", "&#;", "&nbsp;" };
+        Random random = new Random(1234);
+        for (int n = 0; n < 10000; n++) {
+            StringBuilder sb = new StringBuilder();
+            for (int i = random.nextInt(30); i > 0; i--) {
+                if (random.nextInt(8) == 0) {
+                    sb.append(entities[random.nextInt(entities.length)]);
+                } else {
+                    sb.append(chars.charAt(random.nextInt(chars.length())));
+                }
+            }
+            String s = sb.toString();
+            assertEquals(s, regexpParser.parse(s, null), parser.parse(s, null));
+        }
+    }
+
+    protected void checkReader(String expected, String s, String mimeType) throws Exception {
+        StringBuilder sb = new StringBuilder();
+        new DefaultFulltextParser().parse(new StringReader(s), null, mimeType, null, sb);
+        assertEquals(expected, sb.toString());
+    }
+
+    @Test
+    public void testReader() throws Exception {
+        checkReader("abc def", "  -,abc DEF?? !", null);
+        checkReader("hot caf\u00e9", "hot CAF&Eacute;", null);
+        checkReader("test \u00e9 test", "<html>test &eacute; test</html>", null);
+        checkReader("test \u00e9 test", "test <p style=\"some>thing\">&eacute;</p> test", "text/html");
+        checkReader("title foobar baz", "<html><head><title>Title</title><script>var s = '<p>';</script>"
+                + "<style>p { x: y }</style></head><body><!-- comment --><p>foo<b>bar</b><br/>baz</p></body></html>",
+                null);
+        // longer than the reader buffer
+        StringBuilder sb = new StringBuilder();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            sb.append("Word").append(i).append(", ");
+            expected.append(expected.length() == 0 ? "" : " ").append("word").append(i);
+        }
+        checkReader(expected.toString(), sb.toString(), "text/plain");
+    }
+
 }
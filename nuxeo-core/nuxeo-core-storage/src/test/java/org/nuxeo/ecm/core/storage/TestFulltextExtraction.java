@@ -0,0 +1,167 @@
+/*
+ * (C) Copyright 2017 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Florent Guillaume
+ */
+package org.nuxeo.ecm.core.storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.nuxeo.ecm.core.api.Blob;
+import org.nuxeo.ecm.core.api.Blobs;
+import org.nuxeo.ecm.core.storage.FulltextExtraction.Text;
+import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.test.NXRuntimeTestCase;
+
+public class TestFulltextExtraction extends NXRuntimeTestCase {
+
+    protected static Blob newBlob(String content, String digest) {
+        Blob blob = Blobs.createBlob(content);
+        blob.setDigest(digest);
+        return blob;
+    }
+
+    protected static Text toText(Blob blob) {
+        try {
+            return new Text(blob.getString().toUpperCase(), "text/plain");
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Test
+    public void testExtractAndCache() {
+        FulltextExtraction extraction = new FulltextExtraction();
+        AtomicInteger conversions = new AtomicInteger();
+        Blob foo = newBlob("foo", "digestfoo");
+        Blob bar = newBlob("bar", "digestbar");
+        Blob foo2 = newBlob("foo", "digestfoo");
+        Blob nodigest = newBlob("gee", null);
+
+        List<Text> texts = extraction.extract(Arrays.asList(foo, bar, foo2, nodigest), blob -> {
+            conversions.incrementAndGet();
+            return toText(blob);
+        });
+        assertEquals(4, texts.size());
+        assertEquals("FOO", texts.get(0).text);
+        assertEquals("BAR", texts.get(1).text);
+        assertEquals("FOO", texts.get(2).text);
+        assertEquals("GEE", texts.get(3).text);
+        // identical blobs converted once
+        assertEquals(3, conversions.get());
+
+        // blobs with a digest are now cached
+        texts = extraction.extract(Arrays.asList(foo2, nodigest), blob -> {
+            conversions.incrementAndGet();
+            return toText(blob);
+        });
+        assertEquals("FOO", texts.get(0).text);
+        assertEquals(4, conversions.get());
+
+        // failed conversions are not cached
+        texts = extraction.extract(Collections.singletonList(newBlob("moo", "digestmoo")), blob -> null);
+        assertNull(texts.get(0));
+        texts = extraction.extract(Collections.singletonList(newBlob("moo", "digestmoo")), blob -> toText(blob));
+        assertEquals("MOO", texts.get(0).text);
+    }
+
+    @Test
+    public void testShutdown() {
+        FulltextExtraction extraction;
+        Framework.getProperties().setProperty(FulltextExtraction.THREADS_PROP, "2");
+        try {
+            extraction = new FulltextExtraction();
+        } finally {
+            Framework.getProperties().remove(FulltextExtraction.THREADS_PROP);
+        }
+        List<Text> texts = extraction.extract(Arrays.asList(newBlob("foo", "digestfoo"), newBlob("bar", "digestbar")),
+                TestFulltextExtraction::toText);
+        assertEquals("FOO", texts.get(0).text);
+        assertEquals("BAR", texts.get(1).text);
+        extraction.shutdown();
+        assertTrue(extraction.executor.isShutdown());
+    }
+
+    @Test
+    public void testComponent() throws Exception {
+        deployBundle("org.nuxeo.ecm.core.storage");
+        applyInlineDeployments();
+        FulltextExtraction extraction = FulltextExtraction.getInstance();
+        assertSame(extraction, FulltextExtraction.getInstance());
+    }
+
+    @Test
+    public void testSignature() throws Exception {
+        deployBundle("org.nuxeo.ecm.core.storage");
+        FulltextExtraction extraction = new FulltextExtraction();
+
+        Map<String, List<Blob>> blobsByIndex = new LinkedHashMap<>();
+        blobsByIndex.put("default", Arrays.asList(newBlob("foo", "digestfoo"), newBlob("bar", "digestbar")));
+        String signature = FulltextExtraction.getSignature(blobsByIndex);
+
+        // disabled by default
+        extraction.setSignature("test", "doc1", signature);
+        assertFalse(extraction.isUnchanged("test", "doc1", signature));
+
+        Framework.getProperties().setProperty(FulltextExtraction.SKIP_UNCHANGED_PROP, "true");
+        try {
+            checkSignature(extraction, blobsByIndex, signature);
+        } finally {
+            Framework.getProperties().remove(FulltextExtraction.SKIP_UNCHANGED_PROP);
+        }
+    }
+
+    protected void checkSignature(FulltextExtraction extraction, Map<String, List<Blob>> blobsByIndex,
+            String signature) {
+        assertFalse(extraction.isUnchanged("test", "doc1", signature));
+        extraction.setSignature("test", "doc1", signature);
+        assertTrue(extraction.isUnchanged("test", "doc1", signature));
+        // other document
+        assertFalse(extraction.isUnchanged("test", "doc2", signature));
+
+        // changed blob
+        blobsByIndex.put("default", Arrays.asList(newBlob("foo", "digestfoo"), newBlob("baz", "digestbaz")));
+        String signature2 = FulltextExtraction.getSignature(blobsByIndex);
+        assertNotEquals(signature, signature2);
+        assertFalse(extraction.isUnchanged("test", "doc1", signature2));
+
+        // no digest, no signature
+        blobsByIndex.put("default", Collections.singletonList(newBlob("gee", null)));
+        assertNull(FulltextExtraction.getSignature(blobsByIndex));
+        assertFalse(extraction.isUnchanged("test", "doc1", null));
+
+        // forgotten
+        extraction.setSignature("test", "doc1", signature);
+        assertTrue(extraction.isUnchanged("test", "doc1", signature));
+        extraction.setSignature("test", "doc1", null);
+        assertFalse(extraction.isUnchanged("test", "doc1", signature));
+    }
+
+}
@@ -73,6 +73,26 @@ public abstract class AbstractKeyValueStoreTest {
         assertNull(store.get(key));
     }
 
+    @Test
+    public void testPutWithTTL() throws Exception {
+        KeyValueStore store = newKeyValueStore();
+        String key = "foo";
+
+        store.put(key, BAR_B, 1);
+        assertEquals(BAR, new String(store.get(key)));
+        Thread.sleep(2000);
+        assertNull(store.get(key));
+
+        // a put without TTL removes the TTL
+        store.put(key, BAR_B, 1);
+        store.put(key, GEE_B);
+        Thread.sleep(2000);
+        assertEquals(GEE, new String(store.get(key)));
+
+        store.put(key, null);
+        assertNull(store.get(key));
+    }
+
     @Test
     public void testCompareAndSet() {
         KeyValueStore store = newKeyValueStore();
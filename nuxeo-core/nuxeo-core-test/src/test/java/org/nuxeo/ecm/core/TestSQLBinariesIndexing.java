@@ -35,17 +35,22 @@ import org.nuxeo.ecm.core.api.DocumentModelList;
 import org.nuxeo.ecm.core.api.DocumentRef;
 import org.nuxeo.ecm.core.api.IdRef;
 import org.nuxeo.ecm.core.api.blobholder.BlobHolder;
+import org.nuxeo.ecm.core.storage.FulltextExtraction;
 import org.nuxeo.ecm.core.test.CoreFeature;
 import org.nuxeo.ecm.core.test.annotations.Granularity;
 import org.nuxeo.ecm.core.test.annotations.RepositoryConfig;
 import org.nuxeo.ecm.core.work.AbstractWork;
 import org.nuxeo.ecm.core.work.api.WorkManager;
 import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.metrics.MetricsService;
 import org.nuxeo.runtime.test.runner.Deploy;
 import org.nuxeo.runtime.test.runner.Features;
 import org.nuxeo.runtime.test.runner.FeaturesRunner;
 import org.nuxeo.runtime.transaction.TransactionHelper;
 
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.SharedMetricRegistries;
+
 @RunWith(FeaturesRunner.class)
 @Features(CoreFeature.class)
 @RepositoryConfig(cleanup = Granularity.METHOD)
@@ -223,4 +228,37 @@ public class TestSQLBinariesIndexing {
         assertEquals(2, indexedDocs());
     }
 
+    @Test
+    public void testUnchangedBinariesNotExtractedAgain() throws Exception {
+        Counter skipped = SharedMetricRegistries.getOrCreate(MetricsService.class.getName())
+                                                .counter("nuxeo.fulltext.extraction.skipped");
+        Framework.getProperties().setProperty(FulltextExtraction.SKIP_UNCHANGED_PROP, "true");
+        try {
+            createDocument();
+            session.save();
+            waitForFulltextIndexing();
+            assertEquals(1, indexedDocs());
+            long count = skipped.getCount();
+
+            // same blob content, the extraction is skipped but the job still completes
+            DocumentModel doc = session.getDocument(docRef);
+            doc.getAdapter(BlobHolder.class).setBlob(Blobs.createBlob("test"));
+            session.saveDocument(doc);
+            waitForFulltextIndexing();
+            assertEquals(count + 1, skipped.getCount());
+            assertEquals(0, jobDocs());
+            assertEquals(1, indexedDocs());
+
+            // changed blob, extracted
+            doc = session.getDocument(docRef);
+            doc.getAdapter(BlobHolder.class).setBlob(Blobs.createBlob("other"));
+            session.saveDocument(doc);
+            waitForFulltextIndexing();
+            assertEquals(count + 1, skipped.getCount());
+            assertEquals(0, indexedDocs());
+        } finally {
+            Framework.getProperties().remove(FulltextExtraction.SKIP_UNCHANGED_PROP);
+        }
+    }
+
 }
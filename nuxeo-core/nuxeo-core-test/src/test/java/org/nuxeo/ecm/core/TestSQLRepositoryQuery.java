@@ -74,6 +74,7 @@ import org.nuxeo.ecm.core.api.DocumentRef;
 import org.nuxeo.ecm.core.api.Filter;
 import org.nuxeo.ecm.core.api.IdRef;
 import org.nuxeo.ecm.core.api.IterableQueryResult;
+import org.nuxeo.ecm.core.api.IterableRowQueryResult;
 import org.nuxeo.ecm.core.api.NuxeoException;
 import org.nuxeo.ecm.core.api.PartialList;
 import org.nuxeo.ecm.core.api.PathRef;
@@ -2136,6 +2137,41 @@ public class TestSQLRepositoryQuery {
         res.close();
     }
 
+    @Test
+    public void testQueryAndFetchRows() throws Exception {
+        createDocs();
+
+        Set<String> expected = new HashSet<>();
+        try (IterableQueryResult res = session.queryAndFetch("SELECT ecm:uuid, dc:title FROM File", "NXQL")) {
+            for (Map<String, Serializable> map : res) {
+                expected.add(map.get(NXQL.ECM_UUID) + "/" + map.get("dc:title"));
+            }
+        }
+        assertEquals(3, expected.size());
+
+        for (boolean detached : new boolean[] { false, true }) {
+            Set<String> actual = new HashSet<>();
+            try (IterableRowQueryResult res = session.queryAndFetchRows("SELECT ecm:uuid, dc:title FROM File",
+                    "NXQL", false, 2, detached)) {
+                int idIndex = res.getColumnIndex(NXQL.ECM_UUID);
+                int titleIndex = res.getColumnIndex("dc:title");
+                assertEquals(2, res.getColumnNames().length);
+                assertTrue(idIndex >= 0);
+                assertTrue(titleIndex >= 0);
+                for (Serializable[] row : res) {
+                    actual.add(row[idIndex] + "/" + row[titleIndex]);
+                }
+            }
+            assertEquals(expected, actual);
+        }
+
+        // no result
+        try (IterableRowQueryResult res = session.queryAndFetchRows("SELECT * FROM File WHERE dc:title = 'zzz'",
+                "NXQL", false, 0, false)) {
+            assertFalse(res.iterator().hasNext());
+        }
+    }
+
     @Test
     // NoFile2SecurityPolicy
     @LocalDeploy("org.nuxeo.ecm.core.test.tests:OSGI-INF/security-policy2-contrib.xml")
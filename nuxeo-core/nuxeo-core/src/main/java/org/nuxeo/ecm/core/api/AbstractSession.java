@@ -1249,6 +1249,24 @@ public abstract class AbstractSession implements CoreSession, Serializable {
         }
     }
 
+    @Override
+    public IterableRowQueryResult queryAndFetchRows(String query, String queryType, boolean distinctDocuments,
+            int fetchSize, boolean detached, Object... params) {
+        try {
+            Principal principal = getPrincipal();
+            String[] principals = getPrincipalsToCheck();
+            String[] permissions = getPermissionsToCheck(BROWSE);
+            Collection<Transformer> transformers = getPoliciesQueryTransformers(queryType);
+
+            QueryFilter queryFilter = new QueryFilter(principal, principals, permissions, null, transformers, 0, 0);
+            return getSession().queryAndFetchRows(query, queryType, queryFilter, distinctDocuments, fetchSize,
+                    detached, params);
+        } catch (QueryParseException e) {
+            e.addInfo("Failed to execute query: " + queryType + ": " + query);
+            throw e;
+        }
+    }
+
     @Override
     public PartialList<Map<String, Serializable>> queryProjection(String query, long limit, long offset) {
         return queryProjection(query, limit, offset, false);
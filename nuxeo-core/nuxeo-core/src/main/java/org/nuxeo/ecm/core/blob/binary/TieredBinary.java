@@ -0,0 +1,101 @@
+/*
+ * (C) Copyright 2017 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Florent Guillaume
+ */
+package org.nuxeo.ecm.core.blob.binary;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.nuxeo.ecm.core.api.NuxeoException;
+import org.nuxeo.ecm.core.blob.BlobManager;
+import org.nuxeo.ecm.core.blob.BlobProvider;
+import org.nuxeo.runtime.api.Framework;
+
+/**
+ * Binary stored by a {@link TieredBinaryManager}.
+ * <p>
+ * The file is resolved on each access, as the binary may be demoted from the hot tier at any time, and is promoted
+ * back from the capacity tier when needed.
+ *
+ * @since 9.3
+ */
+public class TieredBinary extends Binary {
+
+    private static final long serialVersionUID = 1L;
+
+    // transient to be Serializable
+    protected transient TieredBinaryManager tbm;
+
+    public TieredBinary(String digest, String blobProviderId, TieredBinaryManager tbm) {
+        super(digest, blobProviderId);
+        this.tbm = tbm;
+    }
+
+    // because the class is Serializable, re-acquire the TieredBinaryManager
+    protected TieredBinaryManager getTieredBinaryManager() {
+        if (tbm == null) {
+            if (blobProviderId == null) {
+                throw new UnsupportedOperationException("Cannot find binary manager, no blob provider id");
+            }
+            BlobManager bm = Framework.getService(BlobManager.class);
+            BlobProvider bp = bm.getBlobProvider(blobProviderId);
+            tbm = (TieredBinaryManager) bp.getBinaryManager();
+        }
+        return tbm;
+    }
+
+    @Override
+    public InputStream getStream() throws IOException {
+        File file = getTieredBinaryManager().getFile(digest);
+        if (file == null) {
+            return null;
+        }
+        try {
+            return new FileInputStream(file);
+        } catch (FileNotFoundException e) {
+            // demoted concurrently, promote it again
+            file = getTieredBinaryManager().getFile(digest);
+            return file == null ? null : new FileInputStream(file);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The file is in the hot tier, where it stays for at least half the demotion age. Callers keeping it longer should
+     * call this method again.
+     */
+    @Override
+    public File getFile() {
+        try {
+            return getTieredBinaryManager().getFile(digest);
+        } catch (IOException e) {
+            throw new NuxeoException(e);
+        }
+    }
+
+    @Override
+    protected File recomputeFile() {
+        // resolved on each access
+        return null;
+    }
+
+}
@@ -0,0 +1,72 @@
+/*
+ * (C) Copyright 2017 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Florent Guillaume
+ */
+package org.nuxeo.ecm.core.blob.binary;
+
+import java.io.File;
+import java.util.Set;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.codahale.metrics.Timer;
+
+/**
+ * Garbage collector for a {@link TieredBinaryManager}.
+ * <p>
+ * Both tiers are swept with the same marks. The capacity tier is swept first, so that a binary present in both tiers
+ * is counted once in the status, by the sweep of the hot tier. Demotion is suspended while a GC is in progress.
+ *
+ * @since 9.3
+ */
+public class TieredBinaryGarbageCollector extends LocalBinaryGarbageCollector {
+
+    private static final Log log = LogFactory.getLog(TieredBinaryGarbageCollector.class);
+
+    /** Prefix of the capacity tier subdirectories in the checkpoint. */
+    protected static final String CAPACITY_PREFIX = "capacity/";
+
+    public TieredBinaryGarbageCollector(TieredBinaryManager binaryManager) {
+        super(binaryManager);
+    }
+
+    @Override
+    protected void sweep(Marks marks, String salt, long minTime, boolean delete, Set<String> done,
+            BinaryManagerStatus status) {
+        TieredBinaryManager tieredBinaryManager = (TieredBinaryManager) binaryManager;
+        File capacityDir = tieredBinaryManager.getCapacityDirectory();
+        if (capacityDir == null) {
+            log.warn("Capacity tier of: " + binaryManager.blobProviderId + " is not a local directory, not swept");
+        } else {
+            Sweeper sweeper = new Sweeper(marks, salt, minTime, delete) {
+                @Override
+                protected boolean isCounted(File file) {
+                    // counted by the sweep of the hot tier
+                    File hotFile = binaryManager.getFileForDigest(file.getName(), false);
+                    return hotFile == null || !hotFile.exists();
+                }
+            };
+            try (Timer.Context context = sweepTimer.time()) {
+                sweep(capacityDir, sweeper, done, CAPACITY_PREFIX);
+            }
+            sweeper.addTo(status);
+        }
+        super.sweep(marks, salt, minTime, delete, done, status);
+    }
+
+}
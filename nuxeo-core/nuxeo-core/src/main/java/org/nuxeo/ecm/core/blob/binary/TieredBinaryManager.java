@@ -0,0 +1,528 @@
+/*
+ * (C) Copyright 2017 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Florent Guillaume
+ */
+package org.nuxeo.ecm.core.blob.binary;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.nuxeo.common.Environment;
+import org.nuxeo.ecm.core.work.api.WorkManager;
+import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.metrics.MetricsService;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+import com.codahale.metrics.Timer;
+
+/**
+ * A binary manager storing binaries in two tiers: a fast local hot tier, and a capacity tier.
+ * <p>
+ * New binaries are written to the hot tier, which is the local storage of the {@link LocalBinaryManager}, and are
+ * acknowledged immediately. Their replication to the capacity tier is done by a {@link TieredReplicationWork}, and is
+ * tracked by a marker file in the <em>pending/</em> directory so that it survives a restart. Binaries not accessed
+ * for some time are demoted, i.e., deleted from the hot tier once replicated. A binary missing from the hot tier is
+ * promoted back into it from the capacity tier when it is accessed.
+ * <p>
+ * A background thread periodically retries the pending replications and demotes the cold binaries.
+ * <p>
+ * The capacity tier is a {@link FileStorage}; by default it is a local directory configured with the
+ * {@value #PROP_CAPACITY_PATH} property. Subclasses can override {@link #createCapacityStorage} to use a remote
+ * storage. The {@link TieredBinaryGarbageCollector} sweeps both tiers when the capacity tier is a local directory.
+ * <p>
+ * A file returned by {@link #getFile} stays in the hot tier for at least half the demotion age, as its access time is
+ * updated and demotion re-checks it under the same lock.
+ * <p>
+ * Properties (in addition to the ones of {@link LocalBinaryManager}):
+ * <ul>
+ * <li>{@value #PROP_CAPACITY_PATH}: the directory of the capacity tier,</li>
+ * <li>{@value #PROP_DEMOTION_AGE}: the time since last access after which a binary is demoted, in seconds (default
+ * {@value #DEFAULT_DEMOTION_AGE}),</li>
+ * <li>{@value #PROP_INTERVAL}: the interval between background passes, in seconds, or 0 for none (default
+ * {@value #DEFAULT_INTERVAL}),</li>
+ * <li>{@value #PROP_RETRIES}: the number of retries of a failed replication work (default
+ * {@value #DEFAULT_RETRIES}).</li>
+ * </ul>
+ *
+ * @since 9.3
+ */
+public class TieredBinaryManager extends LocalBinaryManager {
+
+    private static final Log log = LogFactory.getLog(TieredBinaryManager.class);
+
+    public static final String PROP_CAPACITY_PATH = "capacityPath";
+
+    public static final String PROP_DEMOTION_AGE = "demotionAge";
+
+    public static final String PROP_INTERVAL = "interval";
+
+    public static final String PROP_RETRIES = "replicationRetries";
+
+    public static final long DEFAULT_DEMOTION_AGE = 7 * 24 * 3600; // 7 days
+
+    public static final long DEFAULT_INTERVAL = 3600; // 1 hour
+
+    public static final int DEFAULT_RETRIES = 3;
+
+    public static final String PENDING = "pending";
+
+    /** File marking that pending markers have been created for the binaries present when tiering was set up. */
+    public static final String TIERED_FILE = "tiered";
+
+    /** Minimum time between two updates of the access time of a hot binary. */
+    protected static final long ACCESS_RESOLUTION = 60 * 1000; // 1 min
+
+    protected static final int NUM_LOCKS = 64;
+
+    protected File pendingDir;
+
+    protected FileStorage capacityStorage;
+
+    protected long demotionAge;
+
+    protected int retries;
+
+    /** Time between two updates of the access time of a hot binary. */
+    protected long accessResolution;
+
+    /** Locks serializing the accesses and the demotion of a hot binary, by digest. */
+    protected final Object[] locks = new Object[NUM_LOCKS];
+
+    protected ScheduledExecutorService executor;
+
+    protected final AtomicLong pendingCount = new AtomicLong();
+
+    protected final AtomicLong hotCount = new AtomicLong();
+
+    protected final AtomicLong hotSize = new AtomicLong();
+
+    protected MetricRegistry registry;
+
+    protected Meter hitMeter;
+
+    protected Meter missMeter;
+
+    protected Meter promotedMeter;
+
+    protected Meter demotedMeter;
+
+    protected Meter replicatedMeter;
+
+    protected Meter replicationFailedMeter;
+
+    protected Timer replicationLagTimer;
+
+    @Override
+    public void initialize(String blobProviderId, Map<String, String> properties) throws IOException {
+        super.initialize(blobProviderId, properties);
+        File base = storageDir.getParentFile();
+        pendingDir = new File(base, PENDING);
+        pendingDir.mkdirs();
+        capacityStorage = createCapacityStorage(properties);
+        demotionAge = getLongProperty(properties, PROP_DEMOTION_AGE, DEFAULT_DEMOTION_AGE) * 1000;
+        accessResolution = Math.min(ACCESS_RESOLUTION, demotionAge / 2);
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+        retries = (int) getLongProperty(properties, PROP_RETRIES, DEFAULT_RETRIES);
+        long interval = getLongProperty(properties, PROP_INTERVAL, DEFAULT_INTERVAL);
+        initializeMetrics();
+
+        // binaries stored before tiering was set up are not replicated yet
+        File tieredFile = new File(base, TIERED_FILE);
+        if (!tieredFile.exists()) {
+            markAllPending(storageDir);
+            tieredFile.createNewFile();
+        }
+        String[] pending = pendingDir.list();
+        pendingCount.set(pending == null ? 0 : pending.length);
+
+        if (interval > 0) {
+            executor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "Nuxeo-TieredBinaryManager-" + blobProviderId);
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor.scheduleWithFixedDelay(this::backgroundPass, interval, interval, TimeUnit.SECONDS);
+        }
+    }
+
+    protected static long getLongProperty(Map<String, String> properties, String name, long defaultValue) {
+        String value = properties.get(name);
+        return StringUtils.isBlank(value) ? defaultValue : Long.parseLong(value.trim());
+    }
+
+    /**
+     * Creates the storage of the capacity tier.
+     * <p>
+     * The default implementation uses the local directory configured with the {@value #PROP_CAPACITY_PATH} property.
+     */
+    protected FileStorage createCapacityStorage(Map<String, String> properties) throws IOException {
+        String path = properties.get(PROP_CAPACITY_PATH);
+        if (StringUtils.isBlank(path)) {
+            throw new IOException("Missing property " + PROP_CAPACITY_PATH + " for tiered binary manager: "
+                    + blobProviderId);
+        }
+        File dir = new File(Framework.expandVars(path.trim()));
+        if (!dir.isAbsolute()) {
+            dir = new File(Environment.getDefault().getData(), dir.getPath());
+        }
+        return new DirectoryFileStorage(dir);
+    }
+
+    @Override
+    protected void createGarbageCollector() {
+        garbageCollector = new TieredBinaryGarbageCollector(this);
+    }
+
+    /**
+     * Gets the directory of the capacity tier, if it is a local directory.
+     *
+     * @return the directory, or {@code null} if the capacity tier is not a local directory
+     */
+    public File getCapacityDirectory() {
+        return capacityStorage instanceof DirectoryFileStorage ? ((DirectoryFileStorage) capacityStorage).dir : null;
+    }
+
+    protected Object getLock(String digest) {
+        return locks[(digest.hashCode() & Integer.MAX_VALUE) % locks.length];
+    }
+
+    protected void initializeMetrics() {
+        registry = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
+        hitMeter = registry.meter(metricName("hot", "hit"));
+        missMeter = registry.meter(metricName("hot", "miss"));
+        promotedMeter = registry.meter(metricName("promoted"));
+        demotedMeter = registry.meter(metricName("demoted"));
+        replicatedMeter = registry.meter(metricName("replicated"));
+        replicationFailedMeter = registry.meter(metricName("replication", "failed"));
+        replicationLagTimer = registry.timer(metricName("replication", "lag"));
+        registerGauge(metricName("replication", "pending"), pendingCount);
+        registerGauge(metricName("hot", "count"), hotCount);
+        registerGauge(metricName("hot", "size"), hotSize);
+    }
+
+    protected String metricName(String... names) {
+        return MetricRegistry.name(MetricRegistry.name("nuxeo", "binaries", blobProviderId, "tiered"), names);
+    }
+
+    protected void registerGauge(String name, AtomicLong value) {
+        // a previous instance may have registered it
+        registry.remove(name);
+        registry.register(name, (Gauge<Long>) value::get);
+    }
+
+    @Override
+    public void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+        if (registry != null) {
+            registry.remove(metricName("replication", "pending"));
+            registry.remove(metricName("hot", "count"));
+            registry.remove(metricName("hot", "size"));
+        }
+        super.close();
+    }
+
+    @Override
+    protected Binary getBinary(InputStream in) throws IOException {
+        String digest = storeAndDigest(in);
+        markPending(digest);
+        scheduleReplication(digest);
+        return new TieredBinary(digest, blobProviderId, this);
+    }
+
+    @Override
+    public Binary getBinary(String digest) {
+        if (getFileForDigest(digest, false) == null) {
+            // invalid digest
+            return null;
+        }
+        // resolved lazily, as the binary may have to be fetched from the capacity tier
+        return new TieredBinary(digest, blobProviderId, this);
+    }
+
+    /**
+     * Gets the file for a binary from the hot tier, promoting it from the capacity tier if needed.
+     * <p>
+     * Used by {@link TieredBinary}.
+     *
+     * @return the file, or {@code null} if the binary is in no tier
+     */
+    public File getFile(String digest) throws IOException {
+        File file = getFileForDigest(digest, false);
+        if (file == null) {
+            return null;
+        }
+        synchronized (getLock(digest)) {
+            if (file.exists()) {
+                hitMeter.mark();
+                // record the access for the demotion
+                long now = System.currentTimeMillis();
+                if (file.lastModified() < now - accessResolution) {
+                    file.setLastModified(now);
+                }
+                return file;
+            }
+        }
+        missMeter.mark();
+        File tmp = File.createTempFile("promote_", ".tmp", tmpDir);
+        try {
+            if (!capacityStorage.fetchFile(digest, tmp)) {
+                return null;
+            }
+            file = getFileForDigest(digest, true);
+            atomicMove(tmp, file);
+        } finally {
+            tmp.delete();
+        }
+        promotedMeter.mark();
+        return file;
+    }
+
+    /* =============== Replication =============== */
+
+    protected File getPendingFile(String digest) {
+        return new File(pendingDir, digest);
+    }
+
+    protected void markPending(String digest) throws IOException {
+        if (getPendingFile(digest).createNewFile()) {
+            pendingCount.incrementAndGet();
+        }
+    }
+
+    protected void markAllPending(File dir) throws IOException {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.isDirectory()) {
+                markAllPending(file);
+            } else {
+                getPendingFile(file.getName()).createNewFile();
+            }
+        }
+    }
+
+    protected void scheduleReplication(String digest) {
+        WorkManager workManager = Framework.getService(WorkManager.class);
+        if (workManager == null) {
+            // the background pass will replicate it
+            return;
+        }
+        workManager.schedule(new TieredReplicationWork(blobProviderId, digest, retries));
+    }
+
+    /**
+     * Replicates a binary pending replication to the capacity tier.
+     *
+     * @return {@code true} if the binary was replicated, {@code false} if there was nothing to replicate
+     * @throws IOException if the replication failed, in which case it stays pending
+     */
+    public boolean replicate(String digest) throws IOException {
+        File pending = getPendingFile(digest);
+        long pendingTime = pending.lastModified();
+        if (pendingTime == 0) {
+            // already done by a concurrent replication
+            return false;
+        }
+        File file = getFileForDigest(digest, false);
+        boolean replicated = file != null && file.exists();
+        if (replicated) {
+            try {
+                capacityStorage.storeFile(digest, file);
+            } catch (IOException e) {
+                replicationFailedMeter.mark();
+                throw e;
+            }
+            replicatedMeter.mark();
+            replicationLagTimer.update(System.currentTimeMillis() - pendingTime, TimeUnit.MILLISECONDS);
+        } // else garbage collected before being replicated
+        if (pending.delete()) {
+            pendingCount.decrementAndGet();
+        }
+        return replicated;
+    }
+
+    /**
+     * Replicates all the binaries pending replication.
+     *
+     * @return the number of binaries replicated
+     */
+    public long replicatePending() {
+        String[] digests = pendingDir.list();
+        if (digests == null) {
+            return 0;
+        }
+        pendingCount.set(digests.length);
+        long n = 0;
+        for (String digest : digests) {
+            if (Thread.currentThread().isInterrupted()) {
+                break;
+            }
+            try {
+                if (replicate(digest)) {
+                    n++;
+                }
+            } catch (IOException e) {
+                log.warn("Cannot replicate binary: " + digest + " for: " + blobProviderId + ", will retry later", e);
+            }
+        }
+        return n;
+    }
+
+    /* =============== Demotion =============== */
+
+    /**
+     * Demotes the binaries of the hot tier that have been replicated and not accessed for the configured time.
+     *
+     * @return the number of binaries demoted
+     */
+    public long demote() {
+        return demote(System.currentTimeMillis() - demotionAge);
+    }
+
+    /**
+     * Demotes the binaries of the hot tier that have been replicated and not accessed since the given time.
+     * <p>
+     * Also updates the hot tier residency metrics.
+     *
+     * @param minTime the minimum access time of the binaries to keep in the hot tier
+     * @return the number of binaries demoted
+     */
+    public long demote(long minTime) {
+        if (garbageCollector.isInProgress()) {
+            // the GC relies on modification times, which demotion reads and promotion updates
+            log.debug("GC in progress, not demoting binaries of: " + blobProviderId);
+            return 0;
+        }
+        long[] counts = new long[3]; // demoted, hot count, hot size
+        demote(storageDir, minTime, counts);
+        hotCount.set(counts[1]);
+        hotSize.set(counts[2]);
+        demotedMeter.mark(counts[0]);
+        return counts[0];
+    }
+
+    protected void demote(File dir, long minTime, long[] counts) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.isDirectory()) {
+                demote(file, minTime, counts);
+                continue;
+            }
+            long length = file.length();
+            String digest = file.getName();
+            boolean demoted = false;
+            if (file.lastModified() < minTime && !getPendingFile(digest).exists()) {
+                synchronized (getLock(digest)) {
+                    // check again, it may have been accessed meanwhile
+                    demoted = file.lastModified() < minTime && file.delete();
+                }
+            }
+            if (demoted) {
+                counts[0]++;
+            } else {
+                counts[1]++;
+                counts[2] += length;
+            }
+        }
+    }
+
+    protected void backgroundPass() {
+        try {
+            replicatePending();
+            demote();
+        } catch (RuntimeException e) {
+            log.error("Error in background pass of tiered binary manager: " + blobProviderId, e);
+        }
+    }
+
+    /**
+     * {@link FileStorage} storing files by key in a local directory.
+     */
+    public static class DirectoryFileStorage implements FileStorage {
+
+        protected final File dir;
+
+        public DirectoryFileStorage(File dir) {
+            this.dir = dir;
+            dir.mkdirs();
+        }
+
+        protected File getFile(String key, boolean createDir) {
+            File parent = key.length() < 4 ? dir
+                    : new File(new File(dir, key.substring(0, 2)), key.substring(2, 4));
+            if (createDir) {
+                parent.mkdirs();
+            }
+            return new File(parent, key);
+        }
+
+        @Override
+        public void storeFile(String key, File file) throws IOException {
+            File dest = getFile(key, true);
+            if (dest.exists()) {
+                // content-addressed, already stored; update date for the GC
+                dest.setLastModified(System.currentTimeMillis());
+                return;
+            }
+            File tmp = File.createTempFile(key, ".tmp", dest.getParentFile());
+            try {
+                Files.copy(file.toPath(), tmp.toPath(), REPLACE_EXISTING);
+                Files.move(tmp.toPath(), dest.toPath(), ATOMIC_MOVE);
+            } finally {
+                tmp.delete();
+            }
+        }
+
+        @Override
+        public boolean fetchFile(String key, File file) throws IOException {
+            File source = getFile(key, false);
+            if (!source.exists()) {
+                return false;
+            }
+            Files.copy(source.toPath(), file.toPath(), REPLACE_EXISTING);
+            return true;
+        }
+
+    }
+
+}
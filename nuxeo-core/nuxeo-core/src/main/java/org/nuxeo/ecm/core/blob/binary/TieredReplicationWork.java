@@ -0,0 +1,102 @@
+/*
+ * (C) Copyright 2017 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Florent Guillaume
+ */
+package org.nuxeo.ecm.core.blob.binary;
+
+import java.io.IOException;
+
+import org.nuxeo.ecm.core.api.NuxeoException;
+import org.nuxeo.ecm.core.blob.BlobManager;
+import org.nuxeo.ecm.core.blob.BlobProvider;
+import org.nuxeo.ecm.core.work.AbstractWork;
+import org.nuxeo.runtime.api.Framework;
+
+/**
+ * Work replicating a binary from the hot tier of a {@link TieredBinaryManager} to its capacity tier.
+ * <p>
+ * A failed replication is retried with an increasing delay. If all the retries fail, the binary stays pending and is
+ * replicated by the next background pass of the binary manager.
+ *
+ * @since 9.3
+ */
+public class TieredReplicationWork extends AbstractWork {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final String CATEGORY = "tieredReplication";
+
+    protected static final String TITLE = "Tiered Binary Replication";
+
+    /** Delay before the first retry, doubled for each subsequent one. */
+    protected static final long RETRY_DELAY = 1000; // 1s
+
+    protected final String blobProviderId;
+
+    protected final String digest;
+
+    protected final int retries;
+
+    protected transient int attempts;
+
+    public TieredReplicationWork(String blobProviderId, String digest, int retries) {
+        super(CATEGORY + ":" + blobProviderId + ":" + digest);
+        this.blobProviderId = blobProviderId;
+        this.digest = digest;
+        this.retries = retries;
+    }
+
+    @Override
+    public String getCategory() {
+        return CATEGORY;
+    }
+
+    @Override
+    public String getTitle() {
+        return TITLE + " " + digest;
+    }
+
+    @Override
+    public int getRetryCount() {
+        return retries;
+    }
+
+    @Override
+    public void work() {
+        if (attempts++ > 0) {
+            try {
+                Thread.sleep(RETRY_DELAY << Math.min(attempts - 2, 10));
+            } catch (InterruptedException e) {
+                // restore interrupted status
+                Thread.currentThread().interrupt();
+                throw new NuxeoException(e);
+            }
+        }
+        BlobProvider blobProvider = Framework.getService(BlobManager.class).getBlobProvider(blobProviderId);
+        if (blobProvider == null || !(blobProvider.getBinaryManager() instanceof TieredBinaryManager)) {
+            return;
+        }
+        setStatus("Replicating");
+        try {
+            ((TieredBinaryManager) blobProvider.getBinaryManager()).replicate(digest);
+        } catch (IOException e) {
+            throw new NuxeoException("Cannot replicate binary: " + digest + " for: " + blobProviderId, e);
+        }
+        setStatus(null);
+    }
+
+}
@@ -0,0 +1,171 @@
+/*
+ * (C) Copyright 2017 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Florent Guillaume
+ */
+package org.nuxeo.ecm.core.blob.binary;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+import org.nuxeo.common.Environment;
+import org.nuxeo.runtime.test.NXRuntimeTestCase;
+
+public class TestTieredBinaryManager extends NXRuntimeTestCase {
+
+    private static final String CONTENT = "this is a file au caf\u00e9";
+
+    private static final String CONTENT_MD5 = "d25ea4f4642073b7f218024d397dbaef";
+
+    private static final String ABC_MD5 = "900150983cd24fb0d6963f7d28e17f72";
+
+    protected TieredBinaryManager newBinaryManager() throws Exception {
+        Map<String, String> properties = new HashMap<>();
+        properties.put(BinaryManager.PROP_PATH, "hot");
+        properties.put(TieredBinaryManager.PROP_CAPACITY_PATH, "capacity");
+        properties.put(TieredBinaryManager.PROP_INTERVAL, "0");
+        TieredBinaryManager binaryManager = new TieredBinaryManager();
+        binaryManager.initialize("repo", properties);
+        return binaryManager;
+    }
+
+    protected File getCapacityFile(String digest) {
+        File dir = new File(Environment.getDefault().getData(), "capacity");
+        return new File(new File(new File(dir, digest.substring(0, 2)), digest.substring(2, 4)), digest);
+    }
+
+    @Test
+    public void testReplicationAndTiering() throws Exception {
+        TieredBinaryManager binaryManager = newBinaryManager();
+
+        // stored in the hot tier, pending replication
+        Binary binary = binaryManager.getBinary(new ByteArrayInputStream(CONTENT.getBytes("UTF-8")));
+        assertEquals(CONTENT_MD5, binary.getDigest());
+        File hotFile = binaryManager.getFileForDigest(CONTENT_MD5, false);
+        assertTrue(hotFile.exists());
+        assertFalse(getCapacityFile(CONTENT_MD5).exists());
+        assertEquals(1, binaryManager.pendingCount.get());
+
+        // not demoted while pending replication
+        assertEquals(0, binaryManager.demote(Long.MAX_VALUE));
+        assertTrue(hotFile.exists());
+
+        // replicated
+        assertEquals(1, binaryManager.replicatePending());
+        assertTrue(getCapacityFile(CONTENT_MD5).exists());
+        assertEquals(0, binaryManager.pendingCount.get());
+
+        // recently accessed, not demoted
+        assertEquals(0, binaryManager.demote());
+        assertEquals(1, binaryManager.hotCount.get());
+
+        // demoted
+        assertEquals(1, binaryManager.demote(Long.MAX_VALUE));
+        assertFalse(hotFile.exists());
+        assertEquals(0, binaryManager.hotCount.get());
+
+        // promoted back on access
+        binary = binaryManager.getBinary(CONTENT_MD5);
+        assertNotNull(binary);
+        assertEquals(CONTENT, IOUtils.toString(binary.getStream(), "UTF-8"));
+        assertTrue(hotFile.exists());
+
+        binaryManager.close();
+    }
+
+    @Test
+    public void testGarbageCollectorSweepsBothTiers() throws Exception {
+        TieredBinaryManager binaryManager = newBinaryManager();
+        binaryManager.getBinary(new ByteArrayInputStream(CONTENT.getBytes("UTF-8")));
+        binaryManager.getBinary(new ByteArrayInputStream("abc".getBytes("UTF-8")));
+        assertEquals(2, binaryManager.replicatePending());
+        // CONTENT only in the capacity tier, abc in both
+        assertEquals(2, binaryManager.demote(Long.MAX_VALUE));
+        assertNotNull(binaryManager.getFile(ABC_MD5));
+        // make the files older than the GC time threshold
+        long old = System.currentTimeMillis() - 60 * 1000;
+        getCapacityFile(CONTENT_MD5).setLastModified(old);
+        getCapacityFile(ABC_MD5).setLastModified(old);
+        File hotFile = binaryManager.getFileForDigest(ABC_MD5, false);
+        hotFile.setLastModified(old);
+
+        BinaryGarbageCollector gc = binaryManager.getGarbageCollector();
+        gc.start();
+        gc.mark(CONTENT_MD5);
+        // no demotion during a GC
+        assertEquals(0, binaryManager.demote(Long.MAX_VALUE));
+        assertTrue(hotFile.exists());
+        gc.stop(true);
+
+        assertTrue(getCapacityFile(CONTENT_MD5).exists());
+        assertFalse(getCapacityFile(ABC_MD5).exists());
+        assertFalse(hotFile.exists());
+        // each binary counted once
+        BinaryManagerStatus status = gc.getStatus();
+        assertEquals(1, status.numBinaries);
+        assertEquals(1, status.numBinariesGC);
+
+        binaryManager.close();
+    }
+
+    @Test
+    public void testStoringAgainUpdatesCapacityTier() throws Exception {
+        TieredBinaryManager binaryManager = newBinaryManager();
+        binaryManager.getBinary(new ByteArrayInputStream(CONTENT.getBytes("UTF-8")));
+        binaryManager.replicatePending();
+        binaryManager.demote(Long.MAX_VALUE);
+        long old = System.currentTimeMillis() - 60 * 1000;
+        getCapacityFile(CONTENT_MD5).setLastModified(old);
+
+        // stored again, for instance while a GC is in progress
+        binaryManager.getBinary(new ByteArrayInputStream(CONTENT.getBytes("UTF-8")));
+        binaryManager.replicatePending();
+        assertTrue(getCapacityFile(CONTENT_MD5).lastModified() > old);
+
+        binaryManager.close();
+    }
+
+    @Test
+    public void testExistingBinariesPending() throws Exception {
+        // a binary stored before tiering was set up
+        File hotDir = new File(Environment.getDefault().getData(), "hot");
+        File file = new File(new File(new File(new File(hotDir, LocalBinaryManager.DATA), "d2"), "5e"), CONTENT_MD5);
+        FileUtils.writeStringToFile(file, CONTENT, "UTF-8");
+
+        TieredBinaryManager binaryManager = newBinaryManager();
+        assertEquals(1, binaryManager.pendingCount.get());
+        assertEquals(0, binaryManager.demote(Long.MAX_VALUE));
+        assertEquals(1, binaryManager.replicatePending());
+        assertTrue(getCapacityFile(CONTENT_MD5).exists());
+        binaryManager.close();
+
+        // not marked again on restart
+        binaryManager = newBinaryManager();
+        assertEquals(0, binaryManager.pendingCount.get());
+        binaryManager.close();
+    }
+
+}
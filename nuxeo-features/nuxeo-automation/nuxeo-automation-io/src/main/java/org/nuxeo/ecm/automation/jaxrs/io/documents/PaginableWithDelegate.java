@@ -130,4 +130,9 @@ public class PaginableWithDelegate<T> extends ArrayList<T> implements Paginable<
         return delegate.getCurrentPageOffset();
     }
 
+    @Override
+    public String getNextPageCursor() {
+        return delegate.getNextPageCursor();
+    }
+
 }
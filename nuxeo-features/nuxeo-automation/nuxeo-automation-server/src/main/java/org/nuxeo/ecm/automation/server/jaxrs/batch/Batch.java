@@ -161,11 +161,22 @@ public class Batch {
      * @return The key of the new {@link BatchFileEntry}.
      */
     public String addFile(String index, InputStream is, String name, String mime) throws IOException {
-        String mimeType = mime;
-        if (mimeType == null) {
-            mimeType = "application/octet-stream";
+        return addFile(index, Blobs.createBlob(is, mime), name, mime);
+    }
+
+    /**
+     * Adds a blob with the given {@code index} to the batch.
+     * <p>
+     * A temporary {@link org.nuxeo.ecm.core.api.impl.blob.FileBlob FileBlob} is moved to the transient store without
+     * being copied.
+     *
+     * @return The key of the new {@link BatchFileEntry}.
+     * @since 9.3
+     */
+    public String addFile(String index, Blob blob, String name, String mime) throws IOException {
+        if (mime != null) {
+            blob.setMimeType(mime);
         }
-        Blob blob = Blobs.createBlob(is, mime);
         blob.setFilename(name);
 
         String fileEntryKey = key + "_" + index;
@@ -186,8 +197,18 @@ public class Batch {
      */
     public String addChunk(String index, InputStream is, int chunkCount, int chunkIndex, String fileName,
             String mimeType, long fileSize) throws IOException {
+        return addChunk(index, Blobs.createBlob(is), chunkCount, chunkIndex, fileName, mimeType, fileSize);
+    }
+
+    /**
+     * Adds a blob as a chunk with the given {@code chunkIndex} to the batch file with the given {@code index}.
+     *
+     * @return The key of the {@link BatchFileEntry}.
+     * @since 9.3
+     */
+    public String addChunk(String index, Blob blob, int chunkCount, int chunkIndex, String fileName, String mimeType,
+            long fileSize) throws IOException {
         BatchManager bm = Framework.getService(BatchManager.class);
-        Blob blob = Blobs.createBlob(is);
 
         String fileEntryKey = key + "_" + index;
         BatchFileEntry fileEntry = getFileEntry(index);
@@ -60,6 +60,27 @@ public interface BatchManager {
     void addStream(String batchId, String index, InputStream is, int chunkCount, int chunkIndex, String name,
             String mime, long fileSize) throws IOException;
 
+    /**
+     * Adds a blob to a batch. Will create a new {@link Batch} if needed.
+     * <p>
+     * A temporary {@link org.nuxeo.ecm.core.api.impl.blob.FileBlob FileBlob} is moved into the batch storage without
+     * being copied.
+     *
+     * @since 9.3
+     */
+    void addBlob(String batchId, String index, Blob blob, String name, String mime) throws IOException;
+
+    /**
+     * Adds a blob as a chunk to a batch. Will create a new {@link Batch} if needed.
+     * <p>
+     * A temporary {@link org.nuxeo.ecm.core.api.impl.blob.FileBlob FileBlob} is moved into the batch storage without
+     * being copied.
+     *
+     * @since 9.3
+     */
+    void addBlob(String batchId, String index, Blob blob, int chunkCount, int chunkIndex, String name, String mime,
+            long fileSize) throws IOException;
+
     /**
      * Returns true if there is a batch for the given {@code batchId}, false otherwise.
      *
@@ -148,6 +148,38 @@ public class BatchManagerComponent extends DefaultComponent implements BatchMana
         }
     }
 
+    @Override
+    public void addBlob(String batchId, String index, Blob blob, String name, String mime) throws IOException {
+        uploadInProgress.incrementAndGet();
+        try {
+            Batch batch = getBatch(batchId);
+            if (batch == null) {
+                batch = initBatchInternal(batchId);
+            }
+            batch.addFile(index, blob, name, mime);
+            log.debug(String.format("Added file %s [%s] to batch %s", index, name, batch.getKey()));
+        } finally {
+            uploadInProgress.decrementAndGet();
+        }
+    }
+
+    @Override
+    public void addBlob(String batchId, String index, Blob blob, int chunkCount, int chunkIndex, String name,
+            String mime, long fileSize) throws IOException {
+        uploadInProgress.incrementAndGet();
+        try {
+            Batch batch = getBatch(batchId);
+            if (batch == null) {
+                batch = initBatchInternal(batchId);
+            }
+            batch.addChunk(index, blob, chunkCount, chunkIndex, name, mime, fileSize);
+            log.debug(String.format("Added chunk %s to file %s [%s] in batch %s", chunkIndex, index, name,
+                    batch.getKey()));
+        } finally {
+            uploadInProgress.decrementAndGet();
+        }
+    }
+
     @Override
     public boolean hasBatch(String batchId) {
         return batchId != null && getTransientStore().exists(batchId);
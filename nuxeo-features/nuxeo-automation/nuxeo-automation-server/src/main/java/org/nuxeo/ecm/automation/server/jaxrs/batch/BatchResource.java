@@ -137,6 +137,7 @@ public class BatchResource extends AbstractResource<ResourceTypeImpl> {
         String mimeType = request.getHeader("X-File-Type");
         String idx = request.getHeader("X-File-Idx");
         InputStream is = null;
+        Blob blob = null;
 
         // handle multipart case : mainly MSIE with jQueryFileupload
         String contentType = request.getHeader("Content-Type");
@@ -152,9 +153,8 @@ public class BatchResource extends AbstractResource<ResourceTypeImpl> {
             if (idx == null || "".equals(idx.trim())) {
                 idx = "0";
             }
-            Blob blob = formData.getFirstBlob();
+            blob = formData.getFirstBlob();
             if (blob != null) {
-                is = blob.getStream();
                 fileName = blob.getFilename();
                 mimeType = blob.getMimeType();
             }
@@ -182,7 +182,12 @@ public class BatchResource extends AbstractResource<ResourceTypeImpl> {
                         BatchManagerComponent.CLIENT_BATCH_ID_FLAG));
             }
         }
-        bm.addStream(batchId, idx, is, fileName, mimeType);
+        if (blob != null) {
+            // the blob spooled by the multipart parsing is stored without another copy
+            bm.addBlob(batchId, idx, blob, fileName, mimeType);
+        } else {
+            bm.addStream(batchId, idx, is, fileName, mimeType);
+        }
 
         Map<String, String> result = new HashMap<>();
         result.put("batchId", batchId);
@@ -19,10 +19,7 @@
  */
 package org.nuxeo.elasticsearch.audit;
 
-import static org.elasticsearch.common.xcontent.XContentFactory.jsonBuilder;
-
 import java.io.IOException;
-import java.io.OutputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Calendar;
@@ -30,27 +27,37 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.collections.MapUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.codehaus.jackson.JsonFactory;
 import org.codehaus.jackson.JsonGenerator;
+import org.elasticsearch.ExceptionsHelper;
+import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.bulk.BulkItemResponse;
 import org.elasticsearch.action.bulk.BulkRequestBuilder;
 import org.elasticsearch.action.bulk.BulkResponse;
 import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.search.SearchRequestBuilder;
 import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.action.search.SearchType;
 import org.elasticsearch.client.Client;
+import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.io.stream.BytesStreamOutput;
 import org.elasticsearch.common.unit.TimeValue;
-import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
 import org.elasticsearch.index.query.BoolQueryBuilder;
 import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.index.query.QueryBuilders;
 import org.elasticsearch.index.query.TermQueryBuilder;
+import org.elasticsearch.rest.RestStatus;
 import org.elasticsearch.search.SearchHit;
 import org.elasticsearch.search.aggregations.AggregationBuilders;
 import org.elasticsearch.search.aggregations.metrics.max.Max;
@@ -83,8 +90,15 @@ import org.nuxeo.elasticsearch.api.ElasticSearchAdmin;
 import org.nuxeo.elasticsearch.audit.io.AuditEntryJSONReader;
 import org.nuxeo.elasticsearch.audit.io.AuditEntryJSONWriter;
 import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.metrics.MetricsService;
 import org.nuxeo.runtime.model.DefaultComponent;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+import com.codahale.metrics.Timer;
+
 /**
  * Implementation of the {@link AuditBackend} interface using Elasticsearch persistence
  *
@@ -102,8 +116,73 @@ public class ESAuditBackend extends AbstractAuditBackend implements AuditBackend
 
     public static final int MIGRATION_DEFAULT_BACTH_SIZE = 1000;
 
+    /**
+     * Maximum number of bulk requests sent concurrently.
+     *
+     * @since 9.3
+     */
+    public static final String BULK_MAX_IN_FLIGHT_PROP = "audit.elasticsearch.bulk.maxInFlight";
+
+    /**
+     * Maximum number of entries in a bulk request.
+     *
+     * @since 9.3
+     */
+    public static final String BULK_MAX_ENTRIES_PROP = "audit.elasticsearch.bulk.maxEntries";
+
+    /**
+     * Maximum number of retries of the entries rejected by Elasticsearch.
+     *
+     * @since 9.3
+     */
+    public static final String BULK_MAX_RETRIES_PROP = "audit.elasticsearch.bulk.maxRetries";
+
+    protected static final String DEFAULT_BULK_MAX_IN_FLIGHT = "2";
+
+    protected static final String DEFAULT_BULK_MAX_ENTRIES = "500";
+
+    protected static final String DEFAULT_BULK_MAX_RETRIES = "3";
+
+    protected static final long RETRY_BASE_DELAY_MS = 100;
+
+    protected static final long STOP_TIMEOUT_SECONDS = 10;
+
+    /** Shared factory, recycling the buffers of the JSON generators. */
+    protected static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    protected final int bulkMaxInFlight;
+
+    protected final int bulkMaxEntries;
+
+    protected final int bulkMaxRetries;
+
+    /** Permits of the bulk requests in flight, held until their entries are indexed or given up. */
+    protected final Semaphore bulkPermits;
+
+    protected ScheduledExecutorService retryExecutor;
+
+    protected final MetricRegistry registry = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
+
+    protected final Timer bulkTimer = registry.timer(
+            MetricRegistry.name("nuxeo", "elasticsearch", "audit", "bulk"));
+
+    protected final Meter indexedMeter = registry.meter(
+            MetricRegistry.name("nuxeo", "elasticsearch", "audit", "indexed"));
+
+    protected final Meter retriesMeter = registry.meter(
+            MetricRegistry.name("nuxeo", "elasticsearch", "audit", "retries"));
+
+    protected final Meter failedMeter = registry.meter(
+            MetricRegistry.name("nuxeo", "elasticsearch", "audit", "failed"));
+
     public ESAuditBackend(NXAuditEventsService component, AuditBackendDescriptor config) {
         super(component, config);
+        bulkMaxInFlight = Math.max(1,
+                Integer.parseInt(Framework.getProperty(BULK_MAX_IN_FLIGHT_PROP, DEFAULT_BULK_MAX_IN_FLIGHT)));
+        bulkMaxEntries = Math.max(1,
+                Integer.parseInt(Framework.getProperty(BULK_MAX_ENTRIES_PROP, DEFAULT_BULK_MAX_ENTRIES)));
+        bulkMaxRetries = Integer.parseInt(Framework.getProperty(BULK_MAX_RETRIES_PROP, DEFAULT_BULK_MAX_RETRIES));
+        bulkPermits = new Semaphore(bulkMaxInFlight);
     }
 
     protected Client esClient;
@@ -122,6 +201,7 @@ public class ESAuditBackend extends AbstractAuditBackend implements AuditBackend
             List<LogEntry> entries = new ArrayList<>();
             entries.add(logEntry);
             addLogEntries(entries);
+            flushBulks(STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
         }
 
         @Override
@@ -169,6 +249,14 @@ public class ESAuditBackend extends AbstractAuditBackend implements AuditBackend
     @Override
     public void onApplicationStarted() {
         esClient = getClient();
+        retryExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "Nuxeo-Audit-Elasticsearch-Retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        String inFlightGauge = MetricRegistry.name("nuxeo", "elasticsearch", "audit", "inFlight");
+        registry.remove(inFlightGauge);
+        registry.register(inFlightGauge, (Gauge<Integer>) () -> bulkMaxInFlight - bulkPermits.availablePermits());
         if (Boolean.parseBoolean(Framework.getProperty(MIGRATION_FLAG_PROP))) {
             if (!isMigrationDone()) {
                 log.info(String.format(
@@ -199,10 +287,24 @@ public class ESAuditBackend extends AbstractAuditBackend implements AuditBackend
             return;
         }
         try {
+            if (!flushBulks(STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                log.warn("Timeout while waiting for the indexing of audit entries");
+            }
+            retryExecutor.shutdownNow();
             esClient.close();
         } finally {
             esClient = null;
+            retryExecutor = null;
+        }
+    }
+
+    @Override
+    public boolean await(long time, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(time);
+        if (!super.await(time, unit)) {
+            return false;
         }
+        return flushBulks(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
     }
 
     @Override
@@ -409,6 +511,10 @@ public class ESAuditBackend extends AbstractAuditBackend implements AuditBackend
         return queryLogsByPage(eventIds, limit, categories, path, pageNb, pageSize);
     }
 
+    /**
+     * Indexes the entries asynchronously, in bulk requests of bounded size. This only blocks when the maximum number
+     * of bulk requests are in flight. The entries rejected by Elasticsearch are retried with an exponential backoff.
+     */
     @Override
     public void addLogEntries(List<LogEntry> entries) {
 
@@ -417,7 +523,6 @@ public class ESAuditBackend extends AbstractAuditBackend implements AuditBackend
         }
 
         BulkRequestBuilder bulkRequest = esClient.prepareBulk();
-        JsonFactory factory = new JsonFactory();
 
         UIDGeneratorService uidGeneratorService = Framework.getService(UIDGeneratorService.class);
         UIDSequencer seq = uidGeneratorService.getSequencer();
@@ -429,27 +534,157 @@ public class ESAuditBackend extends AbstractAuditBackend implements AuditBackend
                 if (log.isDebugEnabled()) {
                     log.debug(String.format("Indexing log entry: %s", entry));
                 }
-                OutputStream out = new BytesStreamOutput();
-                JsonGenerator jsonGen = factory.createJsonGenerator(out);
-                XContentBuilder builder = jsonBuilder(out);
-                AuditEntryJSONWriter.asJSON(jsonGen, entry);
                 bulkRequest.add(esClient.prepareIndex(getESIndexName(), ElasticSearchConstants.ENTRY_TYPE,
-                        String.valueOf(entry.getId())).setSource(builder));
+                        String.valueOf(entry.getId())).setSource(toJSON(entry)));
+                if (bulkRequest.numberOfActions() >= bulkMaxEntries) {
+                    sendBulk(bulkRequest);
+                    bulkRequest = esClient.prepareBulk();
+                }
             }
+            sendBulk(bulkRequest);
+        } catch (IOException e) {
+            throw new NuxeoException("Error while indexing Audit entries", e);
+        }
+
+    }
+
+    protected BytesReference toJSON(LogEntry entry) throws IOException {
+        BytesStreamOutput out = new BytesStreamOutput();
+        JsonGenerator jsonGen = JSON_FACTORY.createJsonGenerator(out);
+        AuditEntryJSONWriter.asJSON(jsonGen, entry);
+        return out.bytes();
+    }
+
+    /**
+     * Sends a bulk request without waiting for its response, once there are less than the maximum number of bulk
+     * requests in flight.
+     *
+     * @since 9.3
+     */
+    protected void sendBulk(BulkRequestBuilder bulkRequest) {
+        if (bulkRequest.numberOfActions() == 0) {
+            return;
+        }
+        try {
+            bulkPermits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new NuxeoException("Interrupted while indexing Audit entries", e);
+        }
+        executeBulk(bulkRequest, 0);
+    }
 
-            BulkResponse bulkResponse = bulkRequest.execute().actionGet();
-            if (bulkResponse.hasFailures()) {
-                for (BulkItemResponse response : bulkResponse.getItems()) {
-                    if (response.isFailed()) {
-                        log.error("Unable to index audit entry " + response.getItemId() + " :"
-                                + response.getFailureMessage());
+    protected void executeBulk(BulkRequestBuilder bulkRequest, int attempt) {
+        Timer.Context timer = bulkTimer.time();
+        try {
+            bulkRequest.execute(new ActionListener<BulkResponse>() {
+                @Override
+                public void onResponse(BulkResponse response) {
+                    timer.stop();
+                    onBulkResponse(bulkRequest, response, attempt);
+                }
+
+                @Override
+                public void onFailure(Throwable e) {
+                    timer.stop();
+                    if (ExceptionsHelper.unwrapCause(e) instanceof EsRejectedExecutionException) {
+                        retryBulk(getIndexRequests(bulkRequest), attempt, e);
+                    } else {
+                        bulkFailed(bulkRequest.numberOfActions(), "Unable to index audit entries", e);
                     }
                 }
+            });
+        } catch (RuntimeException e) {
+            timer.stop();
+            bulkFailed(bulkRequest.numberOfActions(), "Unable to index audit entries", e);
+        }
+    }
+
+    protected static List<IndexRequest> getIndexRequests(BulkRequestBuilder bulkRequest) {
+        List<IndexRequest> requests = new ArrayList<>(bulkRequest.numberOfActions());
+        for (Object request : bulkRequest.request().requests()) {
+            requests.add((IndexRequest) request);
+        }
+        return requests;
+    }
+
+    protected void onBulkResponse(BulkRequestBuilder bulkRequest, BulkResponse bulkResponse, int attempt) {
+        List<IndexRequest> rejected = new ArrayList<>();
+        int failed = 0;
+        if (bulkResponse.hasFailures()) {
+            List<?> requests = bulkRequest.request().requests();
+            for (BulkItemResponse response : bulkResponse.getItems()) {
+                if (!response.isFailed()) {
+                    continue;
+                }
+                if (response.getFailure().getStatus() == RestStatus.TOO_MANY_REQUESTS) {
+                    rejected.add((IndexRequest) requests.get(response.getItemId()));
+                } else {
+                    failed++;
+                    log.error("Unable to index audit entry " + response.getItemId() + " :"
+                            + response.getFailureMessage());
+                }
             }
-        } catch (IOException e) {
-            throw new NuxeoException("Error while indexing Audit entries", e);
         }
+        indexedMeter.mark(bulkRequest.numberOfActions() - rejected.size() - failed);
+        failedMeter.mark(failed);
+        if (rejected.isEmpty()) {
+            bulkPermits.release();
+        } else {
+            retryBulk(rejected, attempt, null);
+        }
+    }
+
+    /**
+     * Schedules the retry of rejected entries, keeping the permit of their bulk request.
+     */
+    protected void retryBulk(List<IndexRequest> requests, int attempt, Throwable cause) {
+        if (attempt >= bulkMaxRetries || retryExecutor == null) {
+            bulkFailed(requests.size(),
+                    String.format("Elasticsearch rejected %d audit entries after %d retries", requests.size(), attempt),
+                    cause);
+            return;
+        }
+        retriesMeter.mark(requests.size());
+        BulkRequestBuilder retry = esClient.prepareBulk();
+        for (IndexRequest request : requests) {
+            retry.add(request);
+        }
+        long delay = RETRY_BASE_DELAY_MS << Math.min(attempt, 10);
+        try {
+            retryExecutor.schedule(() -> executeBulk(retry, attempt + 1), delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            bulkFailed(requests.size(), "Unable to retry the indexing of audit entries", e);
+        }
+    }
+
+    protected void bulkFailed(int count, String message, Throwable cause) {
+        failedMeter.mark(count);
+        bulkPermits.release();
+        if (cause == null) {
+            log.error(message);
+        } else {
+            log.error(message, cause);
+        }
+    }
 
+    /**
+     * Waits for the completion of the bulk requests in flight.
+     *
+     * @return {@code false} if the timeout elapsed before
+     * @since 9.3
+     */
+    public boolean flushBulks(long time, TimeUnit unit) {
+        try {
+            if (!bulkPermits.tryAcquire(bulkMaxInFlight, time, unit)) {
+                return false;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        bulkPermits.release(bulkMaxInFlight);
+        return true;
     }
 
     @Override
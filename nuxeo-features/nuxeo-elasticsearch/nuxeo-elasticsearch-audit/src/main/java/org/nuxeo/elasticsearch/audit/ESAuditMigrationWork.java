@@ -22,6 +22,7 @@ import java.util.Calendar;
 import java.util.Collections;
 import java.util.List;
 import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -109,6 +110,10 @@ public class ESAuditMigrationWork extends AbstractWork {
             entry.setPrincipalName(SecurityConstants.SYSTEM_USERNAME);
             entry.setEventDate(Calendar.getInstance(TimeZone.getTimeZone("UTC")).getTime());
             destBackend.addLogEntries(Collections.singletonList(entry));
+            if (destBackend instanceof ESAuditBackend) {
+                // bulks are indexed asynchronously
+                ((ESAuditBackend) destBackend).flushBulks(1, TimeUnit.MINUTES);
+            }
         } finally {
             sourceBackend.onApplicationStopped();
         }
@@ -43,13 +43,24 @@ public class AuditEntryJSONWriter {
 
     protected static final Log log = LogFactory.getLog(AuditEntryJSONWriter.class);
 
-    public static void asJSON(JsonGenerator jg, LogEntry logEntry) throws IOException {
+    /**
+     * Shared mapper, configured once as mappers are thread-safe and costly to create.
+     *
+     * @since 9.3
+     */
+    protected static final ObjectMapper OBJECT_MAPPER = createObjectMapper();
+
+    protected static ObjectMapper createObjectMapper() {
         ObjectMapper objectMapper = new ObjectMapper();
         SimpleModule module = new SimpleModule("esAuditJson", org.codehaus.jackson.Version.unknownVersion());
         module.addSerializer(Map.class, new MapEntrySerializer());
         module.addSerializer(AbstractBlob.class, new BinaryBlobEntrySerializer());
         objectMapper.registerModule(module);
-        jg.setCodec(objectMapper);
+        return objectMapper;
+    }
+
+    public static void asJSON(JsonGenerator jg, LogEntry logEntry) throws IOException {
+        jg.setCodec(OBJECT_MAPPER);
 
         jg.writeStartObject();
         jg.writeStringField("entity-type", "logEntry");
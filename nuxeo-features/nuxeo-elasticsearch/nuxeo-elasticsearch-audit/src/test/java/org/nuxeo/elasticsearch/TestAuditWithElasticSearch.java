@@ -41,11 +41,16 @@ import org.nuxeo.elasticsearch.api.ElasticSearchAdmin;
 import org.nuxeo.elasticsearch.audit.ESAuditBackend;
 import org.nuxeo.elasticsearch.test.RepositoryElasticSearchFeature;
 import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.metrics.MetricsService;
 import org.nuxeo.runtime.test.runner.Deploy;
 import org.nuxeo.runtime.test.runner.Features;
 import org.nuxeo.runtime.test.runner.FeaturesRunner;
 import org.nuxeo.runtime.test.runner.LocalDeploy;
 
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+
 @Deploy({ "org.nuxeo.runtime.metrics", "org.nuxeo.ecm.platform.audit.api", "org.nuxeo.ecm.platform.audit",
         "org.nuxeo.ecm.platform.uidgen.core", "org.nuxeo.elasticsearch.seqgen",
         "org.nuxeo.elasticsearch.seqgen.test:elasticsearch-seqgen-index-test-contrib.xml",
@@ -191,4 +196,25 @@ public class TestAuditWithElasticSearch {
 
     }
 
+    @Test
+    public void shouldIndexInSeveralBulks() throws Exception {
+        MetricRegistry registry = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
+        Meter indexed = registry.meter(MetricRegistry.name("nuxeo", "elasticsearch", "audit", "indexed"));
+        Meter failed = registry.meter(MetricRegistry.name("nuxeo", "elasticsearch", "audit", "failed"));
+        long indexedBefore = indexed.getCount();
+        long failedBefore = failed.getCount();
+
+        // more entries than the default bulk size
+        LogEntryGen.generate("bulkdoc", "bulk", "cat", 1234);
+
+        Assert.assertEquals(1234, indexed.getCount() - indexedBefore);
+        Assert.assertEquals(0, failed.getCount() - failedBefore);
+
+        NXAuditEventsService audit = (NXAuditEventsService) Framework.getRuntime()
+                                                                     .getComponent(NXAuditEventsService.NAME);
+        AuditBackend backend = audit.getBackend();
+        Assert.assertEquals(1L, backend.getEventsCount("bulk0").longValue());
+        Assert.assertEquals(1L, backend.getEventsCount("bulk1233").longValue());
+    }
+
 }
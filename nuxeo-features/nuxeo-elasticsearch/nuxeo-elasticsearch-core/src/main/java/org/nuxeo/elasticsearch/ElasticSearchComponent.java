@@ -30,8 +30,11 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -45,6 +48,7 @@ import org.elasticsearch.index.query.QueryBuilder;
 import org.nuxeo.ecm.automation.jaxrs.io.documents.JsonESDocumentWriter;
 import org.nuxeo.ecm.core.api.CoreSession;
 import org.nuxeo.ecm.core.api.DocumentModelList;
+import org.nuxeo.ecm.core.api.NuxeoException;
 import org.nuxeo.ecm.core.api.SortInfo;
 import org.nuxeo.ecm.core.repository.RepositoryService;
 import org.nuxeo.ecm.core.work.api.Work;
@@ -65,14 +69,20 @@ import org.nuxeo.elasticsearch.core.ElasticSearchAdminImpl;
 import org.nuxeo.elasticsearch.core.ElasticSearchIndexingImpl;
 import org.nuxeo.elasticsearch.core.ElasticSearchServiceImpl;
 import org.nuxeo.elasticsearch.query.NxQueryBuilder;
+import org.nuxeo.elasticsearch.work.AliasReindexingWorker;
+import org.nuxeo.elasticsearch.work.ChangeLogIndexingWorker;
 import org.nuxeo.elasticsearch.work.IndexingWorker;
 import org.nuxeo.elasticsearch.work.ScrollingIndexingWorker;
 import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.metrics.MetricsService;
 import org.nuxeo.runtime.model.ComponentContext;
 import org.nuxeo.runtime.model.ComponentInstance;
 import org.nuxeo.runtime.model.DefaultComponent;
 import org.nuxeo.runtime.transaction.TransactionHelper;
 
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+import com.codahale.metrics.Timer;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.MoreExecutors;
@@ -85,6 +95,9 @@ public class ElasticSearchComponent extends DefaultComponent
 
     private static final Log log = LogFactory.getLog(ElasticSearchComponent.class);
 
+    /** @since 9.3 */
+    public static final String NAME = "org.nuxeo.elasticsearch.ElasticSearchComponent";
+
     private static final String EP_REMOTE = "elasticSearchRemote";
 
     private static final String EP_LOCAL = "elasticSearchLocal";
@@ -118,8 +131,15 @@ public class ElasticSearchComponent extends DefaultComponent
 
     private ListeningExecutorService waiterExecutorService;
 
+    // Pool indexing the write buckets of a reindexing in parallel, created on first use
+    private ThreadPoolExecutor bucketIndexingExecutor;
+
     private final AtomicInteger runIndexingWorkerCount = new AtomicInteger(0);
 
+    private final Timer backPressureTimer = SharedMetricRegistries.getOrCreate(MetricsService.class.getName())
+                                                                  .timer(MetricRegistry.name("nuxeo", "elasticsearch",
+                                                                          "service", "backPressure"));
+
     // Nuxeo Component impl ======================================é=============
     @Override
     public void registerContribution(Object contribution, String extensionPoint, ComponentInstance contributor) {
@@ -200,11 +220,14 @@ public class ElasticSearchComponent extends DefaultComponent
         initListenerThreadPool();
         processStackedCommands();
         reindexOnStartup();
+        resumeAliasReindexing();
+        resumeChangeLogIndexing();
     }
 
     @Override
     public void stop(ComponentContext context) {
         try {
+            shutdownBucketIndexingExecutor();
             shutdownListenerThreadPool();
         } finally {
             try {
@@ -238,6 +261,31 @@ public class ElasticSearchComponent extends DefaultComponent
         }
     }
 
+    /**
+     * Resumes the alias reindexing jobs interrupted by a shutdown.
+     */
+    private void resumeChangeLogIndexing() {
+        if (!ChangeLogIndexingWorker.isEnabled()) {
+            return;
+        }
+        for (String repositoryName : esa.getRepositoryNames()) {
+            ChangeLogIndexingWorker.registerMetrics(repositoryName);
+            if (ChangeLogIndexingWorker.getOutageTime(repositoryName) != null) {
+                log.warn(String.format("Resuming catch-up indexing of repository: %s", repositoryName));
+                ChangeLogIndexingWorker.schedule(repositoryName);
+            }
+        }
+    }
+
+    private void resumeAliasReindexing() {
+        for (String repositoryName : esa.getRepositoryNames()) {
+            if (AliasReindexingWorker.isInProgress(repositoryName)) {
+                log.warn(String.format("Resuming reindexing of repository: %s", repositoryName));
+                runAliasReindexingWorker(repositoryName);
+            }
+        }
+    }
+
     protected boolean isElasticsearchEnabled() {
         return Boolean.parseBoolean(Framework.getProperty(ES_ENABLED_PROPERTY, "true"));
     }
@@ -280,6 +328,16 @@ public class ElasticSearchComponent extends DefaultComponent
         esa.dropAndInitRepositoryIndex(repositoryName);
     }
 
+    @Override
+    public String createRepositoryIndexVersion(String repositoryName) {
+        return esa.createRepositoryIndexVersion(repositoryName);
+    }
+
+    @Override
+    public void switchRepositoryIndexAlias(String repositoryName, String indexName) {
+        esa.switchRepositoryIndexAlias(repositoryName, indexName);
+    }
+
     @Override
     public List<String> getRepositoryNames() {
         return esa.getRepositoryNames();
@@ -369,6 +427,45 @@ public class ElasticSearchComponent extends DefaultComponent
         }
     }
 
+    /**
+     * Gets the pool used to index the write buckets of a reindexing in parallel, resized to the given number of
+     * threads if the configuration changed.
+     *
+     * @since 9.3
+     */
+    public synchronized ExecutorService getBucketIndexingExecutor(int threads) {
+        if (esa == null) {
+            throw new NuxeoException("Elasticsearch service is not started");
+        }
+        if (bucketIndexingExecutor == null) {
+            AtomicInteger threadNumber = new AtomicInteger();
+            bucketIndexingExecutor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<>(), r -> {
+                        Thread thread = new Thread(r, "Nuxeo-ESBucketIndexing-" + threadNumber.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+        } else if (bucketIndexingExecutor.getCorePoolSize() != threads) {
+            // the core size must stay below the maximum size
+            if (threads > bucketIndexingExecutor.getMaximumPoolSize()) {
+                bucketIndexingExecutor.setMaximumPoolSize(threads);
+                bucketIndexingExecutor.setCorePoolSize(threads);
+            } else {
+                bucketIndexingExecutor.setCorePoolSize(threads);
+                bucketIndexingExecutor.setMaximumPoolSize(threads);
+            }
+        }
+        return bucketIndexingExecutor;
+    }
+
+    protected synchronized void shutdownBucketIndexingExecutor() {
+        if (bucketIndexingExecutor != null) {
+            // buckets already submitted are still indexed
+            bucketIndexingExecutor.shutdown();
+            bucketIndexingExecutor = null;
+        }
+    }
+
     @Override
     public void refresh() {
         esa.refresh();
@@ -476,6 +573,7 @@ public class ElasticSearchComponent extends DefaultComponent
         if (asyncCommands.isEmpty()) {
             return;
         }
+        applyBackPressure();
         WorkManager wm = Framework.getLocalService(WorkManager.class);
         for (String repositoryName : asyncCommands.keySet()) {
             IndexingWorker idxWork = new IndexingWorker(repositoryName, asyncCommands.get(repositoryName));
@@ -484,6 +582,27 @@ public class ElasticSearchComponent extends DefaultComponent
         }
     }
 
+    /**
+     * Slows down the producer of indexing work when Elasticsearch rejects requests or the indexing queue is too long.
+     *
+     * @since 9.3
+     */
+    protected void applyBackPressure() {
+        long delay = esi.getBulkController().getBackPressureDelay(getPendingWorkerCount());
+        if (delay <= 0) {
+            return;
+        }
+        backPressureTimer.update(delay, TimeUnit.MILLISECONDS);
+        if (log.isDebugEnabled()) {
+            log.debug("Indexing back-pressure, delaying producer by " + delay + "ms");
+        }
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
     protected void runIndexingSyncWorker(Map<String, List<IndexingCommand>> syncCommands) {
         if (syncCommands.isEmpty()) {
             return;
@@ -512,6 +631,13 @@ public class ElasticSearchComponent extends DefaultComponent
         wm.schedule(worker);
     }
 
+    @Override
+    public void runAliasReindexingWorker(String repositoryName) {
+        AliasReindexingWorker worker = new AliasReindexingWorker(repositoryName);
+        WorkManager wm = Framework.getLocalService(WorkManager.class);
+        wm.schedule(worker);
+    }
+
     // ES Search ===============================================================
     @Override
     public DocumentModelList query(NxQueryBuilder queryBuilder) {
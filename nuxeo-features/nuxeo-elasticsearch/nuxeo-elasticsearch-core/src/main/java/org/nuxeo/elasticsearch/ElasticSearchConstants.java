@@ -106,10 +106,34 @@ final public class ElasticSearchConstants {
 
     public static final String REINDEX_BUCKET_WRITE_PROPERTY = "elasticsearch.reindex.bucketWriteSize";
 
+    /** @since 9.3 */
+    public static final String REINDEX_BUCKET_THREADS_PROPERTY = "elasticsearch.reindex.bucketThreads";
+
     public static final String REINDEX_ON_STARTUP_PROPERTY = "elasticsearch.reindex.onStartup";
 
     public static final String INDEX_BULK_MAX_SIZE_PROPERTY = "elasticsearch.index.bulkMaxSize";
 
+    /** @since 9.3 */
+    public static final String INDEX_BULK_MAX_IN_FLIGHT_PROPERTY = "elasticsearch.index.bulkMaxInFlight";
+
+    /** @since 9.3 */
+    public static final String INDEX_BULK_MAX_RETRIES_PROPERTY = "elasticsearch.index.bulkMaxRetries";
+
+    /** @since 9.3 */
+    public static final String INDEX_BULK_TARGET_LATENCY_PROPERTY = "elasticsearch.index.bulkTargetLatencyMs";
+
+    /** @since 9.3 */
+    public static final String INDEX_BACK_PRESSURE_MAX_DELAY_PROPERTY = "elasticsearch.index.backPressureMaxDelayMs";
+
+    /** @since 9.3 */
+    public static final String INDEX_BACK_PRESSURE_QUEUE_SIZE_PROPERTY = "elasticsearch.index.backPressureQueueSize";
+
+    /** @since 9.3 */
+    public static final String CHANGE_LOG_ENABLED_PROPERTY = "elasticsearch.changeLog.enabled";
+
+    /** @since 9.3 */
+    public static final String CHANGE_LOG_RETENTION_PROPERTY = "elasticsearch.changeLog.retentionSeconds";
+
     public static final String DISABLE_AUTO_INDEXING = "disableAutoIndexing";
 
     public static final String ES_SYNC_INDEXING_FLAG = "ESSyncIndexing";
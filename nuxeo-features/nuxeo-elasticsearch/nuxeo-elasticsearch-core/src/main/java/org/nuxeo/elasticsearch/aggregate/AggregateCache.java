@@ -0,0 +1,211 @@
+/*
+ * (C) Copyright 2017 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Florent Guillaume
+ */
+package org.nuxeo.elasticsearch.aggregate;
+
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.nuxeo.ecm.core.api.NuxeoPrincipal;
+import org.nuxeo.ecm.core.api.security.SecurityConstants;
+import org.nuxeo.ecm.core.security.SecurityService;
+import org.nuxeo.ecm.platform.query.api.Bucket;
+import org.nuxeo.elasticsearch.query.NxQueryBuilder;
+import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.metrics.MetricsService;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Caches the buckets of the aggregates computed by page providers.
+ * <p>
+ * The aggregates depend on the query, the selected buckets and the principals of the user, but not on the page or
+ * the sort, so the buckets computed for the first page are reused when turning pages or changing the sort.
+ * <p>
+ * Indexed documents only become visible to searches when the index is refreshed, so the keys include a generation of
+ * each searched repository, incremented when its index is refreshed, recreated or switched to a new index. The entries
+ * of the previous generations are no longer used. Entries also expire after a TTL, to take into account the refreshes
+ * done periodically by Elasticsearch and the ones triggered by other nodes.
+ *
+ * @since 9.3
+ */
+public class AggregateCache {
+
+    /** Maximum number of cached aggregate results, 0 to disable the cache. */
+    public static final String CACHE_SIZE_PROPERTY = "elasticsearch.aggregate.cacheSize";
+
+    /** Time to live of the cached aggregate results, in seconds. */
+    public static final String CACHE_TTL_PROPERTY = "elasticsearch.aggregate.cacheTTL";
+
+    protected static final String DEFAULT_CACHE_SIZE = "1000";
+
+    protected static final String DEFAULT_CACHE_TTL = "60";
+
+    protected static volatile AggregateCache instance;
+
+    protected final Cache<String, Map<String, List<? extends Bucket>>> cache;
+
+    /** Repository name -> generation of its index. */
+    protected final Map<String, Long> generations = new ConcurrentHashMap<>();
+
+    protected final Counter hitCount;
+
+    protected final Counter missCount;
+
+    public static AggregateCache getInstance() {
+        if (instance == null) {
+            synchronized (AggregateCache.class) {
+                if (instance == null) {
+                    instance = new AggregateCache();
+                }
+            }
+        }
+        return instance;
+    }
+
+    protected AggregateCache() {
+        long size = Long.parseLong(Framework.getProperty(CACHE_SIZE_PROPERTY, DEFAULT_CACHE_SIZE));
+        long ttl = Long.parseLong(Framework.getProperty(CACHE_TTL_PROPERTY, DEFAULT_CACHE_TTL));
+        cache = size > 0 && ttl > 0
+                ? CacheBuilder.newBuilder().maximumSize(size).expireAfterWrite(ttl, TimeUnit.SECONDS).build()
+                : null;
+        MetricRegistry registry = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
+        hitCount = registry.counter(MetricRegistry.name("nuxeo", "elasticsearch", "aggregate", "cache", "hit"));
+        missCount = registry.counter(MetricRegistry.name("nuxeo", "elasticsearch", "aggregate", "cache", "miss"));
+        String name = MetricRegistry.name("nuxeo", "elasticsearch", "aggregate", "cache", "hitRatio");
+        registry.remove(name);
+        registry.register(name, (Gauge<Double>) () -> {
+            long hits = hitCount.getCount();
+            long total = hits + missCount.getCount();
+            return total == 0 ? 0 : (double) hits / total;
+        });
+    }
+
+    /**
+     * Gets the cache key of the aggregates of a query.
+     *
+     * @param providerName the name of the page provider defining the aggregates
+     * @param query the query, without its sort
+     * @param nxQuery the query builder holding the aggregates and the session
+     * @return the key, or {@code null} if the aggregates are not cached
+     */
+    public String getKey(String providerName, String query, NxQueryBuilder nxQuery) {
+        if (cache == null || nxQuery.getAggregates().isEmpty()) {
+            return null;
+        }
+        StringBuilder key = new StringBuilder();
+        key.append(providerName).append('\n');
+        List<String> repositoryNames = nxQuery.getSearchRepositories();
+        if (repositoryNames.isEmpty()) {
+            // all repositories, the generations only increase
+            long all = generations.values().stream().mapToLong(Long::longValue).sum();
+            key.append("*@").append(all);
+        }
+        for (String repositoryName : repositoryNames) {
+            key.append(repositoryName).append('@').append(getGeneration(repositoryName)).append(',');
+        }
+        key.append('\n');
+        key.append(getPrincipalsKey(nxQuery.getSession().getPrincipal())).append('\n');
+        key.append(query).append('\n');
+        for (AggregateEsBase<? extends Bucket> agg : nxQuery.getAggregates()) {
+            key.append(agg.getId()).append(agg.getSelection()).append('\n');
+        }
+        return key.toString();
+    }
+
+    protected static String getPrincipalsKey(Principal principal) {
+        if (principal == null
+                || (principal instanceof NuxeoPrincipal && ((NuxeoPrincipal) principal).isAdministrator())) {
+            // no security filter
+            return SecurityConstants.EVERYONE + "*";
+        }
+        String[] principals = SecurityService.getPrincipalsToCheck(principal);
+        return String.join(",", principals);
+    }
+
+    protected long getGeneration(String repositoryName) {
+        return generations.getOrDefault(repositoryName, Long.valueOf(0)).longValue();
+    }
+
+    /**
+     * Sets the cached buckets on the aggregates.
+     *
+     * @param key the key, or {@code null}
+     * @return {@code true} if the aggregates were found in the cache
+     */
+    public boolean restore(String key, List<AggregateEsBase<? extends Bucket>> aggregates) {
+        if (key == null) {
+            return false;
+        }
+        Map<String, List<? extends Bucket>> buckets = cache.getIfPresent(key);
+        if (buckets == null) {
+            missCount.inc();
+            return false;
+        }
+        hitCount.inc();
+        for (AggregateEsBase<? extends Bucket> agg : aggregates) {
+            setBuckets(agg, buckets.get(agg.getId()));
+        }
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    protected static <B extends Bucket> void setBuckets(AggregateEsBase<B> agg, List<? extends Bucket> buckets) {
+        agg.setBuckets(buckets == null ? new ArrayList<>() : new ArrayList<>((List<B>) buckets));
+    }
+
+    /**
+     * Caches the buckets computed for the aggregates. If the index was refreshed meanwhile, the key computed before the
+     * search is the one of the previous generation, and is not used anymore.
+     *
+     * @param key the key computed before the search, or {@code null}
+     */
+    public void put(String key, List<AggregateEsBase<? extends Bucket>> aggregates) {
+        if (key == null) {
+            return;
+        }
+        Map<String, List<? extends Bucket>> buckets = new HashMap<>();
+        for (AggregateEsBase<? extends Bucket> agg : aggregates) {
+            if (agg.getBuckets() == null) {
+                // not computed
+                return;
+            }
+            buckets.put(agg.getId(), new ArrayList<>(agg.getBuckets()));
+        }
+        cache.put(key, buckets);
+    }
+
+    /**
+     * Invalidates the cached aggregates of a repository, called when the documents visible to searches change because
+     * its index is refreshed, recreated or switched.
+     */
+    public void invalidate(String repositoryName) {
+        generations.merge(repositoryName, Long.valueOf(1), Long::sum);
+    }
+
+}
@@ -64,6 +64,26 @@ public interface ElasticSearchAdmin {
      */
     void dropAndInitRepositoryIndex(String repositoryName);
 
+    /**
+     * Creates a new empty index for a repository, with the settings and mapping of the repository index, but under a
+     * versioned name. The index is not used until {@link #switchRepositoryIndexAlias} is called.
+     *
+     * @return the name of the new index
+     * @since 9.3
+     */
+    String createRepositoryIndexVersion(String repositoryName);
+
+    /**
+     * Atomically points the index name of a repository, used as an alias, to the given index, and deletes the indexes
+     * previously behind the alias.
+     * <p>
+     * If the index name of the repository is still a plain index, it is deleted first, so the repository index is
+     * unavailable until the alias is created.
+     *
+     * @since 9.3
+     */
+    void switchRepositoryIndexAlias(String repositoryName, String indexName);
+
     /**
      * List repository names that have Elasticsearch support.
      *
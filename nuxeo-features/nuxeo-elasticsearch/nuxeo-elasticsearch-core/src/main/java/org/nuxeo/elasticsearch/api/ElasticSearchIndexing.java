@@ -55,6 +55,15 @@ public interface ElasticSearchIndexing {
      */
     void runReindexingWorker(String repositoryName, String nxql);
 
+    /**
+     * Reindexes a whole repository into a new index while searches keep using the current one, then switches the
+     * repository index alias to the new index. The job is resumed after a restart. This is done in an asynchronous
+     * job.
+     *
+     * @since 9.3
+     */
+    void runAliasReindexingWorker(String repositoryName);
+
     /**
      * Process the {@link IndexingCommand}.
      * <p>
@@ -77,8 +77,14 @@ public class IndexingCommand implements Serializable {
 
     protected long order;
 
+    /** @since 9.3 */
+    protected String indexName;
+
     protected transient String sessionId;
 
+    /** @since 9.3 */
+    protected transient DocumentModel targetDocument;
+
     protected transient static AtomicLong seq = new AtomicLong(0);
 
     protected IndexingCommand() {
@@ -151,6 +157,9 @@ public class IndexingCommand implements Serializable {
      * @throws java.lang.IllegalStateException if there is no session attached
      */
     public DocumentModel getTargetDocument() {
+        if (targetDocument != null) {
+            return targetDocument;
+        }
         CoreSession session = null;
         if (sessionId != null) {
             session = Framework.getService(CoreSessionService.class).getCoreSession(sessionId);
@@ -166,6 +175,16 @@ public class IndexingCommand implements Serializable {
         return session.getDocument(idref);
     }
 
+    /**
+     * Sets the document already loaded by the caller, so that {@link #getTargetDocument} doesn't have to fetch it
+     * again. The document must be attached to the command session.
+     *
+     * @since 9.3
+     */
+    public void setTargetDocument(DocumentModel targetDocument) {
+        this.targetDocument = targetDocument;
+    }
+
     public String getRepositoryName() {
         return repositoryName;
     }
@@ -344,4 +363,37 @@ public class IndexingCommand implements Serializable {
     public void setOrder(long order) {
         this.order = order;
     }
+
+    /**
+     * Gets the index explicitly targeted by this command, or {@code null} for the index of the repository.
+     *
+     * @since 9.3
+     */
+    public String getIndexName() {
+        return indexName;
+    }
+
+    /**
+     * Sets the index explicitly targeted by this command, instead of the index of the repository.
+     *
+     * @since 9.3
+     */
+    public void setIndexName(String indexName) {
+        this.indexName = indexName;
+    }
+
+    /**
+     * Creates a delete command for a document that no longer exists.
+     *
+     * @since 9.3
+     */
+    public static IndexingCommand deleteCommand(String repositoryName, String docId, boolean recurse) {
+        IndexingCommand cmd = new IndexingCommand();
+        cmd.id = PREFIX + seq.incrementAndGet();
+        cmd.type = Type.DELETE;
+        cmd.recurse = recurse;
+        cmd.repositoryName = repositoryName;
+        cmd.targetDocumentId = docId;
+        return cmd;
+    }
 }
@@ -0,0 +1,260 @@
+/*
+ * (C) Copyright 2017 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Florent Guillaume
+ */
+package org.nuxeo.elasticsearch.core;
+
+import static org.nuxeo.elasticsearch.ElasticSearchConstants.INDEX_BACK_PRESSURE_MAX_DELAY_PROPERTY;
+import static org.nuxeo.elasticsearch.ElasticSearchConstants.INDEX_BACK_PRESSURE_QUEUE_SIZE_PROPERTY;
+import static org.nuxeo.elasticsearch.ElasticSearchConstants.INDEX_BULK_MAX_IN_FLIGHT_PROPERTY;
+import static org.nuxeo.elasticsearch.ElasticSearchConstants.INDEX_BULK_MAX_RETRIES_PROPERTY;
+import static org.nuxeo.elasticsearch.ElasticSearchConstants.INDEX_BULK_TARGET_LATENCY_PROPERTY;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.metrics.MetricsService;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+
+/**
+ * Adapts the bulk indexing requests to the load of the Elasticsearch cluster.
+ * <p>
+ * The byte size of the bulks and the number of bulks in flight are tuned from the observed latency and rejections:
+ * they are reduced multiplicatively when a bulk is rejected, fails or is slower than the target latency, and increased
+ * additively when bulks are fast. Rejected bulk items are retried with an exponential backoff.
+ * <p>
+ * When Elasticsearch recently rejected requests or when the indexing queue is too long, a back-pressure delay is
+ * computed to slow down the producers of indexing work.
+ *
+ * @since 9.3
+ */
+public class BulkIndexingController {
+
+    private static final Log log = LogFactory.getLog(BulkIndexingController.class);
+
+    protected static final String DEFAULT_MAX_IN_FLIGHT = "2";
+
+    protected static final String DEFAULT_MAX_RETRIES = "3";
+
+    protected static final String DEFAULT_TARGET_LATENCY_MS = "2000";
+
+    protected static final String DEFAULT_BACK_PRESSURE_MAX_DELAY_MS = "1000";
+
+    protected static final String DEFAULT_BACK_PRESSURE_QUEUE_SIZE = "10000";
+
+    /** The smallest bulk size is this fraction of the configured maximum. */
+    protected static final int MIN_BULK_SIZE_DIVISOR = 16;
+
+    protected static final long RETRY_BASE_DELAY_MS = 100;
+
+    /** How long a rejection keeps the producers slowed down. */
+    protected static final long REJECTION_WINDOW_MS = 10_000;
+
+    protected final int maxInFlightLimit;
+
+    protected final int maxRetries;
+
+    protected final long targetLatencyMs;
+
+    protected final long backPressureMaxDelayMs;
+
+    protected final long backPressureQueueSize;
+
+    /** The adaptive bulk size, capped by the configured maximum. */
+    protected int bulkSize = Integer.MAX_VALUE;
+
+    protected int maxInFlight;
+
+    protected int inFlight;
+
+    protected volatile int effectiveBulkSize;
+
+    protected volatile long lastRejectionTime;
+
+    protected volatile int rejectedStreak;
+
+    protected final Meter retryMeter;
+
+    protected final Meter rejectedMeter;
+
+    protected final Meter failedMeter;
+
+    public BulkIndexingController() {
+        maxInFlightLimit = Math.max(1, getIntProperty(INDEX_BULK_MAX_IN_FLIGHT_PROPERTY, DEFAULT_MAX_IN_FLIGHT));
+        maxRetries = getIntProperty(INDEX_BULK_MAX_RETRIES_PROPERTY, DEFAULT_MAX_RETRIES);
+        targetLatencyMs = getIntProperty(INDEX_BULK_TARGET_LATENCY_PROPERTY, DEFAULT_TARGET_LATENCY_MS);
+        backPressureMaxDelayMs = getIntProperty(INDEX_BACK_PRESSURE_MAX_DELAY_PROPERTY,
+                DEFAULT_BACK_PRESSURE_MAX_DELAY_MS);
+        backPressureQueueSize = getIntProperty(INDEX_BACK_PRESSURE_QUEUE_SIZE_PROPERTY,
+                DEFAULT_BACK_PRESSURE_QUEUE_SIZE);
+        maxInFlight = maxInFlightLimit;
+        MetricRegistry registry = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
+        retryMeter = registry.meter(MetricRegistry.name("nuxeo", "elasticsearch", "service", "bulk", "retries"));
+        rejectedMeter = registry.meter(MetricRegistry.name("nuxeo", "elasticsearch", "service", "bulk", "rejected"));
+        failedMeter = registry.meter(MetricRegistry.name("nuxeo", "elasticsearch", "service", "bulk", "failed"));
+        registerGauge(registry, "size", () -> effectiveBulkSize);
+        registerGauge(registry, "inFlight", () -> getInFlight());
+        registerGauge(registry, "maxInFlight", () -> getMaxInFlight());
+    }
+
+    protected static int getIntProperty(String name, String defaultValue) {
+        return Integer.parseInt(Framework.getProperty(name, defaultValue));
+    }
+
+    protected static void registerGauge(MetricRegistry registry, String name, Gauge<Integer> gauge) {
+        String metricName = MetricRegistry.name("nuxeo", "elasticsearch", "service", "bulk", name);
+        registry.remove(metricName);
+        registry.register(metricName, gauge);
+    }
+
+    /**
+     * Gets the byte size above which a bulk must be sent.
+     *
+     * @param maxBulkSize the configured maximum bulk size
+     */
+    public synchronized int getBulkSize(int maxBulkSize) {
+        effectiveBulkSize = Math.max(Math.min(bulkSize, maxBulkSize), getMinBulkSize(maxBulkSize));
+        return effectiveBulkSize;
+    }
+
+    protected static int getMinBulkSize(int maxBulkSize) {
+        return Math.max(1, maxBulkSize / MIN_BULK_SIZE_DIVISOR);
+    }
+
+    public synchronized int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    /**
+     * Waits until a new bulk can be sent.
+     */
+    public synchronized void acquire() {
+        while (inFlight >= maxInFlight) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting to send a bulk", e);
+            }
+        }
+        inFlight++;
+    }
+
+    /**
+     * Records the result of a bulk sent after {@link #acquire}, and adapts the bulk size and concurrency.
+     *
+     * @param latencyMs the time taken by the bulk
+     * @param rejected the number of rejected items, or all the items if the whole bulk was rejected
+     */
+    public synchronized void release(long latencyMs, int rejected) {
+        inFlight--;
+        int current = effectiveBulkSize;
+        if (rejected > 0) {
+            rejectedMeter.mark(rejected);
+            lastRejectionTime = System.currentTimeMillis();
+            rejectedStreak++;
+            shrink("Bulk rejected");
+        } else {
+            rejectedStreak = 0;
+            if (latencyMs > targetLatencyMs) {
+                bulkSize = current - current / 4;
+            } else if (latencyMs < targetLatencyMs / 2) {
+                if (bulkSize >= current) {
+                    // already at the configured maximum, allow more concurrency
+                    maxInFlight = Math.min(maxInFlightLimit, maxInFlight + 1);
+                }
+                bulkSize = current + current / 8;
+            }
+        }
+        notifyAll();
+    }
+
+    /**
+     * Records the failure of a bulk sent after {@link #acquire}, other than a rejection: the bulk could not be sent or
+     * got no response. The bulk size and concurrency are reduced, as the cluster may be overloaded or unreachable.
+     */
+    public synchronized void releaseFailed() {
+        inFlight--;
+        shrink("Bulk failed");
+        notifyAll();
+    }
+
+    protected void shrink(String reason) {
+        bulkSize = effectiveBulkSize / 2;
+        maxInFlight = Math.max(1, maxInFlight - 1);
+        if (log.isDebugEnabled()) {
+            log.debug(reason + ", reducing bulk size to " + bulkSize + " and bulks in flight to " + maxInFlight);
+        }
+    }
+
+    /**
+     * Records a retry of rejected items, and waits for the backoff delay of this attempt.
+     *
+     * @param attempt the retry attempt, starting at 1
+     */
+    public void backoff(int attempt, int items) {
+        retryMeter.mark(items);
+        long delay = RETRY_BASE_DELAY_MS << Math.min(attempt - 1, 10);
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while retrying a bulk", e);
+        }
+    }
+
+    /**
+     * Records items that could not be indexed even after retries.
+     */
+    public void failed(int items) {
+        failedMeter.mark(items);
+    }
+
+    /**
+     * Gets the delay by which producers of indexing work should be slowed down.
+     *
+     * @param queuedWorks the number of indexing works waiting in the queue
+     * @return the delay in milliseconds, or 0
+     */
+    public long getBackPressureDelay(long queuedWorks) {
+        if (backPressureMaxDelayMs <= 0) {
+            return 0;
+        }
+        double pressure = 0;
+        if (System.currentTimeMillis() - lastRejectionTime < REJECTION_WINDOW_MS) {
+            pressure = Math.min(1, rejectedStreak / 4.0);
+        }
+        if (backPressureQueueSize > 0 && queuedWorks > backPressureQueueSize) {
+            pressure = Math.max(pressure,
+                    Math.min(1, (queuedWorks - backPressureQueueSize) / (double) backPressureQueueSize));
+        }
+        return (long) (pressure * backPressureMaxDelayMs);
+    }
+
+}
@@ -29,6 +29,7 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
@@ -39,16 +40,21 @@ import java.util.concurrent.atomic.AtomicInteger;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.elasticsearch.action.admin.cluster.health.ClusterHealthResponse;
+import org.elasticsearch.action.admin.indices.alias.IndicesAliasesRequestBuilder;
 import org.elasticsearch.action.admin.indices.delete.DeleteIndexRequest;
 import org.elasticsearch.client.Client;
+import org.elasticsearch.client.IndicesAdminClient;
 import org.elasticsearch.client.transport.NoNodeAvailableException;
 import org.elasticsearch.client.transport.TransportClient;
 import org.elasticsearch.cluster.health.ClusterHealthStatus;
+import org.elasticsearch.cluster.metadata.MappingMetaData;
+import org.elasticsearch.common.collect.ImmutableOpenMap;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.settings.Settings.Builder;
 import org.elasticsearch.common.transport.InetSocketTransportAddress;
 import org.elasticsearch.node.Node;
 import org.elasticsearch.node.NodeBuilder;
+import org.nuxeo.elasticsearch.aggregate.AggregateCache;
 import org.nuxeo.elasticsearch.api.ESClientInitializationService;
 import org.nuxeo.elasticsearch.api.ElasticSearchAdmin;
 import org.nuxeo.elasticsearch.config.ElasticSearchIndexConfig;
@@ -290,6 +296,7 @@ public class ElasticSearchAdminImpl implements ElasticSearchAdmin {
             log.debug("Refreshing index associated with repo: " + repositoryName);
         }
         getClient().admin().indices().prepareRefresh(getIndexNameForRepository(repositoryName)).execute().actionGet();
+        AggregateCache.getInstance().invalidate(repositoryName);
         if (log.isDebugEnabled()) {
             log.debug("Refreshing index done");
         }
@@ -417,6 +424,9 @@ public class ElasticSearchAdminImpl implements ElasticSearchAdmin {
             return;
         }
         log.info(String.format("Initialize index: %s, type: %s", conf.getName(), conf.getType()));
+        if (conf.isDocumentIndex()) {
+            AggregateCache.getInstance().invalidate(conf.getRepositoryName());
+        }
         boolean mappingExists = false;
         boolean indexExists = getClient().admin()
                                          .indices()
@@ -427,14 +437,18 @@ public class ElasticSearchAdminImpl implements ElasticSearchAdmin {
         if (indexExists) {
             if (!dropIfExists) {
                 log.debug("Index " + conf.getName() + " already exists");
-                mappingExists = getClient().admin()
-                                           .indices()
-                                           .prepareGetMappings(conf.getName())
-                                           .execute()
-                                           .actionGet()
-                                           .getMappings()
-                                           .get(conf.getName())
-                                           .containsKey(conf.getType());
+                // the name may be an alias to the actual index
+                Iterator<ImmutableOpenMap<String, MappingMetaData>> mappings = getClient().admin()
+                                                                                         .indices()
+                                                                                         .prepareGetMappings(
+                                                                                                 conf.getName())
+                                                                                         .execute()
+                                                                                         .actionGet()
+                                                                                         .getMappings()
+                                                                                         .valuesIt();
+                while (mappings.hasNext()) {
+                    mappingExists |= mappings.next().containsKey(conf.getType());
+                }
             } else {
                 if (!Framework.isTestModeSet()) {
                     log.warn(String.format(
@@ -477,6 +491,61 @@ public class ElasticSearchAdminImpl implements ElasticSearchAdmin {
         checkClusterHealth(conf.getName());
     }
 
+    protected ElasticSearchIndexConfig getRepositoryIndexConfig(String repositoryName) {
+        for (ElasticSearchIndexConfig conf : indexConfig.values()) {
+            if (conf.isDocumentIndex() && repositoryName.equals(conf.getRepositoryName())) {
+                return conf;
+            }
+        }
+        throw new NoSuchElementException("No index defined for repository: " + repositoryName);
+    }
+
+    @Override
+    public String createRepositoryIndexVersion(String repositoryName) {
+        ElasticSearchIndexConfig conf = getRepositoryIndexConfig(repositoryName);
+        String indexName = conf.getName() + "-" + System.currentTimeMillis();
+        log.info(String.format("Creating index: %s for repository: %s", indexName, repositoryName));
+        getClient().admin()
+                   .indices()
+                   .prepareCreate(indexName)
+                   .setSettings(conf.getSettings())
+                   .addMapping(conf.getType(), conf.getMapping())
+                   .execute()
+                   .actionGet();
+        checkClusterHealth(indexName);
+        return indexName;
+    }
+
+    @Override
+    public void switchRepositoryIndexAlias(String repositoryName, String indexName) {
+        String alias = getIndexNameForRepository(repositoryName);
+        IndicesAdminClient indices = getClient().admin().indices();
+        List<String> previousIndexes = new ArrayList<>();
+        Iterator<String> it = indices.prepareGetAliases(alias).execute().actionGet().getAliases().keysIt();
+        while (it.hasNext()) {
+            previousIndexes.add(it.next());
+        }
+        if (previousIndexes.isEmpty() && indices.prepareExists(alias).execute().actionGet().isExists()) {
+            // first switch, the alias name is still used by a plain index, searches fail until the alias is added
+            log.warn(String.format("Deleting index: %s to replace it by an alias to: %s", alias, indexName));
+            indices.prepareDelete(alias).execute().actionGet();
+        }
+        IndicesAliasesRequestBuilder request = indices.prepareAliases();
+        for (String previousIndex : previousIndexes) {
+            request.removeAlias(previousIndex, alias);
+        }
+        request.addAlias(indexName, alias);
+        // atomic for searches and indexing
+        request.execute().actionGet();
+        AggregateCache.getInstance().invalidate(repositoryName);
+        log.info(String.format("Alias: %s switched from: %s to: %s", alias, previousIndexes, indexName));
+        for (String previousIndex : previousIndexes) {
+            if (!previousIndex.equals(indexName)) {
+                indices.prepareDelete(previousIndex).execute().actionGet();
+            }
+        }
+    }
+
     @Override
     public long getPendingWorkerCount() {
         // impl of scheduling is left to the ESService
@@ -20,22 +20,29 @@
 
 package org.nuxeo.elasticsearch.core;
 
-import static org.elasticsearch.common.xcontent.XContentFactory.jsonBuilder;
 import static org.nuxeo.elasticsearch.ElasticSearchConstants.CHILDREN_FIELD;
 import static org.nuxeo.elasticsearch.ElasticSearchConstants.DOC_TYPE;
 import static org.nuxeo.elasticsearch.ElasticSearchConstants.INDEX_BULK_MAX_SIZE_PROPERTY;
 import static org.nuxeo.elasticsearch.ElasticSearchConstants.PATH_FIELD;
 
 import java.io.IOException;
-import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.codehaus.jackson.JsonFactory;
 import org.codehaus.jackson.JsonGenerator;
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.ExceptionsHelper;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.action.ListenableActionFuture;
 import org.elasticsearch.action.bulk.BulkItemResponse;
 import org.elasticsearch.action.bulk.BulkRequestBuilder;
 import org.elasticsearch.action.bulk.BulkResponse;
@@ -45,8 +52,10 @@ import org.elasticsearch.action.get.GetResponse;
 import org.elasticsearch.action.index.IndexRequestBuilder;
 import org.elasticsearch.action.search.SearchRequestBuilder;
 import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.common.bytes.BytesArray;
 import org.elasticsearch.common.io.stream.BytesStreamOutput;
 import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
 import org.elasticsearch.index.VersionType;
 import org.elasticsearch.index.engine.VersionConflictEngineException;
 import org.elasticsearch.index.query.QueryBuilder;
@@ -62,9 +71,11 @@ import org.nuxeo.ecm.core.api.NuxeoException;
 import org.nuxeo.elasticsearch.api.ElasticSearchIndexing;
 import org.nuxeo.elasticsearch.commands.IndexingCommand;
 import org.nuxeo.elasticsearch.commands.IndexingCommand.Type;
+import org.nuxeo.elasticsearch.work.AliasReindexingWorker;
 import org.nuxeo.runtime.api.Framework;
 import org.nuxeo.runtime.metrics.MetricsService;
 
+import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.SharedMetricRegistries;
 import com.codahale.metrics.Timer;
@@ -82,6 +93,15 @@ public class ElasticSearchIndexingImpl implements ElasticSearchIndexing {
     // send the bulk indexing command when this size is reached, optimal is 5-10m
     private static final int DEFAULT_MAX_BULK_SIZE = 5 * 1024 * 1024;
 
+    // thread-safe, creating one per document is costly
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    // serialization buffer reused by each thread, only the final bytes are copied
+    private static final ThreadLocal<BytesStreamOutput> BUFFERS = ThreadLocal.withInitial(BytesStreamOutput::new);
+
+    // don't keep huge buffers around
+    private static final int MAX_REUSED_BUFFER_SIZE = 1024 * 1024;
+
     private final ElasticSearchAdminImpl esa;
 
     private final Timer deleteTimer;
@@ -90,8 +110,16 @@ public class ElasticSearchIndexingImpl implements ElasticSearchIndexing {
 
     private final Timer bulkIndexTimer;
 
+    private final Timer serializeTimer;
+
+    private final Meter indexedDocsMeter;
+
+    private final Meter indexedBytesMeter;
+
     private final boolean useExternalVersion;
 
+    private final BulkIndexingController bulkController;
+
     private JsonESDocumentWriter jsonESDocumentWriter;
 
     public ElasticSearchIndexingImpl(ElasticSearchAdminImpl esa) {
@@ -100,8 +128,13 @@ public class ElasticSearchIndexingImpl implements ElasticSearchIndexing {
         indexTimer = registry.timer(MetricRegistry.name("nuxeo", "elasticsearch", "service", "index"));
         deleteTimer = registry.timer(MetricRegistry.name("nuxeo", "elasticsearch", "service", "delete"));
         bulkIndexTimer = registry.timer(MetricRegistry.name("nuxeo", "elasticsearch", "service", "bulkIndex"));
+        serializeTimer = registry.timer(MetricRegistry.name("nuxeo", "elasticsearch", "service", "serialize"));
+        indexedDocsMeter = registry.meter(MetricRegistry.name("nuxeo", "elasticsearch", "service", "indexed", "docs"));
+        indexedBytesMeter = registry.meter(
+                MetricRegistry.name("nuxeo", "elasticsearch", "service", "indexed", "bytes"));
         this.jsonESDocumentWriter = new JsonESDocumentWriter();// default writer
         this.useExternalVersion = esa.useExternalVersion();
+        this.bulkController = new BulkIndexingController();
     }
 
     /**
@@ -122,6 +155,11 @@ public class ElasticSearchIndexingImpl implements ElasticSearchIndexing {
         throw new UnsupportedOperationException("Not implemented");
     }
 
+    @Override
+    public void runAliasReindexingWorker(String repositoryName) {
+        throw new UnsupportedOperationException("Not implemented");
+    }
+
     @Override
     public void indexNonRecursive(List<IndexingCommand> cmds) {
         int nbCommands = cmds.size();
@@ -132,6 +170,7 @@ public class ElasticSearchIndexingImpl implements ElasticSearchIndexing {
         // simulate long indexing
         // try {Thread.sleep(1000);} catch (InterruptedException e) { }
 
+        logChanges(cmds);
         processBulkDeleteCommands(cmds);
         try (Context ignored = bulkIndexTimer.time()) {
             processBulkIndexCommands(cmds);
@@ -155,7 +194,9 @@ public class ElasticSearchIndexingImpl implements ElasticSearchIndexing {
         BulkRequestBuilder bulkRequest = esa.getClient().prepareBulk();
         Set<String> docIds = new HashSet<>(cmds.size());
         int bulkSize = 0;
-        final int maxBulkSize = getMaxBulkSize();
+        final int maxBulkSize = bulkController.getBulkSize(getMaxBulkSize());
+        // bulk requests in flight while the next one is built
+        Deque<PendingBulk> pending = new ArrayDeque<>();
         for (IndexingCommand cmd : cmds) {
             if (cmd.getType() == Type.DELETE || cmd.getType() == Type.UPDATE_DIRECT_CHILDREN) {
                 continue;
@@ -171,6 +212,7 @@ public class ElasticSearchIndexingImpl implements ElasticSearchIndexing {
                     bulkRequest.add(idxRequest);
                 }
             } catch (ConcurrentUpdateException e) {
+                waitBulkCommands(pending);
                 throw e; // bubble up, usually until AbstractWork catches it and maybe retries
             } catch (DocumentNotFoundException e) {
                 log.info("Ignore indexing command in bulk, doc does not exists anymore: " + cmd);
@@ -179,11 +221,15 @@ public class ElasticSearchIndexingImpl implements ElasticSearchIndexing {
             }
             if (bulkSize > maxBulkSize) {
                 log.warn("Max bulk size reached " + bulkSize + ", sending bulk command");
-                sendBulkCommand(bulkRequest, bulkSize);
+                while (pending.size() >= bulkController.getMaxInFlight()) {
+                    waitBulkCommand(pending.poll());
+                }
+                pending.add(sendBulkCommandAsync(bulkRequest, bulkSize));
                 bulkRequest = esa.getClient().prepareBulk();
                 bulkSize = 0;
             }
         }
+        waitBulkCommands(pending);
         sendBulkCommand(bulkRequest, bulkSize);
     }
 
@@ -192,21 +238,190 @@ public class ElasticSearchIndexingImpl implements ElasticSearchIndexing {
         return Integer.parseInt(value);
     }
 
+    /**
+     * Gets the controller adapting the bulk requests to the Elasticsearch load.
+     *
+     * @since 9.3
+     */
+    public BulkIndexingController getBulkController() {
+        return bulkController;
+    }
+
     void sendBulkCommand(BulkRequestBuilder bulkRequest, int bulkSize) {
-        if (bulkRequest.numberOfActions() > 0) {
-            if (log.isDebugEnabled()) {
-                logDebugMessageTruncated(String.format(
-                        "Index %d docs (%d bytes) in bulk request: curl -XPOST 'http://localhost:9200/_bulk' -d '%s'",
-                        bulkRequest.numberOfActions(), bulkSize,
-                        bulkRequest.request().requests().toString()), MAX_CURL_LINE);
+        waitBulkCommand(sendBulkCommandAsync(bulkRequest, bulkSize));
+    }
+
+    /**
+     * A bulk request sent and not yet completed.
+     *
+     * @since 9.3
+     */
+    static class PendingBulk {
+
+        final BulkRequestBuilder request;
+
+        final int attempt;
+
+        final ListenableActionFuture<BulkResponse> future;
+
+        PendingBulk(BulkRequestBuilder request, int attempt, ListenableActionFuture<BulkResponse> future) {
+            this.request = request;
+            this.attempt = attempt;
+            this.future = future;
+        }
+    }
+
+    /**
+     * Sends a bulk request without waiting for its response, when the bulk controller allows it.
+     *
+     * @return the pending bulk, or {@code null} if there was nothing to send
+     * @since 9.3
+     */
+    PendingBulk sendBulkCommandAsync(BulkRequestBuilder bulkRequest, int bulkSize) {
+        return sendBulkCommandAsync(bulkRequest, bulkSize, 0);
+    }
+
+    PendingBulk sendBulkCommandAsync(BulkRequestBuilder bulkRequest, int bulkSize, int attempt) {
+        if (bulkRequest.numberOfActions() == 0) {
+            return null;
+        }
+        if (log.isDebugEnabled()) {
+            logDebugMessageTruncated(String.format(
+                    "Index %d docs (%d bytes) in bulk request: curl -XPOST 'http://localhost:9200/_bulk' -d '%s'",
+                    bulkRequest.numberOfActions(), bulkSize,
+                    bulkRequest.request().requests().toString()), MAX_CURL_LINE);
+        }
+        if (attempt == 0) {
+            indexedDocsMeter.mark(bulkRequest.numberOfActions());
+            indexedBytesMeter.mark(bulkSize);
+        }
+        bulkController.acquire();
+        long start = System.nanoTime();
+        ListenableActionFuture<BulkResponse> future;
+        try {
+            future = bulkRequest.execute();
+        } catch (RuntimeException e) {
+            bulkController.releaseFailed();
+            throw e;
+        }
+        // release as soon as the response arrives, not when it is waited for
+        future.addListener(new ActionListener<BulkResponse>() {
+            @Override
+            public void onResponse(BulkResponse response) {
+                bulkController.release(elapsedMillis(start), countRejected(response));
             }
-            BulkResponse response = bulkRequest.execute().actionGet();
-            if (response.hasFailures()) {
-                logBulkFailure(response);
+
+            @Override
+            public void onFailure(Throwable e) {
+                if (isRejection(e)) {
+                    bulkController.release(elapsedMillis(start), bulkRequest.numberOfActions());
+                } else {
+                    bulkController.releaseFailed();
+                }
             }
+        });
+        return new PendingBulk(bulkRequest, attempt, future);
+    }
+
+    static long elapsedMillis(long start) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    static int countRejected(BulkResponse response) {
+        if (!response.hasFailures()) {
+            return 0;
+        }
+        int rejected = 0;
+        for (BulkItemResponse item : response.getItems()) {
+            if (item.isFailed() && item.getFailure().getStatus() == RestStatus.TOO_MANY_REQUESTS) {
+                rejected++;
+            }
+        }
+        return rejected;
+    }
+
+    void waitBulkCommands(Deque<PendingBulk> pending) {
+        while (!pending.isEmpty()) {
+            waitBulkCommand(pending.poll());
         }
     }
 
+    /**
+     * Waits for the response of a bulk request sent by {@link #sendBulkCommandAsync}, retrying the rejected items.
+     *
+     * @since 9.3
+     */
+    void waitBulkCommand(PendingBulk bulk) {
+        if (bulk == null) {
+            return;
+        }
+        BulkResponse response;
+        try {
+            response = bulk.future.actionGet();
+        } catch (ElasticsearchException e) {
+            if (!isRejection(e)) {
+                throw e;
+            }
+            // the whole bulk was rejected
+            List<ActionRequest<?>> requests = new ArrayList<>(bulk.request.numberOfActions());
+            for (Object request : bulk.request.request().requests()) {
+                requests.add((ActionRequest<?>) request);
+            }
+            retryBulkCommand(bulk, requests, e);
+            return;
+        }
+        if (!response.hasFailures()) {
+            return;
+        }
+        List<?> requests = bulk.request.request().requests();
+        List<ActionRequest<?>> rejected = new ArrayList<>();
+        int failed = 0;
+        for (BulkItemResponse item : response.getItems()) {
+            if (item.isFailed()) {
+                failed++;
+                if (item.getFailure().getStatus() == RestStatus.TOO_MANY_REQUESTS) {
+                    rejected.add((ActionRequest<?>) requests.get(item.getItemId()));
+                }
+            }
+        }
+        if (failed > rejected.size()) {
+            logBulkFailure(response);
+        }
+        if (!rejected.isEmpty()) {
+            retryBulkCommand(bulk, rejected, null);
+        }
+    }
+
+    static boolean isRejection(Throwable e) {
+        return ExceptionsHelper.unwrapCause(e) instanceof EsRejectedExecutionException;
+    }
+
+    void retryBulkCommand(PendingBulk bulk, List<ActionRequest<?>> requests, Exception cause) {
+        int attempt = bulk.attempt + 1;
+        if (attempt > bulkController.getMaxRetries()) {
+            bulkController.failed(requests.size());
+            String message = String.format("Elasticsearch rejected %d indexing requests after %d retries",
+                    requests.size(), bulk.attempt);
+            if (cause != null) {
+                log.error(message, cause);
+            } else {
+                log.error(message);
+            }
+            return;
+        }
+        bulkController.backoff(attempt, requests.size());
+        BulkRequestBuilder retry = esa.getClient().prepareBulk();
+        for (ActionRequest<?> request : requests) {
+            // index, delete or update request
+            retry.request().add(request);
+        }
+        int size = (int) retry.request().estimatedSizeInBytes();
+        if (log.isDebugEnabled()) {
+            log.debug(String.format("Retrying %d rejected indexing requests, attempt %d", requests.size(), attempt));
+        }
+        waitBulkCommand(sendBulkCommandAsync(retry, size, attempt));
+    }
+
     void logBulkFailure(BulkResponse response) {
         boolean isError = false;
         StringBuilder sb = new StringBuilder();
@@ -215,7 +430,8 @@ public class ElasticSearchIndexingImpl implements ElasticSearchIndexing {
             if (item.isFailed()) {
                 if (item.getFailure().getStatus() == RestStatus.CONFLICT) {
                     sb.append("\n  ").append(item.getFailureMessage());
-                } else {
+                } else if (item.getFailure().getStatus() != RestStatus.TOO_MANY_REQUESTS) {
+                    // rejected items are retried
                     isError = true;
                 }
             }
@@ -249,6 +465,7 @@ public class ElasticSearchIndexingImpl implements ElasticSearchIndexing {
             // the parent don't need to be indexed
             return;
         }
+        logChange(cmd);
         if (type == Type.DELETE) {
             try (Context ignored = deleteTimer.time()) {
                 processDeleteCommand(cmd);
@@ -278,7 +495,7 @@ public class ElasticSearchIndexingImpl implements ElasticSearchIndexing {
         }
         if (log.isDebugEnabled()) {
             logDebugMessageTruncated(String.format("Index request: curl -XPUT 'http://localhost:9200/%s/%s/%s' -d '%s'",
-                    esa.getIndexNameForRepository(cmd.getRepositoryName()), DOC_TYPE, cmd.getTargetDocumentId(),
+                    getIndexName(cmd), DOC_TYPE, cmd.getTargetDocumentId(),
                     request.request().toString()), MAX_CURL_LINE);
         }
         try {
@@ -308,7 +525,7 @@ public class ElasticSearchIndexingImpl implements ElasticSearchIndexing {
     }
 
     void processDeleteCommandNonRecursive(IndexingCommand cmd) {
-        String indexName = esa.getIndexNameForRepository(cmd.getRepositoryName());
+        String indexName = getIndexName(cmd);
         DeleteRequestBuilder request = esa.getClient().prepareDelete(indexName, DOC_TYPE, cmd.getTargetDocumentId());
         if (log.isDebugEnabled()) {
             log.debug(String.format("Delete request: curl -XDELETE 'http://localhost:9200/%s/%s/%s'", indexName,
@@ -318,10 +535,10 @@ public class ElasticSearchIndexingImpl implements ElasticSearchIndexing {
     }
 
     void processDeleteCommandRecursive(IndexingCommand cmd) {
-        String indexName = esa.getIndexNameForRepository(cmd.getRepositoryName());
+        String indexName = getIndexName(cmd);
         // we don't want to rely on target document because the document can be
         // already removed
-        String docPath = getPathOfDocFromEs(cmd.getRepositoryName(), cmd.getTargetDocumentId());
+        String docPath = getPathOfDocFromIndex(indexName, cmd.getTargetDocumentId());
         if (docPath == null) {
             if (!Framework.isTestModeSet()) {
                 log.warn("Trying to delete a non existing doc: " + cmd.toString());
@@ -376,7 +593,15 @@ public class ElasticSearchIndexingImpl implements ElasticSearchIndexing {
      * Return the ecm:path of an ES document or null if not found.
      */
     String getPathOfDocFromEs(String repository, String docId) {
-        String indexName = esa.getIndexNameForRepository(repository);
+        return getPathOfDocFromIndex(esa.getIndexNameForRepository(repository), docId);
+    }
+
+    /**
+     * Return the ecm:path of a document in the given index or null if not found.
+     *
+     * @since 9.3
+     */
+    String getPathOfDocFromIndex(String indexName, String docId) {
         GetRequestBuilder getRequest = esa.getClient().prepareGet(indexName, DOC_TYPE, docId).setFields(PATH_FIELD);
         if (log.isDebugEnabled()) {
             log.debug(String.format("Get path of doc: curl -XGET 'http://localhost:9200/%s/%s/%s?fields=%s'", indexName,
@@ -390,6 +615,34 @@ public class ElasticSearchIndexingImpl implements ElasticSearchIndexing {
         return ret.getField(PATH_FIELD).getValue().toString();
     }
 
+    /**
+     * Gets the index targeted by a command.
+     *
+     * @since 9.3
+     */
+    String getIndexName(IndexingCommand cmd) {
+        String indexName = cmd.getIndexName();
+        return indexName != null ? indexName : esa.getIndexNameForRepository(cmd.getRepositoryName());
+    }
+
+    /**
+     * Records the changes in the change log of the repositories being reindexed, so that they can be replayed on the
+     * new index.
+     *
+     * @since 9.3
+     */
+    void logChanges(List<IndexingCommand> cmds) {
+        for (IndexingCommand cmd : cmds) {
+            logChange(cmd);
+        }
+    }
+
+    void logChange(IndexingCommand cmd) {
+        if (cmd.getIndexName() == null && AliasReindexingWorker.isLoggingChanges(cmd.getRepositoryName())) {
+            AliasReindexingWorker.getChangeLog(cmd.getRepositoryName()).append(cmd.getTargetDocumentId());
+        }
+    }
+
     /**
      * Return indexing request or null if the doc does not exists anymore.
      *
@@ -400,21 +653,27 @@ public class ElasticSearchIndexingImpl implements ElasticSearchIndexing {
         if (doc == null) {
             return null;
         }
-        try {
-            JsonFactory factory = new JsonFactory();
-            OutputStream out = new BytesStreamOutput();
-            JsonGenerator jsonGen = factory.createJsonGenerator(out);
+        BytesStreamOutput out = BUFFERS.get();
+        try (Context ignored = serializeTimer.time()) {
+            out.reset();
+            JsonGenerator jsonGen = JSON_FACTORY.createJsonGenerator(out);
             jsonESDocumentWriter.writeESDocument(jsonGen, doc, cmd.getSchemas(), null);
+            // copy only the used bytes, the buffer is reused for the next document
+            BytesArray source = new BytesArray(out.bytes().toBytes());
             IndexRequestBuilder ret = esa.getClient()
-                                         .prepareIndex(esa.getIndexNameForRepository(cmd.getRepositoryName()), DOC_TYPE,
+                                         .prepareIndex(getIndexName(cmd), DOC_TYPE,
                                                  cmd.getTargetDocumentId())
-                                         .setSource(jsonBuilder(out));
+                                         .setSource(source);
             if (useExternalVersion && cmd.getOrder() > 0) {
                 ret.setVersionType(VersionType.EXTERNAL).setVersion(cmd.getOrder());
             }
             return ret;
         } catch (IOException e) {
             throw new NuxeoException("Unable to create index request for Document " + cmd.getTargetDocumentId(), e);
+        } finally {
+            if (out.size() > MAX_REUSED_BUFFER_SIZE) {
+                BUFFERS.remove();
+            }
         }
     }
 
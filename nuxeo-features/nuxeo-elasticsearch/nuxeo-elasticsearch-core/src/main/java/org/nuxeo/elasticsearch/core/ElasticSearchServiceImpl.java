@@ -22,6 +22,7 @@ package org.nuxeo.elasticsearch.core;
 
 import static org.nuxeo.elasticsearch.ElasticSearchConstants.DOC_TYPE;
 
+import java.util.Collections;
 import java.util.List;
 
 import org.apache.commons.lang.StringUtils;
@@ -195,7 +196,10 @@ public class ElasticSearchServiceImpl implements ElasticSearchService {
     }
 
     protected List<Aggregate<Bucket>> getAggregates(NxQueryBuilder queryBuilder, SearchResponse response) {
-        for (AggregateEsBase<? extends Bucket> agg : queryBuilder.getAggregates()) {
+        // when not computed, the buckets are already set
+        List<AggregateEsBase<? extends Bucket>> computed = queryBuilder.isComputeAggregates()
+                ? queryBuilder.getAggregates() : Collections.emptyList();
+        for (AggregateEsBase<? extends Bucket> agg : computed) {
             InternalFilter filter = response.getAggregations().get(NxQueryBuilder.getAggregateFilterId(agg));
             if (filter == null) {
                 continue;
@@ -254,7 +258,9 @@ public class ElasticSearchServiceImpl implements ElasticSearchService {
         query.updateRequest(request);
         if (query.isFetchFromElasticsearch()) {
             // fetch the _source without the binaryfulltext field
-            request.setFetchSource(esa.getIncludeSourceFields(), esa.getExcludeSourceFields());
+            String[] includes = query.getFetchSourceIncludes();
+            request.setFetchSource(includes == null ? esa.getIncludeSourceFields() : includes,
+                    esa.getExcludeSourceFields());
         }
         return request;
     }
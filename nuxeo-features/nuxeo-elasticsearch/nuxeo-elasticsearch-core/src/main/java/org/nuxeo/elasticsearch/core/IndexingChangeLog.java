@@ -0,0 +1,258 @@
+/*
+ * (C) Copyright 2017 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Florent Guillaume
+ */
+package org.nuxeo.elasticsearch.core;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.nuxeo.ecm.core.api.NuxeoException;
+import org.nuxeo.ecm.core.storage.kv.KeyValueService;
+import org.nuxeo.ecm.core.storage.kv.KeyValueStore;
+import org.nuxeo.runtime.api.Framework;
+
+/**
+ * A named append-only log of indexing changes, stored in a {@link KeyValueStore} so that it is shared between nodes
+ * and survives restarts if the store is persistent.
+ * <p>
+ * Entries are numbered from 1. The position of the last appended entry is kept under its own key and incremented
+ * atomically, so several nodes can append concurrently. Consumers read the log through {@link #read}, and remember
+ * how far they have read under a key of their own.
+ *
+ * @since 9.3
+ */
+public class IndexingChangeLog {
+
+    private static final Log log = LogFactory.getLog(IndexingChangeLog.class);
+
+    /** The key/value store holding the logs. */
+    public static final String STORE_NAME = "elasticsearchIndexing";
+
+    /** How long a read waits for the entry at a position allocated by a concurrent append. */
+    protected static final long GAP_WAIT_MILLIS = 200;
+
+    /** How long a missing entry may stay missing before its append is considered failed. */
+    protected static final long GAP_TIMEOUT_MILLIS = 60_000;
+
+    protected final KeyValueStore store;
+
+    protected final String name;
+
+    protected long gapTimeoutMillis = GAP_TIMEOUT_MILLIS;
+
+    public IndexingChangeLog(String name) {
+        this(name, getStore());
+    }
+
+    /**
+     * Creates a log held by the given store.
+     */
+    public IndexingChangeLog(String name, KeyValueStore store) {
+        this.store = store;
+        this.name = name;
+    }
+
+    protected static KeyValueStore getStore() {
+        KeyValueService keyValueService = Framework.getService(KeyValueService.class);
+        if (keyValueService == null) {
+            throw new NuxeoException("Missing KeyValueService");
+        }
+        return keyValueService.getKeyValueStore(STORE_NAME);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    protected String key(String suffix) {
+        return "eslog:" + name + ':' + suffix;
+    }
+
+    protected static long toLong(byte[] bytes) {
+        return bytes == null ? 0 : Long.parseLong(new String(bytes, UTF_8));
+    }
+
+    protected static byte[] toBytes(long value) {
+        return String.valueOf(value).getBytes(UTF_8);
+    }
+
+    /**
+     * Appends an entry to the log.
+     *
+     * @return the position of the entry
+     */
+    public long append(String entry) {
+        String endKey = key("end");
+        for (;;) {
+            byte[] current = store.get(endKey);
+            long position = toLong(current) + 1;
+            if (store.compareAndSet(endKey, current, toBytes(position))) {
+                store.put(key(String.valueOf(position)), entry.getBytes(UTF_8));
+                return position;
+            }
+        }
+    }
+
+    /**
+     * Appends several entries to the log, allocating their positions at once.
+     *
+     * @return the position of the last entry
+     */
+    public long append(List<String> entries) {
+        String endKey = key("end");
+        for (;;) {
+            byte[] current = store.get(endKey);
+            long first = toLong(current) + 1;
+            long last = first + entries.size() - 1;
+            if (entries.isEmpty() || store.compareAndSet(endKey, current, toBytes(last))) {
+                for (int i = 0; i < entries.size(); i++) {
+                    store.put(key(String.valueOf(first + i)), entries.get(i).getBytes(UTF_8));
+                }
+                return last;
+            }
+        }
+    }
+
+    /**
+     * Gets the position of the last entry, or 0 if the log is empty.
+     */
+    public long getEnd() {
+        return toLong(store.get(key("end")));
+    }
+
+    /**
+     * Gets the entry at the given position, or {@code null} if there is none.
+     * <p>
+     * An entry may be missing for a short time after its position has been allocated by a concurrent
+     * {@link #append}, consumers should use {@link #read} instead.
+     */
+    public String get(long position) {
+        byte[] bytes = store.get(key(String.valueOf(position)));
+        return bytes == null ? null : new String(bytes, UTF_8);
+    }
+
+    /**
+     * Reads the entries following the given position.
+     * <p>
+     * The reading stops before a position allocated by a concurrent {@link #append} whose entry is not written yet,
+     * after waiting a bit for it, so that a consumer never moves past an entry that is written later. It is up to the
+     * consumer to read again later. An entry still missing after {@link #GAP_TIMEOUT_MILLIS} is considered lost, and
+     * returned as {@code null}.
+     *
+     * @param position the position after which to read
+     * @param max the maximum number of entries to read
+     * @return the entries at the positions following {@code position}, in order, possibly fewer than available
+     */
+    public List<String> read(long position, int max) {
+        long last = Math.min(position + max, getEnd());
+        List<String> entries = new ArrayList<>();
+        for (long i = position + 1; i <= last; i++) {
+            String entry = get(i);
+            if (entry == null) {
+                entry = waitForEntry(i);
+                if (entry == null) {
+                    if (!isLost(i)) {
+                        break;
+                    }
+                    log.warn(String.format("Skipping entry: %d of log: %s, never written", i, name));
+                }
+            }
+            entries.add(entry);
+        }
+        return entries;
+    }
+
+    protected String waitForEntry(long position) {
+        long deadline = System.currentTimeMillis() + GAP_WAIT_MILLIS;
+        while (System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+            String entry = get(position);
+            if (entry != null) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Checks if a missing entry has been missing for too long. The time it was first found missing is kept in the
+     * store, so that it is shared by all the consumers.
+     */
+    protected boolean isLost(long position) {
+        String gapKey = key("gap");
+        byte[] current = store.get(gapKey);
+        long now = System.currentTimeMillis();
+        if (current != null) {
+            String[] parts = new String(current, UTF_8).split(" ");
+            if (Long.parseLong(parts[0]) == position) {
+                return now - Long.parseLong(parts[1]) >= gapTimeoutMillis;
+            }
+        }
+        store.compareAndSet(gapKey, current, (position + " " + now).getBytes(UTF_8));
+        return false;
+    }
+
+    /**
+     * Gets the position up to which a consumer has processed the log.
+     */
+    public long getCommitted(String consumer) {
+        return toLong(store.get(key("committed:" + consumer)));
+    }
+
+    /**
+     * Sets the position up to which a consumer has processed the log.
+     */
+    public void setCommitted(String consumer, long position) {
+        store.put(key("committed:" + consumer), toBytes(position));
+    }
+
+    /**
+     * Removes the entries up to the given position included.
+     */
+    public void truncate(long position) {
+        String startKey = key("start");
+        long start = toLong(store.get(startKey));
+        for (long i = start + 1; i <= position; i++) {
+            store.put(key(String.valueOf(i)), null);
+        }
+        if (position > start) {
+            store.put(startKey, toBytes(position));
+        }
+    }
+
+    /**
+     * Removes all the entries and the consumer positions of the given consumers.
+     */
+    public void clear(String... consumers) {
+        truncate(getEnd());
+        store.put(key("gap"), null);
+        for (String consumer : consumers) {
+            store.put(key("committed:" + consumer), null);
+        }
+    }
+
+}
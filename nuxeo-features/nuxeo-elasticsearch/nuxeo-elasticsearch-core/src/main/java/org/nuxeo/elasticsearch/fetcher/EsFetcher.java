@@ -23,6 +23,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.common.text.Text;
@@ -39,8 +40,23 @@ import org.nuxeo.elasticsearch.io.DocumentModelReaders;
  */
 public class EsFetcher extends Fetcher {
 
+    protected final Set<String> schemas;
+
     public EsFetcher(CoreSession session, SearchResponse response, Map<String, String> repoNames) {
+        this(session, response, repoNames, null);
+    }
+
+    /**
+     * Builds documents from the {@code _source} holding only some schemas, the other schemas being loaded from the
+     * repository when accessed.
+     *
+     * @param schemas the schemas present in the {@code _source}, or {@code null} for all
+     * @since 9.3
+     */
+    public EsFetcher(CoreSession session, SearchResponse response, Map<String, String> repoNames,
+            Set<String> schemas) {
         super(session, response, repoNames);
+        this.schemas = schemas;
     }
 
     @Override
@@ -50,7 +66,7 @@ public class EsFetcher extends Fetcher {
         String sid = getSession().getSessionId();
         for (SearchHit hit : getResponse().getHits()) {
             // TODO: this does not work on multi repo
-            doc = DocumentModelReaders.fromSource(hit.getSource()).sid(sid).getDocumentModel();
+            doc = DocumentModelReaders.fromSource(hit.getSource()).sid(sid).schemas(schemas).getDocumentModel();
             // Add highlight if it exists
             Map<String, HighlightField> esHighlights = hit.highlightFields();
             if (!esHighlights.isEmpty()) {
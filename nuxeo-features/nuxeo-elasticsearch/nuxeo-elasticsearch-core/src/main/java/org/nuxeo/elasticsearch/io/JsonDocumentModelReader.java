@@ -56,6 +56,8 @@ public class JsonDocumentModelReader {
 
     private String sid;
 
+    private Set<String> schemas;
+
     public JsonDocumentModelReader(String json) {
         byte[] bytes = json.getBytes();
         source = SourceLookup.sourceAsMap(new BytesArray(bytes, 0, bytes.length));
@@ -75,6 +77,17 @@ public class JsonDocumentModelReader {
         return this;
     }
 
+    /**
+     * Restricts the document to the given schemas, the other schemas are loaded from the repository when accessed.
+     *
+     * @param schemas the schemas present in the source, or {@code null} for all
+     * @since 9.3
+     */
+    public JsonDocumentModelReader schemas(Set<String> schemas) {
+        this.schemas = schemas;
+        return this;
+    }
+
     public DocumentModel getDocumentModel() {
         assert (source != null);
         String type = (String) getProperty("ecm:primaryType");
@@ -98,11 +111,21 @@ public class JsonDocumentModelReader {
         Path pathObj = path == null ? null : new Path(path);
         DocumentRef docRef = new IdRef(id);
         DocumentRef parentRef = parentId == null ? null : new IdRef(parentId);
-        DocumentModelImpl doc = new DocumentModelImpl(sid, type, id, pathObj, docRef, parentRef, null, facets, sourceId,
-                repositoryName, isProxy);
+        DocumentModelImpl doc;
+        if (schemas == null) {
+            doc = new DocumentModelImpl(sid, type, id, pathObj, docRef, parentRef, null, facets, sourceId,
+                    repositoryName, isProxy);
+        } else {
+            doc = new SourceDocumentModel(sid, type, id, pathObj, docRef, parentRef, facets, sourceId, repositoryName,
+                    isProxy);
+        }
 
         // preload DataModel to prevent DB access
         for (String schemaName : doc.getSchemas()) { // all schemas including from facets
+            if (schemas != null && !schemas.contains(schemaName)) {
+                // lazily loaded from the repository
+                continue;
+            }
             Schema schema = schemaManager.getSchema(schemaName);
             doc.addDataModel(DocumentModelFactory.createDataModel(null, schema));
         }
@@ -113,6 +136,10 @@ public class JsonDocumentModelReader {
             if (value == null) {
                 continue;
             }
+            if (schemas != null && !"ecm".equals(schema) && !schemas.contains(getSchemaName(schemaManager, schema))) {
+                // would trigger a load from the repository
+                continue;
+            }
             if ("ecm".equals(schema)) {
                 switch (prop) {
                 case "ecm:currentLifeCycleState":
@@ -136,6 +163,11 @@ public class JsonDocumentModelReader {
         return doc;
     }
 
+    protected static String getSchemaName(SchemaManager schemaManager, String prefix) {
+        Schema schema = schemaManager.getSchemaFromPrefix(prefix);
+        return schema == null ? prefix : schema.getName();
+    }
+
     protected Serializable getProperty(String name) {
         return (Serializable) source.get(name);
     }
@@ -0,0 +1,83 @@
+/*
+ * (C) Copyright 2017 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Florent Guillaume
+ */
+package org.nuxeo.elasticsearch.io;
+
+import java.util.Set;
+
+import org.nuxeo.common.utils.Path;
+import org.nuxeo.ecm.core.api.DocumentRef;
+import org.nuxeo.ecm.core.api.impl.DocumentModelImpl;
+import org.nuxeo.ecm.core.api.model.DataModel;
+import org.nuxeo.runtime.metrics.MetricsService;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+
+/**
+ * A document built from the Elasticsearch {@code _source} of a subset of its schemas.
+ * <p>
+ * The schemas that were not fetched from Elasticsearch are loaded from the repository the first time they are
+ * accessed, like for any document.
+ *
+ * @since 9.3
+ */
+public class SourceDocumentModel extends DocumentModelImpl {
+
+    private static final long serialVersionUID = 1L;
+
+    protected static final Meter HYDRATED_DOCS = getMeter("docs");
+
+    protected static final Meter HYDRATED_SCHEMAS = getMeter("schemas");
+
+    protected transient boolean hydrated;
+
+    public SourceDocumentModel(String sid, String type, String id, Path path, DocumentRef docRef,
+            DocumentRef parentRef, Set<String> facets, String sourceId, String repositoryName, boolean isProxy) {
+        super(sid, type, id, path, docRef, parentRef, null, facets, sourceId, repositoryName, isProxy);
+    }
+
+    protected static Meter getMeter(String name) {
+        MetricRegistry registry = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
+        return registry.meter(MetricRegistry.name("nuxeo", "elasticsearch", "fetch", "hydrated", name));
+    }
+
+    @Override
+    protected DataModel loadDataModel(String schema) {
+        // same conditions as the superclass for a load from the repository
+        boolean fromRepository = schemasOrig.contains(schema) && sid != null && ref != null;
+        DataModel dataModel = super.loadDataModel(schema);
+        if (dataModel != null && fromRepository) {
+            HYDRATED_SCHEMAS.mark();
+            if (!hydrated) {
+                hydrated = true;
+                HYDRATED_DOCS.mark();
+            }
+        }
+        return dataModel;
+    }
+
+    /**
+     * Checks if some schema had to be loaded from the repository.
+     */
+    public boolean isHydrated() {
+        return hydrated;
+    }
+
+}
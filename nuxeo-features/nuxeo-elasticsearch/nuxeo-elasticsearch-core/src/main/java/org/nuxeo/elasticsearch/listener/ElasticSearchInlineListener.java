@@ -41,6 +41,7 @@ import org.nuxeo.elasticsearch.api.ElasticSearchIndexing;
 import org.nuxeo.elasticsearch.commands.IndexingCommand;
 import org.nuxeo.elasticsearch.commands.IndexingCommands;
 import org.nuxeo.elasticsearch.commands.IndexingCommandsStacker;
+import org.nuxeo.elasticsearch.work.ChangeLogIndexingWorker;
 import org.nuxeo.runtime.api.Framework;
 import org.nuxeo.runtime.transaction.TransactionHelper;
 
@@ -121,6 +122,10 @@ public class ElasticSearchInlineListener extends IndexingCommandsStacker impleme
                     commandList.add(cmd);
                 }
             }
+            if (ChangeLogIndexingWorker.isEnabled()) {
+                // durable record of the committed changes, replayed if their indexing is lost
+                ChangeLogIndexingWorker.logCommands(commandList);
+            }
             ElasticSearchIndexing esi = Framework.getLocalService(ElasticSearchIndexing.class);
             esi.runIndexingWorker(commandList);
         } finally {
@@ -43,6 +43,7 @@ import org.nuxeo.ecm.platform.query.api.PageProviderDefinition;
 import org.nuxeo.ecm.platform.query.api.QuickFilter;
 import org.nuxeo.ecm.platform.query.api.WhereClauseDefinition;
 import org.nuxeo.ecm.platform.query.nxql.NXQLQueryBuilder;
+import org.nuxeo.elasticsearch.aggregate.AggregateCache;
 import org.nuxeo.elasticsearch.aggregate.AggregateEsBase;
 import org.nuxeo.elasticsearch.aggregate.AggregateFactory;
 import org.nuxeo.elasticsearch.api.ElasticSearchService;
@@ -109,7 +110,18 @@ public class ElasticSearchNativePageProvider extends AbstractPageProvider<Docume
                 nxQuery.highlight(highlightFields);
             }
 
+            // the aggregates don't depend on the page nor on the sort
+            AggregateCache aggregateCache = AggregateCache.getInstance();
+            String aggregateKey = aggregateCache.getKey(getName(), query.toString(), nxQuery);
+            boolean cachedAggregates = aggregateCache.restore(aggregateKey, nxQuery.getAggregates());
+            if (cachedAggregates) {
+                nxQuery.skipAggregatesComputation();
+            }
+
             EsResult ret = ess.queryAndAggregate(nxQuery);
+            if (!cachedAggregates) {
+                aggregateCache.put(aggregateKey, nxQuery.getAggregates());
+            }
             DocumentModelList dmList = ret.getDocuments();
             currentAggregates = new HashMap<>(ret.getAggregates().size());
             for (Aggregate<Bucket> agg : ret.getAggregates()) {
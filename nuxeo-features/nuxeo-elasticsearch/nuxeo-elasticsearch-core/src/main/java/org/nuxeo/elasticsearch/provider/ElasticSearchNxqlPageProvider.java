@@ -25,9 +25,12 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.SearchHits;
 import org.nuxeo.ecm.core.api.CoreSession;
 import org.nuxeo.ecm.core.api.DocumentModel;
 import org.nuxeo.ecm.core.api.DocumentModelList;
@@ -36,7 +39,9 @@ import org.nuxeo.ecm.core.query.QueryParseException;
 import org.nuxeo.ecm.platform.query.api.Aggregate;
 import org.nuxeo.ecm.platform.query.api.AggregateDefinition;
 import org.nuxeo.ecm.platform.query.api.Bucket;
+import org.nuxeo.ecm.platform.query.api.PageCursor;
 import org.nuxeo.ecm.platform.query.nxql.CoreQueryDocumentPageProvider;
+import org.nuxeo.elasticsearch.aggregate.AggregateCache;
 import org.nuxeo.elasticsearch.aggregate.AggregateEsBase;
 import org.nuxeo.elasticsearch.aggregate.AggregateFactory;
 import org.nuxeo.elasticsearch.api.ElasticSearchService;
@@ -61,6 +66,14 @@ public class ElasticSearchNxqlPageProvider extends CoreQueryDocumentPageProvider
 
     public static final String SEARCH_ON_ALL_REPOSITORIES_PROPERTY = "searchAllRepositories";
 
+    /**
+     * Comma-separated schemas to build the result documents from Elasticsearch, the other schemas are loaded from the
+     * repository when accessed.
+     *
+     * @since 9.3
+     */
+    public static final String FETCH_SCHEMAS_PROPERTY = "fetchSchemas";
+
     // @since 9.2
     public static final String ES_MAX_RESULT_WINDOW_PROPERTY = "org.nuxeo.elasticsearch.provider.maxResultWindow";
 
@@ -73,6 +86,26 @@ public class ElasticSearchNxqlPageProvider extends CoreQueryDocumentPageProvider
 
     protected Long maxResultWindow;
 
+    /**
+     * The sort values of the last hit of the previous page when using keyset pagination, {@code null} for the first
+     * page.
+     *
+     * @since 9.3
+     */
+    protected List<Serializable> searchAfter;
+
+    /**
+     * Whether the current page was fetched with keyset pagination.
+     *
+     * @since 9.3
+     */
+    protected boolean keysetPagination;
+
+    /**
+     * @since 9.3
+     */
+    protected String nextPageCursor;
+
     @Override
     public List<DocumentModel> getCurrentPage() {
 
@@ -106,19 +139,47 @@ public class ElasticSearchNxqlPageProvider extends CoreQueryDocumentPageProvider
             if (searchOnAllRepositories()) {
                 nxQuery.searchOnAllRepositories();
             }
+            List<String> fetchSchemas = getFetchSchemas();
+            if (fetchSchemas != null) {
+                nxQuery.fetchFromElasticsearch(fetchSchemas);
+            }
+
+            // keyset pagination from the first page, or from a keyset cursor
+            boolean keyset = cursorPagination && (searchAfter != null || getCurrentPageOffset() == 0);
+            if (keyset) {
+                nxQuery.searchAfter(searchAfter);
+            }
 
             List<String> highlightFields = getHighlights();
             if (highlightFields != null && !highlightFields.isEmpty()) {
                 nxQuery.highlight(highlightFields);
             }
 
+            // the aggregates don't depend on the page nor on the sort
+            AggregateCache aggregateCache = AggregateCache.getInstance();
+            String aggregateKey = aggregateCache.getKey(getName(), removeOrderBy(query), nxQuery);
+            boolean cachedAggregates = aggregateCache.restore(aggregateKey, nxQuery.getAggregates());
+            if (cachedAggregates) {
+                nxQuery.skipAggregatesComputation();
+            }
+
             EsResult ret = ess.queryAndAggregate(nxQuery);
+            if (!cachedAggregates) {
+                aggregateCache.put(aggregateKey, nxQuery.getAggregates());
+            }
             DocumentModelList dmList = ret.getDocuments();
             currentAggregates = new HashMap<>(ret.getAggregates().size());
             for (Aggregate<Bucket> agg : ret.getAggregates()) {
                 currentAggregates.put(agg.getId(), agg);
             }
-            setResultsCount(dmList.totalSize());
+            keysetPagination = keyset && nxQuery.isKeysetPagination();
+            if (keysetPagination) {
+                // the total hits are the hits after the position of the page
+                setResultsCount(getCurrentPageOffset() + dmList.totalSize());
+                nextPageCursor = getNextKeysetCursor(ret.getElasticsearchResponse().getHits());
+            } else {
+                setResultsCount(dmList.totalSize());
+            }
             currentPageDocuments = dmList;
         } catch (QueryParseException e) {
             error = e;
@@ -132,6 +193,77 @@ public class ElasticSearchNxqlPageProvider extends CoreQueryDocumentPageProvider
         return currentPageDocuments;
     }
 
+    /**
+     * Gets the cursor of the page following the given hits, or {@code null} if there is no next page.
+     *
+     * @since 9.3
+     */
+    protected String getNextKeysetCursor(SearchHits hits) {
+        SearchHit[] pageHits = hits.getHits();
+        long pageSize = getMinMaxPageSize();
+        if (pageSize == 0 || pageHits.length < pageSize || hits.getTotalHits() <= pageHits.length) {
+            return null;
+        }
+        List<Serializable> sortValues = new ArrayList<>();
+        for (Object value : pageHits[pageHits.length - 1].getSortValues()) {
+            if (value == null || value instanceof Number || value instanceof Boolean) {
+                sortValues.add((Serializable) value);
+            } else {
+                // strings are returned as Text
+                sortValues.add(value.toString());
+            }
+        }
+        return new PageCursor(getCurrentPageOffset() + pageHits.length, sortValues).encode();
+    }
+
+    /**
+     * Uses keyset pagination when the hits are sorted by values, which is not limited by the max result window. When
+     * sorting by score, offset cursors are used.
+     *
+     * @since 9.3
+     */
+    @Override
+    public void setCurrentPageCursor(String cursor) {
+        PageCursor pageCursor = FIRST_PAGE_CURSOR.equals(cursor) ? new PageCursor(0) : PageCursor.decode(cursor);
+        cursorPagination = true;
+        setCurrentPageOffset(pageCursor.getOffset());
+        searchAfter = pageCursor.getSortValues();
+        pageChanged();
+    }
+
+    @Override
+    public void setCurrentPageOffset(long offset) {
+        // a keyset position is only valid for the offset of its cursor
+        searchAfter = null;
+        super.setCurrentPageOffset(offset);
+    }
+
+    /**
+     * @since 9.3
+     */
+    @Override
+    public String getNextPageCursor() {
+        getCurrentPage();
+        if (keysetPagination) {
+            return nextPageCursor;
+        }
+        return super.getNextPageCursor();
+    }
+
+    /**
+     * Removes the ORDER BY clause of a query, unless it cannot be found safely.
+     *
+     * @since 9.3
+     */
+    protected static String removeOrderBy(String query) {
+        int i = query.toUpperCase().lastIndexOf(" ORDER BY ");
+        if (i < 0 || query.indexOf('\'', i) >= 0 || query.indexOf('"', i) >= 0) {
+            // no ORDER BY or maybe in a string literal
+            return query;
+        }
+        return query.substring(0, i);
+    }
+
     protected int getLimit() {
         int ret = (int) getMinMaxPageSize();
         if (ret == 0) {
@@ -149,6 +281,8 @@ public class ElasticSearchNxqlPageProvider extends CoreQueryDocumentPageProvider
     protected void pageChanged() {
         currentPageDocuments = null;
         currentAggregates = null;
+        keysetPagination = false;
+        nextPageCursor = null;
         super.pageChanged();
     }
 
@@ -156,6 +290,10 @@ public class ElasticSearchNxqlPageProvider extends CoreQueryDocumentPageProvider
     public void refresh() {
         currentPageDocuments = null;
         currentAggregates = null;
+        keysetPagination = false;
+        nextPageCursor = null;
+        // a keyset position is only valid for the query and sort of its cursor
+        searchAfter = null;
         super.refresh();
     }
 
@@ -185,6 +323,23 @@ public class ElasticSearchNxqlPageProvider extends CoreQueryDocumentPageProvider
         return Boolean.parseBoolean(value);
     }
 
+    /**
+     * @since 9.3
+     */
+    protected List<String> getFetchSchemas() {
+        String value = (String) getProperties().get(FETCH_SCHEMAS_PROPERTY);
+        if (StringUtils.isBlank(value)) {
+            return null;
+        }
+        List<String> schemas = new ArrayList<>();
+        for (String schema : value.split(",")) {
+            if (!schema.trim().isEmpty()) {
+                schemas.add(schema.trim());
+            }
+        }
+        return schemas;
+    }
+
     @Override
     public boolean hasAggregateSupport() {
         return true;
@@ -232,6 +387,10 @@ public class ElasticSearchNxqlPageProvider extends CoreQueryDocumentPageProvider
 
     @Override
     public boolean isNextPageAvailable() {
+        if (keysetPagination) {
+            // not limited by the max result window
+            return nextPageCursor != null;
+        }
         if ((getCurrentPageOffset() + 2 * getPageSize()) <= getMaxResultWindow()) {
             return super.isNextPageAvailable();
         }
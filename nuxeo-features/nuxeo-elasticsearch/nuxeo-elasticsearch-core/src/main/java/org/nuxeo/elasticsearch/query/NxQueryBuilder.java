@@ -18,13 +18,14 @@
  */
 package org.nuxeo.elasticsearch.query;
 
-import static org.nuxeo.ecm.core.api.security.SecurityConstants.UNSUPPORTED_ACL;
-import static org.nuxeo.elasticsearch.ElasticSearchConstants.ACL_FIELD;
 import static org.nuxeo.elasticsearch.ElasticSearchConstants.FETCH_DOC_FROM_ES_PROPERTY;
 
+import java.io.Serializable;
 import java.security.Principal;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -34,6 +35,7 @@ import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.index.query.BoolQueryBuilder;
 import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.index.query.RangeQueryBuilder;
 import org.elasticsearch.search.aggregations.AbstractAggregationBuilder;
 import org.elasticsearch.search.aggregations.bucket.filter.FilterAggregationBuilder;
 import org.elasticsearch.search.sort.FieldSortBuilder;
@@ -42,7 +44,11 @@ import org.elasticsearch.search.sort.SortOrder;
 import org.nuxeo.ecm.core.api.CoreSession;
 import org.nuxeo.ecm.core.api.NuxeoPrincipal;
 import org.nuxeo.ecm.core.api.SortInfo;
+import org.nuxeo.ecm.core.query.QueryParseException;
+import org.nuxeo.ecm.core.query.sql.NXQL;
 import org.nuxeo.ecm.core.schema.SchemaManager;
+import org.nuxeo.ecm.core.schema.types.Field;
+import org.nuxeo.ecm.core.schema.types.Schema;
 import org.nuxeo.ecm.core.schema.types.Type;
 import org.nuxeo.ecm.core.security.SecurityService;
 import org.nuxeo.ecm.platform.query.api.Aggregate;
@@ -84,6 +90,8 @@ public class NxQueryBuilder {
 
     private boolean fetchFromElasticsearch = false;
 
+    private Set<String> fetchSchemas;
+
     private boolean searchOnAllRepo = false;
 
     private String[] selectFields = { ElasticSearchConstants.ID_FIELD };
@@ -96,6 +104,12 @@ public class NxQueryBuilder {
 
     private List<String> highlightFields;
 
+    private boolean computeAggregates = true;
+
+    private boolean keysetPagination = false;
+
+    private List<Serializable> searchAfter;
+
     public NxQueryBuilder(CoreSession coreSession) {
         session = coreSession;
         repositories.add(coreSession.getRepositoryName());
@@ -168,11 +182,24 @@ public class NxQueryBuilder {
         return this;
     }
 
+    /**
+     * Ask for the Elasticsearch _source field restricted to the given schemas, use it to build documents. The other
+     * schemas of the documents are loaded from the repository when they are accessed.
+     *
+     * @since 9.3
+     */
+    public NxQueryBuilder fetchFromElasticsearch(Collection<String> schemas) {
+        fetchFromElasticsearch = true;
+        fetchSchemas = new HashSet<>(schemas);
+        return this;
+    }
+
     /**
      * Fetch the documents using VCS (database) engine. This is done by default
      */
     public NxQueryBuilder fetchFromDatabase() {
         fetchFromElasticsearch = false;
+        fetchSchemas = null;
         return this;
     }
 
@@ -199,6 +226,84 @@ public class NxQueryBuilder {
         return this;
     }
 
+    /**
+     * Don't compute the buckets of the aggregates, only use their selection to filter the results. This is used when
+     * the buckets are already known.
+     *
+     * @since 9.3
+     */
+    public NxQueryBuilder skipAggregatesComputation() {
+        computeAggregates = false;
+        return this;
+    }
+
+    /**
+     * @since 9.3
+     */
+    public boolean isComputeAggregates() {
+        return computeAggregates;
+    }
+
+    /**
+     * Uses keyset pagination instead of the offset: the hits are sorted with a tiebreaker on {@code ecm:uuid}, and only
+     * the hits sorted after the last hit of the previous page are returned. The total hits count is then the number of
+     * hits after this position. The aggregates are still computed on all the hits.
+     * <p>
+     * Keyset pagination is not used when sorting by score or by a multi-valued field, see {@link #isKeysetPagination}.
+     *
+     * @param searchAfter the sort values of the last hit of the previous page, or {@code null} for the first page
+     * @since 9.3
+     */
+    public NxQueryBuilder searchAfter(List<Serializable> searchAfter) {
+        keysetPagination = true;
+        this.searchAfter = searchAfter;
+        return this;
+    }
+
+    /**
+     * Checks if keyset pagination is used, which is the case if it was requested and if the hits are not sorted by
+     * score or by a multi-valued field. The sort of a NXQL query is only known once the query is built.
+     * <p>
+     * Elasticsearch sorts a multi-valued field by its min or max value, whereas the keyset filter matches any of the
+     * values, so hits would be duplicated or skipped across pages.
+     *
+     * @since 9.3
+     */
+    public boolean isKeysetPagination() {
+        if (!keysetPagination) {
+            return false;
+        }
+        for (SortInfo sortInfo : sortInfos) {
+            String field = sortInfo.getSortColumn();
+            if ("_score".equals(field) || isMultiValuedField(field)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks if a field, or one of its parents for a complex property path, is a list.
+     *
+     * @since 9.3
+     */
+    protected boolean isMultiValuedField(String field) {
+        if (NXQL.ECM_MIXINTYPE.equals(field)) {
+            return true;
+        }
+        SchemaManager schemaManager = Framework.getService(SchemaManager.class);
+        String[] parts = field.split("/");
+        String xpath = null;
+        for (String part : parts) {
+            xpath = xpath == null ? part : xpath + '/' + part;
+            Field f = schemaManager.getField(xpath);
+            if (f != null && f.getType().isListType()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * @since 9.1
      */
@@ -227,6 +332,42 @@ public class NxQueryBuilder {
         return fetchFromElasticsearch;
     }
 
+    /**
+     * Gets the schemas fetched from Elasticsearch, or {@code null} for all.
+     *
+     * @since 9.3
+     */
+    public Set<String> getFetchSchemas() {
+        return fetchSchemas;
+    }
+
+    /**
+     * Gets the {@code _source} fields to fetch for the schemas fetched from Elasticsearch, or {@code null} for all.
+     *
+     * @since 9.3
+     */
+    public String[] getFetchSourceIncludes() {
+        if (fetchSchemas == null) {
+            return null;
+        }
+        SchemaManager schemaManager = Framework.getService(SchemaManager.class);
+        List<String> includes = new ArrayList<>(fetchSchemas.size() + 1);
+        // system properties needed to build the document
+        includes.add("ecm:*");
+        for (String name : fetchSchemas) {
+            Schema schema = schemaManager.getSchema(name);
+            if (schema == null) {
+                continue;
+            }
+            String prefix = schema.getNamespace().prefix;
+            if (prefix == null || prefix.isEmpty()) {
+                prefix = name;
+            }
+            includes.add(prefix + ":*");
+        }
+        return includes.toArray(new String[includes.size()]);
+    }
+
     public CoreSession getSession() {
         return session;
     }
@@ -263,6 +404,7 @@ public class NxQueryBuilder {
 
     public SortBuilder[] getSortBuilders() {
         SortBuilder[] ret;
+        List<SortInfo> sortInfos = isKeysetPagination() ? getKeysetSortInfos() : this.sortInfos;
         if (sortInfos.isEmpty()) {
             return new SortBuilder[0];
         }
@@ -277,6 +419,80 @@ public class NxQueryBuilder {
         return ret;
     }
 
+    /**
+     * Gets the sort of the keyset pagination, which has a tiebreaker on {@code ecm:uuid} to sort all hits.
+     *
+     * @since 9.3
+     */
+    protected List<SortInfo> getKeysetSortInfos() {
+        List<SortInfo> ret = new ArrayList<>(sortInfos);
+        for (SortInfo sortInfo : sortInfos) {
+            if (NXQL.ECM_UUID.equals(sortInfo.getSortColumn())) {
+                return ret;
+            }
+        }
+        ret.add(new SortInfo(NXQL.ECM_UUID, true));
+        return ret;
+    }
+
+    /**
+     * Gets the filter matching the hits sorted after the {@link #searchAfter} position, or {@code null} for the first
+     * page. Missing values are sorted last by Elasticsearch, whatever the order.
+     *
+     * @since 9.3
+     */
+    protected QueryBuilder getKeysetFilter() {
+        if (searchAfter == null) {
+            return null;
+        }
+        List<SortInfo> keys = getKeysetSortInfos();
+        if (searchAfter.size() != keys.size()) {
+            throw new QueryParseException("Page cursor does not match the sort of the query");
+        }
+        // (k1 after v1) OR (k1 = v1 AND k2 after v2) OR ...
+        BoolQueryBuilder ret = QueryBuilders.boolQuery().minimumNumberShouldMatch(1);
+        List<QueryBuilder> equals = new ArrayList<>(keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            String field = keys.get(i).getSortColumn();
+            Serializable value = searchAfter.get(i);
+            QueryBuilder missing = QueryBuilders.boolQuery().mustNot(QueryBuilders.existsQuery(field));
+            if (isMissingSortValue(value)) {
+                // nothing sorts after a missing value but other missing values
+                equals.add(missing);
+                continue;
+            }
+            RangeQueryBuilder range = QueryBuilders.rangeQuery(field);
+            if (keys.get(i).getSortAscending()) {
+                range.gt(value);
+            } else {
+                range.lt(value);
+            }
+            BoolQueryBuilder after = QueryBuilders.boolQuery();
+            for (QueryBuilder equal : equals) {
+                after.filter(equal);
+            }
+            after.filter(QueryBuilders.boolQuery().should(range).should(missing).minimumNumberShouldMatch(1));
+            ret.should(after);
+            equals.add(QueryBuilders.termQuery(field, value));
+        }
+        return ret;
+    }
+
+    /**
+     * Checks if a sort value is the one of a missing field: Elasticsearch returns {@code null} for strings, and the
+     * extreme value used to sort them last for numbers and dates.
+     */
+    protected static boolean isMissingSortValue(Serializable value) {
+        if (value instanceof Long) {
+            long l = ((Long) value).longValue();
+            return l == Long.MAX_VALUE || l == Long.MIN_VALUE;
+        }
+        if (value instanceof Double) {
+            return ((Double) value).isInfinite();
+        }
+        return value == null;
+    }
+
     protected String guessFieldType(String field) {
         String fieldType;
         try {
@@ -343,22 +559,32 @@ public class NxQueryBuilder {
     }
 
     public void updateRequest(SearchRequestBuilder request) {
-        // Set limits
-        request.setFrom(getOffset()).setSize(getLimit());
         // Build query with security checks
-        request.setQuery(makeQuery());
+        QueryBuilder query = makeQuery();
+        boolean keyset = isKeysetPagination();
+        // Set limits, a keyset page is positioned by a filter
+        request.setFrom(keyset ? 0 : getOffset()).setSize(getLimit());
+        request.setQuery(query);
         // Add sort
         for (SortBuilder sortBuilder : getSortBuilders()) {
             request.addSort(sortBuilder);
         }
         // Add Aggregate
-        for (AbstractAggregationBuilder aggregate : getEsAggregates()) {
-            request.addAggregation(aggregate);
+        if (computeAggregates) {
+            for (AbstractAggregationBuilder aggregate : getEsAggregates()) {
+                request.addAggregation(aggregate);
+            }
         }
         // Add Aggregate post filter
         QueryBuilder aggFilter = getAggregateFilter();
-        if (aggFilter != null) {
+        // Add keyset filter as a post filter too, to compute the aggregates on all the hits
+        QueryBuilder keysetFilter = keyset ? getKeysetFilter() : null;
+        if (aggFilter != null && keysetFilter != null) {
+            request.setPostFilter(QueryBuilders.boolQuery().must(aggFilter).must(keysetFilter));
+        } else if (aggFilter != null) {
             request.setPostFilter(aggFilter);
+        } else if (keysetFilter != null) {
+            request.setPostFilter(keysetFilter);
         }
 
         // Add highlighting
@@ -383,11 +609,7 @@ public class NxQueryBuilder {
             return query;
         }
         String[] principals = SecurityService.getPrincipalsToCheck(principal);
-        // we want an ACL that match principals but we discard
-        // unsupported ACE that contains negative ACE
-        QueryBuilder aclFilter = QueryBuilders.boolQuery()
-                                              .must(QueryBuilders.termsQuery(ACL_FIELD, principals))
-                                              .mustNot(QueryBuilders.termsQuery(ACL_FIELD, UNSUPPORTED_ACL));
+        QueryBuilder aclFilter = NxqlQueryCache.getInstance().getAclFilter(principals);
         return QueryBuilders.boolQuery().must(query).filter(aclFilter);
     }
 
@@ -428,7 +650,7 @@ public class NxQueryBuilder {
      */
     public Fetcher getFetcher(SearchResponse response, Map<String, String> repoNames) {
         if (isFetchFromElasticsearch()) {
-            return new EsFetcher(session, response, repoNames);
+            return new EsFetcher(session, response, repoNames, fetchSchemas);
         }
         return new VcsFetcher(session, response, repoNames);
     }
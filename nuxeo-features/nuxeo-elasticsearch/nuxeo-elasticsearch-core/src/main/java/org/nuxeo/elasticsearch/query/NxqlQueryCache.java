@@ -0,0 +1,308 @@
+/*
+ * (C) Copyright 2017 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Florent Guillaume
+ */
+package org.nuxeo.elasticsearch.query;
+
+import static org.nuxeo.ecm.core.api.security.SecurityConstants.UNSUPPORTED_ACL;
+import static org.nuxeo.elasticsearch.ElasticSearchConstants.ACL_FIELD;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.nuxeo.ecm.core.query.QueryParseException;
+import org.nuxeo.ecm.core.query.sql.SQLQueryParser;
+import org.nuxeo.ecm.core.query.sql.model.SQLQuery;
+import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.metrics.MetricsService;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Caches used by the NXQL to Elasticsearch conversion.
+ * <p>
+ * NXQL queries are normalized into a shape where string literals are replaced by numbered placeholders, and the
+ * parsed shape is cached as a {@link Template}. Queries differing only by their string literals share the same parsed
+ * template, which is bound to the actual literals when converted.
+ * <p>
+ * The ACL filters are cached by list of principals.
+ *
+ * @since 9.3
+ */
+public class NxqlQueryCache {
+
+    /** Maximum number of cached NXQL templates, 0 to disable the cache. */
+    public static final String QUERY_CACHE_SIZE_PROPERTY = "elasticsearch.query.cacheSize";
+
+    /** Maximum number of cached ACL filters, 0 to disable the cache. */
+    public static final String ACL_CACHE_SIZE_PROPERTY = "elasticsearch.query.aclCacheSize";
+
+    protected static final String DEFAULT_QUERY_CACHE_SIZE = "1000";
+
+    protected static final String DEFAULT_ACL_CACHE_SIZE = "1000";
+
+    protected static final long ACL_CACHE_EXPIRE_MINUTES = 10;
+
+    /** Placeholder prefix of a string literal, followed by the parameter index. */
+    protected static final String PLACEHOLDER = "\u0000\u0001";
+
+    protected static volatile NxqlQueryCache instance;
+
+    /**
+     * A parsed NXQL query whose string literals may be placeholders, with the values of the placeholders.
+     */
+    public static class Template {
+
+        public final SQLQuery query;
+
+        protected final String[] parameters;
+
+        public Template(SQLQuery query, String[] parameters) {
+            this.query = query;
+            this.parameters = parameters;
+        }
+
+        /**
+         * Gets the actual value of a string literal of the query.
+         */
+        public String bind(String value) {
+            if (value != null && value.startsWith(PLACEHOLDER)) {
+                try {
+                    int i = Integer.parseInt(value.substring(PLACEHOLDER.length()));
+                    if (i >= 0 && i < parameters.length) {
+                        return parameters[i];
+                    }
+                } catch (NumberFormatException e) {
+                    // not a placeholder
+                }
+            }
+            return value;
+        }
+    }
+
+    protected final Cache<String, SQLQuery> queryCache;
+
+    protected final Cache<List<String>, QueryBuilder> aclCache;
+
+    protected final Counter queryHitCount;
+
+    protected final Counter queryMissCount;
+
+    protected final Counter aclHitCount;
+
+    protected final Counter aclMissCount;
+
+    public static NxqlQueryCache getInstance() {
+        if (instance == null) {
+            synchronized (NxqlQueryCache.class) {
+                if (instance == null) {
+                    instance = new NxqlQueryCache();
+                }
+            }
+        }
+        return instance;
+    }
+
+    protected NxqlQueryCache() {
+        long querySize = Long.parseLong(Framework.getProperty(QUERY_CACHE_SIZE_PROPERTY, DEFAULT_QUERY_CACHE_SIZE));
+        queryCache = querySize > 0 ? CacheBuilder.newBuilder().maximumSize(querySize).build() : null;
+        long aclSize = Long.parseLong(Framework.getProperty(ACL_CACHE_SIZE_PROPERTY, DEFAULT_ACL_CACHE_SIZE));
+        aclCache = aclSize > 0 ? CacheBuilder.newBuilder()
+                                             .maximumSize(aclSize)
+                                             .expireAfterAccess(ACL_CACHE_EXPIRE_MINUTES, TimeUnit.MINUTES)
+                                             .build()
+                : null;
+        MetricRegistry registry = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
+        queryHitCount = registry.counter(MetricRegistry.name("nuxeo", "elasticsearch", "query", "cache", "hit"));
+        queryMissCount = registry.counter(MetricRegistry.name("nuxeo", "elasticsearch", "query", "cache", "miss"));
+        aclHitCount = registry.counter(MetricRegistry.name("nuxeo", "elasticsearch", "query", "aclCache", "hit"));
+        aclMissCount = registry.counter(MetricRegistry.name("nuxeo", "elasticsearch", "query", "aclCache", "miss"));
+        registerHitRatio(registry, "cache", queryHitCount, queryMissCount);
+        registerHitRatio(registry, "aclCache", aclHitCount, aclMissCount);
+    }
+
+    protected static void registerHitRatio(MetricRegistry registry, String cacheName, Counter hit, Counter miss) {
+        String name = MetricRegistry.name("nuxeo", "elasticsearch", "query", cacheName, "hitRatio");
+        registry.remove(name);
+        registry.register(name, (Gauge<Double>) () -> {
+            long hits = hit.getCount();
+            long total = hits + miss.getCount();
+            return total == 0 ? 0 : (double) hits / total;
+        });
+    }
+
+    /**
+     * Gets the parsed template of a complete NXQL query, bound to its string literals.
+     *
+     * @throws QueryParseException if the query is invalid
+     */
+    public Template getTemplate(String query) {
+        List<String> parameters = new ArrayList<>();
+        String shape = queryCache == null ? null : parameterize(query, parameters);
+        if (shape == null) {
+            return new Template(SQLQueryParser.parse(new StringReader(query)), new String[0]);
+        }
+        SQLQuery sqlQuery = queryCache.getIfPresent(shape);
+        if (sqlQuery == null) {
+            queryMissCount.inc();
+            try {
+                sqlQuery = SQLQueryParser.parse(new StringReader(shape));
+            } catch (QueryParseException e) {
+                // report the error on the original query
+                return new Template(SQLQueryParser.parse(new StringReader(query)), new String[0]);
+            }
+            queryCache.put(shape, sqlQuery);
+        } else {
+            queryHitCount.inc();
+        }
+        return new Template(sqlQuery, parameters.toArray(new String[parameters.size()]));
+    }
+
+    /**
+     * Replaces the string literals of a query by placeholders, following the NXQL lexer rules. The literals of
+     * {@code DATE} and {@code TIMESTAMP} are kept, as they are interpreted by the parser.
+     *
+     * @param parameters the list to which the unescaped literals are added
+     * @return the query shape, or {@code null} if the query cannot be lexed, letting the parser report the error
+     */
+    protected static String parameterize(String query, List<String> parameters) {
+        int len = query.length();
+        StringBuilder shape = new StringBuilder(len);
+        StringBuilder value = new StringBuilder();
+        int i = 0;
+        while (i < len) {
+            char c = query.charAt(i);
+            if (c != '\'' && c != '"') {
+                shape.append(c);
+                i++;
+                continue;
+            }
+            value.setLength(0);
+            int j = i + 1;
+            boolean closed = false;
+            while (j < len) {
+                char ch = query.charAt(j);
+                if (ch == c) {
+                    closed = true;
+                    break;
+                }
+                if (ch == '\n' || ch == '\r') {
+                    return null;
+                }
+                if (ch == '\\' && j + 1 < len) {
+                    char next = query.charAt(j + 1);
+                    if (next == 't') {
+                        value.append('\t');
+                    } else if (next == 'n') {
+                        value.append('\n');
+                    } else if (next == 'r') {
+                        value.append('\r');
+                    } else if (next == c || next == '\\') {
+                        value.append(next);
+                    } else {
+                        // lone backslash
+                        value.append('\\');
+                        j++;
+                        continue;
+                    }
+                    j += 2;
+                    continue;
+                }
+                value.append(ch);
+                j++;
+            }
+            if (!closed) {
+                return null;
+            }
+            if (isAfterDateKeyword(shape)) {
+                shape.append(query, i, j + 1);
+            } else {
+                shape.append('\'').append(PLACEHOLDER).append(parameters.size()).append('\'');
+                parameters.add(value.toString());
+            }
+            i = j + 1;
+        }
+        return shape.toString();
+    }
+
+    protected static boolean isAfterDateKeyword(CharSequence shape) {
+        int end = shape.length();
+        while (end > 0 && Character.isWhitespace(shape.charAt(end - 1))) {
+            end--;
+        }
+        int start = end;
+        while (start > 0 && Character.isLetter(shape.charAt(start - 1))) {
+            start--;
+        }
+        if (start > 0) {
+            char before = shape.charAt(start - 1);
+            if (Character.isLetterOrDigit(before) || before == '_' || before == ':' || before == '.'
+                    || before == '/') {
+                // part of an identifier
+                return false;
+            }
+        }
+        String word = shape.subSequence(start, end).toString();
+        return "DATE".equalsIgnoreCase(word) || "TIMESTAMP".equalsIgnoreCase(word);
+    }
+
+    /**
+     * Gets the filter matching the documents readable by the given principals.
+     */
+    public QueryBuilder getAclFilter(String[] principals) {
+        QueryBuilder filter = aclCache == null ? null : aclCache.getIfPresent(Arrays.asList(principals));
+        if (filter != null) {
+            aclHitCount.inc();
+            return filter;
+        }
+        // the cached filter must not depend on the caller's array
+        principals = principals.clone();
+        // we want an ACL that match principals but we discard
+        // unsupported ACE that contains negative ACE
+        filter = QueryBuilders.boolQuery()
+                              .must(QueryBuilders.termsQuery(ACL_FIELD, principals))
+                              .mustNot(QueryBuilders.termsQuery(ACL_FIELD, UNSUPPORTED_ACL));
+        if (aclCache != null) {
+            aclMissCount.inc();
+            aclCache.put(Arrays.asList(principals), filter);
+        }
+        return filter;
+    }
+
+    /**
+     * Clears the caches.
+     */
+    public void clear() {
+        if (queryCache != null) {
+            queryCache.invalidateAll();
+        }
+        if (aclCache != null) {
+            aclCache.invalidateAll();
+        }
+    }
+
+}
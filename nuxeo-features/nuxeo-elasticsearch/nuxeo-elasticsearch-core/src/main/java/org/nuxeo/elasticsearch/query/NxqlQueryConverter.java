@@ -22,7 +22,6 @@ package org.nuxeo.elasticsearch.query;
 import static org.nuxeo.elasticsearch.ElasticSearchConstants.FULLTEXT_FIELD;
 
 import java.io.IOException;
-import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
@@ -57,7 +56,6 @@ import org.nuxeo.ecm.core.api.IdRef;
 import org.nuxeo.ecm.core.api.SortInfo;
 import org.nuxeo.ecm.core.query.QueryParseException;
 import org.nuxeo.ecm.core.query.sql.NXQL;
-import org.nuxeo.ecm.core.query.sql.SQLQueryParser;
 import org.nuxeo.ecm.core.query.sql.model.DefaultQueryVisitor;
 import org.nuxeo.ecm.core.query.sql.model.EsHint;
 import org.nuxeo.ecm.core.query.sql.model.Expression;
@@ -100,7 +98,8 @@ final public class NxqlQueryConverter {
 
     public static QueryBuilder toESQueryBuilder(final String nxql, final CoreSession session) {
         final LinkedList<ExpressionBuilder> builders = new LinkedList<>();
-        SQLQuery nxqlQuery = getSqlQuery(nxql);
+        NxqlQueryCache.Template template = getTemplate(nxql);
+        SQLQuery nxqlQuery = template.query;
         if (session != null) {
             nxqlQuery = addSecurityPolicy(session, nxqlQuery);
         }
@@ -159,7 +158,7 @@ final public class NxqlQueryConverter {
                     String name = ref != null ? ref.name : node.lvalue.toString();
                     String value = null;
                     if (node.rvalue instanceof Literal) {
-                        value = ((Literal) node.rvalue).asString();
+                        value = template.bind(((Literal) node.rvalue).asString());
                     } else if (node.rvalue != null) {
                         value = node.rvalue.toString();
                     }
@@ -169,7 +168,7 @@ final public class NxqlQueryConverter {
                         values = new Object[items.size()];
                         int i = 0;
                         for (Literal item : items) {
-                            values[i++] = item.asString();
+                            values[i++] = template.bind(item.asString());
                         }
                     }
                     // add expression to the last builder
@@ -187,18 +186,29 @@ final public class NxqlQueryConverter {
         return queryBuilder;
     }
 
-    protected static SQLQuery getSqlQuery(String nxql) {
+    /**
+     * Gets the parsed query, whose string literals must be bound using the returned template.
+     *
+     * @since 9.3
+     */
+    protected static NxqlQueryCache.Template getTemplate(String nxql) {
         String query = completeQueryWithSelect(nxql);
-        SQLQuery nxqlQuery;
         try {
-            nxqlQuery = SQLQueryParser.parse(new StringReader(query));
+            return NxqlQueryCache.getInstance().getTemplate(query);
         } catch (QueryParseException e) {
             if (log.isDebugEnabled()) {
                 log.debug(e.getMessage() + " for query:\n" + query);
             }
             throw e;
         }
-        return nxqlQuery;
+    }
+
+    /**
+     * Gets the parsed query, without its string literals which may be placeholders. Use it only for the parts of the
+     * query without literals.
+     */
+    protected static SQLQuery getSqlQuery(String nxql) {
+        return getTemplate(nxql).query;
     }
 
     protected static SQLQuery addSecurityPolicy(CoreSession session, SQLQuery query) {
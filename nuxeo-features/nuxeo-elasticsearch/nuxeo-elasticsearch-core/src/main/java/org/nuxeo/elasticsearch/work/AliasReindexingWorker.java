@@ -0,0 +1,262 @@
+/*
+ * (C) Copyright 2017 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Florent Guillaume
+ */
+package org.nuxeo.elasticsearch.work;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.nuxeo.elasticsearch.ElasticSearchConstants.REINDEX_BUCKET_READ_PROPERTY;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.nuxeo.ecm.core.api.NuxeoException;
+import org.nuxeo.ecm.core.query.sql.NXQL;
+import org.nuxeo.ecm.core.storage.kv.KeyValueService;
+import org.nuxeo.ecm.core.storage.kv.KeyValueStore;
+import org.nuxeo.ecm.core.work.api.Work;
+import org.nuxeo.elasticsearch.api.ElasticSearchAdmin;
+import org.nuxeo.elasticsearch.api.ElasticSearchIndexing;
+import org.nuxeo.elasticsearch.commands.IndexingCommand;
+import org.nuxeo.elasticsearch.core.IndexingChangeLog;
+import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.transaction.TransactionHelper;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+
+/**
+ * Worker to reindex a whole repository without downtime.
+ * <p>
+ * The documents are indexed into a new versioned index while searches and indexing keep using the current index of
+ * the repository. Meanwhile the ids of the documents indexed into the current index are recorded in a change log.
+ * Once all the documents are indexed, the change log is replayed on the new index, the repository index alias is
+ * switched to the new index, and the changes recorded during the switch are replayed.
+ * <p>
+ * The progress (last indexed document id and replayed log position) is checkpointed in a {@link KeyValueStore}, so
+ * that the job can be resumed after a restart when the store is persistent.
+ *
+ * @since 9.3
+ */
+public class AliasReindexingWorker extends BaseIndexingWorker implements Work {
+
+    private static final Log log = LogFactory.getLog(AliasReindexingWorker.class);
+
+    private static final long serialVersionUID = 1L;
+
+    private static final String DEFAULT_BUCKET_SIZE = "500";
+
+    /** How long the other nodes may take to notice that a reindexing started. */
+    protected static final long STATE_CACHE_MILLIS = 1000;
+
+    protected static final String CHANGE_LOG_CONSUMER = "reindex";
+
+    protected static final LoadingCache<String, Boolean> IN_PROGRESS = CacheBuilder.newBuilder()
+                                                                                   .expireAfterWrite(
+                                                                                           STATE_CACHE_MILLIS,
+                                                                                           TimeUnit.MILLISECONDS)
+                                                                                   .build(CacheLoader.from(
+                                                                                           AliasReindexingWorker::isInProgress));
+
+    protected long documentCount;
+
+    public AliasReindexingWorker(String repositoryName) {
+        this.repositoryName = repositoryName;
+    }
+
+    @Override
+    public String getTitle() {
+        return "Elasticsearch alias reindexing of repository: " + repositoryName + ", processed " + documentCount;
+    }
+
+    @Override
+    public boolean isIdempotent() {
+        // resuming from the checkpoint
+        return true;
+    }
+
+    protected static KeyValueStore getStore() {
+        KeyValueService keyValueService = Framework.getService(KeyValueService.class);
+        if (keyValueService == null) {
+            throw new NuxeoException("Missing KeyValueService");
+        }
+        return keyValueService.getKeyValueStore(IndexingChangeLog.STORE_NAME);
+    }
+
+    protected static String stateKey(String repositoryName, String name) {
+        return "esreindex:" + repositoryName + ':' + name;
+    }
+
+    protected static String getState(String repositoryName, String name) {
+        byte[] bytes = getStore().get(stateKey(repositoryName, name));
+        return bytes == null ? null : new String(bytes, UTF_8);
+    }
+
+    protected static void setState(String repositoryName, String name, String value) {
+        getStore().put(stateKey(repositoryName, name), value == null ? null : value.getBytes(UTF_8));
+    }
+
+    /**
+     * Checks if an alias reindexing of the repository is in progress.
+     */
+    public static boolean isInProgress(String repositoryName) {
+        return getState(repositoryName, "index") != null;
+    }
+
+    /**
+     * Checks if the changes on the repository must be recorded in its change log. The state is cached for a short
+     * time, as this is checked for every indexing command.
+     */
+    public static boolean isLoggingChanges(String repositoryName) {
+        return IN_PROGRESS.getUnchecked(repositoryName).booleanValue();
+    }
+
+    /**
+     * Gets the log of the changes done on the repository while it is reindexed.
+     */
+    public static IndexingChangeLog getChangeLog(String repositoryName) {
+        return new IndexingChangeLog("reindex-" + repositoryName);
+    }
+
+    @Override
+    protected void doWork() {
+        ElasticSearchAdmin esa = Framework.getService(ElasticSearchAdmin.class);
+        ElasticSearchIndexing esi = Framework.getService(ElasticSearchIndexing.class);
+        String indexName = getState(repositoryName, "index");
+        if (indexName == null) {
+            indexName = esa.createRepositoryIndexVersion(repositoryName);
+            setState(repositoryName, "index", indexName);
+            // let all the nodes start logging changes before reading the documents
+            try {
+                Thread.sleep(2 * STATE_CACHE_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new NuxeoException(e);
+            }
+            log.warn(String.format("Reindexing repository: %s into index: %s", repositoryName, indexName));
+        } else {
+            log.warn(String.format("Resuming reindexing of repository: %s into index: %s", repositoryName, indexName));
+        }
+        openSystemSession();
+        if (!indexDocuments(esi, indexName)) {
+            // suspended, resumed on next startup
+            return;
+        }
+        IndexingChangeLog changeLog = getChangeLog(repositoryName);
+        replayChanges(esi, changeLog, indexName);
+        esa.switchRepositoryIndexAlias(repositoryName, indexName);
+        // changes indexed into the previous index during the switch
+        replayChanges(esi, changeLog, indexName);
+        setState(repositoryName, "index", null);
+        setState(repositoryName, "checkpoint", null);
+        changeLog.clear(CHANGE_LOG_CONSUMER);
+        IN_PROGRESS.invalidate(repositoryName);
+        log.warn(String.format("Reindexing of repository: %s completed, %d documents indexed", repositoryName,
+                documentCount));
+    }
+
+    /**
+     * Indexes all the documents by increasing id, from the last checkpoint.
+     *
+     * @return {@code false} if the work was suspended
+     */
+    protected boolean indexDocuments(ElasticSearchIndexing esi, String indexName) {
+        int bucketSize = getBucketSize();
+        String checkpoint = getState(repositoryName, "checkpoint");
+        for (;;) {
+            String nxql = "SELECT ecm:uuid FROM Document, Relation WHERE ecm:uuid > "
+                    + NXQL.escapeString(checkpoint == null ? "" : checkpoint) + " ORDER BY ecm:uuid";
+            List<String> ids = new ArrayList<>(bucketSize);
+            for (Map<String, Serializable> map : session.queryProjection(nxql, bucketSize, 0)) {
+                ids.add((String) map.get(NXQL.ECM_UUID));
+            }
+            if (ids.isEmpty()) {
+                return true;
+            }
+            esi.indexNonRecursive(BucketIndexingWorker.getIndexingCommands(session, ids, indexName));
+            checkpoint = ids.get(ids.size() - 1);
+            setState(repositoryName, "checkpoint", checkpoint);
+            documentCount += ids.size();
+            TransactionHelper.commitOrRollbackTransaction();
+            TransactionHelper.startTransaction();
+            if (isSuspending()) {
+                log.warn(String.format("Reindexing of repository: %s suspended after document: %s", repositoryName,
+                        checkpoint));
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Indexes the current state of the documents recorded in the change log into the new index.
+     */
+    protected void replayChanges(ElasticSearchIndexing esi, IndexingChangeLog changeLog, String indexName) {
+        int bucketSize = getBucketSize();
+        long end = changeLog.getEnd();
+        long position = changeLog.getCommitted(CHANGE_LOG_CONSUMER);
+        while (position < end) {
+            List<String> entries = changeLog.read(position, bucketSize);
+            if (entries.isEmpty()) {
+                // next entry not written yet by a concurrent append, read it again
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new NuxeoException("Interrupted while replaying changes of repository: " + repositoryName);
+                }
+                continue;
+            }
+            long last = position + entries.size();
+            Set<String> ids = new LinkedHashSet<>();
+            for (String id : entries) {
+                if (id != null) {
+                    ids.add(id);
+                }
+            }
+            List<IndexingCommand> cmds = BucketIndexingWorker.getIndexingCommands(session, new ArrayList<>(ids),
+                    indexName);
+            for (IndexingCommand cmd : cmds) {
+                ids.remove(cmd.getTargetDocumentId());
+            }
+            // documents that no longer exist, with their descendants
+            for (String id : ids) {
+                IndexingCommand cmd = IndexingCommand.deleteCommand(repositoryName, id, true);
+                cmd.setIndexName(indexName);
+                cmds.add(cmd);
+            }
+            if (!cmds.isEmpty()) {
+                esi.indexNonRecursive(cmds);
+            }
+            position = last;
+            changeLog.setCommitted(CHANGE_LOG_CONSUMER, position);
+            TransactionHelper.commitOrRollbackTransaction();
+            TransactionHelper.startTransaction();
+            end = changeLog.getEnd();
+        }
+    }
+
+    protected int getBucketSize() {
+        String value = Framework.getProperty(REINDEX_BUCKET_READ_PROPERTY, DEFAULT_BUCKET_SIZE);
+        return Integer.parseInt(value);
+    }
+
+}
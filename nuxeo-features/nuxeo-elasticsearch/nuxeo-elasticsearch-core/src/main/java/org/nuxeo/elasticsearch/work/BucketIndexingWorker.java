@@ -19,27 +19,44 @@
 
 package org.nuxeo.elasticsearch.work;
 
+import static org.nuxeo.elasticsearch.ElasticSearchConstants.REINDEX_BUCKET_THREADS_PROPERTY;
 import static org.nuxeo.elasticsearch.ElasticSearchConstants.REINDEX_BUCKET_WRITE_PROPERTY;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.nuxeo.ecm.core.api.CoreInstance;
 import org.nuxeo.ecm.core.api.CoreSession;
 import org.nuxeo.ecm.core.api.DocumentLocation;
 import org.nuxeo.ecm.core.api.DocumentModel;
+import org.nuxeo.ecm.core.api.NuxeoException;
 import org.nuxeo.ecm.core.query.sql.NXQL;
 import org.nuxeo.ecm.core.work.api.Work;
+import org.nuxeo.elasticsearch.ElasticSearchComponent;
 import org.nuxeo.elasticsearch.api.ElasticSearchIndexing;
 import org.nuxeo.elasticsearch.commands.IndexingCommand;
 import org.nuxeo.elasticsearch.commands.IndexingCommand.Type;
 import org.nuxeo.elasticsearch.Timestamp;
 import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.metrics.MetricsService;
 import org.nuxeo.runtime.transaction.TransactionHelper;
 
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+import com.codahale.metrics.Timer;
+import com.codahale.metrics.Timer.Context;
+
 /**
  * œ Worker to index a bucket of documents
+ * <p>
+ * The documents of each write bucket are loaded with a single query and given to the indexing commands. Since 9.3,
+ * write buckets can be indexed in parallel (property {@code elasticsearch.reindex.bucketThreads}), each one in its own
+ * transaction and session, as documents cannot be serialized outside of the thread of their session.
  *
  * @since 7.1
  */
@@ -50,6 +67,8 @@ public class BucketIndexingWorker extends BaseIndexingWorker implements Work {
 
     private static final String DEFAULT_BUCKET_SIZE = "50";
 
+    private static final String DEFAULT_BUCKET_THREADS = "1";
+
     private final boolean warnAtEnd;
 
     private final int documentCount;
@@ -68,39 +87,95 @@ public class BucketIndexingWorker extends BaseIndexingWorker implements Work {
     @Override
     protected void doWork() {
         ElasticSearchIndexing esi = Framework.getLocalService(ElasticSearchIndexing.class);
-        openSystemSession();
         int bucketSize = Math.min(documentCount, getBucketSize());
+        List<List<String>> buckets = new ArrayList<>();
         List<String> ids = new ArrayList<>(bucketSize);
         for (DocumentLocation doc : getDocuments()) {
             ids.add(doc.getIdRef().value);
             if ((ids.size() % bucketSize) == 0) {
-                esi.indexNonRecursive(getIndexingCommands(session, ids));
-                ids.clear();
-                TransactionHelper.commitOrRollbackTransaction();
-                TransactionHelper.startTransaction();
+                buckets.add(ids);
+                ids = new ArrayList<>(bucketSize);
             }
         }
         if (!ids.isEmpty()) {
-            esi.indexNonRecursive(getIndexingCommands(session, ids));
-            ids.clear();
+            buckets.add(ids);
+        }
+        int threads = getBucketThreads();
+        if (threads <= 1 || buckets.size() <= 1) {
+            openSystemSession();
+            for (int i = 0; i < buckets.size(); i++) {
+                if (i > 0) {
+                    TransactionHelper.commitOrRollbackTransaction();
+                    TransactionHelper.startTransaction();
+                }
+                esi.indexNonRecursive(getIndexingCommands(session, buckets.get(i)));
+            }
+        } else {
+            indexInParallel(esi, buckets, threads);
         }
         if (warnAtEnd) {
             log.warn(String.format("Re-indexing job: %s completed.", getSchedulePath().getParentPath()));
         }
     }
 
+    /**
+     * Indexes the buckets on the pool of the Elasticsearch component, each one in its own transaction and session.
+     */
+    protected void indexInParallel(ElasticSearchIndexing esi, List<List<String>> buckets, int threads) {
+        ElasticSearchComponent component = (ElasticSearchComponent) Framework.getRuntime()
+                                                                             .getComponent(ElasticSearchComponent.NAME);
+        ExecutorService pool = component.getBucketIndexingExecutor(threads);
+        List<Future<?>> futures = new ArrayList<>(buckets.size());
+        for (List<String> bucket : buckets) {
+            futures.add(pool.submit(() -> TransactionHelper.runInTransaction(() -> {
+                try (CoreSession s = CoreInstance.openCoreSessionSystem(repositoryName, originatingUsername)) {
+                    esi.indexNonRecursive(getIndexingCommands(s, bucket));
+                }
+            })));
+        }
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            futures.forEach(future -> future.cancel(true));
+            throw new NuxeoException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new NuxeoException(cause);
+        }
+    }
+
     private List<IndexingCommand> getIndexingCommands(CoreSession session, List<String> ids) {
+        return getIndexingCommands(session, ids, null);
+    }
+
+    /**
+     * Loads the documents with a single query and creates their indexing commands.
+     *
+     * @param indexName the target index, or {@code null} for the index of the repository
+     * @since 9.3
+     */
+    protected static List<IndexingCommand> getIndexingCommands(CoreSession session, List<String> ids,
+            String indexName) {
         List<IndexingCommand> ret = new ArrayList<>(ids.size());
         long now = Timestamp.currentTimeMicros();
         for (DocumentModel doc : fetchDocuments(session, ids)) {
             IndexingCommand cmd = new IndexingCommand(doc, Type.INSERT, false, false);
             cmd.setOrder(now);
+            cmd.setIndexName(indexName);
+            // already loaded, don't fetch it again when indexing
+            cmd.setTargetDocument(doc);
             ret.add(cmd);
         }
         return ret;
     }
 
-    private List<DocumentModel> fetchDocuments(CoreSession session, List<String> ids) {
+    private static List<DocumentModel> fetchDocuments(CoreSession session, List<String> ids) {
         StringBuilder sb = new StringBuilder();
         sb.append("SELECT * FROM Document, Relation WHERE ecm:uuid IN (");
         for (int i = 0; i < ids.size(); i++) {
@@ -110,9 +185,18 @@ public class BucketIndexingWorker extends BaseIndexingWorker implements Work {
             }
         }
         sb.append(")");
-        // read invalidation
-        session.save();
-        return session.query(sb.toString());
+        MetricRegistry registry = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
+        Timer fetchTimer = registry.timer(MetricRegistry.name("nuxeo", "elasticsearch", "reindex", "fetch"));
+        try (Context ignored = fetchTimer.time()) {
+            // read invalidation
+            session.save();
+            return session.query(sb.toString());
+        }
+    }
+
+    protected int getBucketThreads() {
+        String value = Framework.getProperty(REINDEX_BUCKET_THREADS_PROPERTY, DEFAULT_BUCKET_THREADS);
+        return Integer.parseInt(value);
     }
 
     protected int getBucketSize() {
@@ -0,0 +1,362 @@
+/*
+ * (C) Copyright 2017 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Florent Guillaume
+ */
+package org.nuxeo.elasticsearch.work;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.nuxeo.elasticsearch.ElasticSearchConstants.CHANGE_LOG_ENABLED_PROPERTY;
+import static org.nuxeo.elasticsearch.ElasticSearchConstants.CHANGE_LOG_RETENTION_PROPERTY;
+import static org.nuxeo.elasticsearch.ElasticSearchConstants.REINDEX_BUCKET_READ_PROPERTY;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.elasticsearch.ExceptionsHelper;
+import org.elasticsearch.client.transport.NoNodeAvailableException;
+import org.elasticsearch.transport.ConnectTransportException;
+import org.nuxeo.ecm.core.api.NuxeoException;
+import org.nuxeo.ecm.core.storage.kv.KeyValueService;
+import org.nuxeo.ecm.core.storage.kv.KeyValueStore;
+import org.nuxeo.ecm.core.work.api.Work;
+import org.nuxeo.ecm.core.work.api.WorkManager;
+import org.nuxeo.ecm.core.work.api.WorkManager.Scheduling;
+import org.nuxeo.elasticsearch.api.ElasticSearchIndexing;
+import org.nuxeo.elasticsearch.commands.IndexingCommand;
+import org.nuxeo.elasticsearch.core.IndexingChangeLog;
+import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.metrics.MetricsService;
+import org.nuxeo.runtime.transaction.TransactionHelper;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+
+/**
+ * Worker catching up the indexing of a repository after an Elasticsearch outage.
+ * <p>
+ * When enabled, the committed indexing commands are recorded in a durable change log as (time, change, document id)
+ * entries. When an indexing work fails because Elasticsearch is unreachable, the outage start time is recorded, and
+ * once Elasticsearch is reachable again this worker indexes the current state of the documents changed since then,
+ * each document once per bucket. The consumed log position is committed after each bucket, so the catch-up resumes
+ * where it stopped after a new outage or a restart. The log is never consumed past an entry whose position has been
+ * allocated by a concurrent append but that is not written yet.
+ * <p>
+ * Without outage, the entries older than the retention delay are just dropped.
+ *
+ * @since 9.3
+ */
+public class ChangeLogIndexingWorker extends BaseIndexingWorker implements Work {
+
+    private static final Log log = LogFactory.getLog(ChangeLogIndexingWorker.class);
+
+    private static final long serialVersionUID = 1L;
+
+    private static final String DEFAULT_BUCKET_SIZE = "500";
+
+    private static final String DEFAULT_RETENTION_SECONDS = "3600";
+
+    /** The entries recorded shortly before the scheduling of the first failed work are replayed too. */
+    protected static final long OUTAGE_MARGIN_MS = 60_000;
+
+    /** The log is trimmed each time that many entries have been appended. */
+    protected static final long TRIM_INTERVAL = 1000;
+
+    /** How long a node may take to notice an outage recorded by another node. */
+    protected static final long STATE_CACHE_MILLIS = 1000;
+
+    protected static final String CHANGE_LOG_CONSUMER = "catchup";
+
+    protected static final String RECURSE_SUFFIX = "/r";
+
+    protected static final LoadingCache<String, Boolean> OUTAGES = CacheBuilder.newBuilder()
+                                                                               .expireAfterWrite(STATE_CACHE_MILLIS,
+                                                                                       TimeUnit.MILLISECONDS)
+                                                                               .build(CacheLoader.from(
+                                                                                       r -> getOutageTime(r) != null));
+
+    protected static final Meter REPLAYED = SharedMetricRegistries.getOrCreate(MetricsService.class.getName())
+                                                                  .meter(MetricRegistry.name("nuxeo",
+                                                                          "elasticsearch", "changeLog", "replayed"));
+
+    protected long replayedCount;
+
+    public ChangeLogIndexingWorker(String repositoryName) {
+        super("changeLogIndexing:" + repositoryName);
+        this.repositoryName = repositoryName;
+    }
+
+    @Override
+    public String getTitle() {
+        return "Elasticsearch catch-up indexing of repository: " + repositoryName + ", replayed " + replayedCount;
+    }
+
+    @Override
+    public boolean isIdempotent() {
+        // resuming from the committed position
+        return true;
+    }
+
+    /**
+     * Checks if the indexing commands are recorded in the change log.
+     */
+    public static boolean isEnabled() {
+        return Boolean.parseBoolean(Framework.getProperty(CHANGE_LOG_ENABLED_PROPERTY, "false"));
+    }
+
+    /**
+     * Gets the log of the indexing commands of the repository.
+     */
+    public static IndexingChangeLog getChangeLog(String repositoryName) {
+        return new IndexingChangeLog("changes-" + repositoryName);
+    }
+
+    protected static KeyValueStore getStore() {
+        KeyValueService keyValueService = Framework.getService(KeyValueService.class);
+        if (keyValueService == null) {
+            throw new NuxeoException("Missing KeyValueService");
+        }
+        return keyValueService.getKeyValueStore(IndexingChangeLog.STORE_NAME);
+    }
+
+    protected static String outageKey(String repositoryName) {
+        return "esoutage:" + repositoryName;
+    }
+
+    /**
+     * Records committed indexing commands in the change logs of their repositories.
+     */
+    public static void logCommands(List<IndexingCommand> cmds) {
+        long now = System.currentTimeMillis();
+        Map<String, List<String>> entries = new HashMap<>();
+        for (IndexingCommand cmd : cmds) {
+            String change = cmd.getType().name() + (cmd.isRecurse() ? RECURSE_SUFFIX : "");
+            entries.computeIfAbsent(cmd.getRepositoryName(), k -> new ArrayList<>())
+                   .add(now + " " + change + " " + cmd.getTargetDocumentId());
+        }
+        for (Map.Entry<String, List<String>> es : entries.entrySet()) {
+            String repositoryName = es.getKey();
+            long last = getChangeLog(repositoryName).append(es.getValue());
+            long first = last - es.getValue().size() + 1;
+            if (hasOutage(repositoryName) || (first - 1) / TRIM_INTERVAL != last / TRIM_INTERVAL) {
+                schedule(repositoryName);
+            }
+        }
+    }
+
+    /**
+     * Schedules the catch-up of the repository, unless it is already scheduled or running.
+     */
+    public static void schedule(String repositoryName) {
+        WorkManager wm = Framework.getService(WorkManager.class);
+        wm.schedule(new ChangeLogIndexingWorker(repositoryName), Scheduling.IF_NOT_RUNNING_OR_SCHEDULED);
+    }
+
+    /**
+     * Checks if an exception means that Elasticsearch is unreachable.
+     */
+    public static boolean isOutage(Throwable e) {
+        Throwable cause = ExceptionsHelper.unwrapCause(e);
+        return cause instanceof NoNodeAvailableException || cause instanceof ConnectTransportException;
+    }
+
+    /**
+     * Records that the changes done since the given time may not have been indexed.
+     */
+    public static void recordOutage(String repositoryName, long time) {
+        KeyValueStore store = getStore();
+        String key = outageKey(repositoryName);
+        for (;;) {
+            byte[] current = store.get(key);
+            if (current != null && Long.parseLong(new String(current, UTF_8)) <= time) {
+                break;
+            }
+            if (store.compareAndSet(key, current, String.valueOf(time).getBytes(UTF_8))) {
+                log.warn(String.format("Elasticsearch unreachable, changes on repository: %s will be replayed",
+                        repositoryName));
+                break;
+            }
+        }
+        OUTAGES.invalidate(repositoryName);
+    }
+
+    /**
+     * Gets the start time of the outage being caught up, or {@code null} if there is none.
+     */
+    public static Long getOutageTime(String repositoryName) {
+        byte[] bytes = getStore().get(outageKey(repositoryName));
+        return bytes == null ? null : Long.valueOf(new String(bytes, UTF_8));
+    }
+
+    /**
+     * Checks if the repository has changes to catch up. The state is cached for a short time, as this is checked on
+     * every commit.
+     */
+    public static boolean hasOutage(String repositoryName) {
+        return OUTAGES.getUnchecked(repositoryName).booleanValue();
+    }
+
+    /**
+     * Registers the gauges of the backlog of changes to replay and of the age of the oldest one.
+     */
+    public static void registerMetrics(String repositoryName) {
+        MetricRegistry registry = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
+        String backlog = MetricRegistry.name("nuxeo", "elasticsearch", "changeLog", repositoryName, "backlog");
+        registry.remove(backlog);
+        registry.register(backlog, (Gauge<Long>) () -> {
+            if (getOutageTime(repositoryName) == null) {
+                return 0L;
+            }
+            IndexingChangeLog changeLog = getChangeLog(repositoryName);
+            return changeLog.getEnd() - changeLog.getCommitted(CHANGE_LOG_CONSUMER);
+        });
+        String lag = MetricRegistry.name("nuxeo", "elasticsearch", "changeLog", repositoryName, "lag");
+        registry.remove(lag);
+        registry.register(lag, (Gauge<Long>) () -> {
+            Long since = getOutageTime(repositoryName);
+            if (since == null) {
+                return 0L;
+            }
+            IndexingChangeLog changeLog = getChangeLog(repositoryName);
+            String entry = changeLog.get(changeLog.getCommitted(CHANGE_LOG_CONSUMER) + 1);
+            long oldest = entry == null ? since : Math.max(since - OUTAGE_MARGIN_MS, getTime(entry));
+            return Math.max(0, System.currentTimeMillis() - oldest);
+        });
+    }
+
+    protected static long getTime(String entry) {
+        return Long.parseLong(entry.substring(0, entry.indexOf(' ')));
+    }
+
+    @Override
+    protected void doWork() {
+        KeyValueStore store = getStore();
+        byte[] outage = store.get(outageKey(repositoryName));
+        long since = outage == null ? -1 : Long.parseLong(new String(outage, UTF_8)) - OUTAGE_MARGIN_MS;
+        long retentionLimit = System.currentTimeMillis() - getRetentionMillis();
+        int bucketSize = getBucketSize();
+        ElasticSearchIndexing esi = Framework.getService(ElasticSearchIndexing.class);
+        IndexingChangeLog changeLog = getChangeLog(repositoryName);
+        long position = changeLog.getCommitted(CHANGE_LOG_CONSUMER);
+        while (position < changeLog.getEnd()) {
+            List<String> entries = changeLog.read(position, bucketSize);
+            if (entries.isEmpty()) {
+                // next entry not written yet by a concurrent append, never consumed past it
+                if (outage == null || isSuspending()) {
+                    // resumed by the next change
+                    return;
+                }
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new NuxeoException("Interrupted while catching up repository: " + repositoryName);
+                }
+                continue;
+            }
+            // document id -> recursive change
+            Map<String, Boolean> changes = new LinkedHashMap<>();
+            long consumed = position;
+            for (String entry : entries) {
+                if (entry != null) {
+                    long time = getTime(entry);
+                    if (since < 0 && time >= retentionLimit) {
+                        // kept in case its indexing work fails later
+                        break;
+                    }
+                    if (since >= 0 && time >= since) {
+                        String[] parts = entry.split(" ", 3);
+                        changes.merge(parts[2], Boolean.valueOf(parts[1].endsWith(RECURSE_SUFFIX)),
+                                Boolean::logicalOr);
+                    }
+                }
+                consumed++;
+            }
+            if (!changes.isEmpty()) {
+                replayChanges(esi, changes);
+            }
+            if (consumed > position) {
+                changeLog.setCommitted(CHANGE_LOG_CONSUMER, consumed);
+                changeLog.truncate(consumed);
+            }
+            TransactionHelper.commitOrRollbackTransaction();
+            TransactionHelper.startTransaction();
+            if (consumed < position + entries.size()) {
+                // retention delay reached
+                return;
+            }
+            position = consumed;
+            if (isSuspending()) {
+                // resumed by the next change
+                return;
+            }
+        }
+        if (outage != null && store.compareAndSet(outageKey(repositoryName), outage, null)) {
+            OUTAGES.invalidate(repositoryName);
+            log.warn(String.format("Catch-up indexing of repository: %s completed, %d changes replayed",
+                    repositoryName, replayedCount));
+        }
+    }
+
+    /**
+     * Indexes the current state of the changed documents, deleting the ones that no longer exist.
+     */
+    protected void replayChanges(ElasticSearchIndexing esi, Map<String, Boolean> changes) {
+        if (session == null) {
+            openSystemSession();
+        }
+        List<String> ids = new ArrayList<>(changes.keySet());
+        List<IndexingCommand> cmds = BucketIndexingWorker.getIndexingCommands(session, ids, null);
+        Set<String> missing = new HashSet<>(ids);
+        for (IndexingCommand cmd : cmds) {
+            missing.remove(cmd.getTargetDocumentId());
+        }
+        for (String id : missing) {
+            cmds.add(IndexingCommand.deleteCommand(repositoryName, id, true));
+        }
+        esi.indexNonRecursive(cmds);
+        for (Map.Entry<String, Boolean> change : changes.entrySet()) {
+            String id = change.getKey();
+            if (change.getValue().booleanValue() && !missing.contains(id)) {
+                esi.runReindexingWorker(repositoryName,
+                        String.format("SELECT ecm:uuid FROM Document WHERE ecm:ancestorId = '%s'", id));
+            }
+        }
+        replayedCount += changes.size();
+        REPLAYED.mark(changes.size());
+    }
+
+    protected int getBucketSize() {
+        String value = Framework.getProperty(REINDEX_BUCKET_READ_PROPERTY, DEFAULT_BUCKET_SIZE);
+        return Integer.parseInt(value);
+    }
+
+    protected long getRetentionMillis() {
+        String value = Framework.getProperty(CHANGE_LOG_RETENTION_PROPERTY, DEFAULT_RETENTION_SECONDS);
+        return TimeUnit.SECONDS.toMillis(Long.parseLong(value));
+    }
+
+}
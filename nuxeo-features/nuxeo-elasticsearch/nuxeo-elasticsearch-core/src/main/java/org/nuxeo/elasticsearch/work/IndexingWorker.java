@@ -27,8 +27,13 @@ import org.nuxeo.elasticsearch.api.ElasticSearchIndexing;
 import org.nuxeo.elasticsearch.commands.IndexingCommand;
 import org.nuxeo.elasticsearch.commands.IndexingCommand.Type;
 import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.metrics.MetricsService;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
 
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import static org.nuxeo.elasticsearch.ElasticSearchConstants.REINDEX_USING_CHILDREN_TRAVERSAL_PROPERTY;
 
@@ -66,11 +71,26 @@ public class IndexingWorker extends AbstractIndexingWorker implements Work {
 
     @Override
     protected void doIndexingWork(ElasticSearchIndexing esi, List<IndexingCommand> cmds) {
+        if (getSchedulingTime() > 0) {
+            // time spent waiting in the indexing queue
+            MetricRegistry registry = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
+            registry.timer(MetricRegistry.name("nuxeo", "elasticsearch", "indexing", "queueLag"))
+                    .update(System.currentTimeMillis() - getSchedulingTime(), TimeUnit.MILLISECONDS);
+        }
         long now = Timestamp.currentTimeMicros();
         for (IndexingCommand cmd : cmds) {
             cmd.setOrder(now);
         }
-        esi.indexNonRecursive(cmds);
+        try {
+            esi.indexNonRecursive(cmds);
+        } catch (RuntimeException e) {
+            if (ChangeLogIndexingWorker.isEnabled() && ChangeLogIndexingWorker.isOutage(e)) {
+                // the commands are replayed from the change log once Elasticsearch is back
+                long since = getSchedulingTime() > 0 ? getSchedulingTime() : System.currentTimeMillis();
+                ChangeLogIndexingWorker.recordOutage(repositoryName, since);
+            }
+            throw e;
+        }
         WorkManager wm = Framework.getLocalService(WorkManager.class);
         for (IndexingCommand cmd : cmds) {
             if (needRecurse(cmd)) {
@@ -0,0 +1,156 @@
+/*
+ * (C) Copyright 2017 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Florent Guillaume
+ */
+package org.nuxeo.elasticsearch.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.nuxeo.elasticsearch.ElasticSearchConstants.INDEX_BULK_MAX_IN_FLIGHT_PROPERTY;
+import static org.nuxeo.elasticsearch.ElasticSearchConstants.INDEX_BULK_TARGET_LATENCY_PROPERTY;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.nuxeo.elasticsearch.core.BulkIndexingController;
+import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.test.runner.Features;
+import org.nuxeo.runtime.test.runner.FeaturesRunner;
+import org.nuxeo.runtime.test.runner.RuntimeFeature;
+
+@RunWith(FeaturesRunner.class)
+@Features(RuntimeFeature.class)
+public class TestBulkIndexingController {
+
+    protected static final int MAX_BULK_SIZE = 1600;
+
+    protected BulkIndexingController controller;
+
+    @Before
+    public void setUp() {
+        Framework.getProperties().setProperty(INDEX_BULK_MAX_IN_FLIGHT_PROPERTY, "3");
+        Framework.getProperties().setProperty(INDEX_BULK_TARGET_LATENCY_PROPERTY, "1000");
+        controller = new BulkIndexingController();
+    }
+
+    @After
+    public void tearDown() {
+        Framework.getProperties().remove(INDEX_BULK_MAX_IN_FLIGHT_PROPERTY);
+        Framework.getProperties().remove(INDEX_BULK_TARGET_LATENCY_PROPERTY);
+    }
+
+    protected void send(long latencyMs, int rejected) {
+        controller.getBulkSize(MAX_BULK_SIZE);
+        controller.acquire();
+        controller.release(latencyMs, rejected);
+    }
+
+    protected void sendFailed() {
+        controller.getBulkSize(MAX_BULK_SIZE);
+        controller.acquire();
+        controller.releaseFailed();
+    }
+
+    @Test
+    public void testShrinkOnRejection() {
+        assertEquals(MAX_BULK_SIZE, controller.getBulkSize(MAX_BULK_SIZE));
+        assertEquals(3, controller.getMaxInFlight());
+
+        send(10, 5);
+        assertEquals(800, controller.getBulkSize(MAX_BULK_SIZE));
+        assertEquals(2, controller.getMaxInFlight());
+        assertEquals(0, controller.getInFlight());
+        assertTrue(controller.getBackPressureDelay(0) > 0);
+
+        // bounded below
+        for (int i = 0; i < 10; i++) {
+            send(10, 1);
+        }
+        assertEquals(MAX_BULK_SIZE / 16, controller.getBulkSize(MAX_BULK_SIZE));
+        assertEquals(1, controller.getMaxInFlight());
+    }
+
+    @Test
+    public void testShrinkWhenSlow() {
+        send(3000, 0);
+        assertEquals(1200, controller.getBulkSize(MAX_BULK_SIZE));
+        // concurrency unchanged
+        assertEquals(3, controller.getMaxInFlight());
+        // between half and full target latency, unchanged
+        send(700, 0);
+        assertEquals(1200, controller.getBulkSize(MAX_BULK_SIZE));
+    }
+
+    @Test
+    public void testGrowWhenFast() {
+        send(10, 1);
+        send(10, 1);
+        assertEquals(400, controller.getBulkSize(MAX_BULK_SIZE));
+        assertEquals(1, controller.getMaxInFlight());
+
+        send(10, 0);
+        assertEquals(450, controller.getBulkSize(MAX_BULK_SIZE));
+        assertEquals(2, controller.getMaxInFlight());
+        assertEquals(0, controller.getBackPressureDelay(0));
+
+        // bounded above
+        for (int i = 0; i < 50; i++) {
+            send(10, 0);
+        }
+        assertEquals(MAX_BULK_SIZE, controller.getBulkSize(MAX_BULK_SIZE));
+        assertEquals(3, controller.getMaxInFlight());
+    }
+
+    @Test
+    public void testShrinkOnFailure() {
+        // a bulk that could not be sent is not a fast success
+        sendFailed();
+        assertEquals(800, controller.getBulkSize(MAX_BULK_SIZE));
+        assertEquals(2, controller.getMaxInFlight());
+        assertEquals(0, controller.getInFlight());
+        // not a rejection, no back-pressure
+        assertEquals(0, controller.getBackPressureDelay(0));
+    }
+
+    @Test
+    public void testAcquireWaitsForRelease() throws Exception {
+        send(10, 1);
+        send(10, 1);
+        assertEquals(1, controller.getMaxInFlight());
+        controller.acquire();
+        CountDownLatch acquired = new CountDownLatch(1);
+        Thread thread = new Thread(() -> {
+            controller.acquire();
+            acquired.countDown();
+        });
+        thread.start();
+        try {
+            assertFalse(acquired.await(100, TimeUnit.MILLISECONDS));
+            controller.release(10, 0);
+            assertTrue(acquired.await(5, TimeUnit.SECONDS));
+            assertEquals(1, controller.getInFlight());
+        } finally {
+            thread.join();
+        }
+    }
+
+}
@@ -19,6 +19,7 @@
  */
 package org.nuxeo.elasticsearch.test;
 
+import java.util.Collections;
 import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
@@ -36,6 +37,7 @@ import org.nuxeo.ecm.core.work.api.WorkManager;
 import org.nuxeo.elasticsearch.api.ElasticSearchAdmin;
 import org.nuxeo.elasticsearch.api.ElasticSearchService;
 import org.nuxeo.elasticsearch.api.EsResult;
+import org.nuxeo.elasticsearch.io.SourceDocumentModel;
 import org.nuxeo.elasticsearch.query.NxQueryBuilder;
 import org.nuxeo.runtime.api.Framework;
 import org.nuxeo.runtime.test.runner.Features;
@@ -117,6 +119,24 @@ public class TestFetchDocumentsFromEs {
 
     }
 
+    /**
+     * @since 9.3
+     */
+    @Test
+    public void shouldLoadProjectedSchemasFromEs() throws Exception {
+        buildAndIndexTree();
+        DocumentModelList docs = ess.query(new NxQueryBuilder(session).nxql(
+                "select * from Document where dc:title = 'Folder3'").fetchFromElasticsearch(
+                        Collections.singleton("dublincore")));
+        Assert.assertEquals(1, docs.totalSize());
+        SourceDocumentModel doc = (SourceDocumentModel) docs.get(0);
+        Assert.assertEquals("Folder3", doc.getPropertyValue("dc:title"));
+        Assert.assertFalse(doc.isHydrated());
+        // schema not fetched from Elasticsearch
+        Assert.assertNull(doc.getPropertyValue("common:icon"));
+        Assert.assertTrue(doc.isHydrated());
+    }
+
     @Test
     public void checkNotFetch() throws Exception {
         buildAndIndexTree();
@@ -0,0 +1,113 @@
+/*
+ * (C) Copyright 2017 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Florent Guillaume
+ */
+package org.nuxeo.elasticsearch.test;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+import org.nuxeo.ecm.core.storage.kv.MemKeyValueStore;
+import org.nuxeo.elasticsearch.core.IndexingChangeLog;
+
+public class TestIndexingChangeLog {
+
+    /**
+     * Log whose positions can be allocated without writing their entry, as done by a concurrent append.
+     */
+    protected static class InterleavedChangeLog extends IndexingChangeLog {
+
+        public InterleavedChangeLog(long gapTimeoutMillis) {
+            super("test", new MemKeyValueStore());
+            this.gapTimeoutMillis = gapTimeoutMillis;
+        }
+
+        public InterleavedChangeLog(String name) {
+            super(name);
+        }
+
+        public long allocate() {
+            String endKey = key("end");
+            for (;;) {
+                byte[] current = store.get(endKey);
+                long position = toLong(current) + 1;
+                if (store.compareAndSet(endKey, current, toBytes(position))) {
+                    return position;
+                }
+            }
+        }
+
+        public void write(long position, String entry) {
+            store.put(key(String.valueOf(position)), entry.getBytes(UTF_8));
+        }
+    }
+
+    @Test
+    public void testReadStopsAtInterleavedAppend() {
+        InterleavedChangeLog changeLog = new InterleavedChangeLog(Long.MAX_VALUE);
+        changeLog.append("a");
+        long position = changeLog.allocate();
+        changeLog.append("c");
+        assertEquals(3, changeLog.getEnd());
+
+        // never past the entry not written yet
+        assertEquals(Arrays.asList("a"), changeLog.read(0, 10));
+        assertEquals(Collections.emptyList(), changeLog.read(1, 10));
+
+        changeLog.write(position, "b");
+        assertEquals(Arrays.asList("b", "c"), changeLog.read(1, 10));
+        assertEquals(Arrays.asList("a", "b"), changeLog.read(0, 2));
+        assertEquals(Collections.emptyList(), changeLog.read(3, 10));
+    }
+
+    @Test
+    public void testReadWaitsForInterleavedAppend() throws Exception {
+        InterleavedChangeLog changeLog = new InterleavedChangeLog(Long.MAX_VALUE);
+        long position = changeLog.allocate();
+        Thread thread = new Thread(() -> {
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            changeLog.write(position, "a");
+        });
+        thread.start();
+        try {
+            assertEquals(Arrays.asList("a"), changeLog.read(0, 10));
+        } finally {
+            thread.join();
+        }
+    }
+
+    @Test
+    public void testReadSkipsLostEntry() {
+        InterleavedChangeLog changeLog = new InterleavedChangeLog(0);
+        changeLog.allocate(); // never written
+        changeLog.append("b");
+
+        // first found missing
+        assertEquals(Collections.emptyList(), changeLog.read(0, 10));
+        // still missing after the timeout
+        assertEquals(Arrays.asList(null, "b"), changeLog.read(0, 10));
+    }
+
+}
@@ -26,7 +26,9 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
@@ -45,6 +47,7 @@ import org.nuxeo.ecm.core.api.CoreSession;
 import org.nuxeo.ecm.core.api.DocumentModel;
 import org.nuxeo.ecm.core.api.impl.DocumentModelImpl;
 import org.nuxeo.ecm.core.work.api.WorkManager;
+import org.nuxeo.ecm.platform.query.api.PageCursor;
 import org.nuxeo.ecm.platform.query.api.PageProvider;
 import org.nuxeo.ecm.platform.query.api.PageProviderDefinition;
 import org.nuxeo.ecm.platform.query.api.PageProviderService;
@@ -735,6 +738,134 @@ public class TestPageProvider {
         Assert.assertFalse(pp.isLastPageAvailable());
     }
 
+    @Test
+    public void testCursorPagination() throws Exception {
+        PageProviderService pps = Framework.getService(PageProviderService.class);
+        PageProviderDefinition ppdef = pps.getPageProviderDefinition("NXQL_PP_PATTERN");
+        HashMap<String, Serializable> props = new HashMap<>();
+        props.put(ElasticSearchNativePageProvider.CORE_SESSION_PROPERTY, (Serializable) session);
+        long pageSize = 3;
+        // create 10 docs, with duplicate titles and a missing one
+        startTransaction();
+        for (int i = 0; i < 10; i++) {
+            DocumentModel doc = session.createDocumentModel("/", "testDoc" + i, "File");
+            if (i != 4) {
+                doc.setPropertyValue("dc:title", "TestMe" + i / 3);
+            }
+            doc = session.createDocument(doc);
+        }
+        TransactionHelper.commitOrRollbackTransaction();
+        waitForCompletion();
+        startTransaction();
+
+        // walk the pages sorted by title desc, beyond the max result window
+        List<DocumentModel> docs = new ArrayList<>();
+        String cursor = PageProvider.FIRST_PAGE_CURSOR;
+        int pages = 0;
+        while (cursor != null) {
+            ElasticSearchNxqlPageProvider pp = (ElasticSearchNxqlPageProvider) pps.getPageProvider("NXQL_PP_PATTERN",
+                    ppdef, null, null, pageSize, (long) 0, props);
+            pp.setMaxResultWindow(4);
+            pp.setCurrentPageCursor(cursor);
+            List<DocumentModel> p = pp.getCurrentPage();
+            Assert.assertFalse(pp.hasError());
+            Assert.assertEquals(10, pp.getResultsCount());
+            Assert.assertEquals(pages * pageSize, pp.getCurrentPageOffset());
+            docs.addAll(p);
+            cursor = pp.getNextPageCursor();
+            Assert.assertEquals(cursor != null, pp.isNextPageAvailable());
+            pages++;
+        }
+        Assert.assertEquals(4, pages);
+        // missing values last
+        List<String> expected = Arrays.asList("TestMe3", "TestMe2", "TestMe2", "TestMe2", "TestMe1", "TestMe1",
+                "TestMe0", "TestMe0", "TestMe0", null);
+        List<String> titles = new ArrayList<>();
+        Set<String> ids = new HashSet<>();
+        for (DocumentModel doc : docs) {
+            titles.add((String) doc.getPropertyValue("dc:title"));
+            ids.add(doc.getId());
+        }
+        Assert.assertEquals(expected, titles);
+        Assert.assertEquals(10, ids.size());
+
+        // the offset is used when sorting by score
+        ElasticSearchNxqlPageProvider pp = (ElasticSearchNxqlPageProvider) pps.getPageProvider("NXQL_PP_PATTERN",
+                ppdef, null, null, pageSize, (long) 0, props);
+        pp.setSortInfo("ecm:fulltextScore", false, true);
+        pp.setCurrentPageCursor(PageProvider.FIRST_PAGE_CURSOR);
+        Assert.assertEquals(pageSize, pp.getCurrentPage().size());
+        cursor = pp.getNextPageCursor();
+        Assert.assertNotNull(cursor);
+        pp.setCurrentPageCursor(cursor);
+        Assert.assertEquals(pageSize, pp.getCurrentPageOffset());
+        Assert.assertEquals(pageSize, pp.getCurrentPage().size());
+
+        try {
+            pp.setCurrentPageCursor("foo");
+            Assert.fail("Invalid cursor should fail");
+        } catch (IllegalArgumentException e) {
+            // ok
+        }
+    }
+
+    @Test
+    public void testCursorPaginationOnMultiValuedSort() throws Exception {
+        PageProviderService pps = Framework.getService(PageProviderService.class);
+        PageProviderDefinition ppdef = pps.getPageProviderDefinition("NXQL_PP_PATTERN");
+        HashMap<String, Serializable> props = new HashMap<>();
+        props.put(ElasticSearchNativePageProvider.CORE_SESSION_PROPERTY, (Serializable) session);
+        long pageSize = 3;
+        // create 10 docs, the values of each doc are spread over the values of the others
+        startTransaction();
+        for (int i = 0; i < 10; i++) {
+            DocumentModel doc = session.createDocumentModel("/", "testDoc" + i, "File");
+            doc.setPropertyValue("dc:subjects", new String[] { "a" + i, "b" + (9 - i) });
+            doc = session.createDocument(doc);
+        }
+        TransactionHelper.commitOrRollbackTransaction();
+        waitForCompletion();
+        startTransaction();
+
+        // walk the pages sorted by subjects desc, using offset cursors
+        Set<String> ids = new HashSet<>();
+        String cursor = PageProvider.FIRST_PAGE_CURSOR;
+        int pages = 0;
+        while (cursor != null) {
+            ElasticSearchNxqlPageProvider pp = (ElasticSearchNxqlPageProvider) pps.getPageProvider("NXQL_PP_PATTERN",
+                    ppdef, null, null, pageSize, (long) 0, props);
+            pp.setSortInfo("dc:subjects", false, true);
+            pp.setCurrentPageCursor(cursor);
+            List<DocumentModel> p = pp.getCurrentPage();
+            Assert.assertFalse(pp.hasError());
+            Assert.assertEquals(10, pp.getResultsCount());
+            Assert.assertEquals(pages * pageSize, pp.getCurrentPageOffset());
+            for (DocumentModel doc : p) {
+                Assert.assertTrue("Duplicate hit " + doc.getName(), ids.add(doc.getId()));
+            }
+            cursor = pp.getNextPageCursor();
+            if (cursor != null) {
+                Assert.assertNull(PageCursor.decode(cursor).getSortValues());
+            }
+            pages++;
+        }
+        Assert.assertEquals(4, pages);
+        Assert.assertEquals(10, ids.size());
+
+        // changing the sort resets the cursor pagination
+        ElasticSearchNxqlPageProvider pp = (ElasticSearchNxqlPageProvider) pps.getPageProvider("NXQL_PP_PATTERN",
+                ppdef, null, null, pageSize, (long) 0, props);
+        pp.setSortInfo("dc:subjects", false, true);
+        pp.setCurrentPageCursor(PageProvider.FIRST_PAGE_CURSOR);
+        Assert.assertNotNull(pp.getNextPageCursor());
+        pp.setSortInfo("dc:subjects", true, true);
+        Assert.assertNull(pp.getNextPageCursor());
+        pp.setCurrentPageCursor(PageProvider.FIRST_PAGE_CURSOR);
+        Assert.assertNotNull(pp.getNextPageCursor());
+        pp.setPageSize(5);
+        Assert.assertNull(pp.getNextPageCursor());
+    }
+
     protected void assertEqualsEvenUnderWindows(String expected, String actual) {
         if (SystemUtils.IS_OS_WINDOWS) {
             // make tests pass under Windows
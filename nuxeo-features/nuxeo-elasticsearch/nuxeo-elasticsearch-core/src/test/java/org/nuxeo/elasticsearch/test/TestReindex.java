@@ -49,6 +49,9 @@ import org.nuxeo.elasticsearch.api.ElasticSearchIndexing;
 import org.nuxeo.elasticsearch.api.ElasticSearchService;
 import org.nuxeo.elasticsearch.listener.ElasticSearchInlineListener;
 import org.nuxeo.elasticsearch.query.NxQueryBuilder;
+import org.nuxeo.elasticsearch.test.TestIndexingChangeLog.InterleavedChangeLog;
+import org.nuxeo.elasticsearch.work.AliasReindexingWorker;
+import org.nuxeo.elasticsearch.work.ChangeLogIndexingWorker;
 import org.nuxeo.runtime.api.Framework;
 import org.nuxeo.runtime.test.runner.Deploy;
 import org.nuxeo.runtime.test.runner.Features;
@@ -57,7 +60,10 @@ import org.nuxeo.runtime.test.runner.LocalDeploy;
 import org.nuxeo.runtime.test.runner.LogCaptureFeature;
 import org.nuxeo.runtime.transaction.TransactionHelper;
 
+import static org.nuxeo.elasticsearch.ElasticSearchConstants.CHANGE_LOG_ENABLED_PROPERTY;
 import static org.nuxeo.elasticsearch.ElasticSearchConstants.INDEX_BULK_MAX_SIZE_PROPERTY;
+import static org.nuxeo.elasticsearch.ElasticSearchConstants.REINDEX_BUCKET_THREADS_PROPERTY;
+import static org.nuxeo.elasticsearch.ElasticSearchConstants.REINDEX_BUCKET_WRITE_PROPERTY;
 
 /**
  * Test "on the fly" indexing via the listener system
@@ -232,6 +238,131 @@ public class TestReindex {
         }
     }
 
+    @Test
+    public void shouldReindexDocumentWithParallelBuckets() throws Exception {
+        try {
+            System.setProperty(REINDEX_BUCKET_WRITE_PROPERTY, "3");
+            System.setProperty(REINDEX_BUCKET_THREADS_PROPERTY, "4");
+            shouldReindexDocument();
+        } finally {
+            System.clearProperty(REINDEX_BUCKET_WRITE_PROPERTY);
+            System.clearProperty(REINDEX_BUCKET_THREADS_PROPERTY);
+        }
+    }
+
+    @Test
+    public void shouldReindexRepositoryWithAliasSwap() throws Exception {
+        buildDocs();
+        startTransaction();
+
+        String nxql = "SELECT * FROM Document, Relation order by ecm:uuid";
+        DocumentModelList coreDocs = session.query(nxql);
+        String repositoryName = session.getRepositoryName();
+        Assert.assertFalse(AliasReindexingWorker.isInProgress(repositoryName));
+        esi.runAliasReindexingWorker(repositoryName);
+        waitForCompletion();
+        Assert.assertFalse(AliasReindexingWorker.isInProgress(repositoryName));
+
+        // searches now go through the alias to the new index
+        DocumentModelList docs = ess.query(new NxQueryBuilder(session).nxql(nxql).limit(100));
+        Assert.assertEquals(getDigest(coreDocs), getDigest(docs));
+
+        // indexing goes to the new index too
+        DocumentModel doc = session.createDocumentModel("/", "afterSwap", "File");
+        session.createDocument(doc);
+        TransactionHelper.commitOrRollbackTransaction();
+        waitForCompletion();
+        startTransaction();
+        docs = ess.query(new NxQueryBuilder(session).nxql("SELECT * FROM Document WHERE ecm:name = 'afterSwap'"));
+        Assert.assertEquals(1, docs.totalSize());
+    }
+
+    @Test
+    public void shouldCatchUpIndexingFromChangeLog() throws Exception {
+        String repositoryName = session.getRepositoryName();
+        try {
+            System.setProperty(CHANGE_LOG_ENABLED_PROPERTY, "true");
+            long start = System.currentTimeMillis();
+            buildDocs();
+            startTransaction();
+            String nxql = "SELECT * FROM Document order by ecm:uuid";
+            DocumentModelList coreDocs = session.query(nxql);
+
+            // indexing lost during an outage
+            esa.initIndexes(true);
+            esa.refresh();
+            Assert.assertEquals(0, ess.query(new NxQueryBuilder(session).nxql(nxql)).totalSize());
+            ChangeLogIndexingWorker.recordOutage(repositoryName, start);
+            Assert.assertTrue(ChangeLogIndexingWorker.getChangeLog(repositoryName).getEnd() > 0);
+
+            TransactionHelper.commitOrRollbackTransaction();
+            ChangeLogIndexingWorker.schedule(repositoryName);
+            waitForCompletion();
+            startTransaction();
+            Assert.assertNull(ChangeLogIndexingWorker.getOutageTime(repositoryName));
+            DocumentModelList docs = ess.query(new NxQueryBuilder(session).nxql(nxql).limit(100));
+            Assert.assertEquals(getDigest(coreDocs), getDigest(docs));
+        } finally {
+            System.clearProperty(CHANGE_LOG_ENABLED_PROPERTY);
+            ChangeLogIndexingWorker.getChangeLog(repositoryName).clear("catchup");
+        }
+    }
+
+    @Test
+    public void shouldNotCatchUpPastChangeLogEntryNotWritten() throws Exception {
+        String repositoryName = session.getRepositoryName();
+        InterleavedChangeLog changeLog = new InterleavedChangeLog("changes-" + repositoryName);
+        try {
+            startTransaction();
+            DocumentModel doc = session.createDocumentModel("/", "lateDoc", "File");
+            doc = session.createDocument(doc);
+            session.save();
+            TransactionHelper.commitOrRollbackTransaction();
+            waitForCompletion();
+
+            // old entries are trimmed, but not past a position allocated by a concurrent append
+            changeLog.append("0 INSERT a");
+            long position = changeLog.allocate();
+            changeLog.append("0 INSERT c");
+            ChangeLogIndexingWorker.schedule(repositoryName);
+            waitForCompletion();
+            Assert.assertEquals(1, changeLog.getCommitted("catchup"));
+            Assert.assertEquals("0 INSERT c", changeLog.get(3));
+            changeLog.write(position, "0 INSERT b");
+            ChangeLogIndexingWorker.schedule(repositoryName);
+            waitForCompletion();
+            Assert.assertEquals(3, changeLog.getCommitted("catchup"));
+
+            // indexing lost during an outage, the catch-up waits for the entry written late
+            esa.initIndexes(true);
+            esa.refresh();
+            long now = System.currentTimeMillis();
+            ChangeLogIndexingWorker.recordOutage(repositoryName, now);
+            long latePosition = changeLog.allocate();
+            String id = doc.getId();
+            Thread thread = new Thread(() -> {
+                try {
+                    Thread.sleep(500);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                changeLog.write(latePosition, now + " INSERT " + id);
+            });
+            thread.start();
+            ChangeLogIndexingWorker.schedule(repositoryName);
+            thread.join();
+            waitForCompletion();
+            startTransaction();
+            Assert.assertNull(ChangeLogIndexingWorker.getOutageTime(repositoryName));
+            Assert.assertEquals(latePosition, changeLog.getCommitted("catchup"));
+            DocumentModelList docs = ess.query(
+                    new NxQueryBuilder(session).nxql("SELECT * FROM Document WHERE ecm:name = 'lateDoc'"));
+            Assert.assertEquals(1, docs.totalSize());
+        } finally {
+            changeLog.clear("catchup");
+        }
+    }
+
     protected void hideWarningFromConsoleLog() {
         Logger rootLogger = Logger.getRootLogger();
         ConsoleAppender consoleAppender = (ConsoleAppender) rootLogger.getAppender("CONSOLE");
@@ -66,11 +66,16 @@ import org.nuxeo.elasticsearch.provider.ElasticSearchNativePageProvider;
 import org.nuxeo.elasticsearch.query.NxQueryBuilder;
 import org.nuxeo.elasticsearch.test.RepositoryElasticSearchFeature;
 import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.metrics.MetricsService;
 import org.nuxeo.runtime.test.runner.Features;
 import org.nuxeo.runtime.test.runner.FeaturesRunner;
 import org.nuxeo.runtime.test.runner.LocalDeploy;
 import org.nuxeo.runtime.transaction.TransactionHelper;
 
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+
 @RunWith(FeaturesRunner.class)
 @Features({ RepositoryElasticSearchFeature.class })
 @LocalDeploy({ "org.nuxeo.elasticsearch.core:pageprovider-test-contrib.xml",
@@ -686,6 +691,49 @@ public class TestAggregates {
         // pp.getAggregates().get("created_histo").toString());
     }
 
+    @Test
+    public void testPageProviderCachedAggregates() throws Exception {
+        buildDocs();
+
+        PageProviderService pps = Framework.getService(PageProviderService.class);
+        PageProviderDefinition ppdef = pps.getPageProviderDefinition("aggregates_1");
+        DocumentModel model = new DocumentModelImpl("/", "doc", "AdvancedSearch");
+        String[] sources = { "Source1", "Source2" };
+        model.setProperty("advanced_search", "source_agg", sources);
+        HashMap<String, Serializable> props = new HashMap<>();
+        props.put(ElasticSearchNativePageProvider.CORE_SESSION_PROPERTY, (Serializable) session);
+        PageProvider<?> pp = pps.getPageProvider("aggregates_1", ppdef, model, null, null, (long) 0, props);
+        String expected = pp.getAggregates().get("coverage").toString();
+
+        Counter hits = SharedMetricRegistries.getOrCreate(MetricsService.class.getName()).counter(
+                MetricRegistry.name("nuxeo", "elasticsearch", "aggregate", "cache", "hit"));
+        long hitCount = hits.getCount();
+        pp.refresh();
+        Assert.assertEquals(7, pp.getAggregates().size());
+        Assert.assertEquals(2, pp.getResultsCount());
+        Assert.assertEquals(expected, pp.getAggregates().get("coverage").toString());
+        Assert.assertEquals(hitCount + 1, hits.getCount());
+
+        // indexing is not visible until the next refresh, the cache is still used
+        DocumentModel doc = session.createDocumentModel("/", "doc10", "File");
+        doc.setPropertyValue("dc:source", "Source10");
+        session.createDocument(doc);
+        TransactionHelper.commitOrRollbackTransaction();
+        Assert.assertTrue(Framework.getService(WorkManager.class).awaitCompletion(60, TimeUnit.SECONDS));
+        TransactionHelper.startTransaction();
+        pp.refresh();
+        Assert.assertEquals(expected, pp.getAggregates().get("coverage").toString());
+        Assert.assertEquals(hitCount + 2, hits.getCount());
+
+        // refreshing the index invalidates the cache
+        esa.refresh();
+        pp.refresh();
+        Assert.assertEquals(expected, pp.getAggregates().get("coverage").toString());
+        Assert.assertEquals(hitCount + 2, hits.getCount());
+        pp.refresh();
+        Assert.assertEquals(hitCount + 3, hits.getCount());
+    }
+
     @Test
     public void testPageProviderWithRangeSelection() throws Exception {
         buildDocs();
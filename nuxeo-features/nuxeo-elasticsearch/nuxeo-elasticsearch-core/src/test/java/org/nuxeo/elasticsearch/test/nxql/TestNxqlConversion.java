@@ -211,6 +211,23 @@ public class TestNxqlConversion {
                 "}", es);
     }
 
+    @Test
+    public void testConverterCachedTemplate() throws Exception {
+        // same shape, the second conversion reuses the parsed template with other literals
+        String es = NxqlQueryConverter.toESQueryBuilder("select * from Document where f1 = 'foo' AND f2 IN ('a', 'b')")
+                                      .toString();
+        Assert.assertTrue(es, es.contains("\"f1\" : \"foo\""));
+        Assert.assertTrue(es, es.contains("\"f2\" : [ \"a\", \"b\" ]"));
+        es = NxqlQueryConverter.toESQueryBuilder("select * from Document where f1 = \"it's\" AND f2 IN ('c\\'d', 'e')")
+                               .toString();
+        Assert.assertTrue(es, es.contains("\"f1\" : \"it's\""));
+        Assert.assertTrue(es, es.contains("\"f2\" : [ \"c'd\", \"e\" ]"));
+        // date literals are part of the shape
+        es = NxqlQueryConverter.toESQueryBuilder("select * from Document where dc:created > DATE '2017-01-02'")
+                               .toString();
+        Assert.assertTrue(es, es.contains("2017-01-02"));
+    }
+
     @Test
     public void testConverterEQUALS() throws Exception {
         String es = NxqlQueryConverter.toESQueryBuilder("select * from Document where f1=1").toString();
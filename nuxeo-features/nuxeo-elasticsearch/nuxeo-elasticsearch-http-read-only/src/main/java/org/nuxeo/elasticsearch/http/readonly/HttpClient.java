@@ -19,27 +19,66 @@
 package org.nuxeo.elasticsearch.http.readonly;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
 
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.StreamingOutput;
 
 import org.apache.http.HttpEntity;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
 import org.apache.http.entity.ContentType;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
 import org.apache.http.util.EntityUtils;
+import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.metrics.MetricsService;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+import com.codahale.metrics.Timer;
 
 /**
  * Http client that handle GET request with a body.
+ * <p>
+ * Since 9.3 the requests share a pool of keep-alive connections, and responses can be streamed directly to the
+ * caller without being buffered in memory.
  *
  * @since 7.3
  */
 public class HttpClient {
     private final static String UTF8_CHARSET = "UTF-8";
 
+    /** @since 9.3 */
+    public static final String MAX_CONNECTIONS_PROPERTY = "elasticsearch.httpReadOnly.maxConnections";
+
+    /** @since 9.3 */
+    public static final String DEFAULT_MAX_CONNECTIONS = "50";
+
+    /** @since 9.3 */
+    public static final String IDLE_TIMEOUT_PROPERTY = "elasticsearch.httpReadOnly.idleTimeoutSeconds";
+
+    /** @since 9.3 */
+    public static final String DEFAULT_IDLE_TIMEOUT = "60";
+
+    private static volatile CloseableHttpClient client;
+
+    private static volatile PoolingHttpClientConnectionManager connectionManager;
+
+    private static final String[] GAUGES = { "leased", "available", "pending", "max" };
+
+    private static final MetricRegistry registry = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
+
+    private static final Timer requestTimer = registry.timer(
+            MetricRegistry.name("nuxeo", "elasticsearch", "httpReadOnly", "requests"));
+
     private static class HttpGetWithEntity extends HttpPost {
         public final static String METHOD_NAME = "GET";
 
@@ -53,27 +92,133 @@ public class HttpClient {
         }
     }
 
-    public static String get(String url) throws IOException {
-        CloseableHttpClient client = HttpClients.createDefault();
-        HttpGet httpget = new HttpGet(url);
-        try (CloseableHttpResponse response = client.execute(httpget)) {
-            HttpEntity entity = response.getEntity();
-            return entity != null ? EntityUtils.toString(entity) : null;
+    /**
+     * Gets the shared client, creating its connection pool if needed.
+     *
+     * @since 9.3
+     */
+    protected static CloseableHttpClient getClient() {
+        if (client == null) {
+            synchronized (HttpClient.class) {
+                if (client == null) {
+                    int maxConnections = Integer.parseInt(
+                            Framework.getProperty(MAX_CONNECTIONS_PROPERTY, DEFAULT_MAX_CONNECTIONS));
+                    long idleTimeout = Long.parseLong(Framework.getProperty(IDLE_TIMEOUT_PROPERTY, DEFAULT_IDLE_TIMEOUT));
+                    connectionManager = new PoolingHttpClientConnectionManager();
+                    connectionManager.setMaxTotal(maxConnections);
+                    // usually a single Elasticsearch route
+                    connectionManager.setDefaultMaxPerRoute(maxConnections);
+                    registerGauges(connectionManager);
+                    client = HttpClients.custom()
+                                        .setConnectionManager(connectionManager)
+                                        .evictExpiredConnections()
+                                        .evictIdleConnections(idleTimeout, TimeUnit.SECONDS)
+                                        .build();
+                }
+            }
         }
+        return client;
     }
 
-    public static String get(String url, String payload) throws IOException {
+    protected static void registerGauges(PoolingHttpClientConnectionManager cm) {
+        registerGauge("leased", () -> Integer.valueOf(cm.getTotalStats().getLeased()));
+        registerGauge("available", () -> Integer.valueOf(cm.getTotalStats().getAvailable()));
+        registerGauge("pending", () -> Integer.valueOf(cm.getTotalStats().getPending()));
+        registerGauge("max", () -> Integer.valueOf(cm.getTotalStats().getMax()));
+    }
+
+    protected static void registerGauge(String name, Gauge<Integer> gauge) {
+        String gaugeName = getGaugeName(name);
+        // a previous pool may have registered it
+        registry.remove(gaugeName);
+        registry.register(gaugeName, gauge);
+    }
+
+    protected static String getGaugeName(String name) {
+        return MetricRegistry.name("nuxeo", "elasticsearch", "httpReadOnly", "connections", name);
+    }
+
+    /**
+     * Gets the statistics of the connection pool, all zero if the pool is not open.
+     *
+     * @since 9.3
+     */
+    public static PoolStats getPoolStats() {
+        PoolingHttpClientConnectionManager cm = connectionManager;
+        if (cm == null) {
+            // not yet used, or closed
+            return new PoolStats(0, 0, 0, 0);
+        }
+        return cm.getTotalStats();
+    }
+
+    /**
+     * Closes the shared client and its connections.
+     *
+     * @since 9.3
+     */
+    public static void close() throws IOException {
+        synchronized (HttpClient.class) {
+            if (client != null) {
+                client.close();
+                client = null;
+                connectionManager = null;
+                for (String name : GAUGES) {
+                    registry.remove(getGaugeName(name));
+                }
+            }
+        }
+    }
+
+    protected static HttpRequestBase newRequest(String url, String payload) {
         if (payload == null) {
-            return get(url);
+            return new HttpGet(url);
         }
-        CloseableHttpClient client = HttpClients.createDefault();
         HttpGetWithEntity e = new HttpGetWithEntity(url);
         StringEntity myEntity = new StringEntity(payload, ContentType.create(MediaType.APPLICATION_FORM_URLENCODED,
                 UTF8_CHARSET));
         e.setEntity(myEntity);
-        try (CloseableHttpResponse response = client.execute(e)) {
+        return e;
+    }
+
+    public static String get(String url) throws IOException {
+        return get(url, null);
+    }
+
+    public static String get(String url, String payload) throws IOException {
+        try (Timer.Context context = requestTimer.time();
+                CloseableHttpResponse response = getClient().execute(newRequest(url, payload))) {
             HttpEntity entity = response.getEntity();
             return entity != null ? EntityUtils.toString(entity) : null;
         }
     }
+
+    /**
+     * Returns an output that executes the request when written, copying the response body as it is received. The
+     * connection is released to the pool once the body has been written.
+     *
+     * @since 9.3
+     */
+    public static StreamingOutput stream(String url) {
+        return stream(url, null);
+    }
+
+    /**
+     * Returns an output that executes the request when written, copying the response body as it is received. The
+     * connection is released to the pool once the body has been written.
+     *
+     * @since 9.3
+     */
+    public static StreamingOutput stream(String url, String payload) {
+        return (OutputStream output) -> {
+            try (Timer.Context context = requestTimer.time();
+                    CloseableHttpResponse response = getClient().execute(newRequest(url, payload))) {
+                HttpEntity entity = response.getEntity();
+                if (entity != null) {
+                    // consumes the entity, so that the connection can be reused
+                    entity.writeTo(output);
+                }
+            }
+        };
+    }
 }
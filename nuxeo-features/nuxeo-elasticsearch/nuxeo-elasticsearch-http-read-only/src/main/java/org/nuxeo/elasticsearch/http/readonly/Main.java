@@ -31,6 +31,7 @@ import javax.ws.rs.Produces;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriInfo;
 
 import org.apache.commons.logging.Log;
@@ -71,7 +72,7 @@ public class Main extends ModuleRoot {
     @Path("_search")
     @Consumes(MediaType.APPLICATION_FORM_URLENCODED)
     @Produces(MediaType.APPLICATION_JSON)
-    public String searchWithPayload(@Context UriInfo uriInf, MultivaluedMap<String, String> formParams)
+    public StreamingOutput searchWithPayload(@Context UriInfo uriInf, MultivaluedMap<String, String> formParams)
             throws IOException, JSONException {
         return doSearchWithPayload("_all", "_all", uriInf.getRequestUri().getRawQuery(),
                 formParams.keySet().iterator().next());
@@ -81,7 +82,7 @@ public class Main extends ModuleRoot {
     @Path("_search")
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces(MediaType.APPLICATION_JSON)
-    public String searchWithPost(@Context UriInfo uriInf, String payload) throws IOException, JSONException {
+    public StreamingOutput searchWithPost(@Context UriInfo uriInf, String payload) throws IOException, JSONException {
         return doSearchWithPayload("_all", "_all", uriInf.getRequestUri().getRawQuery(), payload);
     }
 
@@ -89,7 +90,7 @@ public class Main extends ModuleRoot {
     @Path("{indices}/_search")
     @Consumes(MediaType.APPLICATION_FORM_URLENCODED)
     @Produces(MediaType.APPLICATION_JSON)
-    public String searchWithPayload(@PathParam("indices") String indices, @Context UriInfo uriInf,
+    public StreamingOutput searchWithPayload(@PathParam("indices") String indices, @Context UriInfo uriInf,
             MultivaluedMap<String, String> formParams) throws IOException, JSONException {
         return doSearchWithPayload(indices, "_all", uriInf.getRequestUri().getRawQuery(),
                 formParams.keySet().iterator().next());
@@ -99,7 +100,7 @@ public class Main extends ModuleRoot {
     @Path("{indices}/_search")
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces(MediaType.APPLICATION_JSON)
-    public String searchWithPost(@PathParam("indices") String indices, @Context UriInfo uriInf, String payload)
+    public StreamingOutput searchWithPost(@PathParam("indices") String indices, @Context UriInfo uriInf, String payload)
             throws IOException, JSONException {
         return doSearchWithPayload(indices, "_all", uriInf.getRequestUri().getRawQuery(), payload);
     }
@@ -108,7 +109,7 @@ public class Main extends ModuleRoot {
     @Path("{indices}/{types}/_search")
     @Consumes(MediaType.APPLICATION_FORM_URLENCODED)
     @Produces(MediaType.APPLICATION_JSON)
-    public String searchWithPayload(@PathParam("indices") String indices, @PathParam("types") String types,
+    public StreamingOutput searchWithPayload(@PathParam("indices") String indices, @PathParam("types") String types,
             @Context UriInfo uriInf, MultivaluedMap<String, String> formParams) throws IOException, JSONException {
         return doSearchWithPayload(indices, types, uriInf.getRequestUri().getRawQuery(),
                 formParams.keySet().iterator().next());
@@ -118,12 +119,12 @@ public class Main extends ModuleRoot {
     @Path("{indices}/{types}/_search")
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces(MediaType.APPLICATION_JSON)
-    public String searchWithPost(@PathParam("indices") String indices, @PathParam("types") String types,
+    public StreamingOutput searchWithPost(@PathParam("indices") String indices, @PathParam("types") String types,
             @Context UriInfo uriInf, String payload) throws IOException, JSONException {
         return doSearchWithPayload(indices, types, uriInf.getRequestUri().getRawQuery(), payload);
     }
 
-    protected String doSearchWithPayload(String indices, String types, String rawQuery, String payload)
+    protected StreamingOutput doSearchWithPayload(String indices, String types, String rawQuery, String payload)
             throws IOException, JSONException {
         RequestFilterService requestFilterService = Framework.getService(RequestFilterService.class);
         try {
@@ -133,7 +134,7 @@ public class Main extends ModuleRoot {
             }
             req.init(getContext().getCoreSession(), indices, types, rawQuery, payload);
             log.debug(req);
-            return HttpClient.get(getElasticsearchBaseUrl() + req.getUrl(), req.getPayload());
+            return HttpClient.stream(getElasticsearchBaseUrl() + req.getUrl(), req.getPayload());
         } catch (InstantiationException | IllegalAccessException e) {
             log.error("Error when trying to get Search Request Filter for indice " + indices, e);
             return null;
@@ -143,19 +144,19 @@ public class Main extends ModuleRoot {
     @GET
     @Path("{indices}/{types}/_search")
     @Produces(MediaType.APPLICATION_JSON)
-    public String searchWithUri(@PathParam("indices") String indices, @PathParam("types") String types, @Context UriInfo uriInf)
+    public StreamingOutput searchWithUri(@PathParam("indices") String indices, @PathParam("types") String types, @Context UriInfo uriInf)
             throws IOException, JSONException {
         DefaultSearchRequestFilter req = new DefaultSearchRequestFilter();
         req.init(getContext().getCoreSession(), indices, types,
                 uriInf.getRequestUri().getRawQuery(), null);
         log.debug(req);
-        return HttpClient.get(getElasticsearchBaseUrl() + req.getUrl(), req.getPayload());
+        return HttpClient.stream(getElasticsearchBaseUrl() + req.getUrl(), req.getPayload());
     }
 
     @GET
     @Path("{indices}/{types}/{documentId: [a-zA-Z0-9\\-]+}")
     @Produces(MediaType.APPLICATION_JSON)
-    public String getDocument(@PathParam("indices") String indices, @PathParam("types") String types,
+    public StreamingOutput getDocument(@PathParam("indices") String indices, @PathParam("types") String types,
             @PathParam("documentId") String documentId, @Context UriInfo uriInf) throws IOException, JSONException {
         NuxeoPrincipal principal = getPrincipal();
         RequestValidator validator = new RequestValidator();
@@ -169,7 +170,7 @@ public class Main extends ModuleRoot {
             String docAcl = HttpClient.get(getElasticsearchBaseUrl() + req.getCheckAccessUrl());
             validator.checkAccess(principal, docAcl);
         }
-        return HttpClient.get(getElasticsearchBaseUrl() + req.getUrl());
+        return HttpClient.stream(getElasticsearchBaseUrl() + req.getUrl());
     }
 
     protected String getElasticsearchBaseUrl() {
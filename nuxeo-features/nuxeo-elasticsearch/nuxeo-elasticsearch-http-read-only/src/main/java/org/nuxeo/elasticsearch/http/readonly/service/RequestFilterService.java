@@ -20,11 +20,13 @@
 
 package org.nuxeo.elasticsearch.http.readonly.service;
 
+import java.io.IOException;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.nuxeo.elasticsearch.http.readonly.HttpClient;
 import org.nuxeo.elasticsearch.http.readonly.filter.SearchRequestFilter;
 import org.nuxeo.runtime.model.ComponentContext;
 import org.nuxeo.runtime.model.ComponentInstance;
@@ -54,6 +56,11 @@ public class RequestFilterService extends DefaultComponent {
     public void deactivate(ComponentContext context) {
         requestFilters.clear();
         requestFilters = null;
+        try {
+            HttpClient.close();
+        } catch (IOException e) {
+            log.error("Cannot close Elasticsearch HTTP client", e);
+        }
     }
 
     public Map<String, Class> getRequestFilters() {
@@ -0,0 +1,79 @@
+/*
+ * (C) Copyright 2017 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Florent Guillaume
+ */
+package org.nuxeo.elasticsearch.http.readonly;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.pool.PoolStats;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.nuxeo.runtime.metrics.MetricsService;
+import org.nuxeo.runtime.test.runner.Features;
+import org.nuxeo.runtime.test.runner.FeaturesRunner;
+import org.nuxeo.runtime.test.runner.RuntimeFeature;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+
+@RunWith(FeaturesRunner.class)
+@Features(RuntimeFeature.class)
+public class TestHttpClient {
+
+    protected static final String MAX_GAUGE = "nuxeo.elasticsearch.httpReadOnly.connections.max";
+
+    @After
+    public void tearDown() throws Exception {
+        HttpClient.close();
+    }
+
+    @Test
+    public void testPoolStats() throws Exception {
+        MetricRegistry registry = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
+        HttpClient.close();
+        assertEquals(0, HttpClient.getPoolStats().getMax());
+
+        CloseableHttpClient client = HttpClient.getClient();
+        PoolStats stats = HttpClient.getPoolStats();
+        assertEquals(Integer.parseInt(HttpClient.DEFAULT_MAX_CONNECTIONS), stats.getMax());
+        assertEquals(0, stats.getLeased());
+        assertEquals(0, stats.getPending());
+        assertTrue(registry.getGauges().containsKey(MAX_GAUGE));
+        assertEquals(Integer.valueOf(stats.getMax()), registry.getGauges().get(MAX_GAUGE).getValue());
+
+        // stats of a closed pool are all zero
+        HttpClient.close();
+        stats = HttpClient.getPoolStats();
+        assertEquals(0, stats.getMax());
+        assertEquals(0, stats.getLeased());
+        assertEquals(0, stats.getAvailable());
+        assertEquals(0, stats.getPending());
+        assertFalse(registry.getGauges().containsKey(MAX_GAUGE));
+
+        // closing twice is fine, and the pool is reopened on use
+        HttpClient.close();
+        assertNotSame(client, HttpClient.getClient());
+        assertEquals(Integer.parseInt(HttpClient.DEFAULT_MAX_CONNECTIONS), HttpClient.getPoolStats().getMax());
+    }
+
+}
@@ -38,6 +38,7 @@ import org.nuxeo.runtime.metrics.MetricsService;
 
 import com.codahale.metrics.Counter;
 import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.SharedMetricRegistries;
 
@@ -62,6 +63,8 @@ public class DefaultAuditBulker implements AuditBulkerMBean, AuditBulker {
 
     final Counter drainedCount = registry.counter(MetricRegistry.name("nuxeo", "audit", "drained"));
 
+    final Meter throughputMeter = registry.meter(MetricRegistry.name("nuxeo", "audit", "throughput"));
+
     int timeout;
 
     int bulksize;
@@ -83,11 +86,14 @@ public class DefaultAuditBulker implements AuditBulkerMBean, AuditBulker {
             publisher.registerResource("audit-bulker", "audit-bulker", AuditBulkerMBean.class, this);
         }
         registry.register(MetricRegistry.name("nuxeo", "audit", "size"), sizeGauge);
+        registry.remove(MetricRegistry.name("nuxeo", "audit", "lag"));
+        registry.register(MetricRegistry.name("nuxeo", "audit", "lag"), (Gauge<Long>) this::getLag);
     }
 
     @Override
     public void onApplicationStopped() {
         registry.remove(MetricRegistry.name("nuxeo", "audit", "size"));
+        registry.remove(MetricRegistry.name("nuxeo", "audit", "lag"));
         ResourcePublisher publisher = Framework.getService(ResourcePublisher.class);
         if (publisher != null) {
             publisher.unregisterResource("audit-bulker", "audit-bulker");
@@ -150,6 +156,7 @@ public class DefaultAuditBulker implements AuditBulkerMBean, AuditBulker {
         int delta = entries.size();
         size.addAndGet(-delta);
         drainedCount.inc(delta);
+        throughputMeter.mark(delta);
         return delta;
     }
 
@@ -207,4 +214,18 @@ public class DefaultAuditBulker implements AuditBulkerMBean, AuditBulker {
         queuedCount.dec(queuedCount.getCount());
         drainedCount.dec(drainedCount.getCount());
     }
+
+    @Override
+    public double getThroughput() {
+        return throughputMeter.getOneMinuteRate();
+    }
+
+    @Override
+    public long getLag() {
+        LogEntry oldest = queue.peek();
+        if (oldest == null || oldest.getEventDate() == null) {
+            return 0;
+        }
+        return Math.max(0, System.currentTimeMillis() - oldest.getEventDate().getTime());
+    }
 }
@@ -24,4 +24,18 @@ public interface AuditBulkerMBean {
     void setBulkSize(int value);
 
     void resetMetrics();
+
+    /**
+     * Gets the one-minute rate of entries drained to the backend, in entries per second.
+     *
+     * @since 9.3
+     */
+    double getThroughput();
+
+    /**
+     * Gets the age of the oldest entry waiting in the queue, in milliseconds.
+     *
+     * @since 9.3
+     */
+    long getLag();
 }
@@ -185,10 +185,8 @@ public class BatchUploadObject extends AbstractResource<ResourceTypeImpl> {
                 mimeType = blob.getMimeType();
             }
             uploadedSize = blob.getLength();
-            try (InputStream is = blob.getStream()) {
-                addStream(uploadType, batchId, fileIdx, is, fileName, mimeType, uploadedSize, chunkCount,
-                        uploadChunkIndex, fileSize);
-            }
+            addBlob(uploadType, batchId, fileIdx, blob, fileName, mimeType, uploadedSize, chunkCount,
+                    uploadChunkIndex, fileSize);
         } else {
             if (fileName != null) {
                 fileName = URLDecoder.decode(fileName, "UTF-8");
@@ -246,6 +244,30 @@ public class BatchUploadObject extends AbstractResource<ResourceTypeImpl> {
         }
     }
 
+    /**
+     * Adds a blob already spooled to a file, without copying it.
+     *
+     * @since 9.3
+     */
+    protected void addBlob(String uploadType, String batchId, String fileIdx, Blob blob, String fileName,
+            String mimeType, long uploadedSize, int chunkCount, int uploadChunkIndex, long fileSize)
+            throws IOException {
+        String uploadedSizeDisplay = uploadedSize > -1 ? uploadedSize + "b" : "unknown size";
+        if (UPLOAD_TYPE_CHUNKED.equals(uploadType)) {
+            if (log.isDebugEnabled()) {
+                log.debug(String.format("Uploading chunk [index=%d / total=%d] (%s) for file %s", uploadChunkIndex,
+                        chunkCount, uploadedSizeDisplay, fileName));
+            }
+            Framework.getService(BatchManager.class).addBlob(batchId, fileIdx, blob, chunkCount, uploadChunkIndex,
+                    fileName, mimeType, fileSize);
+        } else {
+            if (log.isDebugEnabled()) {
+                log.debug(String.format("Uploading file %s (%s)", fileName, uploadedSizeDisplay));
+            }
+            Framework.getService(BatchManager.class).addBlob(batchId, fileIdx, blob, fileName, mimeType);
+        }
+    }
+
     @GET
     @Path("{batchId}")
     public Response getBatchInfo(@PathParam(REQUEST_BATCH_ID) String batchId) throws IOException {
@@ -33,6 +33,7 @@ import org.nuxeo.ecm.platform.query.api.PageProvider;
 import org.nuxeo.ecm.platform.query.api.PageProviderDefinition;
 import org.nuxeo.ecm.platform.query.api.PageProviderService;
 import org.nuxeo.ecm.platform.query.nxql.CoreQueryDocumentPageProvider;
+import org.nuxeo.ecm.webengine.model.exceptions.IllegalParameterException;
 import org.nuxeo.ecm.webengine.model.impl.DefaultObject;
 import org.nuxeo.runtime.api.Framework;
 
@@ -51,6 +52,13 @@ public abstract class PaginableObject<T> extends DefaultObject {
 
     protected String maxResults;
 
+    /**
+     * Opaque cursor of the requested page, {@code *} for the first page, replacing the page index.
+     *
+     * @since 9.3
+     */
+    protected String cursor;
+
     @Override
     protected void initialize(Object... args) {
         super.initialize(args);
@@ -59,6 +67,7 @@ public abstract class PaginableObject<T> extends DefaultObject {
         currentPageIndex = extractLongParam(request, "currentPageIndex", 0L);
         pageSize = extractLongParam(request, "pageSize", 50L);
         maxResults = request.getParameter("maxResults");
+        cursor = request.getParameter("cursor");
     }
 
     protected abstract PageProviderDefinition getPageProviderDefinition();
@@ -82,8 +91,16 @@ public abstract class PaginableObject<T> extends DefaultObject {
         Map<String, Serializable> props = new HashMap<String, Serializable>();
         props.put(CoreQueryDocumentPageProvider.CORE_SESSION_PROPERTY, (Serializable) ctx.getCoreSession());
 
-        return getPaginableEntries((PageProvider<T>) pps.getPageProvider("", ppDefinition, getSearchDocument(), null,
-                pageSize, currentPageIndex, props, getParams()));
+        PageProvider<T> pp = (PageProvider<T>) pps.getPageProvider("", ppDefinition, getSearchDocument(), null,
+                pageSize, currentPageIndex, props, getParams());
+        if (cursor != null) {
+            try {
+                pp.setCurrentPageCursor(cursor);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalParameterException(e.getMessage());
+            }
+        }
+        return getPaginableEntries(pp);
     }
 
     protected Paginable<T> getPaginableEntries(PageProvider<T> pageProvider) {
@@ -74,6 +74,13 @@ public class QueryObject extends AbstractResource<ResourceTypeImpl> {
 
     public static final String CURRENT_PAGE_INDEX = "currentPageIndex";
 
+    /**
+     * Opaque cursor of the requested page, {@code *} for the first page, replacing the page index.
+     *
+     * @since 9.3
+     */
+    public static final String CURSOR = "cursor";
+
     public static final String MAX_RESULTS = "maxResults";
 
     public static final String SORT_BY = "sortBy";
@@ -106,6 +113,7 @@ public class QueryObject extends AbstractResource<ResourceTypeImpl> {
         queryParametersMap = new EnumMap<>(QueryParams.class);
         queryParametersMap.put(QueryParams.PAGE_SIZE, PAGE_SIZE);
         queryParametersMap.put(QueryParams.CURRENT_PAGE_INDEX, CURRENT_PAGE_INDEX);
+        queryParametersMap.put(QueryParams.CURSOR, CURSOR);
         queryParametersMap.put(QueryParams.MAX_RESULTS, MAX_RESULTS);
         queryParametersMap.put(QueryParams.SORT_BY, SORT_BY);
         queryParametersMap.put(QueryParams.SORT_ORDER, SORT_ORDER);
@@ -129,6 +137,7 @@ public class QueryObject extends AbstractResource<ResourceTypeImpl> {
         String query = queryParams.getFirst(QUERY);
         String pageSize = queryParams.getFirst(PAGE_SIZE);
         String currentPageIndex = queryParams.getFirst(CURRENT_PAGE_INDEX);
+        String cursor = queryParams.getFirst(CURSOR);
         String maxResults = queryParams.getFirst(MAX_RESULTS);
         String sortBy = queryParams.getFirst(SORT_BY);
         String sortOrder = queryParams.getFirst(SORT_ORDER);
@@ -208,7 +217,7 @@ public class QueryObject extends AbstractResource<ResourceTypeImpl> {
             }
         }
 
-        PaginableDocumentModelListImpl res;
+        PageProvider<DocumentModel> pp;
         if (query != null) {
             PageProviderDefinition ppdefinition = pageProviderService.getPageProviderDefinition(
                     SearchAdapter.pageProviderName);
@@ -221,10 +230,8 @@ public class QueryObject extends AbstractResource<ResourceTypeImpl> {
                 providerName = SearchAdapter.pageProviderName;
             }
 
-            res = new PaginableDocumentModelListImpl(
-                    (PageProvider<DocumentModel>) pageProviderService.getPageProvider(providerName, ppdefinition,
-                            searchDocumentModel, sortInfoList, targetPageSize, targetPage, props, parameters),
-                    null);
+            pp = (PageProvider<DocumentModel>) pageProviderService.getPageProvider(providerName, ppdefinition,
+                    searchDocumentModel, sortInfoList, targetPageSize, targetPage, props, parameters);
         } else {
             PageProviderDefinition pageProviderDefinition = pageProviderService.getPageProviderDefinition(providerName);
             // Quick filters management
@@ -241,11 +248,19 @@ public class QueryObject extends AbstractResource<ResourceTypeImpl> {
                     }
                 }
             }
-            res = new PaginableDocumentModelListImpl(
-                    (PageProvider<DocumentModel>) pageProviderService.getPageProvider(providerName, searchDocumentModel,
-                            sortInfoList, targetPageSize, targetPage, props, quickFilterList, parameters),
-                    null);
+            pp = (PageProvider<DocumentModel>) pageProviderService.getPageProvider(providerName, searchDocumentModel,
+                    sortInfoList, targetPageSize, targetPage, props, quickFilterList, parameters);
+        }
+        if (cursor != null) {
+            try {
+                pp.setCurrentPageCursor(cursor);
+            } catch (IllegalArgumentException e) {
+                RestOperationException err = new RestOperationException(e.getMessage());
+                err.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                throw err;
+            }
         }
+        PaginableDocumentModelListImpl res = new PaginableDocumentModelListImpl(pp, null);
         if (res.hasError()) {
             RestOperationException err = new RestOperationException(res.getErrorMessage());
             err.setStatus(HttpServletResponse.SC_BAD_REQUEST);
@@ -320,7 +335,7 @@ public class QueryObject extends AbstractResource<ResourceTypeImpl> {
     }
 
     public enum QueryParams {
-        PAGE_SIZE, CURRENT_PAGE_INDEX, MAX_RESULTS, SORT_BY, SORT_ORDER, ORDERED_PARAMS, QUERY, QUICK_FILTERS
+        PAGE_SIZE, CURRENT_PAGE_INDEX, CURSOR, MAX_RESULTS, SORT_BY, SORT_ORDER, ORDERED_PARAMS, QUERY, QUICK_FILTERS
     }
 
     public enum LangParams {
@@ -35,6 +35,7 @@ import org.nuxeo.ecm.platform.query.api.PageProvider;
 import org.nuxeo.ecm.platform.query.api.PageProviderDefinition;
 import org.nuxeo.ecm.platform.query.api.PageProviderService;
 import org.nuxeo.ecm.platform.query.nxql.CoreQueryDocumentPageProvider;
+import org.nuxeo.ecm.webengine.model.exceptions.IllegalParameterException;
 import org.nuxeo.ecm.webengine.model.impl.DefaultAdapter;
 import org.nuxeo.runtime.api.Framework;
 
@@ -81,6 +82,13 @@ public abstract class PaginableAdapter<T> extends DefaultAdapter {
      */
     protected String sortOrder;
 
+    /**
+     * Opaque cursor of the requested page, {@code *} for the first page, replacing the page index.
+     *
+     * @since 9.3
+     */
+    protected String cursor;
+
     @Override
     protected void initialize(Object... args) {
         super.initialize(args);
@@ -91,6 +99,7 @@ public abstract class PaginableAdapter<T> extends DefaultAdapter {
         maxResults = request.getParameter("maxResults");
         sortBy = request.getParameter("sortBy");
         sortOrder = request.getParameter("sortOrder");
+        cursor = request.getParameter("cursor");
     }
 
     @Override
@@ -141,6 +150,13 @@ public abstract class PaginableAdapter<T> extends DefaultAdapter {
                 }
             }
         }
+        if (cursor != null) {
+            try {
+                pp.setCurrentPageCursor(cursor);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalParameterException(e.getMessage());
+            }
+        }
         return getPaginableEntries(pp);
     }
 
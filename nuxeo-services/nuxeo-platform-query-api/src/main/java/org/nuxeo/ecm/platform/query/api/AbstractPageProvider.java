@@ -122,6 +122,14 @@ public abstract class AbstractPageProvider<T> implements PageProvider<T> {
 
     protected List<String> highlights;
 
+    /**
+     * Whether the current page was set from a cursor, so that a cursor to the next page is returned. Reset when the
+     * query, sort or page size changes, as the position of a cursor is only valid for them.
+     *
+     * @since 9.3
+     */
+    protected boolean cursorPagination;
+
     protected String errorMessage;
 
     protected Throwable error;
@@ -243,6 +251,30 @@ public abstract class AbstractPageProvider<T> implements PageProvider<T> {
         pageChanged();
     }
 
+    /**
+     * @since 9.3
+     */
+    @Override
+    public void setCurrentPageCursor(String cursor) {
+        long offset = FIRST_PAGE_CURSOR.equals(cursor) ? 0 : PageCursor.decode(cursor).getOffset();
+        cursorPagination = true;
+        setCurrentPageOffset(offset);
+        pageChanged();
+    }
+
+    /**
+     * Returns a cursor holding the offset of the next page.
+     *
+     * @since 9.3
+     */
+    @Override
+    public String getNextPageCursor() {
+        if (!cursorPagination || !isNextPageAvailable()) {
+            return null;
+        }
+        return new PageCursor(getCurrentPageOffset() + getPageSize()).encode();
+    }
+
     @Override
     public List<T> setCurrentPage(long page) {
         setCurrentPageIndex(page);
@@ -332,6 +364,7 @@ public abstract class AbstractPageProvider<T> implements PageProvider<T> {
     @Override
     public void setQuickFilters(List<QuickFilter> quickFilters) {
         this.quickFilters = quickFilters;
+        cursorPagination = false;
     }
 
     @Override
@@ -350,6 +383,7 @@ public abstract class AbstractPageProvider<T> implements PageProvider<T> {
             quickFilters = new ArrayList<>();
         }
         quickFilters.add(quickFilter);
+        cursorPagination = false;
     }
 
     @Override
@@ -403,6 +437,8 @@ public abstract class AbstractPageProvider<T> implements PageProvider<T> {
             setSortInfo(sortInfo);
         } else {
             sortInfos.add(sortInfo);
+            // the list is changed in place, so it is not detected as changed
+            cursorPagination = false;
             setSortInfos(sortInfos);
         }
     }
@@ -516,6 +552,7 @@ public abstract class AbstractPageProvider<T> implements PageProvider<T> {
         currentSelectPage = null;
         errorMessage = null;
         error = null;
+        cursorPagination = false;
         notifyRefresh();
 
     }
@@ -755,6 +792,7 @@ public abstract class AbstractPageProvider<T> implements PageProvider<T> {
     @Override
     public void setParameters(Object[] parameters) {
         this.parameters = parameters;
+        cursorPagination = false;
     }
 
     @Override
@@ -803,6 +841,7 @@ public abstract class AbstractPageProvider<T> implements PageProvider<T> {
     @Override
     public void setDefinition(PageProviderDefinition providerDefinition) {
         this.definition = providerDefinition;
+        cursorPagination = false;
     }
 
     @Override
@@ -813,6 +852,7 @@ public abstract class AbstractPageProvider<T> implements PageProvider<T> {
     @Override
     public void setMaxPageSize(long maxPageSize) {
         this.maxPageSize = maxPageSize;
+        cursorPagination = false;
     }
 
     /**
@@ -22,12 +22,14 @@
 package org.nuxeo.ecm.webengine.forms;
 
 import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -36,6 +38,7 @@ import javax.servlet.http.HttpServletRequest;
 import org.apache.commons.fileupload.FileItem;
 import org.apache.commons.fileupload.FileUploadException;
 import org.apache.commons.fileupload.RequestContext;
+import org.apache.commons.fileupload.disk.DiskFileItem;
 import org.apache.commons.fileupload.disk.DiskFileItemFactory;
 import org.apache.commons.fileupload.servlet.ServletFileUpload;
 import org.apache.commons.fileupload.servlet.ServletRequestContext;
@@ -45,6 +48,7 @@ import org.nuxeo.ecm.core.api.Blobs;
 import org.nuxeo.ecm.core.api.DocumentModel;
 import org.nuxeo.ecm.core.api.PropertyException;
 import org.nuxeo.ecm.core.api.VersioningOption;
+import org.nuxeo.ecm.core.api.impl.blob.FileBlob;
 import org.nuxeo.ecm.core.api.model.Property;
 import org.nuxeo.ecm.core.api.model.impl.primitives.BlobProperty;
 import org.nuxeo.ecm.core.schema.types.ListType;
@@ -54,6 +58,7 @@ import org.nuxeo.ecm.webengine.forms.validation.Form;
 import org.nuxeo.ecm.webengine.forms.validation.FormManager;
 import org.nuxeo.ecm.webengine.forms.validation.ValidationException;
 import org.nuxeo.ecm.webengine.servlet.WebConst;
+import org.nuxeo.runtime.api.Framework;
 
 /**
  * @author <a href="mailto:bs@nuxeo.com">Bogdan Stefanescu</a>
@@ -83,6 +88,9 @@ public class FormData implements FormInstance {
     // Multipart items cache
     protected Map<String, List<FileItem>> items;
 
+    // Blobs whose file has been taken over from their item, which can no longer be read
+    protected final Map<FileItem, Blob> takenOver = new IdentityHashMap<>();
+
     // parameter map cache - used in Multipart forms to convert to
     // ServletRequest#getParameterMap
     // format
@@ -97,6 +105,14 @@ public class FormData implements FormInstance {
     }
 
     protected String getString(FileItem item) {
+        Blob blob = takenOver.get(item);
+        if (blob != null) {
+            try {
+                return blob.getString();
+            } catch (IOException e) {
+                throw WebException.wrap("Failed to get blob data", e);
+            }
+        }
         try {
             String enc = request.getCharacterEncoding();
             if (enc != null) {
@@ -220,23 +236,54 @@ public class FormData implements FormInstance {
     }
 
     protected Blob getBlob(FileItem item) {
+        Blob taken = takenOver.get(item);
+        if (taken != null) {
+            return taken;
+        }
         try {
-            InputStream in;
-            if (item.isInMemory()) {
-                in = new ByteArrayInputStream(item.get());
+            String ctype = item.getContentType();
+            Blob blob;
+            if (item instanceof DiskFileItem && !item.isInMemory()) {
+                // take over the file spooled by the upload instead of copying it
+                blob = new FileBlob(takeOverFile((DiskFileItem) item), true);
+                blob.setMimeType(ctype == null ? "application/octet-stream" : ctype);
+                takenOver.put(item, blob);
             } else {
-                in = item.getInputStream();
+                InputStream in;
+                if (item.isInMemory()) {
+                    in = new ByteArrayInputStream(item.get());
+                } else {
+                    in = item.getInputStream();
+                }
+                blob = Blobs.createBlob(in, ctype == null ? "application/octet-stream" : ctype);
+                in.close();
             }
-            String ctype = item.getContentType();
-            Blob blob = Blobs.createBlob(in, ctype == null ? "application/octet-stream" : ctype);
             blob.setFilename(item.getName());
-            in.close();
             return blob;
         } catch (IOException e) {
             throw WebException.wrap("Failed to get blob data", e);
         }
     }
 
+    /**
+     * Moves the file spooled by an upload to a new temporary file, which is renamed rather than copied when possible.
+     * The item cannot be read anymore afterwards, its blob is returned again by later calls to {@link #getBlob}.
+     *
+     * @since 9.3
+     */
+    protected File takeOverFile(DiskFileItem item) throws IOException {
+        File file = Framework.createTempFile("nxblob-", ".tmp");
+        Framework.trackFile(file, file);
+        try {
+            item.write(file);
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) { // DiskFileItem.write declares Exception
+            throw new IOException(e);
+        }
+        return file;
+    }
+
     public final FileItem getFileItem(String key) {
         Map<String, List<FileItem>> items = getMultiPartItems();
         List<FileItem> list = items.get(key);
@@ -0,0 +1,112 @@
+/*
+ * (C) Copyright 2017 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Florent Guillaume
+ */
+package org.nuxeo.ecm.webengine.forms;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Proxy;
+
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+
+import org.apache.commons.lang.StringUtils;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.nuxeo.ecm.core.api.Blob;
+import org.nuxeo.runtime.test.runner.Features;
+import org.nuxeo.runtime.test.runner.FeaturesRunner;
+import org.nuxeo.runtime.test.runner.RuntimeFeature;
+
+@RunWith(FeaturesRunner.class)
+@Features(RuntimeFeature.class)
+public class TestFormData {
+
+    protected static final String BOUNDARY = "----TestFormDataBoundary";
+
+    /**
+     * Creates a multipart POST request with a text field and a file field large enough to be spooled to disk.
+     */
+    protected static HttpServletRequest newMultipartRequest(String content) {
+        String body = "--" + BOUNDARY + "\r\n" //
+                + "Content-Disposition: form-data; name=\"title\"\r\n\r\n" //
+                + "My Title\r\n" //
+                + "--" + BOUNDARY + "\r\n" //
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"test.txt\"\r\n" //
+                + "Content-Type: text/plain\r\n\r\n" //
+                + content + "\r\n" //
+                + "--" + BOUNDARY + "--\r\n";
+        byte[] bytes = body.getBytes(UTF_8);
+        InputStream in = new ByteArrayInputStream(bytes);
+        ServletInputStream sin = new ServletInputStream() {
+            @Override
+            public int read() throws IOException {
+                return in.read();
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return in.read(b, off, len);
+            }
+        };
+        return (HttpServletRequest) Proxy.newProxyInstance(HttpServletRequest.class.getClassLoader(),
+                new Class<?>[] { HttpServletRequest.class }, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                    case "getMethod":
+                        return "POST";
+                    case "getContentType":
+                        return "multipart/form-data; boundary=" + BOUNDARY;
+                    case "getContentLength":
+                        return Integer.valueOf(bytes.length);
+                    case "getHeader":
+                        return "Content-length".equalsIgnoreCase((String) args[0]) ? String.valueOf(bytes.length)
+                                : null;
+                    case "getInputStream":
+                        return sin;
+                    default:
+                        return null;
+                    }
+                });
+    }
+
+    @Test
+    public void testGetBlobTwice() throws Exception {
+        String content = StringUtils.repeat("0123456789", 5000); // over the in-memory threshold
+        FormData form = new FormData(newMultipartRequest(content));
+
+        Blob blob = form.getBlob("file");
+        assertNotNull(blob);
+        assertEquals("test.txt", blob.getFilename());
+        assertEquals("text/plain", blob.getMimeType());
+        assertEquals(content, blob.getString());
+
+        // the spooled file has been taken over, the same data is still available
+        Blob again = form.getBlob("file");
+        assertEquals(content, again.getString());
+        assertEquals(content, form.getBlobs("file")[0].getString());
+        assertEquals(content, form.getFirstBlob().getString());
+        assertEquals(content, form.getMultiPartFormProperty("file"));
+        assertEquals("My Title", form.getMultiPartFormProperty("title"));
+    }
+
+}